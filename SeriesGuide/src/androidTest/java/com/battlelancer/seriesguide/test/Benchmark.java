@@ -0,0 +1,95 @@
+package com.battlelancer.seriesguide.test;
+
+import android.os.Build;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.util.Log;
+import java.util.Locale;
+
+/**
+ * Library size, measuring and logging shared by the benchmark tests. Results are logged with tag
+ * {@value #TAG}.
+ */
+final class Benchmark {
+
+    private static final String TAG = "SgBenchmark";
+
+    /** Shows of a large library, with {@link #EPISODES_PER_SHOW} a library of 100k episodes. */
+    static final int SHOW_COUNT = 200;
+    static final int EPISODES_PER_SHOW = 500;
+
+    /** Duration, allocations and garbage collections of a {@link Task}. */
+    static class Result {
+        long durationMs;
+        int allocCount;
+        int allocBytes;
+        long gcCount;
+        long gcTimeMs;
+        long checksum;
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%d ms, %d allocations, %d bytes, %d GCs taking %d ms",
+                    durationMs, allocCount, allocBytes, gcCount, gcTimeMs);
+        }
+    }
+
+    interface Task {
+        /**
+         * Returns a checksum of the results, so the work can not be skipped.
+         */
+        long run();
+    }
+
+    private Benchmark() {
+    }
+
+    /**
+     * Episode ids unique across {@link #SHOW_COUNT} shows with {@link #EPISODES_PER_SHOW} each.
+     */
+    static int getEpisodeId(int show, int number) {
+        return show * EPISODES_PER_SHOW + number;
+    }
+
+    /**
+     * Runs the task once to warm up, then again measuring duration and allocations of the calling
+     * thread and, from Android M, garbage collections.
+     */
+    @SuppressWarnings("deprecation")
+    static Result measure(Task task) {
+        task.run();
+        Runtime.getRuntime().gc();
+        Result result = new Result();
+        long gcCount = getGcStat("art.gc.gc-count");
+        long gcTimeMs = getGcStat("art.gc.gc-time");
+
+        Debug.resetThreadAllocCount();
+        Debug.resetThreadAllocSize();
+        Debug.startAllocCounting();
+        long start = SystemClock.elapsedRealtime();
+        result.checksum = task.run();
+        result.durationMs = SystemClock.elapsedRealtime() - start;
+        Debug.stopAllocCounting();
+
+        result.allocCount = Debug.getThreadAllocCount();
+        result.allocBytes = Debug.getThreadAllocSize();
+        result.gcCount = getGcStat("art.gc.gc-count") - gcCount;
+        result.gcTimeMs = getGcStat("art.gc.gc-time") - gcTimeMs;
+        return result;
+    }
+
+    /**
+     * Returns the runtime statistic, or 0 if not available.
+     */
+    private static long getGcStat(String name) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return 0;
+        }
+        String value = Debug.getRuntimeStat(name);
+        return value == null ? 0 : Long.parseLong(value);
+    }
+
+    static void log(Class<?> benchmark, String message) {
+        Log.i(TAG, benchmark.getSimpleName() + ": " + message);
+    }
+}
@@ -0,0 +1,124 @@
+package com.battlelancer.seriesguide.test;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.text.format.DateUtils;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables;
+import com.battlelancer.seriesguide.ui.CalendarFragment.CalendarType;
+import com.battlelancer.seriesguide.util.DBUtils;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Walks calendar pages like {@link com.battlelancer.seriesguide.ui.CalendarFragment} and checks
+ * episodes released at the same time across a page boundary move to the next page without ending
+ * paging early.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CalendarPagesTest {
+
+    private static final int PAGE_SIZE = 50;
+
+    private Context context;
+    private SeriesGuideDatabase helper;
+    private SQLiteDatabase db;
+    private int episodeId;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        helper = new SeriesGuideDatabase(context, null);
+        db = helper.getWritableDatabase();
+
+        // match any calendar filter setting
+        ContentValues values = new ContentValues();
+        values.put(Shows._ID, 1);
+        values.put(Shows.TITLE, "Show");
+        values.put(Shows.FAVORITE, 1);
+        db.insert(Tables.SHOWS, null, values);
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+    }
+
+    @Test
+    public void tieAcrossPageBoundary() {
+        long start = System.currentTimeMillis() + DateUtils.DAY_IN_MILLIS;
+        // 45 episodes one hour apart, then 10 released at the same time
+        for (int i = 0; i < 45; i++) {
+            insertEpisode(start + i * DateUtils.HOUR_IN_MILLIS);
+        }
+        long tieTime = start + 45 * DateUtils.HOUR_IN_MILLIS;
+        for (int i = 0; i < 10; i++) {
+            insertEpisode(tieTime);
+        }
+        insertEpisode(tieTime + DateUtils.HOUR_IN_MILLIS);
+
+        List<Integer> pageSizes = walkPages(CalendarType.UPCOMING, start);
+        // the tie moves to the second page, the last page is empty
+        assertThat(pageSizes).containsExactly(45, 11, 0);
+    }
+
+    @Test
+    public void tieLargerThanPage() {
+        long start = System.currentTimeMillis() + DateUtils.DAY_IN_MILLIS;
+        for (int i = 0; i < PAGE_SIZE + 5; i++) {
+            insertEpisode(start);
+        }
+        insertEpisode(start + DateUtils.HOUR_IN_MILLIS);
+
+        assertThat(walkPages(CalendarType.UPCOMING, start)).containsExactly(PAGE_SIZE + 5, 1, 0);
+    }
+
+    private void insertEpisode(long releaseTime) {
+        episodeId++;
+        ContentValues values = new ContentValues();
+        values.put(Episodes._ID, episodeId);
+        values.put(Episodes.TITLE, "Episode " + episodeId);
+        values.put(Shows.REF_SHOW_ID, 1);
+        values.put(Episodes.SEASON, 1);
+        values.put(Episodes.NUMBER, episodeId);
+        values.put(Episodes.WATCHED, 0);
+        values.put(Episodes.COLLECTED, 1);
+        values.put(Episodes.FIRSTAIREDMS, releaseTime);
+        db.insert(Tables.EPISODES, null, values);
+    }
+
+    /**
+     * Loads pages until one is empty, returns the number of episodes of each page.
+     */
+    private List<Integer> walkPages(String type, long pageStart) {
+        List<Integer> pageSizes = new ArrayList<>();
+        while (true) {
+            String[][] query = DBUtils.buildActivityPageQuery(context, type, -1, pageStart,
+                    PAGE_SIZE);
+            Cursor page = db.query(Tables.EPISODES_JOIN_SHOWS,
+                    new String[] { Episodes.FIRSTAIREDMS }, query[0][0], query[1], null, null,
+                    query[2][0]);
+            int count = page.getCount();
+            pageSizes.add(count);
+            if (count == 0) {
+                page.close();
+                return pageSizes;
+            }
+            page.moveToLast();
+            pageStart = DBUtils.getNextCalendarPageStart(type, page.getLong(0));
+            page.close();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.battlelancer.seriesguide.test;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import com.battlelancer.seriesguide.adapters.CalendarAdapter;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Seasons;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables;
+import com.battlelancer.seriesguide.ui.CalendarFragment.CalendarType;
+import com.battlelancer.seriesguide.util.DBUtils;
+import java.util.regex.Pattern;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Fails if a frequently run episode query can not use an index and falls back to scanning the
+ * whole episodes table.
+ */
+@RunWith(AndroidJUnit4.class)
+public class EpisodeQueryPlanTest {
+
+    /** Older SQLite versions print "SCAN TABLE episodes", newer ones "SCAN episodes". */
+    private static final Pattern FULL_SCAN = Pattern.compile(
+            "^SCAN (TABLE )?" + Tables.EPISODES + "\\b");
+
+    private SeriesGuideDatabase helper;
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        helper = new SeriesGuideDatabase(InstrumentationRegistry.getTargetContext(), null);
+        db = helper.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+    }
+
+    @Test
+    public void episodesOfShow() {
+        assertNoFullScan(Tables.EPISODES, Shows.REF_SHOW_ID + "=?",
+                Episodes.SORT_SEASON_ASC + "," + Episodes.SORT_NUMBER_ASC);
+    }
+
+    @Test
+    public void episodesOfSeason() {
+        assertNoFullScan(Tables.EPISODES, Seasons.REF_SEASON_ID + "=?",
+                Episodes.SORT_NUMBER_ASC);
+        assertNoFullScan(Tables.EPISODES, Seasons.REF_SEASON_ID + "=? AND "
+                + Episodes.WATCHED + "=0", null);
+    }
+
+    @Test
+    public void nextEpisodeOfShow() {
+        // see SeriesGuideDatabase.buildUpdateNextEpisodesSql
+        assertNoFullScan(Tables.EPISODES, Shows.REF_SHOW_ID + "=? AND "
+                        + Episodes.WATCHED + "=0 AND ("
+                        + "(" + Episodes.FIRSTAIREDMS + "=? AND "
+                        + "(" + Episodes.NUMBER + "!=? OR " + Episodes.SEASON + "!=?)) "
+                        + "OR " + Episodes.FIRSTAIREDMS + ">?)"
+                        + " AND " + Episodes.FIRSTAIREDMS + "!=-1",
+                Episodes.FIRSTAIREDMS + " ASC," + Episodes.SEASON + " ASC,"
+                        + Episodes.NUMBER + " ASC");
+    }
+
+    @Test
+    public void nextEpisodesOfShows() {
+        assertNoFullScan(SeriesGuideDatabase.buildUpdateNextEpisodesSql(null, false, false, 1));
+        assertNoFullScan(SeriesGuideDatabase.buildUpdateNextEpisodesSql(new int[] { 1, 2 },
+                true, true, 1));
+        assertNoFullScan(SeriesGuideDatabase.buildUpdateNextReleaseTimeSql(new int[] { 1, 2 }));
+    }
+
+    @Test
+    public void unwatchedCountOfShow() {
+        // see DBUtils.getUnwatchedEpisodesOfShow
+        assertNoFullScan(Tables.EPISODES, Shows.REF_SHOW_ID + "=? AND "
+                + Episodes.WATCHED + "=0 AND " + Episodes.FIRSTAIREDMS + " !=-1 AND "
+                + Episodes.FIRSTAIREDMS + "<=? AND " + Episodes.SELECTION_NO_SPECIALS, null);
+    }
+
+    @Test
+    public void calendar() {
+        assertNoFullScan(Tables.EPISODES_JOIN_SHOWS, CalendarAdapter.Query.QUERY_UPCOMING,
+                CalendarAdapter.Query.SORTING_UPCOMING);
+        assertNoFullScan(Tables.EPISODES_JOIN_SHOWS, CalendarAdapter.Query.QUERY_RECENT,
+                CalendarAdapter.Query.SORTING_RECENT);
+    }
+
+    @Test
+    public void calendarPages() {
+        // see CalendarFragment, sub-queries finding the page end must use an index as well
+        Context context = InstrumentationRegistry.getTargetContext();
+        for (String type : new String[] { CalendarType.UPCOMING, CalendarType.RECENT }) {
+            String[][] query = DBUtils.buildActivityPageQuery(context, type, -1,
+                    DBUtils.getCalendarThreshold(context), 50);
+            assertNoFullScan(Tables.EPISODES_JOIN_SHOWS, query[0][0], query[2][0]);
+        }
+    }
+
+    @Test
+    public void notifications() {
+        // see NotificationService.queryUpcomingEpisodes
+        assertNoFullScan(Tables.EPISODES_JOIN_SHOWS, Shows.SELECTION_NOTIFY + " AND "
+                        + Episodes.SELECTION_UNWATCHED + " AND "
+                        + Episodes.FIRSTAIREDMS + ">=? AND " + Shows.SELECTION_NO_HIDDEN,
+                Episodes.FIRSTAIREDMS + " ASC," + Shows.SORT_TITLE + ","
+                        + Episodes.NUMBER + " ASC");
+    }
+
+    private void assertNoFullScan(String tables, String selection, String sortOrder) {
+        assertNoFullScan(SQLiteQueryBuilder.buildQueryString(false, tables, null, selection, null,
+                null, sortOrder, null));
+    }
+
+    private void assertNoFullScan(String query) {
+        // bind values do not matter for the query plan
+        int argCount = query.length() - query.replace("?", "").length();
+        String[] args = new String[argCount];
+        for (int i = 0; i < argCount; i++) {
+            args[i] = "1";
+        }
+
+        Cursor plan = db.rawQuery("EXPLAIN QUERY PLAN " + query, args);
+        assertThat(plan).isNotNull();
+        try {
+            int detailColumn = plan.getColumnIndexOrThrow("detail");
+            while (plan.moveToNext()) {
+                String detail = plan.getString(detailColumn);
+                assertThat(FULL_SCAN.matcher(detail).find())
+                        .as("Full table scan in plan '%s' for query '%s'", detail, query)
+                        .isFalse();
+            }
+        } finally {
+            plan.close();
+        }
+    }
+}
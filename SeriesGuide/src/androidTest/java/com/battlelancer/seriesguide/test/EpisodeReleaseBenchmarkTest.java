@@ -0,0 +1,75 @@
+package com.battlelancer.seriesguide.test;
+
+import android.support.test.runner.AndroidJUnit4;
+import com.battlelancer.seriesguide.util.EpisodeReleaseResolver;
+import com.battlelancer.seriesguide.util.TimeTools;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.threeten.bp.LocalDate;
+import org.threeten.bp.LocalTime;
+import org.threeten.bp.ZoneId;
+
+import static com.battlelancer.seriesguide.test.Benchmark.EPISODES_PER_SHOW;
+import static com.battlelancer.seriesguide.test.Benchmark.SHOW_COUNT;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the duration and allocations of calculating the release times of all episodes of 200
+ * shows with 500 episodes each using {@link TimeTools#parseEpisodeReleaseDate} and {@link
+ * EpisodeReleaseResolver}. Results are logged.
+ */
+@RunWith(AndroidJUnit4.class)
+public class EpisodeReleaseBenchmarkTest {
+
+    private static final ZoneId SHOW_TIME_ZONE = ZoneId.of(TimeToolsTest.AMERICA_NEW_YORK);
+    private static final LocalTime RELEASE_TIME = LocalTime.of(20, 0);
+    /** Requires checking for DST in the Eastern time zone. */
+    private static final String DEVICE_TIME_ZONE = "America/Phoenix";
+
+    @Test
+    public void releaseTimes() {
+        final String[] dates = new String[EPISODES_PER_SHOW];
+        LocalDate date = LocalDate.of(2005, 9, 1);
+        for (int i = 0; i < dates.length; i++) {
+            dates[i] = date.plusWeeks(i).toString();
+        }
+
+        Benchmark.Task parse = new Benchmark.Task() {
+            @Override
+            public long run() {
+                long checksum = 0;
+                for (int show = 0; show < SHOW_COUNT; show++) {
+                    for (String date : dates) {
+                        checksum += TimeTools.parseEpisodeReleaseDate(null, SHOW_TIME_ZONE, date,
+                                RELEASE_TIME, TimeToolsTest.UNITED_STATES, null,
+                                DEVICE_TIME_ZONE);
+                    }
+                }
+                return checksum;
+            }
+        };
+        Benchmark.Task resolve = new Benchmark.Task() {
+            @Override
+            public long run() {
+                long checksum = 0;
+                for (int show = 0; show < SHOW_COUNT; show++) {
+                    EpisodeReleaseResolver resolver = new EpisodeReleaseResolver(null,
+                            SHOW_TIME_ZONE, RELEASE_TIME, TimeToolsTest.UNITED_STATES, null,
+                            DEVICE_TIME_ZONE);
+                    for (String date : dates) {
+                        checksum += resolver.resolve(date);
+                    }
+                }
+                return checksum;
+            }
+        };
+
+        Benchmark.Result parseResult = Benchmark.measure(parse);
+        Benchmark.Result resolveResult = Benchmark.measure(resolve);
+
+        Benchmark.log(getClass(), "Release times with parseEpisodeReleaseDate: " + parseResult);
+        Benchmark.log(getClass(), "Release times with EpisodeReleaseResolver: " + resolveResult);
+        assertThat(resolveResult.checksum).isEqualTo(parseResult.checksum);
+        assertThat(resolveResult.allocCount).isLessThan(parseResult.allocCount);
+    }
+}
@@ -0,0 +1,142 @@
+package com.battlelancer.seriesguide.test;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.os.Bundle;
+import android.support.test.runner.AndroidJUnit4;
+import com.battlelancer.seriesguide.enums.EpisodeFlags;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Seasons;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import com.battlelancer.seriesguide.provider.SeriesGuideProvider;
+import java.util.ArrayList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks storing episodes with {@link SeriesGuideProvider#METHOD_UPSERT_EPISODES} keeps watched
+ * flags if TVDb returns an episode twice and only removes episodes with the last call for a show.
+ * Runs on an {@link IsolatedProvider}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class EpisodeUpsertTest {
+
+    private static final int SHOW_TVDB_ID = 999999999;
+    private static final int SEASON_TVDB_ID = 999999998;
+    private static final int EPISODE_TVDB_ID = 999999997;
+
+    private IsolatedProvider provider;
+    private ContentResolver resolver;
+
+    @Before
+    public void setUp() {
+        provider = new IsolatedProvider();
+        resolver = provider.getResolver();
+    }
+
+    @After
+    public void tearDown() {
+        provider.close();
+    }
+
+    @Test
+    public void duplicateKeepsWatchedFlag() {
+        ArrayList<ContentValues> episodes = new ArrayList<>();
+        episodes.add(buildEpisode(EPISODE_TVDB_ID, "Episode", 1));
+        Bundle counts = upsert(episodes, null);
+        assertThat(counts.getInt(SeriesGuideProvider.EXTRA_INSERTED)).isEqualTo(1);
+
+        ContentValues watched = new ContentValues();
+        watched.put(Episodes.WATCHED, EpisodeFlags.WATCHED);
+        resolver.update(Episodes.buildEpisodeUri(EPISODE_TVDB_ID), watched, null, null);
+
+        // TVDb returns the watched episode twice
+        episodes.clear();
+        episodes.add(buildEpisode(EPISODE_TVDB_ID, "Episode", 2));
+        episodes.add(buildEpisode(EPISODE_TVDB_ID, "Episode duplicate", 3));
+        counts = upsert(episodes, null);
+        assertThat(counts.getInt(SeriesGuideProvider.EXTRA_INSERTED)).isEqualTo(0);
+        assertThat(counts.getInt(SeriesGuideProvider.EXTRA_UPDATED)).isEqualTo(2);
+
+        Cursor query = resolver.query(Episodes.buildEpisodeUri(EPISODE_TVDB_ID),
+                new String[] { Episodes.TITLE, Episodes.WATCHED }, null, null, null);
+        assertThat(query).isNotNull();
+        //noinspection ConstantConditions
+        assertThat(query.moveToFirst()).isTrue();
+        assertThat(query.getString(0)).isEqualTo("Episode duplicate");
+        assertThat(query.getInt(1)).isEqualTo(EpisodeFlags.WATCHED);
+        query.close();
+    }
+
+    @Test
+    public void duplicateOfNewEpisode() {
+        ArrayList<ContentValues> episodes = new ArrayList<>();
+        episodes.add(buildEpisode(EPISODE_TVDB_ID, "Episode", 1));
+        episodes.add(buildEpisode(EPISODE_TVDB_ID, "Episode duplicate", 1));
+        Bundle counts = upsert(episodes, null);
+        assertThat(counts.getInt(SeriesGuideProvider.EXTRA_INSERTED)).isEqualTo(1);
+        assertThat(counts.getInt(SeriesGuideProvider.EXTRA_UPDATED)).isEqualTo(1);
+    }
+
+    @Test
+    public void lastChunkRemovesEpisodes() {
+        ArrayList<ContentValues> episodes = new ArrayList<>();
+        episodes.add(buildEpisode(EPISODE_TVDB_ID, "Episode", 1));
+        episodes.add(buildEpisode(EPISODE_TVDB_ID - 10, "Removed episode", 1));
+        upsert(episodes, null);
+
+        // first chunk does not remove episodes
+        episodes.clear();
+        episodes.add(buildEpisode(EPISODE_TVDB_ID - 20, "First chunk", 1));
+        Bundle counts = upsert(episodes, null);
+        assertThat(counts.getInt(SeriesGuideProvider.EXTRA_DELETED)).isEqualTo(0);
+
+        // last chunk removes episodes not downloaded
+        episodes.clear();
+        episodes.add(buildEpisode(EPISODE_TVDB_ID, "Last chunk", 1));
+        counts = upsert(episodes, new int[] { EPISODE_TVDB_ID - 20, EPISODE_TVDB_ID });
+        assertThat(counts.getInt(SeriesGuideProvider.EXTRA_DELETED)).isEqualTo(1);
+
+        Cursor query = resolver.query(Episodes.buildEpisodesOfShowUri(SHOW_TVDB_ID),
+                new String[] { Episodes._ID }, null, null, null);
+        assertThat(query).isNotNull();
+        //noinspection ConstantConditions
+        assertThat(query.getCount()).isEqualTo(2);
+        query.close();
+    }
+
+    private Bundle upsert(ArrayList<ContentValues> episodes, int[] allEpisodeIds) {
+        Bundle extras = new Bundle();
+        extras.putParcelableArrayList(SeriesGuideProvider.EXTRA_EPISODES, episodes);
+        extras.putLong(SeriesGuideProvider.EXTRA_UPDATE_EDITED_AFTER, 0);
+        if (allEpisodeIds != null) {
+            extras.putIntArray(SeriesGuideProvider.EXTRA_EPISODE_IDS, allEpisodeIds);
+        }
+        Bundle counts = resolver.call(Episodes.CONTENT_URI,
+                SeriesGuideProvider.METHOD_UPSERT_EPISODES, String.valueOf(SHOW_TVDB_ID),
+                extras);
+        assertThat(counts).isNotNull();
+        return counts;
+    }
+
+    private static ContentValues buildEpisode(int episodeTvdbId, String title, long lastEdited) {
+        ContentValues values = new ContentValues();
+        values.put(Episodes._ID, episodeTvdbId);
+        values.put(Seasons.REF_SEASON_ID, SEASON_TVDB_ID);
+        values.put(Shows.REF_SHOW_ID, SHOW_TVDB_ID);
+        values.put(Episodes.NUMBER, 1);
+        values.put(Episodes.ABSOLUTE_NUMBER, 1);
+        values.put(Episodes.SEASON, 1);
+        values.put(Episodes.DVDNUMBER, 1);
+        values.put(Episodes.FIRSTAIREDMS, 0);
+        values.put(Episodes.TITLE, title);
+        values.put(Episodes.OVERVIEW, "");
+        values.put(Episodes.LAST_EDITED, lastEdited);
+        return values;
+    }
+}
@@ -0,0 +1,112 @@
+package com.battlelancer.seriesguide.test;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.SparseIntArray;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.IdMappingTypes;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.IdMappings;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables;
+import com.battlelancer.seriesguide.util.IdMappingTools;
+import com.uwetrottmann.trakt5.entities.ShowIds;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks {@link SeriesGuideDatabase#putIdMappings(SQLiteDatabase, List)} merges mappings of the
+ * same show or movie into a single row and {@link IdMappingTools} resolves more ids than fit into a
+ * single query.
+ */
+@RunWith(AndroidJUnit4.class)
+public class IdMappingsTest {
+
+    private SeriesGuideDatabase helper;
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        helper = new SeriesGuideDatabase(InstrumentationRegistry.getTargetContext(), null);
+        db = helper.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+    }
+
+    @Test
+    public void mergesMappings() {
+        List<ContentValues> mappings = new ArrayList<>();
+        mappings.add(buildMapping(IdMappingTypes.SHOW, IdMappings.TVDB_ID, 1, 10));
+        mappings.add(buildMapping(IdMappingTypes.MOVIE, IdMappings.TMDB_ID, 1, 20));
+        // missing key, skipped
+        mappings.add(buildMapping(IdMappingTypes.MOVIE, IdMappings.TVDB_ID, 2, 30));
+        assertThat(SeriesGuideDatabase.putIdMappings(db, mappings)).isEqualTo(2);
+
+        // only adding the IMDb id keeps the trakt id
+        mappings.clear();
+        ContentValues values = new ContentValues();
+        values.put(IdMappings.TYPE, IdMappingTypes.MOVIE);
+        values.put(IdMappings.TMDB_ID, 1);
+        values.put(IdMappings.IMDB_ID, "tt1");
+        mappings.add(values);
+        mappings.add(buildMapping(IdMappingTypes.SHOW, IdMappings.TVDB_ID, 1, 11));
+        assertThat(SeriesGuideDatabase.putIdMappings(db, mappings)).isEqualTo(2);
+
+        Cursor query = db.query(Tables.ID_MAPPINGS,
+                new String[] { IdMappings.TYPE, IdMappings.TRAKT_ID, IdMappings.IMDB_ID }, null,
+                null, null, null, IdMappings.TYPE);
+        assertThat(query.getCount()).isEqualTo(2);
+        query.moveToFirst();
+        assertThat(query.getInt(0)).isEqualTo(IdMappingTypes.SHOW);
+        assertThat(query.getInt(1)).isEqualTo(11);
+        query.moveToNext();
+        assertThat(query.getInt(0)).isEqualTo(IdMappingTypes.MOVIE);
+        assertThat(query.getInt(1)).isEqualTo(20);
+        assertThat(query.getString(2)).isEqualTo("tt1");
+        query.close();
+    }
+
+    @Test
+    public void resolvesManyShows() {
+        IsolatedProvider provider = new IsolatedProvider();
+        try {
+            int showCount = 1200;
+            IdMappingTools.Batch batch = new IdMappingTools.Batch();
+            List<Integer> showTvdbIds = new ArrayList<>(showCount);
+            for (int show = 1; show <= showCount; show++) {
+                ShowIds ids = new ShowIds();
+                ids.tvdb = show;
+                ids.trakt = show + 10000;
+                batch.addShow(ids);
+                showTvdbIds.add(show);
+            }
+            batch.store(provider.getContext());
+
+            SparseIntArray traktIds = IdMappingTools.getShowTraktIds(provider.getContext(),
+                    showTvdbIds);
+            assertThat(traktIds.size()).isEqualTo(showCount);
+            assertThat(traktIds.get(showCount)).isEqualTo(showCount + 10000);
+        } finally {
+            provider.close();
+        }
+    }
+
+    private static ContentValues buildMapping(int type, String idColumn, int id, int traktId) {
+        ContentValues values = new ContentValues();
+        values.put(IdMappings.TYPE, type);
+        values.put(idColumn, id);
+        values.put(IdMappings.TRAKT_ID, traktId);
+        values.put(IdMappings.TRAKT_UPDATED_MS, System.currentTimeMillis());
+        return values;
+    }
+}
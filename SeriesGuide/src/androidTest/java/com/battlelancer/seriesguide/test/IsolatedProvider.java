@@ -0,0 +1,58 @@
+package com.battlelancer.seriesguide.test;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.pm.ProviderInfo;
+import android.support.test.InstrumentationRegistry;
+import android.test.IsolatedContext;
+import android.test.RenamingDelegatingContext;
+import android.test.mock.MockContentResolver;
+import com.battlelancer.seriesguide.SgApp;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase;
+import com.battlelancer.seriesguide.provider.SeriesGuideProvider;
+
+/**
+ * Runs a {@link SeriesGuideProvider} on a separate test database, so tests do not change the
+ * database of an installed app. Use the resolver or context of this for all provider calls and
+ * {@link #close()} it when done, which deletes the test database.
+ */
+class IsolatedProvider {
+
+    private static final String DATABASE_PREFIX = "test.";
+
+    private final RenamingDelegatingContext renamingContext;
+    private final IsolatedContext context;
+    private final MockContentResolver resolver;
+    private final SeriesGuideProvider provider;
+
+    IsolatedProvider() {
+        Context targetContext = InstrumentationRegistry.getTargetContext();
+        renamingContext = new RenamingDelegatingContext(targetContext, DATABASE_PREFIX);
+        // start from an empty database
+        renamingContext.deleteDatabase(SeriesGuideDatabase.DATABASE_NAME);
+        resolver = new MockContentResolver();
+        context = new IsolatedContext(resolver, renamingContext);
+
+        ProviderInfo info = new ProviderInfo();
+        info.authority = SgApp.CONTENT_AUTHORITY;
+        provider = new SeriesGuideProvider();
+        provider.attachInfo(context, info);
+        resolver.addProvider(SgApp.CONTENT_AUTHORITY, provider);
+    }
+
+    /**
+     * A context whose {@link Context#getContentResolver()} returns {@link #getResolver()}.
+     */
+    Context getContext() {
+        return context;
+    }
+
+    ContentResolver getResolver() {
+        return resolver;
+    }
+
+    void close() {
+        provider.shutdown();
+        renamingContext.deleteDatabase(SeriesGuideDatabase.DATABASE_NAME);
+    }
+}
@@ -0,0 +1,194 @@
+package com.battlelancer.seriesguide.test;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.ListItemTypes;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.ListItems;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Lists;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Seasons;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Times loading a list like a list tab does from the list item details table for a small and a
+ * large library, which should take about the same time. Also checks the table is kept up to date
+ * when shows, episodes and list items change. Timings are logged.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ListItemDetailsBenchmarkTest {
+
+    private static final int EPISODES_PER_SHOW = 100;
+    /** Shows, seasons and episodes in the list each. */
+    private static final int ITEMS_PER_TYPE = 10;
+    private static final int QUERY_RUNS = 100;
+    private static final String LIST_ID = "list";
+    private static final String SELECTION_LIST = ListItems.SELECTION_LIST + " AND "
+            + Shows.REF_SHOW_ID + ">0";
+
+    private SeriesGuideDatabase helper;
+    private SQLiteDatabase db;
+
+    @After
+    public void tearDown() {
+        if (helper != null) {
+            helper.close();
+        }
+    }
+
+    @Test
+    public void loadList() {
+        long smallMs = timeLoadList(20);
+        long largeMs = timeLoadList(1000);
+        Benchmark.log(getClass(), "Loading list of " + 3 * ITEMS_PER_TYPE + " items "
+                + QUERY_RUNS + " times, 20 shows: " + smallMs + " ms, 1000 shows: " + largeMs
+                + " ms");
+    }
+
+    private long timeLoadList(int showCount) {
+        if (helper != null) {
+            helper.close();
+        }
+        createLibrary(showCount);
+
+        long start = SystemClock.elapsedRealtime();
+        for (int i = 0; i < QUERY_RUNS; i++) {
+            assertThat(queryList()).isEqualTo(3 * ITEMS_PER_TYPE);
+        }
+        return SystemClock.elapsedRealtime() - start;
+    }
+
+    @Test
+    public void updates() {
+        createLibrary(20);
+
+        ContentValues values = new ContentValues();
+        values.put(Shows.TITLE, "Renamed show");
+        db.update(Tables.SHOWS, values, Shows._ID + "=1", null);
+        // show, season and episode items display the show title
+        assertThat(countItemsWithTitle("Renamed show")).isEqualTo(3);
+
+        // show items display the title of the next episode
+        values.clear();
+        values.put(Episodes.TITLE, "Renamed episode");
+        db.update(Tables.EPISODES, values, Episodes._ID + "=" + getEpisodeId(1, 1), null);
+        assertThat(getOverview(1, ListItemTypes.SHOW)).isEqualTo("Renamed episode");
+        values.clear();
+        values.put(Episodes.TITLE, "Renamed list episode");
+        db.update(Tables.EPISODES, values, Episodes._ID + "=" + getEpisodeId(1, 2), null);
+        assertThat(getOverview(getEpisodeId(1, 2), ListItemTypes.EPISODE))
+                .isEqualTo("Renamed list episode");
+
+        // removed episodes are excluded like before
+        db.delete(Tables.EPISODES, Episodes._ID + "=" + getEpisodeId(2, 2), null);
+        assertThat(queryList()).isEqualTo(3 * ITEMS_PER_TYPE - 1);
+
+        db.delete(Tables.LIST_ITEMS, ListItems.ITEM_REF_ID + "='1'", null);
+        assertThat(queryList()).isEqualTo(3 * ITEMS_PER_TYPE - 3);
+
+        // rebuilding, like when upgrading, yields the same rows
+        SeriesGuideDatabase.rebuildListItemDetails(db);
+        assertThat(queryList()).isEqualTo(3 * ITEMS_PER_TYPE - 3);
+        assertThat(getOverview(getEpisodeId(3, 2), ListItemTypes.EPISODE))
+                .isEqualTo("Episode 2");
+    }
+
+    private void createLibrary(int showCount) {
+        helper = new SeriesGuideDatabase(InstrumentationRegistry.getTargetContext(), null);
+        db = helper.getWritableDatabase();
+
+        long start = SystemClock.elapsedRealtime();
+        SQLiteStatement insertShow = db.compileStatement("INSERT INTO " + Tables.SHOWS
+                + " (" + Shows._ID + "," + Shows.TITLE + "," + Shows.NEXTEPISODE + ")"
+                + " VALUES (?,?,?)");
+        SQLiteStatement insertSeason = db.compileStatement("INSERT INTO " + Tables.SEASONS
+                + " (" + Seasons._ID + "," + Seasons.COMBINED + "," + Shows.REF_SHOW_ID + ")"
+                + " VALUES (?,?,?)");
+        SQLiteStatement insertEpisode = db.compileStatement("INSERT INTO " + Tables.EPISODES
+                + " (" + Episodes._ID + "," + Episodes.TITLE + "," + Shows.REF_SHOW_ID + ","
+                + Episodes.SEASON + "," + Episodes.NUMBER + ") VALUES (?,?,?,1,?)");
+        db.beginTransaction();
+        try {
+            for (int show = 1; show <= showCount; show++) {
+                insertShow.bindLong(1, show);
+                insertShow.bindString(2, "Show " + show);
+                insertShow.bindString(3, String.valueOf(getEpisodeId(show, 1)));
+                insertShow.executeInsert();
+
+                insertSeason.bindLong(1, show);
+                insertSeason.bindLong(2, 1);
+                insertSeason.bindString(3, String.valueOf(show));
+                insertSeason.executeInsert();
+
+                for (int number = 1; number <= EPISODES_PER_SHOW; number++) {
+                    insertEpisode.bindLong(1, getEpisodeId(show, number));
+                    insertEpisode.bindString(2, "Episode " + number);
+                    insertEpisode.bindString(3, String.valueOf(show));
+                    insertEpisode.bindLong(4, number);
+                    insertEpisode.executeInsert();
+                }
+            }
+            for (int show = 1; show <= ITEMS_PER_TYPE; show++) {
+                insertListItem(show, ListItemTypes.SHOW);
+                insertListItem(show, ListItemTypes.SEASON);
+                insertListItem(getEpisodeId(show, 2), ListItemTypes.EPISODE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            insertShow.close();
+            insertSeason.close();
+            insertEpisode.close();
+        }
+        Benchmark.log(getClass(), "Inserting " + showCount + " shows with "
+                + EPISODES_PER_SHOW + " episodes each: "
+                + (SystemClock.elapsedRealtime() - start) + " ms");
+    }
+
+    private static int getEpisodeId(int show, int number) {
+        return show * EPISODES_PER_SHOW + number;
+    }
+
+    private void insertListItem(int refId, int type) {
+        ContentValues values = new ContentValues();
+        values.put(ListItems.LIST_ITEM_ID, refId + "-" + type + "-" + LIST_ID);
+        values.put(ListItems.ITEM_REF_ID, String.valueOf(refId));
+        values.put(ListItems.TYPE, type);
+        values.put(Lists.LIST_ID, LIST_ID);
+        db.insert(Tables.LIST_ITEMS, null, values);
+    }
+
+    /**
+     * Queries like {@link com.battlelancer.seriesguide.ui.ListsFragment} and returns the count.
+     */
+    private int queryList() {
+        Cursor query = db.query(Tables.LIST_ITEM_DETAILS, null, SELECTION_LIST,
+                new String[] { LIST_ID }, null, null, ListItems.SORT_TYPE);
+        int count = query.getCount();
+        query.close();
+        return count;
+    }
+
+    private long countItemsWithTitle(String title) {
+        return DatabaseUtils.queryNumEntries(db, Tables.LIST_ITEM_DETAILS,
+                Shows.TITLE + "=?", new String[] { title });
+    }
+
+    private String getOverview(int refId, int type) {
+        return DatabaseUtils.stringForQuery(db, "SELECT " + Shows.OVERVIEW + " FROM "
+                + Tables.LIST_ITEM_DETAILS + " WHERE " + ListItems.ITEM_REF_ID + "=? AND "
+                + ListItems.TYPE + "=" + type, new String[] { String.valueOf(refId) });
+    }
+}
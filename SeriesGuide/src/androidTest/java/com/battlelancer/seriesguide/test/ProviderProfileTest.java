@@ -0,0 +1,74 @@
+package com.battlelancer.seriesguide.test;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import com.battlelancer.seriesguide.provider.QueryProfiler;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.ListItems;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Stats;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs commonly used queries of the app through the provider with {@link QueryProfiler} enabled
+ * and logs the results, including query plans, to find missing indexes and slow joins. Runs on an
+ * empty {@link IsolatedProvider}, so the plans match the current schema and indexes.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProviderProfileTest {
+
+    private static final String TAG = "ProviderProfile";
+
+    private IsolatedProvider provider;
+    private ContentResolver resolver;
+
+    @Before
+    public void setUp() {
+        provider = new IsolatedProvider();
+        resolver = provider.getResolver();
+        QueryProfiler.clear();
+        // capture the plan of every query
+        QueryProfiler.setSlowThresholdMs(0);
+        QueryProfiler.setEnabled(true);
+    }
+
+    @After
+    public void tearDown() {
+        QueryProfiler.setEnabled(false);
+        QueryProfiler.setSlowThresholdMs(QueryProfiler.DEFAULT_SLOW_THRESHOLD_MS);
+        QueryProfiler.clear();
+        provider.close();
+    }
+
+    @Test
+    public void commonQueries() {
+        query(Shows.CONTENT_URI_WITH_NEXT_EPISODE, Shows.SELECTION_NO_HIDDEN, null,
+                Shows.SORT_TITLE);
+        query(Episodes.CONTENT_URI_WITHSHOW, Episodes.SELECTION_UNWATCHED, null,
+                Episodes.FIRSTAIREDMS + " ASC");
+        // like ListsFragment
+        query(ListItems.CONTENT_WITH_DETAILS_URI,
+                ListItems.SELECTION_LIST + " AND " + Shows.REF_SHOW_ID + ">0",
+                new String[] { "1" }, ListItems.SORT_TYPE);
+        query(Stats.CONTENT_URI, null, null, null);
+
+        String dump = QueryProfiler.dump();
+        Log.i(TAG, dump);
+        assertThat(dump).contains("SLOW query");
+    }
+
+    private void query(Uri uri, String selection, String[] selectionArgs, String sortOrder) {
+        Cursor query = resolver.query(uri, null, selection, selectionArgs, sortOrder);
+        assertThat(query).isNotNull();
+        //noinspection ConstantConditions
+        query.close();
+    }
+}
@@ -0,0 +1,197 @@
+package com.battlelancer.seriesguide.test;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Activity;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.ListItemTypes;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.ListItems;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static com.battlelancer.seriesguide.test.Benchmark.EPISODES_PER_SHOW;
+import static com.battlelancer.seriesguide.test.Benchmark.SHOW_COUNT;
+import static com.battlelancer.seriesguide.test.Benchmark.getEpisodeId;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares keeping the episode search table up to date with triggers to rebuilding it after
+ * changes, as was done after every sync, for a library of 100k episodes. Also times removing a
+ * show. Timings are logged.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SearchTableBenchmarkTest {
+
+
+    private SeriesGuideDatabase helper;
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        helper = new SeriesGuideDatabase(InstrumentationRegistry.getTargetContext(), null);
+        db = helper.getWritableDatabase();
+
+        long start = SystemClock.elapsedRealtime();
+        SQLiteStatement insert = db.compileStatement("INSERT INTO " + Tables.EPISODES
+                + " (" + Episodes._ID + "," + Episodes.TITLE + "," + Episodes.OVERVIEW + ","
+                + Shows.REF_SHOW_ID + "," + Episodes.SEASON + "," + Episodes.NUMBER + ")"
+                + " VALUES (?,?,?,?,?,?)");
+        db.beginTransaction();
+        try {
+            for (int show = 1; show <= SHOW_COUNT; show++) {
+                for (int number = 1; number <= EPISODES_PER_SHOW; number++) {
+                    insert.bindLong(1, getEpisodeId(show, number));
+                    insert.bindString(2, "Episode " + number);
+                    insert.bindString(3, "The crew of show " + show + " lands on a strange planet"
+                            + " where nothing is what it seems.");
+                    insert.bindString(4, String.valueOf(show));
+                    insert.bindLong(5, number / 20 + 1);
+                    insert.bindLong(6, number % 20 + 1);
+                    insert.executeInsert();
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            insert.close();
+        }
+        Benchmark.log(getClass(), "Inserting " + SHOW_COUNT * EPISODES_PER_SHOW
+                + " episodes with triggers: " + (SystemClock.elapsedRealtime() - start) + " ms");
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+    }
+
+    @Test
+    public void updateShow() {
+        // incremental: triggers update search table rows of changed episodes
+        long start = SystemClock.elapsedRealtime();
+        updateOverviewsOfShow(1, "incremental");
+        long incrementalMs = SystemClock.elapsedRealtime() - start;
+        assertThat(countMatches("incremental")).isEqualTo(EPISODES_PER_SHOW);
+
+        // full rebuild: re-index all episodes
+        updateOverviewsOfShow(2, "rebuilt");
+        start = SystemClock.elapsedRealtime();
+        SeriesGuideDatabase.rebuildFtsTable(db);
+        long rebuildMs = SystemClock.elapsedRealtime() - start;
+        assertThat(countMatches("rebuilt")).isEqualTo(EPISODES_PER_SHOW);
+
+        Benchmark.log(getClass(), "Updating " + EPISODES_PER_SHOW + " episodes with triggers: "
+                + incrementalMs + " ms, full rebuild: " + rebuildMs + " ms");
+    }
+
+    @Test
+    public void replaceAndDelete() {
+        // bulk inserts replace existing rows, old text must be removed from search table
+        ContentValues values = new ContentValues();
+        values.put(Episodes._ID, EPISODES_PER_SHOW + 1);
+        values.put(Episodes.TITLE, "Replaced");
+        values.put(Shows.REF_SHOW_ID, "1");
+        db.replace(Tables.EPISODES, null, values);
+        assertThat(countMatches("replaced")).isEqualTo(1);
+        assertThat(countMatches("strange")).isEqualTo(SHOW_COUNT * EPISODES_PER_SHOW - 1);
+
+        db.delete(Tables.EPISODES, Shows.REF_SHOW_ID + "=?", new String[] { "1" });
+        assertThat(countMatches("replaced")).isEqualTo(0);
+        assertThat(countMatches("strange")).isEqualTo((SHOW_COUNT - 1) * EPISODES_PER_SHOW);
+    }
+
+    @Test
+    public void deleteShow() {
+        insertListItem(1, ListItemTypes.SHOW);
+        insertListItem(EPISODES_PER_SHOW + 1, ListItemTypes.EPISODE);
+        insertListItem(2 * EPISODES_PER_SHOW + 1, ListItemTypes.EPISODE);
+        insertActivity(EPISODES_PER_SHOW + 1, 1);
+        insertActivity(2 * EPISODES_PER_SHOW + 1, 2);
+
+        long start = SystemClock.elapsedRealtime();
+        int count = SeriesGuideDatabase.deleteShow(db, 1);
+        long deleteMs = SystemClock.elapsedRealtime() - start;
+
+        assertThat(count).isEqualTo(EPISODES_PER_SHOW);
+        assertThat(countMatches("strange")).isEqualTo((SHOW_COUNT - 1) * EPISODES_PER_SHOW);
+        // only items of the removed show are gone
+        assertThat(DatabaseUtils.queryNumEntries(db, Tables.LIST_ITEMS)).isEqualTo(1);
+        assertThat(DatabaseUtils.queryNumEntries(db, Tables.ACTIVITY)).isEqualTo(1);
+
+        Benchmark.log(getClass(), "Removing show with " + EPISODES_PER_SHOW + " episodes: "
+                + deleteMs + " ms");
+    }
+
+    @Test
+    public void bulkInsert() {
+        // like restoring a backup: replace all episodes, restore indexes and search table once
+        long start = SystemClock.elapsedRealtime();
+        db.beginTransaction();
+        try {
+            SeriesGuideDatabase.beginBulkInsert(db);
+            db.delete(Tables.EPISODES, null, null);
+            SQLiteStatement insert = db.compileStatement("INSERT INTO " + Tables.EPISODES
+                    + " (" + Episodes._ID + "," + Episodes.TITLE + "," + Episodes.OVERVIEW + ","
+                    + Shows.REF_SHOW_ID + ") VALUES (?,?,?,?)");
+            for (int show = 1; show <= SHOW_COUNT; show++) {
+                for (int number = 1; number <= EPISODES_PER_SHOW; number++) {
+                    insert.bindLong(1, getEpisodeId(show, number));
+                    insert.bindString(2, "Episode " + number);
+                    insert.bindString(3, "A restored description.");
+                    insert.bindString(4, String.valueOf(show));
+                    insert.executeInsert();
+                }
+            }
+            insert.close();
+            SeriesGuideDatabase.endBulkInsert(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        long bulkMs = SystemClock.elapsedRealtime() - start;
+
+        assertThat(countMatches("restored")).isEqualTo(SHOW_COUNT * EPISODES_PER_SHOW);
+        assertThat(countMatches("strange")).isEqualTo(0);
+        // triggers are restored
+        updateOverviewsOfShow(1, "incremental");
+        assertThat(countMatches("incremental")).isEqualTo(EPISODES_PER_SHOW);
+
+        Benchmark.log(getClass(), "Replacing " + SHOW_COUNT * EPISODES_PER_SHOW
+                + " episodes without triggers and indexes: " + bulkMs + " ms");
+    }
+
+    private void updateOverviewsOfShow(int showTvdbId, String word) {
+        db.execSQL("UPDATE " + Tables.EPISODES + " SET " + Episodes.OVERVIEW + "='A "
+                + word + " description.' WHERE " + Shows.REF_SHOW_ID + "='" + showTvdbId + "'");
+    }
+
+    private void insertListItem(int refId, int type) {
+        ContentValues values = new ContentValues();
+        values.put(ListItems.LIST_ITEM_ID, refId + "-" + type + "-list");
+        values.put(ListItems.ITEM_REF_ID, String.valueOf(refId));
+        values.put(ListItems.TYPE, type);
+        db.insert(Tables.LIST_ITEMS, null, values);
+    }
+
+    private void insertActivity(int episodeTvdbId, int showTvdbId) {
+        ContentValues values = new ContentValues();
+        values.put(Activity.EPISODE_TVDB_ID, String.valueOf(episodeTvdbId));
+        values.put(Activity.SHOW_TVDB_ID, String.valueOf(showTvdbId));
+        values.put(Activity.TIMESTAMP_MS, System.currentTimeMillis());
+        db.insert(Tables.ACTIVITY, null, values);
+    }
+
+    private long countMatches(String term) {
+        return DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM " + Tables.EPISODES_SEARCH
+                + " WHERE " + Tables.EPISODES_SEARCH + " MATCH ?", new String[] { term });
+    }
+}
@@ -0,0 +1,88 @@
+package com.battlelancer.seriesguide.test;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.support.test.runner.AndroidJUnit4;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import com.battlelancer.seriesguide.provider.ShowMetadataCache;
+import com.battlelancer.seriesguide.provider.ShowMetadataCache.ShowMetadata;
+import com.battlelancer.seriesguide.util.DBUtils;
+import com.battlelancer.seriesguide.util.ShowTools;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks writes through the provider invalidate {@link ShowMetadataCache} only if they change
+ * cached metadata. Inserts and removes a show with an id not used by TheTVDB, so no metadata of
+ * the installed app is cached for it. Runs on an {@link IsolatedProvider}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ShowMetadataCacheTest {
+
+    private static final int SHOW_TVDB_ID = 999999999;
+
+    private IsolatedProvider provider;
+    private Context context;
+    private ContentResolver resolver;
+
+    @Before
+    public void setUp() {
+        provider = new IsolatedProvider();
+        context = provider.getContext();
+        resolver = provider.getResolver();
+    }
+
+    @After
+    public void tearDown() {
+        // removes the show from the cache as well
+        resolver.delete(Shows.buildShowUri(SHOW_TVDB_ID), null, null);
+        provider.close();
+    }
+
+    @Test
+    public void invalidatedByProviderWrites() {
+        // shows that do not exist are cached as well
+        assertThat(ShowMetadataCache.get(context, SHOW_TVDB_ID)).isNull();
+        int hits = ShowMetadataCache.getHitCount();
+        assertThat(DBUtils.isShowExists(context, SHOW_TVDB_ID)).isFalse();
+        assertThat(ShowMetadataCache.getHitCount()).isEqualTo(hits + 1);
+
+        ContentValues values = new ContentValues();
+        values.put(Shows._ID, SHOW_TVDB_ID);
+        values.put(Shows.TITLE, "Cached show");
+        values.put(Shows.LANGUAGE, "de");
+        resolver.insert(Shows.CONTENT_URI, values);
+        ShowMetadata show = ShowMetadataCache.get(context, SHOW_TVDB_ID);
+        assertThat(show).isNotNull();
+        //noinspection ConstantConditions
+        assertThat(show.title).isEqualTo("Cached show");
+        assertThat(show.language).isEqualTo("de");
+        assertThat(show.traktId).isNull();
+        assertThat(ShowTools.getShowTvdbIdsAndPosters(context).indexOfKey(SHOW_TVDB_ID))
+                .isGreaterThanOrEqualTo(0);
+
+        // columns that are not cached do not invalidate
+        values.clear();
+        values.put(Shows.LASTWATCHED_MS, System.currentTimeMillis());
+        resolver.update(Shows.buildShowUri(SHOW_TVDB_ID), values, null, null);
+        int misses = ShowMetadataCache.getMissCount();
+        assertThat(ShowTools.getShowTraktId(context, SHOW_TVDB_ID)).isNull();
+        assertThat(ShowMetadataCache.getMissCount()).isEqualTo(misses);
+
+        values.clear();
+        values.put(Shows.TRAKT_ID, 42);
+        resolver.update(Shows.buildShowUri(SHOW_TVDB_ID), values, null, null);
+        assertThat(ShowTools.getShowTraktId(context, SHOW_TVDB_ID)).isEqualTo(42);
+        assertThat(ShowMetadataCache.getMissCount()).isEqualTo(misses + 1);
+
+        resolver.delete(Shows.buildShowUri(SHOW_TVDB_ID), null, null);
+        assertThat(DBUtils.isShowExists(context, SHOW_TVDB_ID)).isFalse();
+        assertThat(ShowTools.getShowTvdbIdsAndPosters(context).indexOfKey(SHOW_TVDB_ID))
+                .isLessThan(0);
+    }
+}
@@ -0,0 +1,173 @@
+package com.battlelancer.seriesguide.test;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Stats;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static com.battlelancer.seriesguide.test.Benchmark.EPISODES_PER_SHOW;
+import static com.battlelancer.seriesguide.test.Benchmark.SHOW_COUNT;
+import static com.battlelancer.seriesguide.test.Benchmark.getEpisodeId;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares computing stats with a single query on stored episode counts to counting watched
+ * episodes with one query per show, as was done before, for a library of 100k episodes. Timings
+ * are logged.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StatsBenchmarkTest {
+
+    private static final int RUNTIME = 42;
+
+    private SeriesGuideDatabase helper;
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        helper = new SeriesGuideDatabase(InstrumentationRegistry.getTargetContext(), null);
+        db = helper.getWritableDatabase();
+
+        SQLiteStatement insertShow = db.compileStatement("INSERT INTO " + Tables.SHOWS
+                + " (" + Shows._ID + "," + Shows.TITLE + "," + Shows.RUNTIME + ")"
+                + " VALUES (?,?,?)");
+        SQLiteStatement insertEpisode = db.compileStatement("INSERT INTO " + Tables.EPISODES
+                + " (" + Episodes._ID + "," + Episodes.TITLE + "," + Shows.REF_SHOW_ID + ","
+                + Episodes.SEASON + "," + Episodes.NUMBER + "," + Episodes.WATCHED + ")"
+                + " VALUES (?,?,?,?,?,?)");
+        db.beginTransaction();
+        try {
+            for (int show = 1; show <= SHOW_COUNT; show++) {
+                insertShow.bindLong(1, show);
+                insertShow.bindString(2, "Show " + show);
+                insertShow.bindString(3, String.valueOf(RUNTIME));
+                insertShow.executeInsert();
+                for (int number = 1; number <= EPISODES_PER_SHOW; number++) {
+                    insertEpisode.bindLong(1, getEpisodeId(show, number));
+                    insertEpisode.bindString(2, "Episode " + number);
+                    insertEpisode.bindString(3, String.valueOf(show));
+                    // first season are specials
+                    insertEpisode.bindLong(4, number / 20);
+                    insertEpisode.bindLong(5, number % 20 + 1);
+                    // first half watched
+                    insertEpisode.bindLong(6, number <= EPISODES_PER_SHOW / 2 ? 1 : 0);
+                    insertEpisode.executeInsert();
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            insertShow.close();
+            insertEpisode.close();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+    }
+
+    @Test
+    public void stats() {
+        // per show: one query per show
+        long start = SystemClock.elapsedRealtime();
+        long watchedRuntimePerShow = 0;
+        for (int show = 1; show <= SHOW_COUNT; show++) {
+            long watched = DatabaseUtils.queryNumEntries(db, Tables.EPISODES,
+                    Shows.REF_SHOW_ID + "=? AND " + Episodes.SELECTION_WATCHED,
+                    new String[] { String.valueOf(show) });
+            watchedRuntimePerShow += watched * RUNTIME;
+        }
+        long perShowMs = SystemClock.elapsedRealtime() - start;
+
+        // stored counts: one query in total
+        start = SystemClock.elapsedRealtime();
+        SeriesGuideDatabase.updateShowStats(db, null);
+        long updateMs = SystemClock.elapsedRealtime() - start;
+
+        start = SystemClock.elapsedRealtime();
+        Cursor stats = db.rawQuery(SeriesGuideDatabase.buildStatsQuery(false), null);
+        long queryMs = SystemClock.elapsedRealtime() - start;
+        assertThat(stats.moveToFirst()).isTrue();
+        assertThat(stats.getCount()).isEqualTo(1);
+        assertThat(getLong(stats, Stats.SHOWS)).isEqualTo(SHOW_COUNT);
+        assertThat(getLong(stats, Stats.EPISODES)).isEqualTo(SHOW_COUNT * EPISODES_PER_SHOW);
+        assertThat(getLong(stats, Stats.EPISODES_WATCHED))
+                .isEqualTo(SHOW_COUNT * EPISODES_PER_SHOW / 2);
+        assertThat(getLong(stats, Stats.EPISODES_WATCHED_RUNTIME))
+                .isEqualTo(watchedRuntimePerShow);
+        assertThat(getLong(stats, Stats.MOVIES)).isEqualTo(0);
+        stats.close();
+
+        Benchmark.log(getClass(), "Watched runtime with " + SHOW_COUNT + " queries: " + perShowMs
+                + " ms, stats with 1 query: " + queryMs + " ms, counting all episodes: "
+                + updateMs + " ms");
+    }
+
+    @Test
+    public void statsWithoutSpecials() {
+        SeriesGuideDatabase.updateShowStats(db, null);
+        long specials = DatabaseUtils.queryNumEntries(db, Tables.EPISODES,
+                Episodes.SEASON + "=0");
+        long watchedSpecials = DatabaseUtils.queryNumEntries(db, Tables.EPISODES,
+                Episodes.SEASON + "=0 AND " + Episodes.SELECTION_WATCHED);
+
+        Cursor stats = db.rawQuery(SeriesGuideDatabase.buildStatsQuery(true), null);
+        assertThat(stats.moveToFirst()).isTrue();
+        assertThat(getLong(stats, Stats.EPISODES))
+                .isEqualTo(SHOW_COUNT * EPISODES_PER_SHOW - specials);
+        assertThat(getLong(stats, Stats.EPISODES_WATCHED))
+                .isEqualTo(SHOW_COUNT * EPISODES_PER_SHOW / 2 - watchedSpecials);
+        stats.close();
+    }
+
+    @Test
+    public void updateSingleShow() {
+        SeriesGuideDatabase.updateShowStats(db, null);
+
+        db.execSQL("UPDATE " + Tables.EPISODES + " SET " + Episodes.WATCHED + "=1 WHERE "
+                + Shows.REF_SHOW_ID + "='1'");
+        long start = SystemClock.elapsedRealtime();
+        SeriesGuideDatabase.updateShowStats(db, new int[] { 1 });
+        long updateMs = SystemClock.elapsedRealtime() - start;
+
+        Cursor stats = db.rawQuery(SeriesGuideDatabase.buildStatsQuery(false), null);
+        assertThat(stats.moveToFirst()).isTrue();
+        assertThat(getLong(stats, Stats.EPISODES_WATCHED))
+                .isEqualTo(SHOW_COUNT * EPISODES_PER_SHOW / 2 + EPISODES_PER_SHOW / 2);
+        stats.close();
+
+        Benchmark.log(getClass(), "Counting episodes of 1 show: " + updateMs + " ms");
+    }
+
+    @Test
+    public void statsQueryReadsNoEpisodes() {
+        Cursor plan = db.rawQuery("EXPLAIN QUERY PLAN "
+                + SeriesGuideDatabase.buildStatsQuery(false), null);
+        try {
+            int detailColumn = plan.getColumnIndexOrThrow("detail");
+            while (plan.moveToNext()) {
+                String detail = plan.getString(detailColumn);
+                assertThat(detail).doesNotContain(" " + Tables.EPISODES);
+            }
+        } finally {
+            plan.close();
+        }
+    }
+
+    private static long getLong(Cursor cursor, String column) {
+        return cursor.getLong(cursor.getColumnIndexOrThrow(column));
+    }
+}
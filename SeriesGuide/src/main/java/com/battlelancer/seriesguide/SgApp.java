@@ -98,7 +98,15 @@ public class SgApp extends Application {
         ThemeUtils.updateTheme(DisplaySettings.getThemeIndex(this));
 
         // dagger
-        servicesComponent = DaggerServicesComponent.builder()
+        servicesComponent = createServicesComponent();
+    }
+
+    /**
+     * Builds the dagger component providing the API services. Subclasses may return a component
+     * with different modules.
+     */
+    protected ServicesComponent createServicesComponent() {
+        return DaggerServicesComponent.builder()
                 .appModule(new AppModule(this))
                 .httpClientModule(new HttpClientModule())
                 .tmdbModule(new TmdbModule())
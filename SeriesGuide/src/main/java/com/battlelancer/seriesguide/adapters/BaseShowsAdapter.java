@@ -14,6 +14,8 @@ import android.widget.TextView;
 import butterknife.ButterKnife;
 import com.battlelancer.seriesguide.R;
 import com.battlelancer.seriesguide.SgApp;
+import com.battlelancer.seriesguide.settings.DisplaySettings;
+import com.battlelancer.seriesguide.util.TextTools;
 import com.battlelancer.seriesguide.util.TimeTools;
 import com.battlelancer.seriesguide.util.ViewTools;
 import java.util.Date;
@@ -69,6 +71,27 @@ public abstract class BaseShowsAdapter extends CursorAdapter {
         }
     }
 
+    /**
+     * Displays the next episode number and title, like "0x12 Episode Name", or only the number if
+     * spoilers should be prevented. Displays its release date like "in 15 mins (Fri)".
+     */
+    static void setNextEpisode(Context context, ShowViewHolder viewHolder, int season,
+            int number, String title, long releaseTime) {
+        if (DisplaySettings.preventSpoilers(context)) {
+            viewHolder.episode.setText(TextTools.getEpisodeNumber(context, season, number));
+        } else {
+            viewHolder.episode.setText(
+                    TextTools.getNextEpisodeString(context, season, number, title));
+        }
+
+        Date actualRelease = TimeTools.applyUserOffset(context, releaseTime);
+        String dateTime = DisplaySettings.isDisplayExactDate(context) ?
+                TimeTools.formatToLocalDateShort(context, actualRelease)
+                : TimeTools.formatToLocalRelativeTime(context, actualRelease);
+        viewHolder.episodeTime.setText(context.getString(R.string.release_date_and_day,
+                dateTime, TimeTools.formatToLocalDay(actualRelease)));
+    }
+
     /**
      * Builds a network + release time string for a show formatted like "Network / Tue 08:00 PM".
      */
@@ -3,6 +3,7 @@ package com.battlelancer.seriesguide.adapters;
 import android.app.Activity;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.MergeCursor;
 import android.support.annotation.Nullable;
 import android.support.v4.util.LongSparseArray;
 import android.support.v4.widget.CursorAdapter;
@@ -29,11 +30,16 @@ import com.uwetrottmann.androidutils.CheatSheet;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Adapter for {@link CalendarFragment} with optimizations for image loading for smoother
  * scrolling.
+ *
+ * <p> Data can be set as pages with {@link #swapPages(List)}, then headers are only calculated for
+ * pages that changed.
  */
 public class CalendarAdapter extends CursorAdapter implements StickyGridHeadersBaseAdapter {
 
@@ -46,6 +52,17 @@ public class CalendarAdapter extends CursorAdapter implements StickyGridHeadersB
 
     private List<HeaderData> headers;
     private boolean isShowingHeaders;
+    @Nullable private List<Cursor> pages;
+    /** Headers of each page in {@link #pages}, by page identity. */
+    private Map<Cursor, PageHeaders> pageHeaders = new IdentityHashMap<>();
+
+    /**
+     * Headers of a single page with positions relative to the page.
+     */
+    private static class PageHeaders {
+        final List<HeaderData> headers = new ArrayList<>();
+        final List<Long> headerIds = new ArrayList<>();
+    }
 
     public CalendarAdapter(Activity activity, ItemClickListener itemClickListener) {
         super(activity, null, 0);
@@ -61,6 +78,35 @@ public class CalendarAdapter extends CursorAdapter implements StickyGridHeadersB
         this.isShowingHeaders = isShowingHeaders;
     }
 
+    /**
+     * Shows the given pages, in order, as a single list. Does not close any cursors, the pages are
+     * expected to be managed by loaders. A {@code null} page ends the list.
+     */
+    public void swapPages(@Nullable List<Cursor> pages) {
+        List<Cursor> loadedPages = null;
+        if (pages != null) {
+            loadedPages = new ArrayList<>(pages.size());
+            for (Cursor page : pages) {
+                if (page == null) {
+                    break;
+                }
+                loadedPages.add(page);
+            }
+        }
+        this.pages = loadedPages;
+
+        Cursor cursor;
+        if (loadedPages == null || loadedPages.isEmpty()) {
+            cursor = null;
+        } else if (loadedPages.size() == 1) {
+            cursor = loadedPages.get(0);
+        } else {
+            cursor = new MergeCursor(loadedPages.toArray(new Cursor[loadedPages.size()]));
+        }
+        // the previous cursor is only a merged view of the pages, do not close it
+        swapCursor(cursor);
+    }
+
     /**
      * Overrides base method and does proper position check before returning a Cursor.
      */
@@ -242,6 +288,9 @@ public class CalendarAdapter extends CursorAdapter implements StickyGridHeadersB
         if (count == 0 || !isShowingHeaders) {
             return null;
         }
+        if (pages != null) {
+            return generatePagedHeaderList(pages);
+        }
 
         // pre-size to 30 as we display 30 days == headers at most
         LongSparseArray<HeaderData> mapping = new LongSparseArray<>(30);
@@ -261,6 +310,63 @@ public class CalendarAdapter extends CursorAdapter implements StickyGridHeadersB
         return headers;
     }
 
+    /**
+     * Joins the headers of all pages, only calculates them for new or changed pages. A day may
+     * span two pages, then its headers are joined into one.
+     */
+    private List<HeaderData> generatePagedHeaderList(List<Cursor> pages) {
+        Map<Cursor, PageHeaders> newPageHeaders = new IdentityHashMap<>();
+        List<HeaderData> headers = new ArrayList<>();
+        long lastHeaderId = 0;
+        int pageOffset = 0;
+        for (Cursor page : pages) {
+            PageHeaders pageHeaders = this.pageHeaders.get(page);
+            if (pageHeaders == null) {
+                pageHeaders = generatePageHeaders(page);
+            }
+            newPageHeaders.put(page, pageHeaders);
+
+            for (int i = 0; i < pageHeaders.headers.size(); i++) {
+                HeaderData pageHeader = pageHeaders.headers.get(i);
+                long headerId = pageHeaders.headerIds.get(i);
+                HeaderData header;
+                if (i == 0 && !headers.isEmpty() && headerId == lastHeaderId) {
+                    // same day as last header of previous page
+                    header = headers.get(headers.size() - 1);
+                } else {
+                    header = new HeaderData(pageOffset + pageHeader.getRefPosition());
+                    headers.add(header);
+                }
+                for (int j = 0; j < pageHeader.getCount(); j++) {
+                    header.incrementCount();
+                }
+                lastHeaderId = headerId;
+            }
+            pageOffset += page.getCount();
+        }
+        // drop headers of pages no longer shown
+        this.pageHeaders = newPageHeaders;
+        return headers;
+    }
+
+    private PageHeaders generatePageHeaders(Cursor page) {
+        PageHeaders pageHeaders = new PageHeaders();
+        HeaderData header = null;
+        long lastHeaderId = 0;
+        // episodes are sorted by release time, so episodes of a day are next to each other
+        for (int position = 0; page.moveToPosition(position); position++) {
+            long headerId = getHeaderTime(page);
+            if (header == null || headerId != lastHeaderId) {
+                header = new HeaderData(position);
+                pageHeaders.headers.add(header);
+                pageHeaders.headerIds.add(headerId);
+                lastHeaderId = headerId;
+            }
+            header.incrementCount();
+        }
+        return pageHeaders;
+    }
+
     public interface Query {
 
         String[] PROJECTION = new String[] {
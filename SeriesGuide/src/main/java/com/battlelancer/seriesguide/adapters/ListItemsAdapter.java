@@ -3,7 +3,6 @@ package com.battlelancer.seriesguide.adapters;
 import android.app.Activity;
 import android.content.Context;
 import android.database.Cursor;
-import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -63,16 +62,18 @@ public class ListItemsAdapter extends BaseShowsAdapter {
                         cursor.getString(Query.SHOW_NETWORK)));
 
                 // next episode info
-                String fieldValue = cursor.getString(Query.SHOW_NEXTTEXT);
-                if (TextUtils.isEmpty(fieldValue)) {
+                if (cursor.isNull(Query.SHOW_NEXTTEXT)) {
                     // display show status if there is no next episode
                     viewHolder.episodeTime.setText(ShowTools.getStatus(context,
                             cursor.getInt(Query.SHOW_STATUS)));
                     viewHolder.episode.setText(null);
                 } else {
-                    viewHolder.episode.setText(fieldValue);
-                    fieldValue = cursor.getString(Query.SHOW_NEXTAIRDATETEXT);
-                    viewHolder.episodeTime.setText(fieldValue);
+                    // season, number and title of next episode
+                    setNextEpisode(context, viewHolder,
+                            cursor.getInt(Query.SHOW_NEXTTEXT),
+                            cursor.getInt(Query.SHOW_NEXTAIRDATETEXT),
+                            cursor.getString(Query.ITEM_TITLE),
+                            cursor.getLong(Query.SHOW_NEXTAIRDATEMS));
                 }
 
                 // remaining count
@@ -167,7 +168,8 @@ public class ListItemsAdapter extends BaseShowsAdapter {
                 Shows.NEXTTEXT,
                 Shows.NEXTAIRDATETEXT, // 15
                 Shows.FAVORITE,
-                Shows.UNWATCHED_COUNT // 17
+                Shows.UNWATCHED_COUNT,
+                Shows.NEXTAIRDATEMS // 18
         };
 
         int LIST_ITEM_ID = 1;
@@ -187,5 +189,6 @@ public class ListItemsAdapter extends BaseShowsAdapter {
         int SHOW_NEXTAIRDATETEXT = 15;
         int SHOW_FAVORITE = 16;
         int SHOW_UNWATCHED_COUNT = 17;
+        int SHOW_NEXTAIRDATEMS = 18;
     }
 }
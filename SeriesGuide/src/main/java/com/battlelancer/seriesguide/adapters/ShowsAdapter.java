@@ -4,7 +4,6 @@ import android.app.Activity;
 import android.content.Context;
 import android.database.Cursor;
 import android.provider.BaseColumns;
-import android.text.TextUtils;
 import android.view.View;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract;
 import com.battlelancer.seriesguide.thetvdbapi.TvdbImageTools;
@@ -12,7 +11,8 @@ import com.battlelancer.seriesguide.util.DBUtils;
 import com.battlelancer.seriesguide.util.ShowTools;
 
 /**
- * Adapter for show items.
+ * Adapter for show items. Expects a cursor of shows joined with their next episode, see {@link
+ * SeriesGuideContract.Shows#CONTENT_URI_WITH_NEXT_EPISODE}.
  */
 public class ShowsAdapter extends BaseShowsAdapter {
 
@@ -34,16 +34,17 @@ public class ShowsAdapter extends BaseShowsAdapter {
         setFavoriteState(viewHolder.favorited, viewHolder.isFavorited);
 
         // next episode info
-        String fieldValue = cursor.getString(Query.NEXTTEXT);
-        if (TextUtils.isEmpty(fieldValue)) {
+        if (cursor.isNull(Query.EPISODE_SEASON)) {
             // display show status if there is no next episode
             viewHolder.episodeTime.setText(
                     ShowTools.getStatus(context, cursor.getInt(Query.STATUS)));
             viewHolder.episode.setText("");
         } else {
-            viewHolder.episode.setText(fieldValue);
-            fieldValue = cursor.getString(Query.NEXTAIRDATETEXT);
-            viewHolder.episodeTime.setText(fieldValue);
+            setNextEpisode(context, viewHolder,
+                    cursor.getInt(Query.EPISODE_SEASON),
+                    cursor.getInt(Query.EPISODE_NUMBER),
+                    cursor.getString(Query.EPISODE_TITLE),
+                    cursor.getLong(Query.NEXTAIRDATEMS));
         }
 
         setRemainingCount(viewHolder.remainingCount, cursor.getInt(Query.UNWATCHED_COUNT));
@@ -77,11 +78,13 @@ public class ShowsAdapter extends BaseShowsAdapter {
                 SeriesGuideContract.Shows.POSTER,
                 SeriesGuideContract.Shows.STATUS,
                 SeriesGuideContract.Shows.NEXTEPISODE,
-                SeriesGuideContract.Shows.NEXTTEXT, // 10
-                SeriesGuideContract.Shows.NEXTAIRDATETEXT,
+                SeriesGuideContract.Episodes.SEASON, // 10
+                SeriesGuideContract.Episodes.NUMBER,
                 SeriesGuideContract.Shows.FAVORITE,
                 SeriesGuideContract.Shows.HIDDEN,
-                SeriesGuideContract.Shows.UNWATCHED_COUNT // 14
+                SeriesGuideContract.Shows.UNWATCHED_COUNT,
+                SeriesGuideContract.Episodes.TITLE, // 15
+                SeriesGuideContract.Shows.NEXTAIRDATEMS
         };
 
         int _ID = 0;
@@ -94,10 +97,12 @@ public class ShowsAdapter extends BaseShowsAdapter {
         int POSTER = 7;
         int STATUS = 8;
         int NEXTEPISODE = 9;
-        int NEXTTEXT = 10;
-        int NEXTAIRDATETEXT = 11;
+        int EPISODE_SEASON = 10;
+        int EPISODE_NUMBER = 11;
         int FAVORITE = 12;
         int HIDDEN = 13;
         int UNWATCHED_COUNT = 14;
+        int EPISODE_TITLE = 15;
+        int NEXTAIRDATEMS = 16;
     }
 }
@@ -0,0 +1,147 @@
+package com.battlelancer.seriesguide.backend;
+
+import android.content.Context;
+import android.os.SystemClock;
+import com.battlelancer.seriesguide.util.BoundedCompletionService;
+import com.battlelancer.seriesguide.util.DBUtils;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import timber.log.Timber;
+
+/**
+ * Runs the Hexagon sync of each {@link Domain} concurrently on a small pool of worker threads,
+ * started in the order of {@link Domain}. The calling thread waits until all domains are done.
+ *
+ * <p> Domains do not depend on each other: new shows downloaded with {@link Domain#SHOWS} are
+ * only queued to be added, their episodes are merged once they are added. Each domain sets its
+ * own merge flag once merged, so domains running concurrently do not affect each other's merge
+ * state.
+ */
+class HexagonSyncOrchestrator {
+
+    enum Domain {
+        EPISODES,
+        SHOWS,
+        MOVIES,
+        LISTS
+    }
+
+    static class Result {
+        private final EnumMap<Domain, Boolean> successful = new EnumMap<>(Domain.class);
+        private final EnumMap<Domain, Long> durationsMs = new EnumMap<>(Domain.class);
+        private final int domainCount;
+
+        Result(int domainCount) {
+            this.domainCount = domainCount;
+        }
+
+        /**
+         * Returns whether all domains have finished successfully.
+         */
+        boolean isSuccessful() {
+            if (successful.size() != domainCount) {
+                return false; // interrupted
+            }
+            for (Boolean domainSuccessful : successful.values()) {
+                if (!domainSuccessful) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean isSuccessful(Domain domain) {
+            Boolean domainSuccessful = successful.get(domain);
+            return domainSuccessful != null && domainSuccessful;
+        }
+
+        /**
+         * Returns how long the sync of the domain took, or -1 if it did not finish.
+         */
+        long getDurationMs(Domain domain) {
+            Long durationMs = durationsMs.get(domain);
+            return durationMs == null ? -1 : durationMs;
+        }
+    }
+
+    private static final int THREAD_COUNT = 3;
+
+    private final Context context;
+
+    HexagonSyncOrchestrator(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * Runs the given syncs.
+     */
+    Result run(EnumMap<Domain, Callable<Boolean>> syncs) {
+        Result result = new Result(syncs.size());
+        if (syncs.isEmpty()) {
+            return result;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        BoundedCompletionService<DomainResult> domains
+                = new BoundedCompletionService<>(executor, THREAD_COUNT);
+        try {
+            // iterates in the order of Domain, there are few enough to submit all at once
+            for (Map.Entry<Domain, Callable<Boolean>> sync : syncs.entrySet()) {
+                domains.submit(new DomainCallable(sync.getKey(), sync.getValue()));
+            }
+            while (!domains.isEmpty()) {
+                DomainResult domainResult = domains.takeResult();
+                result.successful.put(domainResult.domain, domainResult.isSuccessful);
+                result.durationsMs.put(domainResult.domain, domainResult.durationMs);
+            }
+        } catch (InterruptedException e) {
+            Timber.w("run: interrupted");
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return result;
+    }
+
+    private static class DomainResult {
+        final Domain domain;
+        final boolean isSuccessful;
+        final long durationMs;
+
+        DomainResult(Domain domain, boolean isSuccessful, long durationMs) {
+            this.domain = domain;
+            this.isSuccessful = isSuccessful;
+            this.durationMs = durationMs;
+        }
+    }
+
+    private class DomainCallable implements Callable<DomainResult> {
+
+        private final Domain domain;
+        private final Callable<Boolean> sync;
+
+        DomainCallable(Domain domain, Callable<Boolean> sync) {
+            this.domain = domain;
+            this.sync = sync;
+        }
+
+        @Override
+        public DomainResult call() throws Exception {
+            long start = SystemClock.elapsedRealtime();
+            // notify once per changed URI when this domain is done
+            DBUtils.beginNotificationSession(context);
+            boolean isSuccessful;
+            try {
+                isSuccessful = sync.call();
+            } finally {
+                DBUtils.endNotificationSession(context);
+            }
+            return new DomainResult(domain, isSuccessful,
+                    SystemClock.elapsedRealtime() - start);
+        }
+    }
+}
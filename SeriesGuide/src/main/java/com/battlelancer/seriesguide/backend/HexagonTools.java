@@ -10,6 +10,7 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.text.format.DateUtils;
 import com.battlelancer.seriesguide.SgApp;
+import com.battlelancer.seriesguide.backend.HexagonSyncOrchestrator.Domain;
 import com.battlelancer.seriesguide.backend.settings.HexagonSettings;
 import com.battlelancer.seriesguide.items.SearchResult;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract;
@@ -21,6 +22,7 @@ import com.battlelancer.seriesguide.util.MovieTools;
 import com.battlelancer.seriesguide.util.ShowTools;
 import com.battlelancer.seriesguide.util.TaskManager;
 import com.battlelancer.seriesguide.util.Utils;
+import com.battlelancer.seriesguide.util.collections.IntSet;
 import com.google.android.gms.auth.api.Auth;
 import com.google.android.gms.auth.api.signin.GoogleSignInAccount;
 import com.google.android.gms.auth.api.signin.GoogleSignInOptions;
@@ -43,11 +45,13 @@ import com.uwetrottmann.seriesguide.backend.lists.Lists;
 import com.uwetrottmann.seriesguide.backend.movies.Movies;
 import com.uwetrottmann.seriesguide.backend.shows.Shows;
 import java.io.IOException;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import org.greenrobot.eventbus.EventBus;
 import timber.log.Timber;
 
@@ -332,40 +336,61 @@ public class HexagonTools {
     }
 
     /**
-     * Syncs episodes, shows and movies with Hexagon.
+     * Syncs episodes, shows, movies and lists with Hexagon. Domains are synced concurrently, see
+     * {@link HexagonSyncOrchestrator}.
      *
-     * <p> Merges shows, episodes and movies after a sign-in. Consecutive syncs will only download
-     * changes to shows, episodes and movies.
+     * <p> Merges shows, episodes, movies and lists after a sign-in. Consecutive syncs will only
+     * download changes.
+     *
+     * @param syncEpisodes Set to {@code false} to skip episodes, e.g. if local episode changes
+     * are not sent yet and would be overwritten.
+     * @param changedShows Receives the TVDb ids of shows whose episodes were changed.
      */
-    public static boolean syncWithHexagon(SgApp app, HashSet<Integer> existingShows,
-            HashMap<Integer, SearchResult> newShows) {
+    public static boolean syncWithHexagon(final SgApp app, final IntSet existingShows,
+            final HashMap<Integer, SearchResult> newShows, boolean syncEpisodes,
+            final IntSet changedShows) {
         Timber.d("syncWithHexagon: syncing...");
 
-        //// EPISODES
-        boolean syncEpisodesSuccessful = syncEpisodes(app);
-        Timber.d("syncWithHexagon: episode sync %s",
-                syncEpisodesSuccessful ? "SUCCESSFUL" : "FAILED");
-
-        //// SHOWS
-        boolean syncShowsSuccessful = syncShows(app, existingShows, newShows);
-        Timber.d("syncWithHexagon: show sync %s", syncShowsSuccessful ? "SUCCESSFUL" : "FAILED");
-
-        //// MOVIES
-        boolean syncMoviesSuccessful = syncMovies(app);
-        Timber.d("syncWithHexagon: movie sync %s", syncMoviesSuccessful ? "SUCCESSFUL" : "FAILED");
+        EnumMap<Domain, Callable<Boolean>> syncs = new EnumMap<>(Domain.class);
+        syncs.put(Domain.SHOWS, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return syncShows(app, existingShows, newShows);
+            }
+        });
+        if (syncEpisodes) {
+            syncs.put(Domain.EPISODES, new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return syncEpisodes(app, changedShows);
+                }
+            });
+        }
+        syncs.put(Domain.MOVIES, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return syncMovies(app);
+            }
+        });
+        syncs.put(Domain.LISTS, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return syncLists(app);
+            }
+        });
 
-        //// LISTS
-        boolean syncListsSuccessful = syncLists(app);
-        Timber.d("syncWithHexagon: lists sync %s", syncListsSuccessful ? "SUCCESSFUL" : "FAILED");
+        HexagonSyncOrchestrator.Result result = new HexagonSyncOrchestrator(app).run(syncs);
+        for (Domain domain : syncs.keySet()) {
+            Timber.d("syncWithHexagon: %s sync %s in %s ms", domain,
+                    result.isSuccessful(domain) ? "SUCCESSFUL" : "FAILED",
+                    result.getDurationMs(domain));
+        }
 
         Timber.d("syncWithHexagon: syncing...DONE");
-        return syncEpisodesSuccessful
-                && syncShowsSuccessful
-                && syncMoviesSuccessful
-                && syncListsSuccessful;
+        return result.isSuccessful();
     }
 
-    private static boolean syncEpisodes(SgApp app) {
+    private static boolean syncEpisodes(SgApp app, IntSet changedShows) {
         // get shows that need episode merging
         Cursor query = app.getContentResolver().query(SeriesGuideContract.Shows.CONTENT_URI,
                 new String[] { SeriesGuideContract.Shows._ID },
@@ -391,6 +416,7 @@ public class HexagonTools {
                 mergeSuccessful = false;
                 continue;
             }
+            changedShows.add(showTvdbId);
 
             success = EpisodeTools.Upload.flagsToHexagon(app, showTvdbId);
             if (success) {
@@ -407,12 +433,13 @@ public class HexagonTools {
         query.close();
 
         // download changed episodes and update properties on existing episodes
-        boolean changedDownloadSuccessful = EpisodeTools.Download.flagsFromHexagon(app);
+        boolean changedDownloadSuccessful = EpisodeTools.Download.flagsFromHexagon(app,
+                changedShows);
 
         return mergeSuccessful && changedDownloadSuccessful;
     }
 
-    private static boolean syncShows(SgApp app, HashSet<Integer> existingShows,
+    private static boolean syncShows(SgApp app, IntSet existingShows,
             HashMap<Integer, SearchResult> newShows) {
         boolean hasMergedShows = HexagonSettings.hasMergedShows(app);
 
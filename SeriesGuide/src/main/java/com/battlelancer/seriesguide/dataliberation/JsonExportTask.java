@@ -15,7 +15,6 @@ import com.battlelancer.seriesguide.dataliberation.model.Episode;
 import com.battlelancer.seriesguide.dataliberation.model.List;
 import com.battlelancer.seriesguide.dataliberation.model.ListItem;
 import com.battlelancer.seriesguide.dataliberation.model.Movie;
-import com.battlelancer.seriesguide.dataliberation.model.Season;
 import com.battlelancer.seriesguide.dataliberation.model.Show;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
@@ -226,6 +225,28 @@ public class JsonExportTask extends AsyncTask<Void, Integer, Integer> {
             return SUCCESS;
         }
 
+        // seasons and episodes of all shows, merged with shows while writing
+        Cursor seasons = null;
+        Cursor episodes = null;
+        if (type == BACKUP_SHOWS) {
+            seasons = context.getContentResolver().query(Seasons.CONTENT_URI,
+                    SeasonsQuery.PROJECTION, null, null, SeasonsQuery.SORT);
+            episodes = context.getContentResolver().query(Episodes.CONTENT_URI,
+                    isFullDump ? EpisodesQuery.PROJECTION_FULL : EpisodesQuery.PROJECTION,
+                    null, null, EpisodesQuery.SORT);
+            if (seasons == null || episodes == null) {
+                // query failed
+                data.close();
+                if (seasons != null) {
+                    seasons.close();
+                }
+                if (episodes != null) {
+                    episodes.close();
+                }
+                return ERROR;
+            }
+        }
+
         publishProgress(data.getCount(), 0);
 
         // try to export all data
@@ -245,7 +266,7 @@ public class JsonExportTask extends AsyncTask<Void, Integer, Integer> {
                 FileOutputStream out = new FileOutputStream(pfd.getFileDescriptor());
 
                 if (type == BACKUP_SHOWS) {
-                    writeJsonStreamShows(out, data);
+                    writeJsonStreamShows(out, data, seasons, episodes);
                 } else if (type == BACKUP_LISTS) {
                     writeJsonStreamLists(out, data);
                 } else if (type == BACKUP_MOVIES) {
@@ -269,7 +290,7 @@ public class JsonExportTask extends AsyncTask<Void, Integer, Integer> {
 
                 OutputStream out = new FileOutputStream(backupFile);
                 if (type == BACKUP_SHOWS) {
-                    writeJsonStreamShows(out, data);
+                    writeJsonStreamShows(out, data, seasons, episodes);
                 } else if (type == BACKUP_LISTS) {
                     writeJsonStreamLists(out, data);
                 } else {
@@ -292,6 +313,12 @@ public class JsonExportTask extends AsyncTask<Void, Integer, Integer> {
             return ERROR;
         } finally {
             data.close();
+            if (seasons != null) {
+                seasons.close();
+            }
+            if (episodes != null) {
+                episodes.close();
+            }
         }
 
         return SUCCESS;
@@ -303,7 +330,7 @@ public class JsonExportTask extends AsyncTask<Void, Integer, Integer> {
             return context.getContentResolver().query(
                     Shows.CONTENT_URI,
                     isFullDump ? ShowsQuery.PROJECTION_FULL : ShowsQuery.PROJECTION,
-                    null, null, Shows.SORT_TITLE);
+                    null, null, ShowsQuery.SORT);
         }
         if (type == BACKUP_LISTS) {
             return context.getContentResolver()
@@ -355,53 +382,65 @@ public class JsonExportTask extends AsyncTask<Void, Integer, Integer> {
         }
     }
 
-    private void writeJsonStreamShows(OutputStream out, Cursor shows) throws IOException {
+    /**
+     * Writes shows with their seasons and episodes. Seasons and episodes of all shows are read
+     * with a single query each, ordered by show id like shows, and merged while iterating shows.
+     * Values are written to the stream directly, so memory use does not grow with library size.
+     */
+    private void writeJsonStreamShows(OutputStream out, Cursor shows, Cursor seasons,
+            Cursor episodes) throws IOException {
         int numTotal = shows.getCount();
         int numExported = 0;
 
-        Gson gson = new Gson();
         JsonWriter writer = new JsonWriter(new OutputStreamWriter(out, "UTF-8"));
+        // skip null values, like Gson does
+        writer.setSerializeNulls(false);
         writer.beginArray();
 
+        seasons.moveToFirst();
+        episodes.moveToFirst();
         while (shows.moveToNext()) {
             if (isCancelled()) {
                 break;
             }
 
-            Show show = new Show();
-            show.tvdb_id = shows.getInt(ShowsQuery.ID);
-            show.title = shows.getString(ShowsQuery.TITLE);
-            show.favorite = shows.getInt(ShowsQuery.FAVORITE) == 1;
-            show.notify = shows.getInt(ShowsQuery.NOTIFY) == 1;
-            show.hidden = shows.getInt(ShowsQuery.HIDDEN) == 1;
-            show.language = shows.getString(ShowsQuery.LANGUAGE);
-            show.release_time = shows.getInt(ShowsQuery.RELEASE_TIME);
-            show.release_weekday = shows.getInt(ShowsQuery.RELEASE_WEEKDAY);
-            show.release_timezone = shows.getString(ShowsQuery.RELEASE_TIMEZONE);
-            show.country = shows.getString(ShowsQuery.RELEASE_COUNTRY);
-            show.last_watched_episode = shows.getInt(ShowsQuery.LASTWATCHEDID);
-            show.last_watched_ms = shows.getLong(ShowsQuery.LASTWATCHED_MS);
-            show.poster = shows.getString(ShowsQuery.POSTER);
-            show.content_rating = shows.getString(ShowsQuery.CONTENTRATING);
-            show.status = DataLiberationTools.decodeShowStatus(shows.getInt(ShowsQuery.STATUS));
-            show.runtime = shows.getInt(ShowsQuery.RUNTIME);
-            show.network = shows.getString(ShowsQuery.NETWORK);
-            show.imdb_id = shows.getString(ShowsQuery.IMDBID);
-            show.trakt_id = shows.getInt(ShowsQuery.TRAKT_ID);
-            show.first_aired = shows.getString(ShowsQuery.FIRSTAIRED);
-            show.rating_user = shows.getInt(ShowsQuery.RATING_USER);
-            if (isFullDump) {
-                show.overview = shows.getString(ShowsQuery.OVERVIEW);
-                show.rating = shows.getDouble(ShowsQuery.RATING_GLOBAL);
-                show.rating_votes = shows.getInt(ShowsQuery.RATING_VOTES);
-                show.genres = shows.getString(ShowsQuery.GENRES);
-                show.last_updated = shows.getLong(ShowsQuery.LAST_UPDATED);
-                show.last_edited = shows.getLong(ShowsQuery.LAST_EDITED);
+            writer.beginObject();
+            writeShow(writer, shows);
+
+            String showId = shows.getString(ShowsQuery.ID);
+            // skip seasons of removed shows
+            while (compareToKey(seasons, SeasonsQuery.REF_SHOW_ID, showId) < 0) {
+                seasons.moveToNext();
             }
+            writer.name("seasons");
+            writer.beginArray();
+            while (compareToKey(seasons, SeasonsQuery.REF_SHOW_ID, showId) == 0) {
+                String seasonId = seasons.getString(SeasonsQuery.ID);
+                writer.beginObject();
+                writer.name("tvdb_id").value(seasons.getInt(SeasonsQuery.ID));
+                writer.name("season").value(seasons.getInt(SeasonsQuery.NUMBER));
+
+                // skip episodes of removed shows or seasons
+                while (compareToKey(episodes, EpisodesQuery.REF_SHOW_ID, showId) < 0
+                        || (compareToKey(episodes, EpisodesQuery.REF_SHOW_ID, showId) == 0
+                        && compareToKey(episodes, EpisodesQuery.REF_SEASON_ID, seasonId) < 0)) {
+                    episodes.moveToNext();
+                }
+                writer.name("episodes");
+                writer.beginArray();
+                while (compareToKey(episodes, EpisodesQuery.REF_SHOW_ID, showId) == 0
+                        && compareToKey(episodes, EpisodesQuery.REF_SEASON_ID, seasonId) == 0) {
+                    writeEpisode(writer, episodes);
+                    episodes.moveToNext();
+                }
+                writer.endArray();
 
-            addSeasons(show);
+                writer.endObject();
+                seasons.moveToNext();
+            }
+            writer.endArray();
 
-            gson.toJson(show, Show.class, writer);
+            writer.endObject();
 
             publishProgress(numTotal, ++numExported);
         }
@@ -410,73 +449,93 @@ public class JsonExportTask extends AsyncTask<Void, Integer, Integer> {
         writer.close();
     }
 
-    private void addSeasons(Show show) {
-        show.seasons = new ArrayList<>();
-        final Cursor seasonsCursor = context.getContentResolver().query(
-                Seasons.buildSeasonsOfShowUri(String.valueOf(show.tvdb_id)),
-                new String[] {
-                        Seasons._ID,
-                        Seasons.COMBINED
-                }, null, null, null
-        );
-
-        if (seasonsCursor == null) {
-            return;
+    /**
+     * Compares the value of the given column of the current row to the key, like SQLite sorts
+     * text values: null values come first. Returns a positive value if after the last row.
+     */
+    private static int compareToKey(Cursor cursor, int column, String key) {
+        if (cursor.isAfterLast()) {
+            return 1;
         }
+        String value = cursor.getString(column);
+        return value == null ? -1 : value.compareTo(key);
+    }
 
-        while (seasonsCursor.moveToNext()) {
-            Season season = new Season();
-            season.tvdbId = seasonsCursor.getInt(0);
-            season.season = seasonsCursor.getInt(1);
-
-            addEpisodes(season);
-
-            show.seasons.add(season);
+    /**
+     * Writes the properties of a show. Names and order match how {@link Show} is serialized by
+     * Gson.
+     */
+    private void writeShow(JsonWriter writer, Cursor shows) throws IOException {
+        writer.name("tvdb_id").value(shows.getInt(ShowsQuery.ID));
+        writer.name("imdb_id").value(shows.getString(ShowsQuery.IMDBID));
+        writer.name("trakt_id").value(shows.getInt(ShowsQuery.TRAKT_ID));
+        writer.name("title").value(shows.getString(ShowsQuery.TITLE));
+        if (isFullDump) {
+            writer.name("overview").value(shows.getString(ShowsQuery.OVERVIEW));
         }
-
-        seasonsCursor.close();
+        writer.name("language").value(shows.getString(ShowsQuery.LANGUAGE));
+        writer.name("first_aired").value(shows.getString(ShowsQuery.FIRSTAIRED));
+        writer.name("release_time").value(shows.getInt(ShowsQuery.RELEASE_TIME));
+        writer.name("release_weekday").value(shows.getInt(ShowsQuery.RELEASE_WEEKDAY));
+        writer.name("release_timezone").value(shows.getString(ShowsQuery.RELEASE_TIMEZONE));
+        writer.name("country").value(shows.getString(ShowsQuery.RELEASE_COUNTRY));
+        writer.name("poster").value(shows.getString(ShowsQuery.POSTER));
+        writer.name("content_rating").value(shows.getString(ShowsQuery.CONTENTRATING));
+        writer.name("status")
+                .value(DataLiberationTools.decodeShowStatus(shows.getInt(ShowsQuery.STATUS)));
+        writer.name("runtime").value(shows.getInt(ShowsQuery.RUNTIME));
+        if (isFullDump) {
+            writer.name("genres").value(shows.getString(ShowsQuery.GENRES));
+        }
+        writer.name("network").value(shows.getString(ShowsQuery.NETWORK));
+        if (isFullDump) {
+            writer.name("rating").value(shows.getDouble(ShowsQuery.RATING_GLOBAL));
+            writer.name("rating_votes").value(shows.getInt(ShowsQuery.RATING_VOTES));
+        }
+        writer.name("rating_user").value(shows.getInt(ShowsQuery.RATING_USER));
+        if (isFullDump) {
+            writer.name("last_edited").value(shows.getLong(ShowsQuery.LAST_EDITED));
+        }
+        writer.name("favorite").value(shows.getInt(ShowsQuery.FAVORITE) == 1);
+        writer.name("notify").value(shows.getInt(ShowsQuery.NOTIFY) == 1);
+        writer.name("hidden").value(shows.getInt(ShowsQuery.HIDDEN) == 1);
+        if (isFullDump) {
+            writer.name("last_updated").value(shows.getLong(ShowsQuery.LAST_UPDATED));
+        }
+        writer.name("last_watched_episode").value(shows.getInt(ShowsQuery.LASTWATCHEDID));
+        writer.name("last_watched_ms").value(shows.getLong(ShowsQuery.LASTWATCHED_MS));
     }
 
-    private void addEpisodes(Season season) {
-        season.episodes = new ArrayList<>();
-        final Cursor episodesCursor = context.getContentResolver().query(
-                Episodes.buildEpisodesOfSeasonUri(String.valueOf(season.tvdbId)),
-                isFullDump ? EpisodesQuery.PROJECTION_FULL : EpisodesQuery.PROJECTION, null, null,
-                EpisodesQuery.SORT);
-
-        if (episodesCursor == null) {
-            return;
+    /**
+     * Writes an episode object. Names and order match how {@link Episode} is serialized by Gson.
+     */
+    private void writeEpisode(JsonWriter writer, Cursor episodes) throws IOException {
+        writer.beginObject();
+        writer.name("tvdb_id").value(episodes.getInt(EpisodesQuery.ID));
+        writer.name("episode").value(episodes.getInt(EpisodesQuery.NUMBER));
+        writer.name("episode_absolute").value(episodes.getInt(EpisodesQuery.NUMBER_ABSOLUTE));
+        writer.name("title").value(episodes.getString(EpisodesQuery.TITLE));
+        writer.name("first_aired").value(episodes.getLong(EpisodesQuery.FIRSTAIRED));
+        int episodeFlag = episodes.getInt(EpisodesQuery.WATCHED);
+        writer.name("watched").value(EpisodeTools.isWatched(episodeFlag));
+        writer.name("skipped").value(EpisodeTools.isSkipped(episodeFlag));
+        writer.name("collected").value(episodes.getInt(EpisodesQuery.COLLECTED) == 1);
+        writer.name("imdb_id").value(episodes.getString(EpisodesQuery.IMDBID));
+        writer.name("episode_dvd").value(episodes.getDouble(EpisodesQuery.NUMBER_DVD));
+        if (isFullDump) {
+            writer.name("overview").value(episodes.getString(EpisodesQuery.OVERVIEW));
+            writer.name("image").value(episodes.getString(EpisodesQuery.IMAGE));
+            writer.name("writers").value(episodes.getString(EpisodesQuery.WRITERS));
+            writer.name("gueststars").value(episodes.getString(EpisodesQuery.GUESTSTARS));
+            writer.name("directors").value(episodes.getString(EpisodesQuery.DIRECTORS));
+            writer.name("rating").value(episodes.getDouble(EpisodesQuery.RATING_GLOBAL));
+            writer.name("rating_votes").value(episodes.getInt(EpisodesQuery.RATING_VOTES));
         }
-
-        while (episodesCursor.moveToNext()) {
-            Episode episode = new Episode();
-            episode.tvdbId = episodesCursor.getInt(EpisodesQuery.ID);
-            episode.episode = episodesCursor.getInt(EpisodesQuery.NUMBER);
-            episode.episodeAbsolute = episodesCursor.getInt(EpisodesQuery.NUMBER_ABSOLUTE);
-            episode.episodeDvd = episodesCursor.getDouble(EpisodesQuery.NUMBER_DVD);
-            int episodeFlag = episodesCursor.getInt(EpisodesQuery.WATCHED);
-            episode.watched = EpisodeTools.isWatched(episodeFlag);
-            episode.skipped = EpisodeTools.isSkipped(episodeFlag);
-            episode.collected = episodesCursor.getInt(EpisodesQuery.COLLECTED) == 1;
-            episode.title = episodesCursor.getString(EpisodesQuery.TITLE);
-            episode.firstAired = episodesCursor.getLong(EpisodesQuery.FIRSTAIRED);
-            episode.imdbId = episodesCursor.getString(EpisodesQuery.IMDBID);
-            episode.rating_user = episodesCursor.getInt(EpisodesQuery.RATING_USER);
-            if (isFullDump) {
-                episode.overview = episodesCursor.getString(EpisodesQuery.OVERVIEW);
-                episode.image = episodesCursor.getString(EpisodesQuery.IMAGE);
-                episode.writers = episodesCursor.getString(EpisodesQuery.WRITERS);
-                episode.gueststars = episodesCursor.getString(EpisodesQuery.GUESTSTARS);
-                episode.directors = episodesCursor.getString(EpisodesQuery.DIRECTORS);
-                episode.rating = episodesCursor.getDouble(EpisodesQuery.RATING_GLOBAL);
-                episode.rating_votes = episodesCursor.getInt(EpisodesQuery.RATING_VOTES);
-                episode.lastEdited = episodesCursor.getLong(EpisodesQuery.LAST_EDITED);
-            }
-
-            season.episodes.add(episode);
+        writer.name("rating_user").value(episodes.getInt(EpisodesQuery.RATING_USER));
+        if (isFullDump) {
+            writer.name("last_edited").value(episodes.getLong(EpisodesQuery.LAST_EDITED));
         }
-
-        episodesCursor.close();
+        writer.endObject();
     }
 
     private void writeJsonStreamLists(OutputStream out, Cursor lists) throws IOException {
@@ -661,11 +720,37 @@ public class JsonExportTask extends AsyncTask<Void, Integer, Integer> {
         int GENRES = 24;
         int LAST_UPDATED = 25;
         int LAST_EDITED = 26;
+
+        /**
+         * Ordered by show id as text, like the show id of seasons and episodes, to merge them with
+         * shows.
+         */
+        String SORT = "CAST(" + Shows._ID + " AS TEXT) ASC";
+    }
+
+    public interface SeasonsQuery {
+        String[] PROJECTION = new String[] {
+                Seasons._ID,
+                Seasons.COMBINED,
+                Shows.REF_SHOW_ID
+        };
+
+        /**
+         * Ordered by show id like {@link ShowsQuery#SORT}. Season ids are compared as text, like
+         * the season id of episodes.
+         */
+        String SORT = Shows.REF_SHOW_ID + " ASC,CAST(" + Seasons._ID + " AS TEXT) ASC";
+
+        int ID = 0;
+        int NUMBER = 1;
+        int REF_SHOW_ID = 2;
     }
 
     public interface EpisodesQuery {
         String[] PROJECTION = new String[] {
                 Episodes._ID,
+                Seasons.REF_SEASON_ID,
+                Shows.REF_SHOW_ID,
                 Episodes.NUMBER,
                 Episodes.ABSOLUTE_NUMBER,
                 Episodes.WATCHED,
@@ -678,6 +763,8 @@ public class JsonExportTask extends AsyncTask<Void, Integer, Integer> {
         };
         String[] PROJECTION_FULL = new String[] {
                 Episodes._ID,
+                Seasons.REF_SEASON_ID,
+                Shows.REF_SHOW_ID,
                 Episodes.NUMBER,
                 Episodes.ABSOLUTE_NUMBER,
                 Episodes.WATCHED,
@@ -698,27 +785,31 @@ public class JsonExportTask extends AsyncTask<Void, Integer, Integer> {
                 Episodes.LAST_EDITED
         };
 
-        String SORT = Episodes.NUMBER + " ASC";
+        /** Ordered like {@link SeasonsQuery#SORT} to merge with seasons. */
+        String SORT = Shows.REF_SHOW_ID + " ASC," + Seasons.REF_SEASON_ID + " ASC,"
+                + Episodes.NUMBER + " ASC";
 
         int ID = 0;
-        int NUMBER = 1;
-        int NUMBER_ABSOLUTE = 2;
-        int WATCHED = 3;
-        int COLLECTED = 4;
-        int TITLE = 5;
-        int FIRSTAIRED = 6;
-        int IMDBID = 7;
-        int NUMBER_DVD = 8;
-        int RATING_USER = 9;
+        int REF_SEASON_ID = 1;
+        int REF_SHOW_ID = 2;
+        int NUMBER = 3;
+        int NUMBER_ABSOLUTE = 4;
+        int WATCHED = 5;
+        int COLLECTED = 6;
+        int TITLE = 7;
+        int FIRSTAIRED = 8;
+        int IMDBID = 9;
+        int NUMBER_DVD = 10;
+        int RATING_USER = 11;
         // Full dump only
-        int OVERVIEW = 10;
-        int IMAGE = 11;
-        int WRITERS = 12;
-        int GUESTSTARS = 13;
-        int DIRECTORS = 14;
-        int RATING_GLOBAL = 15;
-        int RATING_VOTES = 16;
-        int LAST_EDITED = 17;
+        int OVERVIEW = 12;
+        int IMAGE = 13;
+        int WRITERS = 14;
+        int GUESTSTARS = 15;
+        int DIRECTORS = 16;
+        int RATING_GLOBAL = 17;
+        int RATING_VOTES = 18;
+        int LAST_EDITED = 19;
     }
 
     public interface ListsQuery {
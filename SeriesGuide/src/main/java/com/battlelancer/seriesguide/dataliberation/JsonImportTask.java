@@ -21,6 +21,7 @@ import com.battlelancer.seriesguide.provider.SeriesGuideContract.ListItems;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.Lists;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.Seasons;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import com.battlelancer.seriesguide.provider.ShowImport;
 import com.battlelancer.seriesguide.settings.BackupSettings;
 import com.battlelancer.seriesguide.sync.SgSyncAdapter;
 import com.battlelancer.seriesguide.util.DBUtils;
@@ -138,9 +139,6 @@ public class JsonImportTask extends AsyncTask<Void, Integer, Integer> {
             }
         }
 
-        // Renew search table
-        DBUtils.rebuildFtsTable(context);
-
         return SUCCESS;
     }
 
@@ -281,11 +279,8 @@ public class JsonImportTask extends AsyncTask<Void, Integer, Integer> {
     }
 
     private void clearExistingData(@JsonExportTask.BackupType int type) {
-        if (type == JsonExportTask.BACKUP_SHOWS) {
-            context.getContentResolver().delete(Shows.CONTENT_URI, null, null);
-            context.getContentResolver().delete(Seasons.CONTENT_URI, null, null);
-            context.getContentResolver().delete(Episodes.CONTENT_URI, null, null);
-        } else if (type == JsonExportTask.BACKUP_LISTS) {
+        // shows are replaced by ShowImport, only if the backup file could be read
+        if (type == JsonExportTask.BACKUP_LISTS) {
             context.getContentResolver().delete(Lists.CONTENT_URI, null, null);
             context.getContentResolver().delete(ListItems.CONTENT_URI, null, null);
         } else if (type == JsonExportTask.BACKUP_MOVIES) {
@@ -296,31 +291,53 @@ public class JsonImportTask extends AsyncTask<Void, Integer, Integer> {
     private void importFromJson(@JsonExportTask.BackupType int type, FileInputStream in)
             throws JsonParseException, IOException, IllegalArgumentException {
         Gson gson = new Gson();
-        JsonReader reader = new JsonReader(new InputStreamReader(in, "UTF-8"));
-        reader.beginArray();
-
         if (type == JsonExportTask.BACKUP_SHOWS) {
+            // read the whole file once without keeping shows in memory, so existing shows are
+            // only replaced if it is valid, then read it again to insert shows as they are read
+            JsonReader reader = new JsonReader(new InputStreamReader(in, "UTF-8"));
+            reader.beginArray();
             while (reader.hasNext()) {
-                Show show = gson.fromJson(reader, Show.class);
-                addShowToDatabase(show);
+                gson.fromJson(reader, Show.class);
+            }
+            reader.endArray();
+            in.getChannel().position(0);
+
+            reader = new JsonReader(new InputStreamReader(in, "UTF-8"));
+            reader.beginArray();
+            ShowImport showImport = ShowImport.begin(context);
+            try {
+                while (reader.hasNext()) {
+                    Show show = gson.fromJson(reader, Show.class);
+                    addShowToDatabase(showImport, show);
+                }
+                reader.endArray();
+            } finally {
+                showImport.close();
             }
-        } else if (type == JsonExportTask.BACKUP_LISTS) {
+            reader.close();
+            return;
+        }
+
+        JsonReader reader = new JsonReader(new InputStreamReader(in, "UTF-8"));
+        reader.beginArray();
+        if (type == JsonExportTask.BACKUP_LISTS) {
             while (reader.hasNext()) {
                 List list = gson.fromJson(reader, List.class);
                 addListToDatabase(list);
             }
+            reader.endArray();
         } else if (type == JsonExportTask.BACKUP_MOVIES) {
             while (reader.hasNext()) {
                 Movie movie = gson.fromJson(reader, Movie.class);
                 addMovieToDatabase(movie);
             }
+            reader.endArray();
         }
 
-        reader.endArray();
         reader.close();
     }
 
-    private void addShowToDatabase(Show show) {
+    private void addShowToDatabase(ShowImport showImport, Show show) {
         if (show.tvdb_id <= 0) {
             // valid id required
             return;
@@ -384,31 +401,20 @@ public class JsonImportTask extends AsyncTask<Void, Integer, Integer> {
         showValues.put(Shows.LASTUPDATED, show.last_updated);
         showValues.put(Shows.LASTEDIT, show.last_edited);
 
-        context.getContentResolver().insert(Shows.CONTENT_URI, showValues);
+        showImport.insertShow(showValues);
 
         if (show.seasons == null || show.seasons.isEmpty()) {
             // no seasons (or episodes)
             return;
         }
 
-        ContentValues[][] seasonsAndEpisodes = buildSeasonAndEpisodeBatches(show);
-        if (seasonsAndEpisodes[0] != null && seasonsAndEpisodes[1] != null) {
-            // Insert all seasons
-            context.getContentResolver().bulkInsert(Seasons.CONTENT_URI, seasonsAndEpisodes[0]);
-            // Insert all episodes
-            context.getContentResolver().bulkInsert(Episodes.CONTENT_URI, seasonsAndEpisodes[1]);
-        }
+        addSeasonsAndEpisodes(showImport, show);
     }
 
     /**
-     * Returns all seasons and episodes of this show in neat {@link ContentValues} packages put into
-     * arrays. The first array returned includes all seasons, the second array all episodes.
+     * Inserts all seasons and episodes of this show, skipping seasons without episodes.
      */
-    private static ContentValues[][] buildSeasonAndEpisodeBatches(Show show) {
-        ArrayList<ContentValues> seasonBatch = new ArrayList<>();
-        ArrayList<ContentValues> episodeBatch = new ArrayList<>();
-
-        // Populate arrays...
+    private static void addSeasonsAndEpisodes(ShowImport showImport, Show show) {
         for (Season season : show.seasons) {
             if (season.tvdbId <= 0) {
                 // valid id is required
@@ -428,7 +434,7 @@ public class JsonImportTask extends AsyncTask<Void, Integer, Integer> {
             }
             seasonValues.put(Seasons.COMBINED, season.season);
 
-            seasonBatch.add(seasonValues);
+            showImport.insertSeason(seasonValues);
 
             // ...and its episodes
             for (Episode episode : season.episodes) {
@@ -450,7 +456,7 @@ public class JsonImportTask extends AsyncTask<Void, Integer, Integer> {
                 }
                 episodeValues.put(Episodes.ABSOLUTE_NUMBER, episode.episodeAbsolute);
                 episodeValues.put(Episodes.SEASON, season.season);
-                episodeValues.put(Episodes.TITLE, episode.title);
+                episodeValues.put(Episodes.TITLE, episode.title == null ? "" : episode.title);
                 // watched/skipped represented internally in watched flag
                 if (episode.skipped) {
                     episodeValues.put(Episodes.WATCHED, EpisodeFlags.SKIPPED);
@@ -485,16 +491,9 @@ public class JsonImportTask extends AsyncTask<Void, Integer, Integer> {
                 episodeValues.put(Episodes.RATING_VOTES, episode.rating_votes);
                 episodeValues.put(Episodes.LAST_EDITED, episode.lastEdited);
 
-                episodeBatch.add(episodeValues);
+                showImport.insertEpisode(episodeValues);
             }
         }
-
-        return new ContentValues[][] {
-                seasonBatch.size() == 0 ? null
-                        : seasonBatch.toArray(new ContentValues[seasonBatch.size()]),
-                episodeBatch.size() == 0 ? null
-                        : episodeBatch.toArray(new ContentValues[episodeBatch.size()])
-        };
     }
 
     private void addListToDatabase(List list) {
@@ -11,6 +11,7 @@ import com.battlelancer.seriesguide.SgApp;
 import com.battlelancer.seriesguide.items.SearchResult;
 import com.battlelancer.seriesguide.traktapi.SgTrakt;
 import com.battlelancer.seriesguide.ui.TraktAddFragment;
+import com.battlelancer.seriesguide.util.IdMappingTools;
 import com.battlelancer.seriesguide.util.ShowTools;
 import com.uwetrottmann.androidutils.AndroidUtils;
 import com.uwetrottmann.androidutils.GenericSimpleLoader;
@@ -148,7 +149,7 @@ public class TraktAddLoader extends GenericSimpleLoader<TraktAddLoader.Result> {
 
     /**
      * Transforms a list of trakt shows to a list of {@link SearchResult}, marks shows already in
-     * the local database as added.
+     * the local database as added. Stores the ids of the shows, see {@link IdMappingTools}.
      */
     public static List<SearchResult> parseTraktShowsToSearchResults(Context context,
             @NonNull List<Show> traktShows, @Nullable String overrideLanguage) {
@@ -156,11 +157,13 @@ public class TraktAddLoader extends GenericSimpleLoader<TraktAddLoader.Result> {
 
         // build list
         SparseArrayCompat<String> existingPosterPaths = ShowTools.getShowTvdbIdsAndPosters(context);
+        IdMappingTools.Batch idMappings = new IdMappingTools.Batch();
         for (Show show : traktShows) {
             if (show.ids == null || show.ids.tvdb == null) {
                 // has no TheTVDB id
                 continue;
             }
+            idMappings.addShow(show.ids);
             SearchResult result = new SearchResult();
             result.tvdbid = show.ids.tvdb;
             result.title = show.title;
@@ -178,6 +181,7 @@ public class TraktAddLoader extends GenericSimpleLoader<TraktAddLoader.Result> {
             }
             results.add(result);
         }
+        idMappings.store(context);
 
         return results;
     }
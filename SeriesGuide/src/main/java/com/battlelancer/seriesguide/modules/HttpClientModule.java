@@ -8,6 +8,8 @@ import com.battlelancer.seriesguide.thetvdbapi.SgTheTvdbInterceptor;
 import com.battlelancer.seriesguide.tmdbapi.SgTmdbInterceptor;
 import com.battlelancer.seriesguide.traktapi.SgTraktInterceptor;
 import com.battlelancer.seriesguide.util.AllApisAuthenticator;
+import com.battlelancer.seriesguide.util.HostRateLimitInterceptor;
+import com.battlelancer.seriesguide.util.HttpMetricsInterceptor;
 import dagger.Module;
 import dagger.Provides;
 import java.io.File;
@@ -21,6 +23,7 @@ public class HttpClientModule {
 
     private static final int CONNECT_TIMEOUT_MILLIS = 15 * 1000; // 15s
     private static final int READ_TIMEOUT_MILLIS = 20 * 1000; // 20s
+    private static final int MAX_REQUESTS_PER_HOST = 4;
 
     private static final String API_CACHE = "api-cache";
     private static final int MIN_DISK_API_CACHE_SIZE = 2 * 1024 * 1024; // 2MB
@@ -36,6 +39,8 @@ public class HttpClientModule {
         OkHttpClient.Builder builder = new OkHttpClient.Builder();
         builder.connectTimeout(CONNECT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
         builder.readTimeout(READ_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        builder.addInterceptor(new HostRateLimitInterceptor(MAX_REQUESTS_PER_HOST));
+        builder.addInterceptor(new HttpMetricsInterceptor());
         builder.addInterceptor(new SgTmdbInterceptor());
         builder.addNetworkInterceptor(new SgTheTvdbInterceptor(app));
         builder.addNetworkInterceptor(new SgTraktInterceptor(app));
@@ -12,6 +12,7 @@ import com.battlelancer.seriesguide.loaders.TraktFriendsEpisodeHistoryLoader;
 import com.battlelancer.seriesguide.loaders.TraktFriendsMovieHistoryLoader;
 import com.battlelancer.seriesguide.loaders.TraktRecentEpisodeHistoryLoader;
 import com.battlelancer.seriesguide.loaders.TvdbAddLoader;
+import com.battlelancer.seriesguide.sync.EpisodeFlagOutbox;
 import com.battlelancer.seriesguide.sync.SgSyncAdapter;
 import com.battlelancer.seriesguide.thetvdbapi.SgTheTvdbInterceptor;
 import com.battlelancer.seriesguide.thetvdbapi.TvdbEpisodeDetailsTask;
@@ -22,7 +23,6 @@ import com.battlelancer.seriesguide.ui.dialogs.TraktCancelCheckinDialogFragment;
 import com.battlelancer.seriesguide.util.AddShowTask;
 import com.battlelancer.seriesguide.util.AllApisAuthenticator;
 import com.battlelancer.seriesguide.util.ConnectTraktTask;
-import com.battlelancer.seriesguide.util.EpisodeTools;
 import com.battlelancer.seriesguide.util.MovieTools;
 import com.battlelancer.seriesguide.util.TraktRatingsTask;
 import com.battlelancer.seriesguide.util.TraktTask;
@@ -32,6 +32,7 @@ import com.battlelancer.seriesguide.util.tasks.BaseRateItemTask;
 import com.battlelancer.seriesguide.util.tasks.BaseShowActionTask;
 import dagger.Component;
 import javax.inject.Singleton;
+import okhttp3.OkHttpClient;
 
 @Singleton
 @Component(modules = {
@@ -42,13 +43,15 @@ import javax.inject.Singleton;
         TvdbModule.class
 })
 public interface ServicesComponent {
+    OkHttpClient okHttpClient();
+
     void inject(AddShowTask addShowTask);
     void inject(AllApisAuthenticator allApisAuthenticator);
     void inject(BaseMovieActionTask baseMovieActionTask);
     void inject(BaseRateItemTask baseRateItemTask);
     void inject(BaseShowActionTask baseShowActionTask);
     void inject(ConnectTraktTask connectTraktTask);
-    void inject(EpisodeTools.EpisodeFlagTask episodeFlagTask);
+    void inject(EpisodeFlagOutbox episodeFlagOutbox);
     void inject(MovieCreditsLoader movieCreditsLoader);
     void inject(MovieTrailersLoader movieTrailersLoader);
     void inject(MovieTools movieTools);
@@ -0,0 +1,233 @@
+package com.battlelancer.seriesguide.provider;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.support.annotation.Nullable;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Seasons;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables;
+import com.battlelancer.seriesguide.util.collections.IntLongMap;
+import com.battlelancer.seriesguide.util.collections.IntSet;
+import java.util.List;
+
+/**
+ * Stores the full list of episodes of a show as downloaded from TVDb. Compares it against the
+ * {@link Episodes#LAST_EDITED} values of local episodes, then inserts new, updates changed and
+ * deletes orphaned episodes using compiled statements in a single transaction. Adds or updates
+ * seasons of inserted or updated episodes.
+ *
+ * <p> Never replaces an existing row, so watched, collected and rating values are kept even if
+ * TVDb returns an episode more than once or an episode moved from another show.
+ *
+ * <p> The episodes of a show may be stored in several calls, e.g. to keep each {@link
+ * SeriesGuideProvider#METHOD_UPSERT_EPISODES} call below the binder transaction limit if the
+ * provider is called from another process. Orphaned episodes are then only deleted by the last
+ * call, which passes the ids of all downloaded episodes.
+ */
+class EpisodeBulkUpsert {
+
+    /**
+     * Episode columns that are written. Each episode must have values for all of them, {@link
+     * Episodes#_ID} must come first.
+     */
+    static final String[] COLUMNS = {
+            Episodes._ID,
+            Seasons.REF_SEASON_ID,
+            Shows.REF_SHOW_ID,
+            Episodes.NUMBER,
+            Episodes.ABSOLUTE_NUMBER,
+            Episodes.SEASON,
+            Episodes.DVDNUMBER,
+            Episodes.FIRSTAIREDMS,
+            Episodes.TITLE,
+            Episodes.OVERVIEW,
+            Episodes.LAST_EDITED
+    };
+
+    /** Last edited value of episodes that are not stored locally. */
+    private static final long NOT_STORED = Long.MIN_VALUE;
+
+    static class Result {
+        int inserted;
+        int updated;
+        int deleted;
+        int unchanged;
+    }
+
+    private final SQLiteDatabase db;
+    private final int showTvdbId;
+
+    EpisodeBulkUpsert(SQLiteDatabase db, int showTvdbId) {
+        this.db = db;
+        this.showTvdbId = showTvdbId;
+    }
+
+    /**
+     * @param updateEditedAfter Existing episodes are only updated if edited on TVDb, or if their
+     * local {@link Episodes#LAST_EDITED} time (in seconds) is later than this, e.g. to make sure
+     * release time changes of recent episodes are stored.
+     * @param allEpisodeIds TVDb ids of all downloaded episodes of the show, other local episodes
+     * are deleted. If {@code null} no episodes are deleted.
+     */
+    Result apply(List<ContentValues> episodes, long updateEditedAfter,
+            @Nullable int[] allEpisodeIds) {
+        Result result = new Result();
+
+        SQLiteStatement insert = db.compileStatement(buildInsertEpisode());
+        SQLiteStatement update = db.compileStatement(buildUpdateEpisode());
+        SQLiteStatement delete = db.compileStatement("DELETE FROM " + Tables.EPISODES
+                + " WHERE " + Episodes._ID + "=?");
+        SQLiteStatement updateSeason = db.compileStatement("UPDATE " + Tables.SEASONS
+                + " SET " + Seasons.COMBINED + "=? WHERE " + Seasons._ID + "=?");
+        SQLiteStatement insertSeason = db.compileStatement("INSERT INTO " + Tables.SEASONS
+                + " (" + Seasons._ID + "," + Seasons.COMBINED + "," + Shows.REF_SHOW_ID + ")"
+                + " VALUES (?,?,?)");
+
+        db.beginTransaction();
+        try {
+            // remaining episodes were not passed with this call
+            IntLongMap localEpisodes = queryLocalEpisodes();
+            IntSet episodeIdsStored = new IntSet();
+            IntSet seasonIdsStored = new IntSet();
+
+            for (ContentValues values : episodes) {
+                Integer episodeId = values.getAsInteger(Episodes._ID);
+                if (episodeId == null) {
+                    continue;
+                }
+
+                long lastEdited = localEpisodes.remove(episodeId, NOT_STORED);
+                boolean isDuplicate = !episodeIdsStored.add(episodeId);
+                if (isDuplicate) {
+                    // TVDb returned the episode again, the last one wins
+                    updateEpisode(update, values, episodeId);
+                    result.updated++;
+                } else if (lastEdited == NOT_STORED) {
+                    bindEpisode(insert, values, 0);
+                    if (insert.executeInsert() == -1) {
+                        // exists for another show, move it
+                        updateEpisode(update, values, episodeId);
+                        result.updated++;
+                    } else {
+                        result.inserted++;
+                    }
+                } else {
+                    Long lastEditedNew = values.getAsLong(Episodes.LAST_EDITED);
+                    if (lastEditedNew == null
+                            || (lastEdited >= lastEditedNew && lastEdited <= updateEditedAfter)) {
+                        result.unchanged++;
+                        continue;
+                    }
+                    updateEpisode(update, values, episodeId);
+                    result.updated++;
+                }
+
+                Integer seasonId = values.getAsInteger(Seasons.REF_SEASON_ID);
+                if (seasonId != null && seasonIdsStored.add(seasonId)) {
+                    DatabaseUtils.bindObjectToProgram(updateSeason, 1,
+                            values.get(Episodes.SEASON));
+                    updateSeason.bindLong(2, seasonId);
+                    if (updateSeason.executeUpdateDelete() == 0) {
+                        insertSeason.bindLong(1, seasonId);
+                        DatabaseUtils.bindObjectToProgram(insertSeason, 2,
+                                values.get(Episodes.SEASON));
+                        insertSeason.bindLong(3, showTvdbId);
+                        insertSeason.executeInsert();
+                    }
+                }
+            }
+
+            if (allEpisodeIds != null) {
+                // delete episodes that were not downloaded
+                IntSet episodeIdsDownloaded = new IntSet(allEpisodeIds.length);
+                for (int episodeId : allEpisodeIds) {
+                    episodeIdsDownloaded.add(episodeId);
+                }
+                for (int episodeId : localEpisodes.keys()) {
+                    if (!episodeIdsDownloaded.contains(episodeId)) {
+                        delete.bindLong(1, episodeId);
+                        result.deleted += delete.executeUpdateDelete();
+                    }
+                }
+            }
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            insert.close();
+            update.close();
+            delete.close();
+            updateSeason.close();
+            insertSeason.close();
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns a map of TVDb ids and last edited time of all episodes of the show.
+     */
+    private IntLongMap queryLocalEpisodes() {
+        Cursor query = db.query(Tables.EPISODES,
+                new String[] { Episodes._ID, Episodes.LAST_EDITED },
+                Shows.REF_SHOW_ID + "=?", new String[] { String.valueOf(showTvdbId) },
+                null, null, null);
+        IntLongMap episodes = new IntLongMap(query.getCount());
+        try {
+            while (query.moveToNext()) {
+                episodes.put(query.getInt(0), query.getLong(1));
+            }
+        } finally {
+            query.close();
+        }
+        return episodes;
+    }
+
+    private static void updateEpisode(SQLiteStatement update, ContentValues values,
+            int episodeId) {
+        // all columns but the id, which is bound last
+        bindEpisode(update, values, 1);
+        update.bindLong(COLUMNS.length, episodeId);
+        update.executeUpdateDelete();
+    }
+
+    /**
+     * Binds values of {@link #COLUMNS}, starting at the given column index.
+     */
+    private static void bindEpisode(SQLiteStatement statement, ContentValues values,
+            int firstColumn) {
+        for (int i = firstColumn; i < COLUMNS.length; i++) {
+            DatabaseUtils.bindObjectToProgram(statement, i - firstColumn + 1,
+                    values.get(COLUMNS[i]));
+        }
+    }
+
+    /**
+     * Ignores conflicts instead of replacing the existing row, which would reset its watched,
+     * collected and rating values.
+     */
+    private static String buildInsertEpisode() {
+        StringBuilder sql = new StringBuilder("INSERT OR IGNORE INTO ")
+                .append(Tables.EPISODES).append(" (");
+        for (int i = 0; i < COLUMNS.length; i++) {
+            sql.append(i > 0 ? "," : "").append(COLUMNS[i]);
+        }
+        sql.append(") VALUES (");
+        for (int i = 0; i < COLUMNS.length; i++) {
+            sql.append(i > 0 ? ",?" : "?");
+        }
+        return sql.append(")").toString();
+    }
+
+    private static String buildUpdateEpisode() {
+        StringBuilder sql = new StringBuilder("UPDATE ").append(Tables.EPISODES).append(" SET ");
+        for (int i = 1; i < COLUMNS.length; i++) {
+            sql.append(i > 1 ? "," : "").append(COLUMNS[i]).append("=?");
+        }
+        return sql.append(" WHERE ").append(Episodes._ID).append("=?").toString();
+    }
+}
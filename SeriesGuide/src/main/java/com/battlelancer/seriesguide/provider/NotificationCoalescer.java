@@ -0,0 +1,107 @@
+package com.battlelancer.seriesguide.provider;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends change notifications for {@link SeriesGuideProvider}. While a session is active on the
+ * calling thread, e.g. during {@link SeriesGuideProvider#applyBatch} or a sync, only collects the
+ * distinct URIs and notifies once per URI when the outermost session ends. URIs with an ancestor
+ * that is also notified are skipped, observers of descendants of a URI are notified anyhow.
+ */
+class NotificationCoalescer {
+
+    private static class Session {
+        int depth;
+        int requested;
+        final LinkedHashSet<Uri> uris = new LinkedHashSet<>();
+    }
+
+    private final ContentResolver contentResolver;
+    private final ThreadLocal<Session> session = new ThreadLocal<>();
+    private final AtomicInteger suppressedCount = new AtomicInteger();
+
+    NotificationCoalescer(ContentResolver contentResolver) {
+        this.contentResolver = contentResolver;
+    }
+
+    /**
+     * Starts collecting notifications on the calling thread. Sessions may be nested, each must be
+     * {@link #end() ended}.
+     */
+    void begin() {
+        Session current = session.get();
+        if (current == null) {
+            current = new Session();
+            session.set(current);
+        }
+        current.depth++;
+    }
+
+    /**
+     * Ends a session started on the calling thread. If it is the outermost session, notifies
+     * once for each collected URI.
+     *
+     * @return The number of notifications suppressed by the outermost session, otherwise 0.
+     */
+    int end() {
+        Session current = session.get();
+        if (current == null) {
+            return 0;
+        }
+        current.depth--;
+        if (current.depth > 0) {
+            return 0;
+        }
+        session.remove();
+
+        int sent = 0;
+        for (Uri uri : current.uris) {
+            if (!hasAncestorIn(uri, current.uris)) {
+                contentResolver.notifyChange(uri, null);
+                sent++;
+            }
+        }
+        int suppressed = current.requested - sent;
+        suppressedCount.addAndGet(suppressed);
+        return suppressed;
+    }
+
+    /**
+     * Notifies observers of the given URI, or if a session is active on the calling thread, once
+     * it ends.
+     */
+    void notifyChange(Uri uri) {
+        Session current = session.get();
+        if (current == null) {
+            contentResolver.notifyChange(uri, null);
+            return;
+        }
+        current.requested++;
+        current.uris.add(uri);
+    }
+
+    /**
+     * Returns the number of notifications suppressed by all sessions ended so far.
+     */
+    int getSuppressedCount() {
+        return suppressedCount.get();
+    }
+
+    private static boolean hasAncestorIn(Uri uri, LinkedHashSet<Uri> uris) {
+        List<String> segments = uri.getPathSegments();
+        Uri.Builder ancestor = new Uri.Builder()
+                .scheme(uri.getScheme())
+                .authority(uri.getAuthority());
+        for (int i = 0; i < segments.size() - 1; i++) {
+            ancestor.appendPath(segments.get(i));
+            if (uris.contains(ancestor.build())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,179 @@
+package com.battlelancer.seriesguide.provider;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.net.Uri;
+import android.support.annotation.Nullable;
+import com.battlelancer.seriesguide.util.LatencyHistogram;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Opt-in profiling of {@link SeriesGuideProvider} operations. If {@link #setEnabled(boolean)
+ * enabled}, the provider times every operation and aggregates latencies per operation and URI
+ * match code. For queries, updates and deletes slower than {@link #setSlowThresholdMs(long)} the
+ * output of {@code EXPLAIN QUERY PLAN} is captured, the latest {@link #MAX_SLOW_OPERATIONS} are
+ * kept.
+ *
+ * <p> Use {@link #dump()} to get the results, e.g. from the debug drawer or a test.
+ */
+public class QueryProfiler {
+
+    static final int MAX_SLOW_OPERATIONS = 50;
+    public static final long DEFAULT_SLOW_THRESHOLD_MS = 16; // one frame
+
+    private static volatile boolean isEnabled;
+    private static volatile long slowThresholdNanos = DEFAULT_SLOW_THRESHOLD_MS * 1000000;
+
+    private static final Map<String, OperationStats> operations = new LinkedHashMap<>();
+    private static final LinkedList<SlowOperation> slowOperations = new LinkedList<>();
+
+    private static class OperationStats {
+        final String operation;
+        final int match;
+        /** First URI seen, to make the match code readable. */
+        final Uri exampleUri;
+        final LatencyHistogram latency = new LatencyHistogram();
+
+        OperationStats(String operation, int match, @Nullable Uri exampleUri) {
+            this.operation = operation;
+            this.match = match;
+            this.exampleUri = exampleUri;
+        }
+    }
+
+    private static class SlowOperation {
+        final String operation;
+        final Uri uri;
+        final long nanos;
+        final String sql;
+        final String plan;
+
+        SlowOperation(String operation, Uri uri, long nanos, String sql, String plan) {
+            this.operation = operation;
+            this.uri = uri;
+            this.nanos = nanos;
+            this.sql = sql;
+            this.plan = plan;
+        }
+    }
+
+    private QueryProfiler() {
+    }
+
+    public static boolean isEnabled() {
+        return isEnabled;
+    }
+
+    /**
+     * Enables or disables profiling. Disabling does not clear results, see {@link #clear()}.
+     */
+    public static void setEnabled(boolean enabled) {
+        isEnabled = enabled;
+    }
+
+    /**
+     * Operations taking at least this long have their query plan captured. Defaults to {@value
+     * #DEFAULT_SLOW_THRESHOLD_MS} ms.
+     */
+    public static void setSlowThresholdMs(long thresholdMs) {
+        slowThresholdNanos = thresholdMs * 1000000;
+    }
+
+    public static synchronized void clear() {
+        operations.clear();
+        slowOperations.clear();
+    }
+
+    /**
+     * Records the duration of an operation since the given start time.
+     *
+     * @param db If not {@code null}, used to capture the query plan of {@code sql} if the
+     * operation was slow.
+     * @param sql The statement to explain, for updates and deletes a select of the affected rows.
+     */
+    static void record(String operation, int match, @Nullable Uri uri, long startNanos,
+            @Nullable SQLiteDatabase db, @Nullable String sql, @Nullable String[] sqlArgs) {
+        long nanos = System.nanoTime() - startNanos;
+
+        String plan = null;
+        if (nanos >= slowThresholdNanos && db != null && sql != null) {
+            // explain outside of lock, not part of the measured time
+            plan = explain(db, sql, sqlArgs);
+        }
+
+        synchronized (QueryProfiler.class) {
+            String key = operation + "/" + match;
+            OperationStats stats = operations.get(key);
+            if (stats == null) {
+                stats = new OperationStats(operation, match, uri);
+                operations.put(key, stats);
+            }
+            stats.latency.add(nanos);
+
+            if (plan != null) {
+                slowOperations.addFirst(new SlowOperation(operation, uri, nanos, sql, plan));
+                if (slowOperations.size() > MAX_SLOW_OPERATIONS) {
+                    slowOperations.removeLast();
+                }
+            }
+        }
+    }
+
+    private static String explain(SQLiteDatabase db, String sql, @Nullable String[] sqlArgs) {
+        Cursor query;
+        try {
+            query = db.rawQuery("EXPLAIN QUERY PLAN " + sql, sqlArgs);
+        } catch (SQLiteException e) {
+            return "Failed to explain: " + e.getMessage();
+        }
+        StringBuilder plan = new StringBuilder();
+        int detailColumn = query.getColumnIndex("detail");
+        while (query.moveToNext()) {
+            if (plan.length() > 0) {
+                plan.append('\n');
+            }
+            plan.append(query.getString(detailColumn));
+        }
+        query.close();
+        return plan.toString();
+    }
+
+    /**
+     * Returns one line per operation and URI match code with count, mean, approximate p50 and p95
+     * and maximum latency, the slowest total time first. Then the captured slow operations with
+     * their statement and query plan, the latest first.
+     */
+    public static synchronized String dump() {
+        List<OperationStats> sorted = new ArrayList<>(operations.values());
+        Collections.sort(sorted, new Comparator<OperationStats>() {
+            @Override
+            public int compare(OperationStats left, OperationStats right) {
+                return LatencyHistogram.compareSlowestFirst(left.latency.getTotalNanos(),
+                        right.latency.getTotalNanos());
+            }
+        });
+
+        StringBuilder dump = new StringBuilder();
+        dump.append("operation match count total_ms mean_ms p50_ms p95_ms max_ms uri\n");
+        for (OperationStats stats : sorted) {
+            LatencyHistogram latency = stats.latency;
+            dump.append(String.format(Locale.US, "%s %d %d %.1f %.2f %s %s %.1f %s\n",
+                    stats.operation, stats.match, latency.getCount(), latency.getTotalMs(),
+                    latency.getMeanMs(), latency.formatPercentile(50),
+                    latency.formatPercentile(95), latency.getMaxMs(), stats.exampleUri));
+        }
+        for (SlowOperation slow : slowOperations) {
+            dump.append(String.format(Locale.US, "\nSLOW %s %.1f ms %s\n%s\n%s\n",
+                    slow.operation, slow.nanos / 1000000.0, slow.uri, slow.sql, slow.plan));
+        }
+        return dump.toString();
+    }
+}
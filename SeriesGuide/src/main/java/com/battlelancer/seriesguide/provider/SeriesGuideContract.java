@@ -550,6 +550,112 @@ public class SeriesGuideContract {
         String SHOW_TVDB_ID = "activity_show";
     }
 
+    interface EpisodeOutboxColumns {
+
+        String SHOW_TVDB_ID = "outbox_show";
+
+        String SEASON = "outbox_season";
+
+        String NUMBER = "outbox_number";
+
+        /**
+         * Either {@link EpisodeOutbox#TYPE_WATCHED} or {@link EpisodeOutbox#TYPE_COLLECTED}.
+         */
+        String TYPE = "outbox_type";
+
+        /**
+         * The new watched flag or collected state of the episode.
+         */
+        String VALUE = "outbox_value";
+
+        /**
+         * Whether the change still has to be sent to Hexagon. 1 if true, 0 if false.
+         */
+        String SEND_HEXAGON = "outbox_send_hexagon";
+
+        /**
+         * Whether the change still has to be sent to trakt. 1 if true, 0 if false.
+         */
+        String SEND_TRAKT = "outbox_send_trakt";
+
+        /**
+         * How often sending the change failed. Once it reaches {@link EpisodeOutbox#MAX_ATTEMPTS}
+         * the change is only retried by syncs.
+         */
+        String ATTEMPTS = "outbox_attempts";
+    }
+
+    interface ShowStatsColumns {
+
+        String SHOW_TVDB_ID = "stats_show";
+
+        String EPISODES = "stats_episodes";
+
+        String EPISODES_WATCHED = "stats_episodes_watched";
+
+        String EPISODES_NO_SPECIALS = "stats_episodes_no_specials";
+
+        String EPISODES_WATCHED_NO_SPECIALS = "stats_episodes_watched_no_specials";
+    }
+
+    interface SyncReportsColumns {
+
+        /**
+         * Time the sync started at in ms since epoch.
+         */
+        String STARTED_AT = "report_started_at";
+
+        /**
+         * Name of the {@link com.battlelancer.seriesguide.sync.SgSyncAdapter.SyncType}.
+         */
+        String SYNC_TYPE = "report_sync_type";
+
+        /**
+         * Name of the {@link com.battlelancer.seriesguide.sync.SgSyncAdapter.UpdateResult}.
+         */
+        String RESULT = "report_result";
+
+        String DURATION_MS = "report_duration";
+
+        /**
+         * The whole report including all phases as JSON, see {@link
+         * com.battlelancer.seriesguide.sync.SyncReport}.
+         */
+        String JSON = "report_json";
+    }
+
+    interface IdMappingsColumns {
+
+        /**
+         * One of {@link IdMappingTypes}. Shows are identified by {@link #TVDB_ID}, movies by
+         * {@link #TMDB_ID}.
+         */
+        String TYPE = "mapping_type";
+
+        String TVDB_ID = "mapping_tvdb_id";
+
+        String TMDB_ID = "mapping_tmdb_id";
+
+        /**
+         * The trakt id, 0 if a lookup found the item is not on trakt. {@code null} if unknown.
+         */
+        String TRAKT_ID = "mapping_trakt_id";
+
+        String IMDB_ID = "mapping_imdb_id";
+
+        /**
+         * Time in ms since epoch a trakt response last confirmed {@link #TRAKT_ID}.
+         */
+        String TRAKT_UPDATED_MS = "mapping_trakt_updated";
+    }
+
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef({ IdMappingTypes.SHOW, IdMappingTypes.MOVIE })
+    public @interface IdMappingTypes {
+        int SHOW = 1;
+        int MOVIE = 2;
+    }
+
     private static final Uri BASE_CONTENT_URI = Uri.parse("content://"
             + SgApp.CONTENT_AUTHORITY);
 
@@ -589,6 +695,16 @@ public class SeriesGuideContract {
 
     public static final String PATH_ACTIVITY = "activity";
 
+    public static final String PATH_EPISODE_OUTBOX = "episodeoutbox";
+
+    public static final String PATH_STATS = "stats";
+
+    public static final String PATH_NO_SPECIALS = "nospecials";
+
+    public static final String PATH_SYNC_REPORTS = "syncreports";
+
+    public static final String PATH_ID_MAPPINGS = "idmappings";
+
     public static class Shows implements ShowsColumns, BaseColumns {
 
         /**
@@ -913,8 +1029,9 @@ public class SeriesGuideContract {
                 .build();
 
         /**
-         * List items table joined with shows, seasons and episodes table (depending on list item
-         * type). See {@link SeriesGuideProvider#LIST_ITEMS_WITH_DETAILS}.
+         * List items with columns of their show, season or episode (depending on list item type),
+         * stored in a table kept up to date by the database. See {@link
+         * SeriesGuideProvider#LIST_ITEMS_WITH_DETAILS}.
          */
         public static final Uri CONTENT_WITH_DETAILS_URI = CONTENT_URI.buildUpon()
                 .appendPath(PATH_WITH_DETAILS)
@@ -1064,6 +1181,119 @@ public class SeriesGuideContract {
         }
     }
 
+    public static class EpisodeOutbox implements EpisodeOutboxColumns, BaseColumns {
+
+        /**
+         * Episode flag changes not yet sent to Hexagon or trakt.
+         * See {@link SeriesGuideProvider#EPISODE_OUTBOX}.
+         */
+        public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon()
+                .appendPath(PATH_EPISODE_OUTBOX)
+                .build();
+
+        /**
+         * Use if multiple items get returned
+         */
+        public static final String CONTENT_TYPE
+                = "vnd.android.cursor.dir/vnd.seriesguide.episodeoutbox";
+
+        public static final int TYPE_WATCHED = 0;
+
+        public static final int TYPE_COLLECTED = 1;
+
+        public static final String SELECTION_SEND_HEXAGON = SEND_HEXAGON + "=1";
+
+        public static final String SELECTION_SEND_TRAKT = SEND_TRAKT + "=1";
+
+        public static final String SELECTION_SENT = SEND_HEXAGON + "=0 AND " + SEND_TRAKT + "=0";
+
+        /**
+         * Changes failing to send this often are kept, but only retried by syncs. With the retry
+         * backoff this is after about 8 hours of trying while connected.
+         */
+        public static final int MAX_ATTEMPTS = 20;
+
+        /** Changes that are still retried on their own, see {@link #MAX_ATTEMPTS}. */
+        public static final String SELECTION_RETRY = ATTEMPTS + "<" + MAX_ATTEMPTS;
+    }
+
+    /**
+     * Statistics about all shows, episodes and movies. Returns a single row. Episode counts are
+     * read from a table that is updated together with the next episode of shows, see {@link
+     * ShowStatsColumns}.
+     */
+    public static class Stats {
+
+        public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon()
+                .appendPath(PATH_STATS)
+                .build();
+
+        /**
+         * Like {@link #CONTENT_URI}, but episode counts exclude specials.
+         */
+        public static final Uri CONTENT_URI_NO_SPECIALS = CONTENT_URI.buildUpon()
+                .appendPath(PATH_NO_SPECIALS)
+                .build();
+
+        public static final String CONTENT_ITEM_TYPE
+                = "vnd.android.cursor.item/vnd.seriesguide.stats";
+
+        public static final String SHOWS = "shows";
+
+        public static final String SHOWS_CONTINUING = "shows_continuing";
+
+        public static final String SHOWS_WITH_NEXT_EPISODE = "shows_with_next";
+
+        public static final String EPISODES = "episodes";
+
+        public static final String EPISODES_WATCHED = "episodes_watched";
+
+        /** Runtime of all watched episodes in minutes. */
+        public static final String EPISODES_WATCHED_RUNTIME = "episodes_watched_runtime";
+
+        public static final String MOVIES = "movies";
+
+        public static final String MOVIES_WATCHLIST = "movies_watchlist";
+
+        /** Runtime of all movies on the watchlist in minutes. */
+        public static final String MOVIES_WATCHLIST_RUNTIME = "movies_watchlist_runtime";
+    }
+
+    public static class SyncReports implements SyncReportsColumns, BaseColumns {
+
+        /**
+         * Reports of the latest syncs, see {@link com.battlelancer.seriesguide.sync.SyncTracer}.
+         */
+        public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon()
+                .appendPath(PATH_SYNC_REPORTS)
+                .build();
+
+        /**
+         * Use if multiple items get returned
+         */
+        public static final String CONTENT_TYPE
+                = "vnd.android.cursor.dir/vnd.seriesguide.syncreport";
+
+        public static final String SORT_LATEST_FIRST = STARTED_AT + " DESC";
+    }
+
+    public static class IdMappings implements IdMappingsColumns, BaseColumns {
+
+        /**
+         * Ids of shows and movies on TheTVDB, TMDb, trakt and IMDb learned from API responses.
+         * Write with {@link SeriesGuideProvider#METHOD_PUT_ID_MAPPINGS}.
+         */
+        public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon()
+                .appendPath(PATH_ID_MAPPINGS)
+                .build();
+
+        /**
+         * Use if multiple items get returned
+         */
+        public static final String CONTENT_TYPE
+                = "vnd.android.cursor.dir/vnd.seriesguide.idmapping";
+    }
+
     private SeriesGuideContract() {
     }
 }
@@ -4,27 +4,39 @@ import android.app.SearchManager;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.provider.BaseColumns;
 import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.EpisodeOutboxColumns;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.EpisodeSearch;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.EpisodeSearchColumns;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.EpisodesColumns;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.IdMappingTypes;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.IdMappingsColumns;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.ListItemTypes;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.ListItemsColumns;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.Lists;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.ListsColumns;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.MoviesColumns;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.SeasonsColumns;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.ShowStatsColumns;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.ShowsColumns;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Stats;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.SyncReportsColumns;
 import com.battlelancer.seriesguide.settings.NotificationSettings;
 import com.battlelancer.seriesguide.util.DBUtils;
+import com.battlelancer.seriesguide.util.ShowTools;
 import com.battlelancer.seriesguide.util.TimeTools;
 import com.uwetrottmann.androidutils.AndroidUtils;
 import java.util.Calendar;
+import java.util.List;
 import java.util.TimeZone;
 import org.threeten.bp.LocalTime;
 import org.threeten.bp.ZoneId;
@@ -149,7 +161,42 @@ public class SeriesGuideDatabase extends SQLiteOpenHelper {
      */
     private static final int DBVER_41_EPISODE_LAST_UPDATED = 41;
 
-    public static final int DATABASE_VERSION = DBVER_41_EPISODE_LAST_UPDATED;
+    /**
+     * Add indexes on episodes and seasons for columns commonly filtered or sorted by.
+     */
+    private static final int DBVER_42_EPISODE_INDEXES = 42;
+
+    /**
+     * Keep {@link Tables#EPISODES_SEARCH} up to date with triggers on the episodes table.
+     */
+    private static final int DBVER_43_SEARCH_TRIGGERS = 43;
+
+    /**
+     * Added episode outbox table to store episode flag changes not yet sent to Hexagon or trakt.
+     */
+    private static final int DBVER_44_EPISODE_OUTBOX = 44;
+
+    /**
+     * Added show stats table to store episode counts per show.
+     */
+    private static final int DBVER_45_SHOW_STATS = 45;
+
+    /**
+     * Added sync reports table to store durations and counters of the latest syncs.
+     */
+    private static final int DBVER_46_SYNC_REPORTS = 46;
+
+    /**
+     * Replaced the list items with details view by a table kept up to date with triggers.
+     */
+    private static final int DBVER_47_LIST_ITEM_DETAILS = 47;
+
+    /**
+     * Added id mappings table to store trakt, TMDb and IMDb ids of shows and movies.
+     */
+    private static final int DBVER_48_ID_MAPPINGS = 48;
+
+    public static final int DATABASE_VERSION = DBVER_48_ID_MAPPINGS;
 
     /**
      * Qualifies column names by prefixing their {@link Tables} name.
@@ -161,9 +208,11 @@ public class SeriesGuideDatabase extends SQLiteOpenHelper {
         String SHOWS_NEXT_EPISODE = Tables.SHOWS + "." + Shows.NEXTEPISODE;
         String EPISODES_ID = Tables.EPISODES + "." + Episodes._ID;
         String EPISODES_SHOW_ID = Tables.EPISODES + "." + Shows.REF_SHOW_ID;
+        String EPISODES_TITLE = Tables.EPISODES + "." + Episodes.TITLE;
         String SEASONS_ID = Tables.SEASONS + "." + Seasons._ID;
         String SEASONS_SHOW_ID = Tables.SEASONS + "." + Shows.REF_SHOW_ID;
         String LIST_ITEMS_REF_ID = Tables.LIST_ITEMS + "." + ListItems.ITEM_REF_ID;
+        String LIST_ITEMS_TYPE = Tables.LIST_ITEMS + "." + ListItems.TYPE;
     }
 
     public interface Tables {
@@ -192,103 +241,19 @@ public class SeriesGuideDatabase extends SQLiteOpenHelper {
 
         String LIST_ITEMS = "listitems";
 
-        String LIST_ITEMS_WITH_DETAILS = "("
-                // shows
-                + "SELECT " + Selections.SHOWS_COLUMNS + " FROM "
-                + "("
-                + Selections.LIST_ITEMS_SHOWS
-                + " LEFT OUTER JOIN " + Tables.SHOWS
-                + " ON " + Qualified.LIST_ITEMS_REF_ID + "=" + Qualified.SHOWS_ID
-                + ")"
-                // seasons
-                + " UNION SELECT " + Selections.SEASONS_COLUMNS + " FROM "
-                + "("
-                + Selections.LIST_ITEMS_SEASONS
-                + " LEFT OUTER JOIN " + "(" + SEASONS_JOIN_SHOWS + ") AS " + Tables.SEASONS
-                + " ON " + Qualified.LIST_ITEMS_REF_ID + "=" + Qualified.SEASONS_ID
-                + ")"
-                // episodes
-                + " UNION SELECT " + Selections.EPISODES_COLUMNS + " FROM "
-                + "("
-                + Selections.LIST_ITEMS_EPISODES
-                + " LEFT OUTER JOIN " + "(" + EPISODES_JOIN_SHOWS + ") AS " + Tables.EPISODES
-                + " ON " + Qualified.LIST_ITEMS_REF_ID + "=" + Qualified.EPISODES_ID
-                + ")"
-                //
-                + ")";
+        String LIST_ITEM_DETAILS = "list_item_details";
 
         String MOVIES = "movies";
 
         String ACTIVITY = "activity";
-    }
-
-    private interface Selections {
 
-        String LIST_ITEMS_SHOWS = "(SELECT " + Selections.LIST_ITEMS_COLUMNS_INTERNAL
-                + " FROM " + Tables.LIST_ITEMS
-                + " WHERE " + ListItems.SELECTION_SHOWS + ")"
-                + " AS " + Tables.LIST_ITEMS;
-
-        String LIST_ITEMS_SEASONS = "(SELECT " + Selections.LIST_ITEMS_COLUMNS_INTERNAL
-                + " FROM " + Tables.LIST_ITEMS
-                + " WHERE " + ListItems.SELECTION_SEASONS + ")"
-                + " AS " + Tables.LIST_ITEMS;
+        String EPISODE_OUTBOX = "episode_outbox";
 
-        String LIST_ITEMS_EPISODES = "(SELECT " + Selections.LIST_ITEMS_COLUMNS_INTERNAL
-                + " FROM " + Tables.LIST_ITEMS
-                + " WHERE " + ListItems.SELECTION_EPISODES + ")"
-                + " AS " + Tables.LIST_ITEMS;
-
-        String LIST_ITEMS_COLUMNS_INTERNAL =
-                ListItems._ID + " as listitem_id,"
-                        + ListItems.LIST_ITEM_ID + ","
-                        + Lists.LIST_ID + ","
-                        + ListItems.TYPE + ","
-                        + ListItems.ITEM_REF_ID;
-
-        String COMMON_LIST_ITEMS_COLUMNS =
-                // from list items table
-                "listitem_id as " + ListItems._ID + ","
-                        + ListItems.LIST_ITEM_ID + ","
-                        + Lists.LIST_ID + ","
-                        + ListItems.TYPE + ","
-                        + ListItems.ITEM_REF_ID + ","
-                        // from shows table
-                        + Shows.TITLE + ","
-                        + Shows.TITLE_NOARTICLE + ","
-                        + Shows.POSTER + ","
-                        + Shows.NETWORK + ","
-                        + Shows.STATUS + ","
-                        + Shows.FAVORITE + ","
-                        + Shows.RELEASE_WEEKDAY + ","
-                        + Shows.RELEASE_TIMEZONE + ","
-                        + Shows.RELEASE_COUNTRY + ","
-                        + Shows.LASTWATCHED_MS + ","
-                        + Shows.UNWATCHED_COUNT;
-
-        String SHOWS_COLUMNS = COMMON_LIST_ITEMS_COLUMNS + ","
-                + Qualified.SHOWS_ID + " as " + Shows.REF_SHOW_ID + ","
-                + Shows.OVERVIEW + ","
-                + Shows.RELEASE_TIME + ","
-                + Shows.NEXTTEXT + ","
-                + Shows.NEXTAIRDATETEXT + ","
-                + Shows.NEXTAIRDATEMS;
+        String SHOW_STATS = "show_stats";
 
-        String SEASONS_COLUMNS = COMMON_LIST_ITEMS_COLUMNS + ","
-                + Shows.REF_SHOW_ID + ","
-                + Seasons.COMBINED + " as " + Shows.OVERVIEW + ","
-                + Shows.RELEASE_TIME + ","
-                + Shows.NEXTTEXT + ","
-                + Shows.NEXTAIRDATETEXT + ","
-                + Shows.NEXTAIRDATEMS;
+        String SYNC_REPORTS = "sync_reports";
 
-        String EPISODES_COLUMNS = COMMON_LIST_ITEMS_COLUMNS + ","
-                + Shows.REF_SHOW_ID + ","
-                + Episodes.TITLE + " as " + Shows.OVERVIEW + ","
-                + Episodes.FIRSTAIREDMS + " as " + Shows.RELEASE_TIME + ","
-                + Episodes.SEASON + " as " + Shows.NEXTTEXT + ","
-                + Episodes.NUMBER + " as " + Shows.NEXTAIRDATETEXT + ","
-                + Episodes.FIRSTAIREDMS + " as " + Shows.NEXTAIRDATEMS;
+        String ID_MAPPINGS = "id_mappings";
     }
 
     interface References {
@@ -446,6 +411,39 @@ public class SeriesGuideDatabase extends SQLiteOpenHelper {
 
             + ");";
 
+    /**
+     * Episodes of a show in season and number order, e.g. for the seasons and episodes lists.
+     */
+    private static final String CREATE_INDEX_EPISODES_SHOW_NUMBER = "CREATE INDEX IF NOT EXISTS "
+            + "idx_episodes_show_number ON " + Tables.EPISODES + " ("
+            + ShowsColumns.REF_SHOW_ID + "," + EpisodesColumns.SEASON + ","
+            + EpisodesColumns.NUMBER + ");";
+
+    /**
+     * Episodes of a show by release time, e.g. for next episode and unwatched count lookups.
+     */
+    private static final String CREATE_INDEX_EPISODES_SHOW_RELEASE = "CREATE INDEX IF NOT EXISTS "
+            + "idx_episodes_show_release ON " + Tables.EPISODES + " ("
+            + ShowsColumns.REF_SHOW_ID + "," + EpisodesColumns.FIRSTAIREDMS + ");";
+
+    /**
+     * Episodes of a season by watched flag, e.g. for season watch counters.
+     */
+    private static final String CREATE_INDEX_EPISODES_SEASON_WATCHED = "CREATE INDEX IF NOT EXISTS "
+            + "idx_episodes_season_watched ON " + Tables.EPISODES + " ("
+            + SeasonsColumns.REF_SEASON_ID + "," + EpisodesColumns.WATCHED + ");";
+
+    /**
+     * Episodes of all shows by release time, e.g. for the calendar and notifications.
+     */
+    private static final String CREATE_INDEX_EPISODES_RELEASE = "CREATE INDEX IF NOT EXISTS "
+            + "idx_episodes_release ON " + Tables.EPISODES + " ("
+            + EpisodesColumns.FIRSTAIREDMS + ");";
+
+    private static final String CREATE_INDEX_SEASONS_SHOW = "CREATE INDEX IF NOT EXISTS "
+            + "idx_seasons_show ON " + Tables.SEASONS + " ("
+            + ShowsColumns.REF_SHOW_ID + ");";
+
     private static final String CREATE_SEARCH_TABLE = "CREATE VIRTUAL TABLE "
             + Tables.EPISODES_SEARCH + " USING fts4("
 
@@ -468,6 +466,217 @@ public class SeriesGuideDatabase extends SQLiteOpenHelper {
 
             + ");";
 
+    /**
+     * Triggers keeping {@link Tables#EPISODES_SEARCH} in sync with title and overview of
+     * {@link Tables#EPISODES}. Old values are removed before a row changes as the FTS4 table reads
+     * them from its external content table. As episodes are bulk inserted with ON CONFLICT
+     * REPLACE, requires recursive triggers so the delete trigger runs for replaced rows.
+     */
+    private static final String CREATE_TRIGGER_SEARCH_INSERT = "CREATE TRIGGER IF NOT EXISTS "
+            + "episodes_search_insert AFTER INSERT ON " + Tables.EPISODES
+            + " BEGIN " + SearchTriggers.INSERT_NEW + " END;";
+
+    private static final String CREATE_TRIGGER_SEARCH_DELETE = "CREATE TRIGGER IF NOT EXISTS "
+            + "episodes_search_delete BEFORE DELETE ON " + Tables.EPISODES
+            + " BEGIN " + SearchTriggers.DELETE_OLD + " END;";
+
+    private static final String CREATE_TRIGGER_SEARCH_BEFORE_UPDATE =
+            "CREATE TRIGGER IF NOT EXISTS episodes_search_before_update BEFORE UPDATE OF "
+            + Episodes.TITLE + "," + Episodes.OVERVIEW + " ON " + Tables.EPISODES
+            + " WHEN " + SearchTriggers.WHEN_CHANGED
+            + " BEGIN " + SearchTriggers.DELETE_OLD + " END;";
+
+    private static final String CREATE_TRIGGER_SEARCH_AFTER_UPDATE =
+            "CREATE TRIGGER IF NOT EXISTS episodes_search_after_update AFTER UPDATE OF "
+            + Episodes.TITLE + "," + Episodes.OVERVIEW + " ON " + Tables.EPISODES
+            + " WHEN " + SearchTriggers.WHEN_CHANGED
+            + " BEGIN " + SearchTriggers.INSERT_NEW + " END;";
+
+    private interface SearchTriggers {
+
+        String INSERT_NEW = "INSERT INTO " + Tables.EPISODES_SEARCH
+                + "(" + EpisodeSearchColumns._DOCID + "," + EpisodeSearchColumns.TITLE + ","
+                + EpisodeSearchColumns.OVERVIEW + ")"
+                + " VALUES (new." + Episodes._ID + ",new." + Episodes.TITLE
+                + ",new." + Episodes.OVERVIEW + ");";
+
+        String DELETE_OLD = "DELETE FROM " + Tables.EPISODES_SEARCH
+                + " WHERE " + EpisodeSearchColumns._DOCID + "=old." + Episodes._ID + ";";
+
+        String WHEN_CHANGED = "old." + Episodes.TITLE + " IS NOT new." + Episodes.TITLE
+                + " OR old." + Episodes.OVERVIEW + " IS NOT new." + Episodes.OVERVIEW;
+    }
+
+    /**
+     * List items with the columns of their show, season or episode (depending on list item type)
+     * required to display them, so a list can be loaded with a single indexed lookup. Types are
+     * those of the source columns, the remaining columns have no type so values are stored as
+     * selected.
+     */
+    private static final String CREATE_LIST_ITEM_DETAILS_TABLE = "CREATE TABLE "
+            + Tables.LIST_ITEM_DETAILS
+            + " ("
+
+            + BaseColumns._ID + " INTEGER PRIMARY KEY,"
+
+            + ListItemsColumns.LIST_ITEM_ID + " TEXT,"
+
+            + ListsColumns.LIST_ID + " TEXT,"
+
+            + ListItemsColumns.TYPE + " INTEGER,"
+
+            + ListItemsColumns.ITEM_REF_ID + " TEXT,"
+
+            + Shows.TITLE + ","
+
+            + Shows.TITLE_NOARTICLE + ","
+
+            + Shows.POSTER + ","
+
+            + Shows.NETWORK + ","
+
+            + Shows.STATUS + ","
+
+            + Shows.FAVORITE + ","
+
+            + Shows.RELEASE_WEEKDAY + ","
+
+            + Shows.RELEASE_TIMEZONE + ","
+
+            + Shows.RELEASE_COUNTRY + ","
+
+            + Shows.LASTWATCHED_MS + ","
+
+            + Shows.UNWATCHED_COUNT + ","
+
+            + Shows.REF_SHOW_ID + " INTEGER,"
+
+            + Shows.OVERVIEW + ","
+
+            + Shows.RELEASE_TIME + ","
+
+            + Shows.NEXTTEXT + ","
+
+            + Shows.NEXTAIRDATETEXT + ","
+
+            + Shows.NEXTAIRDATEMS
+
+            + ");";
+
+    private static final String CREATE_INDEX_LIST_ITEM_DETAILS_LIST = "CREATE INDEX IF NOT EXISTS "
+            + "idx_list_item_details_list ON " + Tables.LIST_ITEM_DETAILS
+            + " (" + ListsColumns.LIST_ID + ")";
+
+    private static final String CREATE_INDEX_LIST_ITEMS_REF = "CREATE INDEX IF NOT EXISTS "
+            + "idx_listitems_ref ON " + Tables.LIST_ITEMS
+            + " (" + ListItemsColumns.ITEM_REF_ID + ")";
+
+    /**
+     * Statements (re-)inserting rows of {@link Tables#LIST_ITEM_DETAILS} for list items of one
+     * type matching an additional condition. Unlike the former view, the next episode of a show is
+     * looked up with a join so the statements stay cheap when run by triggers.
+     *
+     * <p> For shows title, season and number are of the next episode (null if there is none), for
+     * seasons the combined number, for episodes title, release time, season and number, so the
+     * text can be formatted when displayed.
+     */
+    private interface ListItemDetails {
+
+        String INSERT = "INSERT OR REPLACE INTO " + Tables.LIST_ITEM_DETAILS + " ("
+                + BaseColumns._ID + ","
+                + ListItemsColumns.LIST_ITEM_ID + ","
+                + ListsColumns.LIST_ID + ","
+                + ListItemsColumns.TYPE + ","
+                + ListItemsColumns.ITEM_REF_ID + ","
+                + Shows.TITLE + ","
+                + Shows.TITLE_NOARTICLE + ","
+                + Shows.POSTER + ","
+                + Shows.NETWORK + ","
+                + Shows.STATUS + ","
+                + Shows.FAVORITE + ","
+                + Shows.RELEASE_WEEKDAY + ","
+                + Shows.RELEASE_TIMEZONE + ","
+                + Shows.RELEASE_COUNTRY + ","
+                + Shows.LASTWATCHED_MS + ","
+                + Shows.UNWATCHED_COUNT + ","
+                + Shows.REF_SHOW_ID + ","
+                + Shows.OVERVIEW + ","
+                + Shows.RELEASE_TIME + ","
+                + Shows.NEXTTEXT + ","
+                + Shows.NEXTAIRDATETEXT + ","
+                + Shows.NEXTAIRDATEMS + ")";
+
+        String COMMON_COLUMNS = Tables.LIST_ITEMS + "." + ListItems._ID + ","
+                + Tables.LIST_ITEMS + "." + ListItems.LIST_ITEM_ID + ","
+                + Tables.LIST_ITEMS + "." + Lists.LIST_ID + ","
+                + Tables.LIST_ITEMS + "." + ListItems.TYPE + ","
+                + Qualified.LIST_ITEMS_REF_ID + ","
+                + Tables.SHOWS + "." + Shows.TITLE + ","
+                + Tables.SHOWS + "." + Shows.TITLE_NOARTICLE + ","
+                + Tables.SHOWS + "." + Shows.POSTER + ","
+                + Tables.SHOWS + "." + Shows.NETWORK + ","
+                + Tables.SHOWS + "." + Shows.STATUS + ","
+                + Tables.SHOWS + "." + Shows.FAVORITE + ","
+                + Tables.SHOWS + "." + Shows.RELEASE_WEEKDAY + ","
+                + Tables.SHOWS + "." + Shows.RELEASE_TIMEZONE + ","
+                + Tables.SHOWS + "." + Shows.RELEASE_COUNTRY + ","
+                + Tables.SHOWS + "." + Shows.LASTWATCHED_MS + ","
+                + Tables.SHOWS + "." + Shows.UNWATCHED_COUNT + ",";
+
+        String SHOWS = INSERT + " SELECT " + COMMON_COLUMNS
+                + Qualified.SHOWS_ID + ","
+                + Qualified.EPISODES_TITLE + ","
+                + Tables.SHOWS + "." + Shows.RELEASE_TIME + ","
+                + Tables.EPISODES + "." + Episodes.SEASON + ","
+                + Tables.EPISODES + "." + Episodes.NUMBER + ","
+                + Tables.SHOWS + "." + Shows.NEXTAIRDATEMS
+                + " FROM " + Tables.LIST_ITEMS
+                + " LEFT OUTER JOIN " + Tables.SHOWS
+                + " ON " + Qualified.LIST_ITEMS_REF_ID + "=" + Qualified.SHOWS_ID
+                + " LEFT OUTER JOIN " + Tables.EPISODES
+                + " ON " + Qualified.SHOWS_NEXT_EPISODE + "=" + Qualified.EPISODES_ID
+                + " WHERE " + Qualified.LIST_ITEMS_TYPE + "=" + ListItemTypes.SHOW + " AND ";
+
+        String SEASONS = INSERT + " SELECT " + COMMON_COLUMNS
+                + Qualified.SEASONS_SHOW_ID + ","
+                + Tables.SEASONS + "." + Seasons.COMBINED + ","
+                + Tables.SHOWS + "." + Shows.RELEASE_TIME + ","
+                + "NULL,NULL,"
+                + Tables.SHOWS + "." + Shows.NEXTAIRDATEMS
+                + " FROM " + Tables.LIST_ITEMS
+                + " LEFT OUTER JOIN " + Tables.SEASONS
+                + " ON " + Qualified.LIST_ITEMS_REF_ID + "=" + Qualified.SEASONS_ID
+                + " LEFT OUTER JOIN " + Tables.SHOWS
+                + " ON " + Qualified.SEASONS_SHOW_ID + "=" + Qualified.SHOWS_ID
+                + " WHERE " + Qualified.LIST_ITEMS_TYPE + "=" + ListItemTypes.SEASON + " AND ";
+
+        String EPISODES = INSERT + " SELECT " + COMMON_COLUMNS
+                + Qualified.EPISODES_SHOW_ID + ","
+                + Qualified.EPISODES_TITLE + ","
+                + Tables.EPISODES + "." + Episodes.FIRSTAIREDMS + ","
+                + Tables.EPISODES + "." + Episodes.SEASON + ","
+                + Tables.EPISODES + "." + Episodes.NUMBER + ","
+                + Tables.EPISODES + "." + Episodes.FIRSTAIREDMS
+                + " FROM " + Tables.LIST_ITEMS
+                + " LEFT OUTER JOIN " + Tables.EPISODES
+                + " ON " + Qualified.LIST_ITEMS_REF_ID + "=" + Qualified.EPISODES_ID
+                + " LEFT OUTER JOIN " + Tables.SHOWS
+                + " ON " + Qualified.EPISODES_SHOW_ID + "=" + Qualified.SHOWS_ID
+                + " WHERE " + Qualified.LIST_ITEMS_TYPE + "=" + ListItemTypes.EPISODE + " AND ";
+
+        String SHOW_COLUMNS_CHANGED = Shows.TITLE + "," + Shows.TITLE_NOARTICLE + ","
+                + Shows.POSTER + "," + Shows.NETWORK + "," + Shows.STATUS + ","
+                + Shows.FAVORITE + "," + Shows.RELEASE_WEEKDAY + "," + Shows.RELEASE_TIMEZONE + ","
+                + Shows.RELEASE_COUNTRY + "," + Shows.LASTWATCHED_MS + ","
+                + Shows.UNWATCHED_COUNT + "," + Shows.RELEASE_TIME + "," + Shows.NEXTEPISODE + ","
+                + Shows.NEXTAIRDATEMS;
+
+        String SEASON_COLUMNS_CHANGED = Seasons.COMBINED + "," + Shows.REF_SHOW_ID;
+
+        String EPISODE_COLUMNS_CHANGED = Episodes.TITLE + "," + Episodes.FIRSTAIREDMS + ","
+                + Episodes.SEASON + "," + Episodes.NUMBER + "," + Shows.REF_SHOW_ID;
+    }
+
     private static final String CREATE_LISTS_TABLE = "CREATE TABLE " + Tables.LISTS
             + " ("
 
@@ -560,10 +769,74 @@ public class SeriesGuideDatabase extends SQLiteOpenHelper {
             + "UNIQUE (" + ActivityColumns.EPISODE_TVDB_ID + ") ON CONFLICT REPLACE"
             + ");";
 
+    private static final String CREATE_EPISODE_OUTBOX_TABLE = "CREATE TABLE "
+            + Tables.EPISODE_OUTBOX
+            + " ("
+            + BaseColumns._ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+            + EpisodeOutboxColumns.SHOW_TVDB_ID + " INTEGER NOT NULL,"
+            + EpisodeOutboxColumns.SEASON + " INTEGER NOT NULL,"
+            + EpisodeOutboxColumns.NUMBER + " INTEGER NOT NULL,"
+            + EpisodeOutboxColumns.TYPE + " INTEGER NOT NULL,"
+            + EpisodeOutboxColumns.VALUE + " INTEGER NOT NULL,"
+            + EpisodeOutboxColumns.SEND_HEXAGON + " INTEGER NOT NULL DEFAULT 0,"
+            + EpisodeOutboxColumns.SEND_TRAKT + " INTEGER NOT NULL DEFAULT 0,"
+            + EpisodeOutboxColumns.ATTEMPTS + " INTEGER NOT NULL DEFAULT 0,"
+            // only the latest change of an episode needs to be sent
+            + "UNIQUE (" + EpisodeOutboxColumns.SHOW_TVDB_ID + ","
+            + EpisodeOutboxColumns.SEASON + "," + EpisodeOutboxColumns.NUMBER + ","
+            + EpisodeOutboxColumns.TYPE + ") ON CONFLICT REPLACE"
+            + ");";
+
+    private static final String CREATE_SHOW_STATS_TABLE = "CREATE TABLE " + Tables.SHOW_STATS
+            + " ("
+            + ShowStatsColumns.SHOW_TVDB_ID + " INTEGER PRIMARY KEY,"
+            + ShowStatsColumns.EPISODES + " INTEGER NOT NULL DEFAULT 0,"
+            + ShowStatsColumns.EPISODES_WATCHED + " INTEGER NOT NULL DEFAULT 0,"
+            + ShowStatsColumns.EPISODES_NO_SPECIALS + " INTEGER NOT NULL DEFAULT 0,"
+            + ShowStatsColumns.EPISODES_WATCHED_NO_SPECIALS + " INTEGER NOT NULL DEFAULT 0"
+            + ");";
+
+    private static final String CREATE_SYNC_REPORTS_TABLE = "CREATE TABLE " + Tables.SYNC_REPORTS
+            + " ("
+            + BaseColumns._ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+            + SyncReportsColumns.STARTED_AT + " INTEGER NOT NULL,"
+            + SyncReportsColumns.SYNC_TYPE + " TEXT NOT NULL,"
+            + SyncReportsColumns.RESULT + " TEXT NOT NULL,"
+            + SyncReportsColumns.DURATION_MS + " INTEGER NOT NULL DEFAULT 0,"
+            + SyncReportsColumns.JSON + " TEXT NOT NULL"
+            + ");";
+
+    private static final String CREATE_ID_MAPPINGS_TABLE = "CREATE TABLE " + Tables.ID_MAPPINGS
+            + " ("
+            + BaseColumns._ID + " INTEGER PRIMARY KEY,"
+            + IdMappingsColumns.TYPE + " INTEGER NOT NULL,"
+            + IdMappingsColumns.TVDB_ID + " INTEGER,"
+            + IdMappingsColumns.TMDB_ID + " INTEGER,"
+            + IdMappingsColumns.TRAKT_ID + " INTEGER,"
+            + IdMappingsColumns.IMDB_ID + " TEXT,"
+            + IdMappingsColumns.TRAKT_UPDATED_MS + " INTEGER NOT NULL DEFAULT 0"
+            + ");";
+
+    private static final String CREATE_INDEX_ID_MAPPINGS_TVDB = "CREATE INDEX IF NOT EXISTS "
+            + "idx_id_mappings_tvdb ON " + Tables.ID_MAPPINGS
+            + " (" + IdMappingsColumns.TYPE + "," + IdMappingsColumns.TVDB_ID + ")";
+
+    private static final String CREATE_INDEX_ID_MAPPINGS_TMDB = "CREATE INDEX IF NOT EXISTS "
+            + "idx_id_mappings_tmdb ON " + Tables.ID_MAPPINGS
+            + " (" + IdMappingsColumns.TYPE + "," + IdMappingsColumns.TMDB_ID + ")";
+
     private final Context context;
 
     public SeriesGuideDatabase(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, DATABASE_NAME);
+    }
+
+    /**
+     * @param name The database file name, or {@code null} for an in-memory database.
+     */
+    @VisibleForTesting
+    public SeriesGuideDatabase(Context context, @Nullable String name) {
+        super(context, name, null, DATABASE_VERSION);
         this.context = context;
     }
 
@@ -575,19 +848,48 @@ public class SeriesGuideDatabase extends SQLiteOpenHelper {
 
         db.execSQL(CREATE_EPISODES_TABLE);
 
+        createIndexes(db);
+
         if (AndroidUtils.isJellyBeanOrHigher()) {
             db.execSQL(CREATE_SEARCH_TABLE);
         } else {
             db.execSQL(CREATE_SEARCH_TABLE_API_ICS);
         }
 
+        createSearchTriggers(db);
+
         db.execSQL(CREATE_LISTS_TABLE);
 
         db.execSQL(CREATE_LIST_ITEMS_TABLE);
 
+        db.execSQL(CREATE_LIST_ITEM_DETAILS_TABLE);
+
+        createListItemDetailsIndexesAndTriggers(db);
+
         db.execSQL(CREATE_MOVIES_TABLE);
 
         db.execSQL(CREATE_ACTIVITY_TABLE);
+
+        db.execSQL(CREATE_EPISODE_OUTBOX_TABLE);
+
+        db.execSQL(CREATE_SHOW_STATS_TABLE);
+
+        db.execSQL(CREATE_SYNC_REPORTS_TABLE);
+
+        db.execSQL(CREATE_ID_MAPPINGS_TABLE);
+
+        createIdMappingsIndexes(db);
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        // fire search table delete trigger for rows replaced on conflict
+        db.execSQL("PRAGMA recursive_triggers = ON;");
+        if (!db.isReadOnly()) {
+            // a show import might have been interrupted
+            ensureBulkInsertEnded(db);
+        }
     }
 
     @Override
@@ -653,7 +955,21 @@ public class SeriesGuideDatabase extends SQLiteOpenHelper {
                 upgradeToForty(db, context);
             case DBVER_40_NOTIFY_PER_SHOW:
                 upgradeToFortyOne(db);
-                version = DBVER_41_EPISODE_LAST_UPDATED;
+            case DBVER_41_EPISODE_LAST_UPDATED:
+                upgradeToFortyTwo(db);
+            case DBVER_42_EPISODE_INDEXES:
+                upgradeToFortyThree(db);
+            case DBVER_43_SEARCH_TRIGGERS:
+                upgradeToFortyFour(db);
+            case DBVER_44_EPISODE_OUTBOX:
+                upgradeToFortyFive(db);
+            case DBVER_45_SHOW_STATS:
+                upgradeToFortySix(db);
+            case DBVER_46_SYNC_REPORTS:
+                upgradeToFortySeven(db);
+            case DBVER_47_LIST_ITEM_DETAILS:
+                upgradeToFortyEight(db);
+                version = DBVER_48_ID_MAPPINGS;
         }
 
         // drop all tables if version is not right
@@ -673,14 +989,234 @@ public class SeriesGuideDatabase extends SQLiteOpenHelper {
         db.execSQL("DROP TABLE IF EXISTS " + Tables.EPISODES);
         db.execSQL("DROP TABLE IF EXISTS " + Tables.LISTS);
         db.execSQL("DROP TABLE IF EXISTS " + Tables.LIST_ITEMS);
+        db.execSQL("DROP TABLE IF EXISTS " + Tables.LIST_ITEM_DETAILS);
         db.execSQL("DROP TABLE IF EXISTS " + Tables.MOVIES);
         db.execSQL("DROP TABLE IF EXISTS " + Tables.ACTIVITY);
+        db.execSQL("DROP TABLE IF EXISTS " + Tables.EPISODE_OUTBOX);
+        db.execSQL("DROP TABLE IF EXISTS " + Tables.SHOW_STATS);
+        db.execSQL("DROP TABLE IF EXISTS " + Tables.SYNC_REPORTS);
+        db.execSQL("DROP TABLE IF EXISTS " + Tables.ID_MAPPINGS);
 
         db.execSQL("DROP TABLE IF EXISTS " + Tables.EPISODES_SEARCH);
 
         onCreate(db);
     }
 
+    /**
+     * See {@link #DBVER_48_ID_MAPPINGS}.
+     */
+    private static void upgradeToFortyEight(SQLiteDatabase db) {
+        if (!isTableExisting(db, Tables.ID_MAPPINGS)) {
+            db.execSQL(CREATE_ID_MAPPINGS_TABLE);
+        }
+        createIdMappingsIndexes(db);
+    }
+
+    private static void createIdMappingsIndexes(SQLiteDatabase db) {
+        db.execSQL(CREATE_INDEX_ID_MAPPINGS_TVDB);
+        db.execSQL(CREATE_INDEX_ID_MAPPINGS_TMDB);
+    }
+
+    /**
+     * See {@link #DBVER_47_LIST_ITEM_DETAILS}.
+     */
+    private static void upgradeToFortySeven(SQLiteDatabase db) {
+        if (!isTableExisting(db, Tables.LIST_ITEM_DETAILS)) {
+            db.execSQL(CREATE_LIST_ITEM_DETAILS_TABLE);
+        }
+        createListItemDetailsIndexesAndTriggers(db);
+        rebuildListItemDetails(db);
+    }
+
+    /**
+     * Calls {@link #endBulkInsert(SQLiteDatabase)} if the indexes and triggers dropped by {@link
+     * #beginBulkInsert(SQLiteDatabase)} are missing. They are all dropped in one transaction, so
+     * only checks for one of them.
+     */
+    private static void ensureBulkInsertEnded(SQLiteDatabase db) {
+        long triggers = DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM sqlite_master"
+                + " WHERE type='trigger' AND name='episodes_search_insert'", null);
+        if (triggers > 0) {
+            return;
+        }
+        Timber.w("ensureBulkInsertEnded: bulk insert was not ended, restoring");
+        db.beginTransaction();
+        try {
+            endBulkInsert(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * See {@link #DBVER_46_SYNC_REPORTS}.
+     */
+    private static void upgradeToFortySix(SQLiteDatabase db) {
+        if (!isTableExisting(db, Tables.SYNC_REPORTS)) {
+            db.execSQL(CREATE_SYNC_REPORTS_TABLE);
+        }
+    }
+
+    /**
+     * See {@link #DBVER_45_SHOW_STATS}.
+     */
+    private static void upgradeToFortyFive(SQLiteDatabase db) {
+        if (!isTableExisting(db, Tables.SHOW_STATS)) {
+            db.execSQL(CREATE_SHOW_STATS_TABLE);
+        }
+        updateShowStats(db, null);
+    }
+
+    /**
+     * See {@link #DBVER_44_EPISODE_OUTBOX}.
+     */
+    private static void upgradeToFortyFour(SQLiteDatabase db) {
+        if (!isTableExisting(db, Tables.EPISODE_OUTBOX)) {
+            db.execSQL(CREATE_EPISODE_OUTBOX_TABLE);
+        }
+    }
+
+    /**
+     * See {@link #DBVER_43_SEARCH_TRIGGERS}.
+     */
+    private static void upgradeToFortyThree(SQLiteDatabase db) {
+        createSearchTriggers(db);
+        // the search table was only renewed after syncing, populate it once more
+        rebuildFtsTable(db);
+    }
+
+    private static void createSearchTriggers(SQLiteDatabase db) {
+        db.execSQL(CREATE_TRIGGER_SEARCH_INSERT);
+        db.execSQL(CREATE_TRIGGER_SEARCH_DELETE);
+        db.execSQL(CREATE_TRIGGER_SEARCH_BEFORE_UPDATE);
+        db.execSQL(CREATE_TRIGGER_SEARCH_AFTER_UPDATE);
+    }
+
+    private static void createListItemDetailsIndexesAndTriggers(SQLiteDatabase db) {
+        db.execSQL(CREATE_INDEX_LIST_ITEM_DETAILS_LIST);
+        db.execSQL(CREATE_INDEX_LIST_ITEMS_REF);
+
+        // list items: the row of the changed list item
+        String newListItem = Tables.LIST_ITEMS + "." + ListItems._ID + "=new." + ListItems._ID;
+        db.execSQL(buildListItemDetailsTrigger("list_item_details_listitems_insert", "INSERT",
+                Tables.LIST_ITEMS, ListItemDetails.SHOWS + newListItem + ";"
+                        + ListItemDetails.SEASONS + newListItem + ";"
+                        + ListItemDetails.EPISODES + newListItem + ";"));
+        db.execSQL(buildListItemDetailsTrigger("list_item_details_listitems_update", "UPDATE",
+                Tables.LIST_ITEMS, deleteListItemDetails("old")
+                        + ListItemDetails.SHOWS + newListItem + ";"
+                        + ListItemDetails.SEASONS + newListItem + ";"
+                        + ListItemDetails.EPISODES + newListItem + ";"));
+        db.execSQL(buildListItemDetailsTrigger("list_item_details_listitems_delete", "DELETE",
+                Tables.LIST_ITEMS, deleteListItemDetails("old")));
+
+        createListItemDetailsSourceTriggers(db);
+    }
+
+    /**
+     * Triggers refreshing rows of {@link Tables#LIST_ITEM_DETAILS} if a show, season or episode
+     * they display is inserted, deleted or one of its displayed columns changes. So updates of
+     * other columns, like watched flags of episodes, do not fire them.
+     */
+    private static void createListItemDetailsSourceTriggers(SQLiteDatabase db) {
+        db.execSQL(buildListItemDetailsTrigger("list_item_details_series_insert", "INSERT",
+                Tables.SHOWS, refreshShowListItems("new")));
+        db.execSQL(buildListItemDetailsTrigger("list_item_details_series_update",
+                "UPDATE OF " + ListItemDetails.SHOW_COLUMNS_CHANGED,
+                Tables.SHOWS, refreshShowListItems("new")));
+        db.execSQL(buildListItemDetailsTrigger("list_item_details_series_delete", "DELETE",
+                Tables.SHOWS, refreshShowListItems("old")));
+
+        db.execSQL(buildListItemDetailsTrigger("list_item_details_seasons_insert", "INSERT",
+                Tables.SEASONS, refreshSeasonListItems("new")));
+        db.execSQL(buildListItemDetailsTrigger("list_item_details_seasons_update",
+                "UPDATE OF " + ListItemDetails.SEASON_COLUMNS_CHANGED,
+                Tables.SEASONS, refreshSeasonListItems("new")));
+        db.execSQL(buildListItemDetailsTrigger("list_item_details_seasons_delete", "DELETE",
+                Tables.SEASONS, refreshSeasonListItems("old")));
+
+        db.execSQL(buildListItemDetailsTrigger("list_item_details_episodes_insert", "INSERT",
+                Tables.EPISODES, refreshEpisodeListItems("new")));
+        db.execSQL(buildListItemDetailsTrigger("list_item_details_episodes_update",
+                "UPDATE OF " + ListItemDetails.EPISODE_COLUMNS_CHANGED,
+                Tables.EPISODES, refreshEpisodeListItems("new")));
+        db.execSQL(buildListItemDetailsTrigger("list_item_details_episodes_delete", "DELETE",
+                Tables.EPISODES, refreshEpisodeListItems("old")));
+    }
+
+    private static void dropListItemDetailsSourceTriggers(SQLiteDatabase db) {
+        String[] tables = { Tables.SHOWS, Tables.SEASONS, Tables.EPISODES };
+        String[] events = { "insert", "update", "delete" };
+        for (String table : tables) {
+            for (String event : events) {
+                db.execSQL("DROP TRIGGER IF EXISTS list_item_details_" + table + "_" + event);
+            }
+        }
+    }
+
+    private static String buildListItemDetailsTrigger(String name, String event, String table,
+            String statements) {
+        return "CREATE TRIGGER IF NOT EXISTS " + name + " AFTER " + event + " ON " + table
+                + " BEGIN " + statements + " END;";
+    }
+
+    private static String deleteListItemDetails(String row) {
+        return "DELETE FROM " + Tables.LIST_ITEM_DETAILS
+                + " WHERE " + BaseColumns._ID + "=" + row + "." + ListItems._ID + ";";
+    }
+
+    /**
+     * Refreshes list items of the show, its seasons and its episodes. The latter display columns
+     * of the show, e.g. its title. List item reference ids are text, so ids are cast to use the
+     * index on them.
+     */
+    private static String refreshShowListItems(String row) {
+        String showId = "CAST(" + row + "." + Shows._ID + " AS TEXT)";
+        return ListItemDetails.SHOWS + Qualified.LIST_ITEMS_REF_ID + "=" + showId + ";"
+                + ListItemDetails.SEASONS + Qualified.LIST_ITEMS_REF_ID + " IN ("
+                + "SELECT CAST(" + Seasons._ID + " AS TEXT) FROM " + Tables.SEASONS
+                + " WHERE " + Shows.REF_SHOW_ID + "=" + showId + ");"
+                + ListItemDetails.EPISODES + Qualified.LIST_ITEMS_REF_ID + " IN ("
+                + "SELECT CAST(" + Episodes._ID + " AS TEXT) FROM " + Tables.EPISODES
+                + " WHERE " + Shows.REF_SHOW_ID + "=" + showId + ");";
+    }
+
+    private static String refreshSeasonListItems(String row) {
+        return ListItemDetails.SEASONS + Qualified.LIST_ITEMS_REF_ID
+                + "=CAST(" + row + "." + Seasons._ID + " AS TEXT);";
+    }
+
+    /**
+     * Refreshes list items of the episode and, only if it is the next episode of its show, of the
+     * show, which display its title, season and number. So storing all episodes of a show does
+     * not refresh the show once per episode.
+     */
+    private static String refreshEpisodeListItems(String row) {
+        return ListItemDetails.EPISODES + Qualified.LIST_ITEMS_REF_ID
+                + "=CAST(" + row + "." + Episodes._ID + " AS TEXT);"
+                + ListItemDetails.SHOWS + Qualified.LIST_ITEMS_REF_ID
+                + "=CAST(" + row + "." + Shows.REF_SHOW_ID + " AS TEXT)"
+                + " AND " + Qualified.SHOWS_NEXT_EPISODE + "=" + row + "." + Episodes._ID + ";";
+    }
+
+    /**
+     * See {@link #DBVER_42_EPISODE_INDEXES}.
+     */
+    private static void upgradeToFortyTwo(SQLiteDatabase db) {
+        createIndexes(db);
+        // collect statistics so the query planner picks the new indexes
+        db.execSQL("ANALYZE;");
+    }
+
+    private static void createIndexes(SQLiteDatabase db) {
+        db.execSQL(CREATE_INDEX_EPISODES_SHOW_NUMBER);
+        db.execSQL(CREATE_INDEX_EPISODES_SHOW_RELEASE);
+        db.execSQL(CREATE_INDEX_EPISODES_SEASON_WATCHED);
+        db.execSQL(CREATE_INDEX_EPISODES_RELEASE);
+        db.execSQL(CREATE_INDEX_SEASONS_SHOW);
+    }
+
     /**
      * See {@link #DBVER_41_EPISODE_LAST_UPDATED}.
      */
@@ -1163,9 +1699,535 @@ public class SeriesGuideDatabase extends SQLiteOpenHelper {
                 + " INTEGER DEFAULT 0;");
     }
 
+    /**
+     * Computes the next episode, its release time and the unwatched episode count of the given
+     * shows, or of all shows if none are given, using a single statement.
+     *
+     * <p> The next episode is the unwatched episode released closest after the last watched
+     * episode, or at the same time but with a different number. If there is no last watched
+     * episode, all episodes starting with specials are considered.
+     *
+     * <p> The next episode is searched only once per show, its release time is then looked up by
+     * id with a second statement in the same transaction.
+     *
+     * @return The number of shows updated.
+     */
+    public static int updateNextEpisodes(SQLiteDatabase db, @Nullable int[] showTvdbIds,
+            boolean isHidingSpecials, boolean isNoReleasedEpisodes, long currentTime) {
+        SQLiteStatement statement = db.compileStatement(buildUpdateNextEpisodesSql(showTvdbIds,
+                isHidingSpecials, isNoReleasedEpisodes, currentTime));
+        SQLiteStatement releaseTimeStatement = db.compileStatement(
+                buildUpdateNextReleaseTimeSql(showTvdbIds));
+        db.beginTransaction();
+        try {
+            int count = statement.executeUpdateDelete();
+            releaseTimeStatement.executeUpdateDelete();
+            db.setTransactionSuccessful();
+            return count;
+        } finally {
+            db.endTransaction();
+            statement.close();
+            releaseTimeStatement.close();
+        }
+    }
+
+    /**
+     * Counts all and watched episodes, with and without specials, of the given shows, or of all
+     * shows if none are given, and stores them in {@link Tables#SHOW_STATS}.
+     */
+    public static void updateShowStats(SQLiteDatabase db, @Nullable int[] showTvdbIds) {
+        String showIds = null;
+        String showIdsAsText = null;
+        if (showTvdbIds != null) {
+            if (showTvdbIds.length == 0) {
+                return;
+            }
+            StringBuilder ids = new StringBuilder();
+            StringBuilder idsAsText = new StringBuilder();
+            for (int i = 0; i < showTvdbIds.length; i++) {
+                if (i > 0) {
+                    ids.append(",");
+                    idsAsText.append(",");
+                }
+                ids.append(showTvdbIds[i]);
+                // compare as text to be able to use the show id index on episodes
+                idsAsText.append("'").append(showTvdbIds[i]).append("'");
+            }
+            showIds = ids.toString();
+            showIdsAsText = idsAsText.toString();
+        }
+
+        db.beginTransaction();
+        try {
+            db.execSQL("DELETE FROM " + Tables.SHOW_STATS
+                    + (showIds == null ? ""
+                    : " WHERE " + ShowStatsColumns.SHOW_TVDB_ID + " IN (" + showIds + ")"));
+            db.execSQL("INSERT INTO " + Tables.SHOW_STATS + " ("
+                    + ShowStatsColumns.SHOW_TVDB_ID + ","
+                    + ShowStatsColumns.EPISODES + ","
+                    + ShowStatsColumns.EPISODES_WATCHED + ","
+                    + ShowStatsColumns.EPISODES_NO_SPECIALS + ","
+                    + ShowStatsColumns.EPISODES_WATCHED_NO_SPECIALS + ")"
+                    + " SELECT " + Shows.REF_SHOW_ID + ","
+                    + "COUNT(*),"
+                    + "SUM(" + Episodes.SELECTION_WATCHED + "),"
+                    + "SUM(" + Episodes.SELECTION_NO_SPECIALS + "),"
+                    + "SUM(" + Episodes.SELECTION_WATCHED + " AND "
+                    + Episodes.SELECTION_NO_SPECIALS + ")"
+                    + " FROM " + Tables.EPISODES
+                    + (showIdsAsText == null ? ""
+                    : " WHERE " + Shows.REF_SHOW_ID + " IN (" + showIdsAsText + ")")
+                    + " GROUP BY " + Shows.REF_SHOW_ID);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Writes the given flag values to the episodes matching the selection. If the change should be
+     * sent to Hexagon or trakt, adds the same episodes to the episode outbox in the same
+     * transaction, so the outbox always matches the episodes that were changed.
+     *
+     * @param outboxType Either {@link SeriesGuideContract.EpisodeOutbox#TYPE_WATCHED} or {@link
+     * SeriesGuideContract.EpisodeOutbox#TYPE_COLLECTED}.
+     * @return The number of updated episodes.
+     */
+    public static int flagEpisodes(SQLiteDatabase db, @Nullable String selection,
+            @Nullable String[] selectionArgs, ContentValues values, int outboxType,
+            int outboxValue, boolean sendToHexagon, boolean sendToTrakt) {
+        String where = selection == null || selection.length() == 0 ? ""
+                : " WHERE " + selection;
+        int count;
+        db.beginTransaction();
+        try {
+            if (sendToHexagon || sendToTrakt) {
+                // episodes must be selected before they are flagged, the selection might no
+                // longer match them afterwards
+                db.execSQL("INSERT INTO " + Tables.EPISODE_OUTBOX + " ("
+                        + EpisodeOutboxColumns.SHOW_TVDB_ID + ","
+                        + EpisodeOutboxColumns.SEASON + ","
+                        + EpisodeOutboxColumns.NUMBER + ","
+                        + EpisodeOutboxColumns.TYPE + ","
+                        + EpisodeOutboxColumns.VALUE + ","
+                        + EpisodeOutboxColumns.SEND_HEXAGON + ","
+                        + EpisodeOutboxColumns.SEND_TRAKT + ")"
+                        + " SELECT " + Shows.REF_SHOW_ID + ","
+                        + Episodes.SEASON + ","
+                        + Episodes.NUMBER + ","
+                        + outboxType + ","
+                        + outboxValue + ","
+                        + (sendToHexagon ? 1 : 0) + ","
+                        + (sendToTrakt ? 1 : 0)
+                        + " FROM " + Tables.EPISODES + where,
+                        selectionArgs == null ? new String[0] : selectionArgs);
+            }
+            // watched counts of show stats change with the watched flag
+            int[] statsShowTvdbIds = values.containsKey(Episodes.WATCHED)
+                    ? getShowIdsOfEpisodes(db, selection, selectionArgs) : null;
+            count = db.update(Tables.EPISODES, values, selection, selectionArgs);
+            if (count > 0 && statsShowTvdbIds != null) {
+                updateShowStats(db, statsShowTvdbIds);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the TVDb ids of the shows of all episodes matching the selection.
+     */
+    public static int[] getShowIdsOfEpisodes(SQLiteDatabase db, @Nullable String selection,
+            @Nullable String[] selectionArgs) {
+        Cursor query = db.query(true, Tables.EPISODES, new String[] { Shows.REF_SHOW_ID },
+                selection, selectionArgs, null, null, null, null);
+        try {
+            int[] showTvdbIds = new int[query.getCount()];
+            for (int i = 0; query.moveToNext(); i++) {
+                showTvdbIds[i] = query.getInt(0);
+            }
+            return showTvdbIds;
+        } finally {
+            query.close();
+        }
+    }
+
+    /**
+     * Stores the given id mappings in a single transaction. Each must have a {@link
+     * IdMappingsColumns#TYPE} and the id identifying its type, others are skipped. If there is a
+     * mapping for that id only the given columns are replaced, so ids learned from other services
+     * are kept.
+     *
+     * @return The number of mappings inserted or updated.
+     */
+    public static int putIdMappings(SQLiteDatabase db, List<ContentValues> mappings) {
+        int count = 0;
+        String[] selectionArgs = new String[2];
+        db.beginTransaction();
+        try {
+            for (ContentValues values : mappings) {
+                Integer type = values.getAsInteger(IdMappingsColumns.TYPE);
+                if (type == null) {
+                    continue;
+                }
+                String idColumn = type == IdMappingTypes.SHOW
+                        ? IdMappingsColumns.TVDB_ID : IdMappingsColumns.TMDB_ID;
+                String id = values.getAsString(idColumn);
+                if (id == null) {
+                    continue;
+                }
+                selectionArgs[0] = String.valueOf(type);
+                selectionArgs[1] = id;
+                int updated = db.update(Tables.ID_MAPPINGS, values,
+                        IdMappingsColumns.TYPE + "=? AND " + idColumn + "=?", selectionArgs);
+                if (updated > 0 || db.insert(Tables.ID_MAPPINGS, null, values) != -1) {
+                    count++;
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return count;
+    }
+
+    /**
+     * Selects {@link Tables#LIST_ITEMS} of a show, its seasons and its episodes. Pass the show
+     * TVDb id three times as selection arguments.
+     */
+    public static final String SELECTION_LIST_ITEMS_OF_SHOW =
+            "(" + ListItems.SELECTION_SHOWS + " AND " + ListItems.ITEM_REF_ID + "=?)"
+                    + " OR (" + ListItems.SELECTION_SEASONS + " AND "
+                    + ListItems.ITEM_REF_ID + " IN (SELECT " + Seasons._ID
+                    + " FROM " + Tables.SEASONS + " WHERE " + Shows.REF_SHOW_ID + "=?))"
+                    + " OR (" + ListItems.SELECTION_EPISODES + " AND "
+                    + ListItems.ITEM_REF_ID + " IN (SELECT " + Episodes._ID
+                    + " FROM " + Tables.EPISODES + " WHERE " + Shows.REF_SHOW_ID + "=?))";
+
+    /**
+     * Removes a show with all its seasons and episodes, list items of any of them, its activity
+     * and stats in a single transaction. Uses one statement per table, so takes about the same time
+     * regardless of the number of episodes. Search table rows are removed by the episode delete
+     * trigger, see {@link #CREATE_TRIGGER_SEARCH_DELETE}.
+     *
+     * @return The number of shows, seasons and episodes removed.
+     */
+    public static int deleteShow(SQLiteDatabase db, int showTvdbId) {
+        String[] showIdArg = new String[] { String.valueOf(showTvdbId) };
+        int count = 0;
+        db.beginTransaction();
+        try {
+            // list items reference seasons and episodes, so remove them first
+            db.delete(Tables.LIST_ITEMS, SELECTION_LIST_ITEMS_OF_SHOW,
+                    new String[] { showIdArg[0], showIdArg[0], showIdArg[0] });
+            db.delete(Tables.ACTIVITY, ActivityColumns.SHOW_TVDB_ID + "=?", showIdArg);
+            db.delete(Tables.SHOW_STATS, ShowStatsColumns.SHOW_TVDB_ID + "=?", showIdArg);
+            count += db.delete(Tables.EPISODES, Shows.REF_SHOW_ID + "=?", showIdArg);
+            count += db.delete(Tables.SEASONS, Shows.REF_SHOW_ID + "=?", showIdArg);
+            count += db.delete(Tables.SHOWS, Shows._ID + "=?", showIdArg);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return count;
+    }
+
+    /**
+     * Builds a query returning all {@link SeriesGuideContract.Stats} columns in a single row.
+     * Episode counts are read from {@link Tables#SHOW_STATS}, so the query does not need to read
+     * any episodes.
+     */
+    @VisibleForTesting
+    public static String buildStatsQuery(boolean isHidingSpecials) {
+        String episodes = isHidingSpecials ? ShowStatsColumns.EPISODES_NO_SPECIALS
+                : ShowStatsColumns.EPISODES;
+        String episodesWatched = isHidingSpecials ? ShowStatsColumns.EPISODES_WATCHED_NO_SPECIALS
+                : ShowStatsColumns.EPISODES_WATCHED;
+        String showStats = "SELECT "
+                + "COUNT(*) AS " + Stats.SHOWS + ","
+                + "IFNULL(SUM(" + Shows.STATUS + "=" + ShowTools.Status.CONTINUING + "),0)"
+                + " AS " + Stats.SHOWS_CONTINUING + ","
+                // next episode id is empty or 0 if there is none
+                + "IFNULL(SUM(IFNULL(CAST(" + Shows.NEXTEPISODE + " AS INTEGER),0)!=0),0)"
+                + " AS " + Stats.SHOWS_WITH_NEXT_EPISODE + ","
+                + "IFNULL(SUM(" + episodes + "),0) AS " + Stats.EPISODES + ","
+                + "IFNULL(SUM(" + episodesWatched + "),0) AS " + Stats.EPISODES_WATCHED + ","
+                + "IFNULL(SUM(" + episodesWatched + "*" + Shows.RUNTIME + "),0)"
+                + " AS " + Stats.EPISODES_WATCHED_RUNTIME
+                + " FROM " + Tables.SHOWS + " LEFT OUTER JOIN " + Tables.SHOW_STATS
+                + " ON " + Qualified.SHOWS_ID + "=" + ShowStatsColumns.SHOW_TVDB_ID;
+        String movieStats = "SELECT "
+                + "COUNT(*) AS " + Stats.MOVIES + ","
+                + "IFNULL(SUM(" + Movies.IN_WATCHLIST + "=1),0) AS " + Stats.MOVIES_WATCHLIST + ","
+                + "IFNULL(SUM(CASE WHEN " + Movies.IN_WATCHLIST + "=1 THEN " + Movies.RUNTIME_MIN
+                + " ELSE 0 END),0) AS " + Stats.MOVIES_WATCHLIST_RUNTIME
+                + " FROM " + Tables.MOVIES;
+        return "SELECT * FROM (" + showStats + "),(" + movieStats + ")";
+    }
+
+    @VisibleForTesting
+    public static String buildUpdateNextEpisodesSql(@Nullable int[] showTvdbIds,
+            boolean isHidingSpecials, boolean isNoReleasedEpisodes, long currentTime) {
+        // values of the last watched episode, or defaults if there is none
+        String lastEpisode = "(SELECT %s FROM " + Tables.EPISODES
+                + " WHERE " + Episodes._ID + "=" + Qualified.SHOWS_LAST_EPISODE + ")";
+        String lastSeason = "IFNULL(" + String.format(lastEpisode, Episodes.SEASON) + ",-1)";
+        String lastNumber = "IFNULL(" + String.format(lastEpisode, Episodes.NUMBER) + ",-1)";
+        String lastRelease = "IFNULL(" + String.format(lastEpisode, Episodes.FIRSTAIREDMS) + ","
+                + Long.MIN_VALUE + ")";
+
+        // compare as text to be able to use the show id index on episodes
+        String ofShow = Qualified.EPISODES_SHOW_ID + "=CAST(" + Qualified.SHOWS_ID + " AS TEXT)";
+
+        StringBuilder nextSelection = new StringBuilder(ofShow)
+                .append(" AND ").append(Episodes.WATCHED).append("=0 AND (")
+                .append("(").append(Episodes.FIRSTAIREDMS).append("=").append(lastRelease)
+                .append(" AND (").append(Episodes.NUMBER).append("!=").append(lastNumber)
+                .append(" OR ").append(Episodes.SEASON).append("!=").append(lastSeason)
+                .append(")) OR ").append(Episodes.FIRSTAIREDMS).append(">").append(lastRelease)
+                .append(")");
+        if (isHidingSpecials) {
+            nextSelection.append(" AND ").append(Episodes.SELECTION_NO_SPECIALS);
+        }
+        if (isNoReleasedEpisodes) {
+            nextSelection.append(" AND ").append(Episodes.FIRSTAIREDMS).append(">=")
+                    .append(currentTime);
+        } else {
+            nextSelection.append(" AND ").append(Episodes.FIRSTAIREDMS).append("!=-1");
+        }
+        String nextEpisode = "(SELECT " + Episodes._ID + " FROM " + Tables.EPISODES
+                + " WHERE " + nextSelection
+                + " ORDER BY " + Episodes.FIRSTAIREDMS + " ASC," + Episodes.SEASON + " ASC,"
+                + Episodes.NUMBER + " ASC LIMIT 1)";
+
+        StringBuilder sql = new StringBuilder("UPDATE ").append(Tables.SHOWS).append(" SET ")
+                .append(Shows.NEXTEPISODE).append("=IFNULL(").append(nextEpisode).append(",''),")
+                .append(Shows.UNWATCHED_COUNT).append("=(SELECT COUNT(*) FROM ")
+                .append(Tables.EPISODES).append(" WHERE ").append(ofShow)
+                .append(" AND ").append(Episodes.WATCHED).append("=0")
+                .append(" AND ").append(Episodes.FIRSTAIREDMS).append("!=-1")
+                .append(" AND ").append(Episodes.FIRSTAIREDMS).append("<=").append(currentTime)
+                .append(" AND ").append(Episodes.SELECTION_NO_SPECIALS).append(")");
+        appendShowIdSelection(sql, showTvdbIds);
+        return sql.toString();
+    }
+
+    /**
+     * Sets the next release time of the given shows, or of all shows if none are given, to the
+     * release time of the next episode stored by {@link #buildUpdateNextEpisodesSql}.
+     */
+    @VisibleForTesting
+    public static String buildUpdateNextReleaseTimeSql(@Nullable int[] showTvdbIds) {
+        StringBuilder sql = new StringBuilder("UPDATE ").append(Tables.SHOWS).append(" SET ")
+                .append(Shows.NEXTAIRDATEMS).append("=IFNULL((SELECT ")
+                .append(Episodes.FIRSTAIREDMS).append(" FROM ").append(Tables.EPISODES)
+                .append(" WHERE ").append(Qualified.EPISODES_ID).append("=")
+                .append(Qualified.SHOWS_NEXT_EPISODE).append("),")
+                .append(DBUtils.UNKNOWN_NEXT_RELEASE_DATE).append(")");
+        appendShowIdSelection(sql, showTvdbIds);
+        return sql.toString();
+    }
+
+    private static void appendShowIdSelection(StringBuilder sql, @Nullable int[] showTvdbIds) {
+        if (showTvdbIds != null) {
+            sql.append(" WHERE ").append(Shows._ID).append(" IN (");
+            for (int i = 0; i < showTvdbIds.length; i++) {
+                if (i > 0) {
+                    sql.append(",");
+                }
+                sql.append(showTvdbIds[i]);
+            }
+            sql.append(")");
+        }
+    }
+
+    /**
+     * Drops indexes, search and list item details triggers before inserting a large number of
+     * seasons and episodes, e.g. when restoring a backup. Call {@link
+     * #endBulkInsert(SQLiteDatabase)} once done to restore them, in the same or a later
+     * transaction. If it is never called, e.g. because the process was killed while inserting,
+     * {@link #onOpen(SQLiteDatabase)} restores them, see {@link #ensureBulkInsertEnded}.
+     */
+    public static void beginBulkInsert(SQLiteDatabase db) {
+        db.execSQL("DROP INDEX IF EXISTS idx_episodes_show_number");
+        db.execSQL("DROP INDEX IF EXISTS idx_episodes_show_release");
+        db.execSQL("DROP INDEX IF EXISTS idx_episodes_season_watched");
+        db.execSQL("DROP INDEX IF EXISTS idx_episodes_release");
+        db.execSQL("DROP INDEX IF EXISTS idx_seasons_show");
+        db.execSQL("DROP TRIGGER IF EXISTS episodes_search_insert");
+        db.execSQL("DROP TRIGGER IF EXISTS episodes_search_delete");
+        db.execSQL("DROP TRIGGER IF EXISTS episodes_search_before_update");
+        db.execSQL("DROP TRIGGER IF EXISTS episodes_search_after_update");
+        dropListItemDetailsSourceTriggers(db);
+    }
+
+    /**
+     * Re-creates indexes and triggers dropped by {@link #beginBulkInsert(SQLiteDatabase)}, then
+     * rebuilds the search table, show stats and list item details from the inserted data.
+     */
+    public static void endBulkInsert(SQLiteDatabase db) {
+        createIndexes(db);
+        createSearchTriggers(db);
+        createListItemDetailsSourceTriggers(db);
+        rebuildFtsTable(db);
+        updateShowStats(db, null);
+        rebuildListItemDetails(db);
+    }
+
+    /**
+     * Calls {@link #endBulkInsert(SQLiteDatabase)} if the indexes and triggers dropped by {@link
+     * #beginBulkInsert(SQLiteDatabase)} are missing. They are all dropped in one transaction, so
+     * only checks for one of them.
+     */
+    private static void ensureBulkInsertEnded(SQLiteDatabase db) {
+        long triggers = DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM sqlite_master"
+                + " WHERE type='trigger' AND name='episodes_search_insert'", null);
+        if (triggers > 0) {
+            return;
+        }
+        Timber.w("ensureBulkInsertEnded: bulk insert was not ended, restoring");
+        db.beginTransaction();
+        try {
+            endBulkInsert(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Season columns written by {@link #insertShows}. Each season must have values for all of them.
+     */
+    static final String[] IMPORT_SEASON_COLUMNS = {
+            Seasons._ID,
+            Shows.REF_SHOW_ID,
+            Seasons.COMBINED
+    };
+
+    /**
+     * Episode columns written by {@link #insertShows}. Each episode must have values for all of
+     * them.
+     */
+    static final String[] IMPORT_EPISODE_COLUMNS = {
+            Episodes._ID,
+            Shows.REF_SHOW_ID,
+            Seasons.REF_SEASON_ID,
+            Episodes.NUMBER,
+            Episodes.ABSOLUTE_NUMBER,
+            Episodes.SEASON,
+            Episodes.TITLE,
+            Episodes.WATCHED,
+            Episodes.COLLECTED,
+            Episodes.FIRSTAIREDMS,
+            Episodes.IMDBID,
+            Episodes.RATING_USER,
+            Episodes.DVDNUMBER,
+            Episodes.OVERVIEW,
+            Episodes.IMAGE,
+            Episodes.WRITERS,
+            Episodes.GUESTSTARS,
+            Episodes.DIRECTORS,
+            Episodes.RATING_GLOBAL,
+            Episodes.RATING_VOTES,
+            Episodes.LAST_EDITED
+    };
+
+    /**
+     * Inserts a batch of shows, seasons and episodes in a single transaction, using compiled
+     * statements for seasons and episodes, see {@link #IMPORT_SEASON_COLUMNS} and {@link
+     * #IMPORT_EPISODE_COLUMNS}. Like bulk inserts, existing rows are replaced, so the last one
+     * wins if a backup file has duplicates.
+     *
+     * @return The number of shows, seasons and episodes inserted.
+     */
+    public static int insertShows(SQLiteDatabase db, List<ContentValues> shows,
+            List<ContentValues> seasons, List<ContentValues> episodes) {
+        int count = 0;
+        db.beginTransaction();
+        SQLiteStatement insertSeason = null;
+        SQLiteStatement insertEpisode = null;
+        try {
+            for (ContentValues values : shows) {
+                if (db.replace(Tables.SHOWS, null, values) != -1) {
+                    count++;
+                }
+            }
+            insertSeason = db.compileStatement(
+                    buildInsertOrReplace(Tables.SEASONS, IMPORT_SEASON_COLUMNS));
+            for (ContentValues values : seasons) {
+                bindValues(insertSeason, IMPORT_SEASON_COLUMNS, values);
+                if (insertSeason.executeInsert() != -1) {
+                    count++;
+                }
+            }
+            insertEpisode = db.compileStatement(
+                    buildInsertOrReplace(Tables.EPISODES, IMPORT_EPISODE_COLUMNS));
+            for (ContentValues values : episodes) {
+                bindValues(insertEpisode, IMPORT_EPISODE_COLUMNS, values);
+                if (insertEpisode.executeInsert() != -1) {
+                    count++;
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            if (insertSeason != null) {
+                insertSeason.close();
+            }
+            if (insertEpisode != null) {
+                insertEpisode.close();
+            }
+        }
+        return count;
+    }
+
+    private static void bindValues(SQLiteStatement statement, String[] columns,
+            ContentValues values) {
+        statement.clearBindings();
+        for (int i = 0; i < columns.length; i++) {
+            DatabaseUtils.bindObjectToProgram(statement, i + 1, values.get(columns[i]));
+        }
+    }
+
+    private static String buildInsertOrReplace(String table, String[] columns) {
+        StringBuilder sql = new StringBuilder("INSERT OR REPLACE INTO ").append(table)
+                .append(" (");
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i > 0 ? "," : "").append(columns[i]);
+        }
+        sql.append(") VALUES (");
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i > 0 ? ",?" : "?");
+        }
+        return sql.append(")").toString();
+    }
+
+    /**
+     * Re-populates {@link Tables#LIST_ITEM_DETAILS} with current data of all list items and their
+     * shows, seasons and episodes.
+     *
+     * <p> The table is kept up to date by triggers, so this is only required to repair it.
+     */
+    public static void rebuildListItemDetails(SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            db.execSQL("DELETE FROM " + Tables.LIST_ITEM_DETAILS);
+            db.execSQL(ListItemDetails.SHOWS + "1");
+            db.execSQL(ListItemDetails.SEASONS + "1");
+            db.execSQL(ListItemDetails.EPISODES + "1");
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
     /**
      * Drops the current {@link Tables#EPISODES_SEARCH} table and re-creates it with current data
      * from {@link Tables#EPISODES}.
+     *
+     * <p> The table is kept up to date by triggers, so this is only required to repair it.
      */
     public static void rebuildFtsTable(SQLiteDatabase db) {
         if (!recreateFtsTable(db)) {
@@ -15,30 +15,155 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 import android.net.Uri;
+import android.os.Bundle;
 import android.preference.PreferenceManager;
 import android.provider.BaseColumns;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import com.battlelancer.seriesguide.SgApp;
+import com.battlelancer.seriesguide.sync.SyncTracer;
 import com.battlelancer.seriesguide.ui.SeriesGuidePreferences;
 import com.battlelancer.seriesguide.util.SelectionBuilder;
+import com.battlelancer.seriesguide.util.collections.IntSet;
 import java.util.ArrayList;
 import java.util.Arrays;
 import timber.log.Timber;
 
 import static com.battlelancer.seriesguide.provider.SeriesGuideContract.Activity;
+import static com.battlelancer.seriesguide.provider.SeriesGuideContract.EpisodeOutbox;
 import static com.battlelancer.seriesguide.provider.SeriesGuideContract.EpisodeSearch;
 import static com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
+import static com.battlelancer.seriesguide.provider.SeriesGuideContract.IdMappings;
 import static com.battlelancer.seriesguide.provider.SeriesGuideContract.ListItems;
 import static com.battlelancer.seriesguide.provider.SeriesGuideContract.Lists;
 import static com.battlelancer.seriesguide.provider.SeriesGuideContract.Movies;
 import static com.battlelancer.seriesguide.provider.SeriesGuideContract.Seasons;
 import static com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import static com.battlelancer.seriesguide.provider.SeriesGuideContract.Stats;
+import static com.battlelancer.seriesguide.provider.SeriesGuideContract.SyncReports;
 import static com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables;
 
 public class SeriesGuideProvider extends ContentProvider {
 
     public static final boolean LOGV = false;
 
+    /**
+     * Method for {@link android.content.ContentResolver#call(Uri, String, String, Bundle)} to
+     * recompute next episode values of shows, see {@link SeriesGuideDatabase#updateNextEpisodes},
+     * and their episode counts, see {@link SeriesGuideDatabase#updateShowStats}. Pass options
+     * with the {@code EXTRA_} keys, if {@link #EXTRA_SHOW_TVDB_IDS} is not set all shows are
+     * updated.
+     */
+    public static final String METHOD_UPDATE_NEXT_EPISODES = "updateNextEpisodes";
+    public static final String EXTRA_SHOW_TVDB_IDS = "showTvdbIds";
+    public static final String EXTRA_HIDE_SPECIALS = "hideSpecials";
+    public static final String EXTRA_NO_RELEASED_EPISODES = "noReleasedEpisodes";
+    public static final String EXTRA_CURRENT_TIME = "currentTime";
+
+    /**
+     * Method for {@link android.content.ContentResolver#call(Uri, String, String, Bundle)} to
+     * store all episodes of a show downloaded from TVDb, pass the show TVDb id as argument. Only
+     * changed episodes are written and local episodes not in {@link #EXTRA_EPISODE_IDS} are
+     * removed. Keep {@link #EXTRA_EPISODES} small, e.g. 500 episodes per call, as the provider is
+     * exported and callers may be in another process, so the bundle is limited by the binder
+     * transaction buffer. Returns the number of inserted, updated, deleted and unchanged episodes.
+     */
+    public static final String METHOD_UPSERT_EPISODES = "upsertEpisodes";
+    /**
+     * {@link ContentValues} of episodes, see {@link EpisodeBulkUpsert#COLUMNS}, or {@link
+     * SeriesGuideDatabase#IMPORT_EPISODE_COLUMNS} for {@link #METHOD_INSERT_SHOWS}.
+     */
+    public static final String EXTRA_EPISODES = "episodes";
+    /** See {@link EpisodeBulkUpsert#apply}. */
+    public static final String EXTRA_UPDATE_EDITED_AFTER = "updateEditedAfter";
+    /**
+     * TVDb ids of all episodes of the show, local episodes not included are deleted. Pass only
+     * with the last call if storing the episodes of a show in several calls. See {@link
+     * EpisodeBulkUpsert#apply}.
+     */
+    public static final String EXTRA_EPISODE_IDS = "episodeIds";
+    public static final String EXTRA_INSERTED = "inserted";
+    public static final String EXTRA_UPDATED = "updated";
+    public static final String EXTRA_DELETED = "deleted";
+    public static final String EXTRA_UNCHANGED = "unchanged";
+
+    /**
+     * Method for {@link android.content.ContentResolver#call(Uri, String, String, Bundle)} to
+     * set the watched or collected flag of episodes and queue the change in the {@link
+     * SeriesGuideContract.EpisodeOutbox} in a single transaction, see {@link
+     * SeriesGuideDatabase#flagEpisodes}. Pass an episodes URI as argument. Returns the number of
+     * updated episodes with {@link #EXTRA_UPDATED}.
+     */
+    public static final String METHOD_FLAG_EPISODES = "flagEpisodes";
+    /** Optional selection, applied in addition to the episodes URI. */
+    public static final String EXTRA_SELECTION = "selection";
+    /** {@link ContentValues} with the episode flag to set. */
+    public static final String EXTRA_VALUES = "values";
+    public static final String EXTRA_OUTBOX_TYPE = "outboxType";
+    public static final String EXTRA_OUTBOX_VALUE = "outboxValue";
+    public static final String EXTRA_SEND_HEXAGON = "sendHexagon";
+    public static final String EXTRA_SEND_TRAKT = "sendTrakt";
+
+    /**
+     * Method for {@link android.content.ContentResolver#call(Uri, String, String, Bundle)} to
+     * remove a show with all its seasons, episodes and related rows, pass the show TVDb id as
+     * argument, see {@link SeriesGuideDatabase#deleteShow}. Returns the number of removed shows,
+     * seasons and episodes with {@link #EXTRA_DELETED}.
+     */
+    public static final String METHOD_REMOVE_SHOW = "removeShow";
+
+    /**
+     * Method for {@link android.content.ContentResolver#call(Uri, String, String, Bundle)} to
+     * start replacing all shows, e.g. when restoring a backup, see {@link ShowImport}. Removes all
+     * shows, seasons and episodes and drops indexes and triggers, see {@link
+     * SeriesGuideDatabase#beginBulkInsert}. Always call {@link #METHOD_END_SHOW_IMPORT} after.
+     */
+    public static final String METHOD_BEGIN_SHOW_IMPORT = "beginShowImport";
+    /**
+     * Inserts a batch of shows, seasons and episodes passed with {@link #EXTRA_SHOWS}, {@link
+     * #EXTRA_SEASONS} and {@link #EXTRA_EPISODES}, see {@link SeriesGuideDatabase#insertShows}.
+     */
+    public static final String METHOD_INSERT_SHOWS = "insertShows";
+    /**
+     * Restores indexes and triggers dropped by {@link #METHOD_BEGIN_SHOW_IMPORT}, rebuilds the
+     * search table and show stats, then notifies observers of shows, seasons and episodes.
+     */
+    public static final String METHOD_END_SHOW_IMPORT = "endShowImport";
+    /** An {@link ArrayList} of {@link ContentValues} with {@link Shows} columns. */
+    public static final String EXTRA_SHOWS = "shows";
+    /** An {@link ArrayList} of {@link ContentValues} with {@link Seasons} columns. */
+    public static final String EXTRA_SEASONS = "seasons";
+
+    /**
+     * Method for {@link android.content.ContentResolver#call(Uri, String, String, Bundle)} to
+     * store the ids of shows and movies passed with {@link #EXTRA_ID_MAPPINGS}, see {@link
+     * SeriesGuideDatabase#putIdMappings}.
+     */
+    public static final String METHOD_PUT_ID_MAPPINGS = "putIdMappings";
+    /** An {@link ArrayList} of {@link ContentValues} with {@link IdMappings} columns. */
+    public static final String EXTRA_ID_MAPPINGS = "idMappings";
+
+    /**
+     * Method for {@link android.content.ContentResolver#call(Uri, String, String, Bundle)} to start
+     * a notification session on the calling thread: until it is ended with {@link
+     * #METHOD_END_NOTIFICATION_SESSION}, change notifications are collected and then sent once per
+     * URI. Only works if calling from the same process, e.g. for syncs.
+     */
+    public static final String METHOD_BEGIN_NOTIFICATION_SESSION = "beginNotificationSession";
+    /**
+     * Ends a session started with {@link #METHOD_BEGIN_NOTIFICATION_SESSION}. Returns the number
+     * of notifications suppressed by the session with {@link #EXTRA_SUPPRESSED}, as well as by all
+     * sessions so far with {@link #EXTRA_SUPPRESSED_TOTAL}.
+     */
+    public static final String METHOD_END_NOTIFICATION_SESSION = "endNotificationSession";
+    public static final String EXTRA_SUPPRESSED = "suppressed";
+    public static final String EXTRA_SUPPRESSED_TOTAL = "suppressedTotal";
+    /**
+     * Notifies observers of the URI given as argument, or once a notification session on the
+     * calling thread ends.
+     */
+    public static final String METHOD_NOTIFY_CHANGE = "notifyChange";
+
     private static UriMatcher sUriMatcher;
 
     private static final int SHOWS = 100;
@@ -93,6 +218,16 @@ public class SeriesGuideProvider extends ContentProvider {
 
     private static final int ACTIVITY = 800;
 
+    private static final int EPISODE_OUTBOX = 850;
+
+    private static final int STATS = 870;
+
+    private static final int STATS_NO_SPECIALS = 871;
+
+    private static final int SYNC_REPORTS = 880;
+
+    private static final int ID_MAPPINGS = 890;
+
     private static final int SEARCH_SUGGEST = 900;
 
     private static final int RENEW_FTSTABLE = 1000;
@@ -162,6 +297,20 @@ public class SeriesGuideProvider extends ContentProvider {
         // Activity
         matcher.addURI(authority, SeriesGuideContract.PATH_ACTIVITY, ACTIVITY);
 
+        // Episode outbox
+        matcher.addURI(authority, SeriesGuideContract.PATH_EPISODE_OUTBOX, EPISODE_OUTBOX);
+
+        // Stats
+        matcher.addURI(authority, SeriesGuideContract.PATH_STATS, STATS);
+        matcher.addURI(authority, SeriesGuideContract.PATH_STATS + "/"
+                + SeriesGuideContract.PATH_NO_SPECIALS, STATS_NO_SPECIALS);
+
+        // Sync reports
+        matcher.addURI(authority, SeriesGuideContract.PATH_SYNC_REPORTS, SYNC_REPORTS);
+
+        // Id mappings
+        matcher.addURI(authority, SeriesGuideContract.PATH_ID_MAPPINGS, ID_MAPPINGS);
+
         // Search
         matcher.addURI(authority, SeriesGuideContract.PATH_EPISODESEARCH + "/"
                 + SeriesGuideContract.PATH_SEARCH, EPISODESEARCH);
@@ -178,9 +327,13 @@ public class SeriesGuideProvider extends ContentProvider {
     }
 
     private final ThreadLocal<Boolean> mApplyingBatch = new ThreadLocal<>();
+    /** Shows whose stats to update once the batch of the current thread is applied. */
+    private final ThreadLocal<IntSet> mBatchStatsShows = new ThreadLocal<>();
 
     private SeriesGuideDatabase mDbHelper;
 
+    private NotificationCoalescer mNotifications;
+
     protected SQLiteDatabase mDb;
 
     @Override
@@ -203,6 +356,9 @@ public class SeriesGuideProvider extends ContentProvider {
 
         mDbHelper = new SeriesGuideDatabase(context);
 
+        //noinspection ConstantConditions
+        mNotifications = new NotificationCoalescer(context.getContentResolver());
+
         PreferenceManager.getDefaultSharedPreferences(context)
                 .registerOnSharedPreferenceChangeListener(mImportListener);
 
@@ -218,6 +374,7 @@ public class SeriesGuideProvider extends ContentProvider {
                 if (sharedPreferences
                         .getBoolean(SeriesGuidePreferences.KEY_DATABASEIMPORTED, false)) {
                     mDbHelper.close();
+                    ShowMetadataCache.invalidateAll();
                     sharedPreferences.edit()
                             .putBoolean(SeriesGuidePreferences.KEY_DATABASEIMPORTED, false)
                             .commit();
@@ -232,6 +389,7 @@ public class SeriesGuideProvider extends ContentProvider {
         if (LOGV) {
             Timber.v("query(uri=%s, proj=%s)", uri, Arrays.toString(projection));
         }
+        final long start = System.nanoTime();
         // always get writable database, might have to be upgraded
         final SQLiteDatabase db = mDbHelper.getWritableDatabase();
 
@@ -246,14 +404,30 @@ public class SeriesGuideProvider extends ContentProvider {
                     throw new IllegalArgumentException(
                             "selectionArgs must be provided for the Uri: " + uri);
                 }
-                return SeriesGuideDatabase.search(selection, selectionArgs, db);
+                Cursor query = SeriesGuideDatabase.search(selection, selectionArgs, db);
+                profileQuery(query, match, uri, start, db, null, null);
+                return query;
+            }
+            case STATS:
+            case STATS_NO_SPECIALS: {
+                String sql = SeriesGuideDatabase.buildStatsQuery(match == STATS_NO_SPECIALS);
+                Cursor query = db.rawQuery(sql, null);
+                if (query != null) {
+                    // notified when show stats change, covers both stats URIs
+                    query.setNotificationUri(getContext().getContentResolver(),
+                            Stats.CONTENT_URI);
+                }
+                profileQuery(query, match, uri, start, db, sql, null);
+                return query;
             }
             case SEARCH_SUGGEST: {
                 if (selectionArgs == null) {
                     throw new IllegalArgumentException(
                             "selectionArgs must be provided for the Uri: " + uri);
                 }
-                return SeriesGuideDatabase.getSuggestions(selectionArgs[0], db);
+                Cursor query = SeriesGuideDatabase.getSuggestions(selectionArgs[0], db);
+                profileQuery(query, match, uri, start, db, null, null);
+                return query;
             }
             default: {
                 // Most cases are handled with simple SelectionBuilder
@@ -267,9 +441,17 @@ public class SeriesGuideProvider extends ContentProvider {
                 } catch (SQLiteException e) {
                     Timber.e(e, "Failed to query with uri=%s", uri);
                 }
+                if (QueryProfiler.isEnabled()) {
+                    profileQuery(query, match, uri, start, db,
+                            builder.buildQuerySql(projection, sortOrder),
+                            builder.getSelectionArgs());
+                }
                 if (query != null) {
+                    // shows with next episode need to update if any show changes
+                    Uri notificationUri = match == SHOWS_WITH_NEXT_EPISODE
+                            ? Shows.CONTENT_URI : uri;
                     //noinspection ConstantConditions
-                    query.setNotificationUri(getContext().getContentResolver(), uri);
+                    query.setNotificationUri(getContext().getContentResolver(), notificationUri);
                 }
                 return query;
             }
@@ -317,6 +499,15 @@ public class SeriesGuideProvider extends ContentProvider {
                 return Movies.CONTENT_ITEM_TYPE;
             case ACTIVITY:
                 return Activity.CONTENT_TYPE;
+            case EPISODE_OUTBOX:
+                return EpisodeOutbox.CONTENT_TYPE;
+            case STATS:
+            case STATS_NO_SPECIALS:
+                return Stats.CONTENT_ITEM_TYPE;
+            case SYNC_REPORTS:
+                return SyncReports.CONTENT_TYPE;
+            case ID_MAPPINGS:
+                return IdMappings.CONTENT_TYPE;
             case SEARCH_SUGGEST:
                 return SearchManager.SUGGEST_MIME_TYPE;
             case RENEW_FTSTABLE:
@@ -330,6 +521,7 @@ public class SeriesGuideProvider extends ContentProvider {
     public Uri insert(@NonNull Uri uri, ContentValues values) {
         Uri newItemUri;
 
+        final long start = System.nanoTime();
         final SQLiteDatabase db = mDbHelper.getWritableDatabase();
         if (!applyingBatch()) {
             db.beginTransaction();
@@ -344,10 +536,11 @@ public class SeriesGuideProvider extends ContentProvider {
         }
 
         if (newItemUri != null) {
-            //noinspection ConstantConditions
-            getContext().getContentResolver().notifyChange(uri, null);
+            mNotifications.notifyChange(uri);
         }
 
+        traceWrite(newItemUri != null ? 1 : 0, start);
+        profile("insert", uri, start);
         return newItemUri;
     }
 
@@ -356,6 +549,7 @@ public class SeriesGuideProvider extends ContentProvider {
         int numValues = values.length;
         boolean notifyChange = false;
 
+        final long start = System.nanoTime();
         final SQLiteDatabase db = mDbHelper.getWritableDatabase();
         db.beginTransaction();
         try {
@@ -372,10 +566,11 @@ public class SeriesGuideProvider extends ContentProvider {
         }
 
         if (notifyChange) {
-            //noinspection ConstantConditions
-            getContext().getContentResolver().notifyChange(uri, null);
+            mNotifications.notifyChange(uri);
         }
 
+        traceWrite(numValues, start);
+        profile("bulkInsert", uri, start);
         return numValues;
     }
 
@@ -398,6 +593,7 @@ public class SeriesGuideProvider extends ContentProvider {
                 if (id < 0) {
                     break;
                 }
+                ShowMetadataCache.invalidate((int) id);
                 notifyUri = Shows.buildShowUri(values.getAsString(Shows._ID));
                 break;
             }
@@ -469,6 +665,22 @@ public class SeriesGuideProvider extends ContentProvider {
                 notifyUri = Activity.buildActivityUri(values.getAsString(Activity.EPISODE_TVDB_ID));
                 break;
             }
+            case EPISODE_OUTBOX: {
+                long id = db.insert(Tables.EPISODE_OUTBOX, null, values);
+                if (id < 0) {
+                    break;
+                }
+                notifyUri = EpisodeOutbox.CONTENT_URI;
+                break;
+            }
+            case SYNC_REPORTS: {
+                long id = db.insert(Tables.SYNC_REPORTS, null, values);
+                if (id < 0) {
+                    break;
+                }
+                notifyUri = SyncReports.CONTENT_URI;
+                break;
+            }
             default: {
                 throw new IllegalArgumentException("Unknown uri: " + uri);
             }
@@ -487,30 +699,51 @@ public class SeriesGuideProvider extends ContentProvider {
             Timber.v("update(uri=%s, values=%s)", uri, values.toString());
         }
         int count = 0;
+        final long start = System.nanoTime();
 
+        final SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        final int match = sUriMatcher.match(uri);
+        final SelectionBuilder builder = buildSelection(uri, match)
+                .where(selection, selectionArgs);
+        int[] statsShowTvdbIds;
         if (!applyingBatch()) {
-            final SQLiteDatabase db = mDbHelper.getWritableDatabase();
             db.beginTransaction();
             try {
-                count = buildSelection(uri, sUriMatcher.match(uri))
-                        .where(selection, selectionArgs)
-                        .update(db, values);
+                statsShowTvdbIds = getShowsWithChangedStats(db, match, builder, values);
+                count = builder.update(db, values);
+                if (count > 0 && statsShowTvdbIds != null) {
+                    SeriesGuideDatabase.updateShowStats(db, statsShowTvdbIds);
+                }
                 db.setTransactionSuccessful();
             } finally {
                 db.endTransaction();
             }
         } else {
-            mDb = mDbHelper.getWritableDatabase();
-            count = buildSelection(uri, sUriMatcher.match(uri))
-                    .where(selection, selectionArgs)
-                    .update(mDb, values);
+            mDb = db;
+            statsShowTvdbIds = getShowsWithChangedStats(mDb, match, builder, values);
+            count = builder.update(mDb, values);
+            if (count > 0 && statsShowTvdbIds != null) {
+                // update once the batch is applied
+                IntSet batchStatsShows = mBatchStatsShows.get();
+                for (int showTvdbId : statsShowTvdbIds) {
+                    batchStatsShows.add(showTvdbId);
+                }
+            }
         }
 
         if (count > 0) {
-            //noinspection ConstantConditions
-            getContext().getContentResolver().notifyChange(uri, null);
+            invalidateShowMetadata(uri, match, values);
+            mNotifications.notifyChange(uri);
+            if (statsShowTvdbIds != null) {
+                mNotifications.notifyChange(Stats.CONTENT_URI);
+            }
         }
 
+        traceWrite(count, start);
+        if (QueryProfiler.isEnabled()) {
+            QueryProfiler.record("update", match, uri, start, db, builder.buildRowSelectSql(),
+                    builder.getSelectionArgs());
+        }
         return count;
     }
 
@@ -523,30 +756,35 @@ public class SeriesGuideProvider extends ContentProvider {
             Timber.v("delete(uri=%s)", uri);
         }
         int count = 0;
+        final long start = System.nanoTime();
 
+        final SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        final int match = sUriMatcher.match(uri);
+        final SelectionBuilder builder = buildSelection(uri, match)
+                .where(selection, selectionArgs);
         if (!applyingBatch()) {
-            final SQLiteDatabase db = mDbHelper.getWritableDatabase();
             db.beginTransaction();
             try {
-                count = buildSelection(uri, sUriMatcher.match(uri))
-                        .where(selection, selectionArgs)
-                        .delete(db);
+                count = builder.delete(db);
                 db.setTransactionSuccessful();
             } finally {
                 db.endTransaction();
             }
         } else {
-            mDb = mDbHelper.getWritableDatabase();
-            count = buildSelection(uri, sUriMatcher.match(uri))
-                    .where(selection, selectionArgs)
-                    .delete(mDb);
+            mDb = db;
+            count = builder.delete(mDb);
         }
 
         if (count > 0) {
-            //noinspection ConstantConditions
-            getContext().getContentResolver().notifyChange(uri, null);
+            invalidateShowMetadata(uri, match, null);
+            mNotifications.notifyChange(uri);
         }
 
+        traceWrite(count, start);
+        if (QueryProfiler.isEnabled()) {
+            QueryProfiler.record("delete", match, uri, start, db, builder.buildRowSelectSql(),
+                    builder.getSelectionArgs());
+        }
         return count;
     }
 
@@ -564,10 +802,16 @@ public class SeriesGuideProvider extends ContentProvider {
             return new ContentProviderResult[0];
         }
 
+        final long start = System.nanoTime();
+        // notify once per URI after the transaction has ended
+        mNotifications.begin();
         mDb = mDbHelper.getWritableDatabase();
         mDb.beginTransaction();
+        boolean isSuccessful = false;
         try {
             mApplyingBatch.set(true);
+            IntSet batchStatsShows = new IntSet();
+            mBatchStatsShows.set(batchStatsShows);
             final ContentProviderResult[] results = new ContentProviderResult[numOperations];
             for (int i = 0; i < numOperations; i++) {
                 final ContentProviderOperation operation = operations.get(i);
@@ -576,18 +820,317 @@ public class SeriesGuideProvider extends ContentProvider {
                 }
                 results[i] = operation.apply(this, results, i);
             }
+            if (!batchStatsShows.isEmpty()) {
+                SeriesGuideDatabase.updateShowStats(mDb, batchStatsShows.toArray());
+            }
             mDb.setTransactionSuccessful();
+            isSuccessful = true;
             return results;
         } finally {
             mApplyingBatch.set(false);
-            mDb.endTransaction();
+            mBatchStatsShows.remove();
+            try {
+                mDb.endTransaction();
+            } finally {
+                if (!isSuccessful) {
+                    // operations invalidated as they went, but may have been cached again
+                    ShowMetadataCache.invalidateAll();
+                }
+                mNotifications.end();
+                // rows were traced by each operation
+                traceWrite(0, start);
+                profile("applyBatch", operations.get(0).getUri(), start);
+            }
+        }
+    }
+
+    @Override
+    public Bundle call(@NonNull String method, String arg, Bundle extras) {
+        if (METHOD_UPDATE_NEXT_EPISODES.equals(method)) {
+            if (extras == null) {
+                extras = Bundle.EMPTY;
+            }
+            final long start = System.nanoTime();
+            final SQLiteDatabase db = mDbHelper.getWritableDatabase();
+            int[] showTvdbIds = extras.getIntArray(EXTRA_SHOW_TVDB_IDS);
+            int count = SeriesGuideDatabase.updateNextEpisodes(db, showTvdbIds,
+                    extras.getBoolean(EXTRA_HIDE_SPECIALS),
+                    extras.getBoolean(EXTRA_NO_RELEASED_EPISODES),
+                    extras.getLong(EXTRA_CURRENT_TIME, System.currentTimeMillis()));
+            // episodes of the same shows changed, so their counts likely did as well
+            SeriesGuideDatabase.updateShowStats(db, showTvdbIds);
+            if (LOGV) {
+                Timber.v("call(method=%s) updated %s shows", method, count);
+            }
+            if (count > 0) {
+                mNotifications.notifyChange(Shows.CONTENT_URI);
+            }
+            mNotifications.notifyChange(Stats.CONTENT_URI);
+            traceWrite(count, start);
+            profile(method, null, start);
+            return null;
+        }
+        if (METHOD_UPSERT_EPISODES.equals(method)) {
+            if (arg == null || extras == null) {
+                throw new IllegalArgumentException("show id and episodes must be provided");
+            }
+            ArrayList<ContentValues> episodes = extras.getParcelableArrayList(EXTRA_EPISODES);
+            if (episodes == null) {
+                throw new IllegalArgumentException("episodes must be provided");
+            }
+            final long start = System.nanoTime();
+            final SQLiteDatabase db = mDbHelper.getWritableDatabase();
+            EpisodeBulkUpsert.Result result = new EpisodeBulkUpsert(db, Integer.parseInt(arg))
+                    .apply(episodes, extras.getLong(EXTRA_UPDATE_EDITED_AFTER),
+                            extras.getIntArray(EXTRA_EPISODE_IDS));
+            if (result.inserted > 0 || result.updated > 0 || result.deleted > 0) {
+                mNotifications.notifyChange(Episodes.CONTENT_URI);
+                mNotifications.notifyChange(Seasons.CONTENT_URI);
+            }
+
+            traceWrite(result.inserted + result.updated + result.deleted, start);
+            profile(method, null, start);
+
+            Bundle counts = new Bundle();
+            counts.putInt(EXTRA_INSERTED, result.inserted);
+            counts.putInt(EXTRA_UPDATED, result.updated);
+            counts.putInt(EXTRA_DELETED, result.deleted);
+            counts.putInt(EXTRA_UNCHANGED, result.unchanged);
+            return counts;
+        }
+        if (METHOD_FLAG_EPISODES.equals(method)) {
+            if (arg == null || extras == null) {
+                throw new IllegalArgumentException("episodes URI and values must be provided");
+            }
+            ContentValues values = extras.getParcelable(EXTRA_VALUES);
+            if (values == null) {
+                throw new IllegalArgumentException("values must be provided");
+            }
+            Uri uri = Uri.parse(arg);
+            int match = sUriMatcher.match(uri);
+            if (match != EPISODES && match != EPISODES_ID && match != EPISODES_OFSHOW
+                    && match != EPISODES_OFSEASON) {
+                throw new IllegalArgumentException("Unsupported episodes URI: " + uri);
+            }
+            final long start = System.nanoTime();
+            final SQLiteDatabase db = mDbHelper.getWritableDatabase();
+            SelectionBuilder builder = buildSelection(uri, match)
+                    .where(extras.getString(EXTRA_SELECTION));
+            int count = SeriesGuideDatabase.flagEpisodes(db, builder.getSelection(),
+                    builder.getSelectionArgs(), values, extras.getInt(EXTRA_OUTBOX_TYPE),
+                    extras.getInt(EXTRA_OUTBOX_VALUE), extras.getBoolean(EXTRA_SEND_HEXAGON),
+                    extras.getBoolean(EXTRA_SEND_TRAKT));
+            if (count > 0) {
+                mNotifications.notifyChange(Episodes.CONTENT_URI);
+                if (values.containsKey(Episodes.WATCHED)) {
+                    mNotifications.notifyChange(Stats.CONTENT_URI);
+                }
+            }
+            traceWrite(count, start);
+            profile(method, uri, start);
+
+            Bundle result = new Bundle();
+            result.putInt(EXTRA_UPDATED, count);
+            return result;
+        }
+        if (METHOD_REMOVE_SHOW.equals(method)) {
+            if (arg == null) {
+                throw new IllegalArgumentException("show id must be provided");
+            }
+            final long start = System.nanoTime();
+            final SQLiteDatabase db = mDbHelper.getWritableDatabase();
+            int showTvdbId = Integer.parseInt(arg);
+            int count = SeriesGuideDatabase.deleteShow(db, showTvdbId);
+            ShowMetadataCache.invalidate(showTvdbId);
+            if (count > 0) {
+                mNotifications.notifyChange(Shows.CONTENT_URI);
+                mNotifications.notifyChange(Seasons.CONTENT_URI);
+                mNotifications.notifyChange(Episodes.CONTENT_URI);
+                mNotifications.notifyChange(EpisodeSearch.CONTENT_URI_SEARCH);
+                mNotifications.notifyChange(ListItems.CONTENT_URI);
+                mNotifications.notifyChange(Activity.CONTENT_URI);
+                mNotifications.notifyChange(Stats.CONTENT_URI);
+            }
+            traceWrite(count, start);
+            profile(method, null, start);
+
+            Bundle counts = new Bundle();
+            counts.putInt(EXTRA_DELETED, count);
+            return counts;
+        }
+        if (METHOD_BEGIN_SHOW_IMPORT.equals(method)) {
+            final long start = System.nanoTime();
+            final SQLiteDatabase db = mDbHelper.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                db.delete(Tables.SHOWS, null, null);
+                db.delete(Tables.SEASONS, null, null);
+                db.delete(Tables.EPISODES, null, null);
+                SeriesGuideDatabase.beginBulkInsert(db);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            ShowMetadataCache.invalidateAll();
+            profile(method, null, start);
+            return null;
+        }
+        if (METHOD_INSERT_SHOWS.equals(method)) {
+            if (extras == null) {
+                throw new IllegalArgumentException("shows must be provided");
+            }
+            ArrayList<ContentValues> shows = extras.getParcelableArrayList(EXTRA_SHOWS);
+            ArrayList<ContentValues> seasons = extras.getParcelableArrayList(EXTRA_SEASONS);
+            ArrayList<ContentValues> episodes = extras.getParcelableArrayList(EXTRA_EPISODES);
+            if (shows == null || seasons == null || episodes == null) {
+                throw new IllegalArgumentException("shows, seasons and episodes must be provided");
+            }
+            final long start = System.nanoTime();
+            final SQLiteDatabase db = mDbHelper.getWritableDatabase();
+            int count = SeriesGuideDatabase.insertShows(db, shows, seasons, episodes);
+            traceWrite(count, start);
+            profile(method, null, start);
+
+            Bundle counts = new Bundle();
+            counts.putInt(EXTRA_INSERTED, count);
+            return counts;
+        }
+        if (METHOD_END_SHOW_IMPORT.equals(method)) {
+            final long start = System.nanoTime();
+            final SQLiteDatabase db = mDbHelper.getWritableDatabase();
+            db.beginTransaction();
+            try {
+                SeriesGuideDatabase.endBulkInsert(db);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            // shows were replaced without per row notifications or cache invalidation
+            ShowMetadataCache.invalidateAll();
+            mNotifications.notifyChange(Shows.CONTENT_URI);
+            mNotifications.notifyChange(Seasons.CONTENT_URI);
+            mNotifications.notifyChange(Episodes.CONTENT_URI);
+            profile(method, null, start);
+            return null;
+        }
+        if (METHOD_PUT_ID_MAPPINGS.equals(method)) {
+            if (extras == null) {
+                throw new IllegalArgumentException("id mappings must be provided");
+            }
+            ArrayList<ContentValues> mappings = extras.getParcelableArrayList(EXTRA_ID_MAPPINGS);
+            if (mappings == null) {
+                throw new IllegalArgumentException("id mappings must be provided");
+            }
+            final long start = System.nanoTime();
+            final SQLiteDatabase db = mDbHelper.getWritableDatabase();
+            int count = SeriesGuideDatabase.putIdMappings(db, mappings);
+            if (count > 0) {
+                mNotifications.notifyChange(IdMappings.CONTENT_URI);
+            }
+            traceWrite(count, start);
+            profile(method, null, start);
+            return null;
+        }
+        if (METHOD_BEGIN_NOTIFICATION_SESSION.equals(method)) {
+            mNotifications.begin();
+            return null;
+        }
+        if (METHOD_END_NOTIFICATION_SESSION.equals(method)) {
+            int suppressed = mNotifications.end();
+            Bundle counts = new Bundle();
+            counts.putInt(EXTRA_SUPPRESSED, suppressed);
+            counts.putInt(EXTRA_SUPPRESSED_TOTAL, mNotifications.getSuppressedCount());
+            return counts;
+        }
+        if (METHOD_NOTIFY_CHANGE.equals(method)) {
+            if (arg == null) {
+                throw new IllegalArgumentException("uri must be provided");
+            }
+            mNotifications.notifyChange(Uri.parse(arg));
+            return null;
+        }
+        return super.call(method, arg, extras);
+    }
+
+    /**
+     * Invalidates cached metadata of shows affected by an update with the given values, or a
+     * delete if {@code values} is {@code null}.
+     */
+    private static void invalidateShowMetadata(Uri uri, int match, @Nullable ContentValues values) {
+        if (match != SHOWS && match != SHOWS_ID && match != SHOWS_FILTERED) {
+            return;
+        }
+        if (values != null && !ShowMetadataCache.isAffectedBy(values)) {
+            return;
+        }
+        if (match == SHOWS_ID) {
+            ShowMetadataCache.invalidate(Integer.parseInt(Shows.getShowId(uri)));
+        } else {
+            ShowMetadataCache.invalidateAll();
+        }
+    }
+
+    /**
+     * If the values change the watched flag of episodes, returns the TVDb ids of their shows,
+     * whose stats have to be updated. Must be called before the update, as the selection might no
+     * longer match afterwards.
+     */
+    @Nullable
+    private static int[] getShowsWithChangedStats(SQLiteDatabase db, int match,
+            SelectionBuilder builder, ContentValues values) {
+        if (match != EPISODES && match != EPISODES_ID && match != EPISODES_OFSHOW
+                && match != EPISODES_OFSEASON) {
+            return null;
+        }
+        if (values == null || !values.containsKey(Episodes.WATCHED)) {
+            return null;
         }
+        return SeriesGuideDatabase.getShowIdsOfEpisodes(db, builder.getSelection(),
+                builder.getSelectionArgs());
     }
 
     private boolean applyingBatch() {
         return mApplyingBatch.get() != null && mApplyingBatch.get();
     }
 
+    /**
+     * If profiling, runs the lazily executed query to record its duration.
+     *
+     * @param sql The query to explain if it was slow, if {@code null} only records the duration.
+     */
+    private static void profileQuery(@Nullable Cursor query, int match, Uri uri, long startNanos,
+            SQLiteDatabase db, @Nullable String sql, @Nullable String[] sqlArgs) {
+        if (!QueryProfiler.isEnabled()) {
+            return;
+        }
+        if (query != null) {
+            query.getCount();
+        }
+        QueryProfiler.record("query", match, uri, startNanos, db, sql, sqlArgs);
+    }
+
+    /**
+     * If profiling, records the duration of an operation without capturing its query plan.
+     *
+     * @param uri If {@code null}, like for {@link #call(String, String, Bundle)} methods, no match
+     * code (-1) is recorded.
+     */
+    private void profile(String operation, @Nullable Uri uri, long startNanos) {
+        if (QueryProfiler.isEnabled()) {
+            QueryProfiler.record(operation, uri == null ? -1 : sUriMatcher.match(uri), uri,
+                    startNanos, null, null, null);
+        }
+    }
+
+    /**
+     * Reports rows written since the given time to the tracer of a running sync, if any and if
+     * called by one of its threads. Time of operations of a batch is only reported once for the
+     * whole batch.
+     */
+    private void traceWrite(int rows, long startNanos) {
+        SyncTracer.onDatabaseWrite(rows, applyingBatch() ? 0 : System.nanoTime() - startNanos);
+    }
+
     /**
      * Builds selection using a {@link SelectionBuilder} to match the requested {@link Uri}.
      */
@@ -692,7 +1235,7 @@ public class SeriesGuideProvider extends ContentProvider {
                         list_item_id);
             }
             case LIST_ITEMS_WITH_DETAILS: {
-                return builder.table(Tables.LIST_ITEMS_WITH_DETAILS);
+                return builder.table(Tables.LIST_ITEM_DETAILS);
             }
             case MOVIES: {
                 return builder.table(Tables.MOVIES);
@@ -704,6 +1247,15 @@ public class SeriesGuideProvider extends ContentProvider {
             case ACTIVITY: {
                 return builder.table(Tables.ACTIVITY);
             }
+            case EPISODE_OUTBOX: {
+                return builder.table(Tables.EPISODE_OUTBOX);
+            }
+            case SYNC_REPORTS: {
+                return builder.table(Tables.SYNC_REPORTS);
+            }
+            case ID_MAPPINGS: {
+                return builder.table(Tables.ID_MAPPINGS);
+            }
             default: {
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
             }
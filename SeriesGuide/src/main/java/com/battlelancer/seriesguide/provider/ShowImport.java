@@ -0,0 +1,105 @@
+package com.battlelancer.seriesguide.provider;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.os.Bundle;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import java.util.ArrayList;
+
+/**
+ * Replaces all shows, seasons and episodes, e.g. when restoring a backup. Rows are collected and
+ * written by {@link SeriesGuideProvider} in batches of about {@link #BATCH_SIZE} rows, each in a
+ * short transaction, see {@link SeriesGuideProvider#METHOD_INSERT_SHOWS}. Indexes and search
+ * triggers are dropped while inserting and restored once {@link #close() closed}, or when the
+ * database is opened again if the import was interrupted. Observers are only notified once
+ * closed.
+ *
+ * <p> Existing shows are removed by {@link #begin(Context)}, so only call it once all data to
+ * insert was read. Must be used on a single thread and always {@link #close() closed}.
+ */
+public class ShowImport {
+
+    static final int BATCH_SIZE = 500;
+
+    private final ContentResolver contentResolver;
+    private final ArrayList<ContentValues> shows = new ArrayList<>();
+    private final ArrayList<ContentValues> seasons = new ArrayList<>();
+    private final ArrayList<ContentValues> episodes = new ArrayList<>();
+    private boolean isClosed;
+
+    /**
+     * Removes all existing shows, seasons and episodes.
+     */
+    public static ShowImport begin(Context context) {
+        ContentResolver contentResolver = context.getContentResolver();
+        contentResolver.call(Shows.CONTENT_URI, SeriesGuideProvider.METHOD_BEGIN_SHOW_IMPORT,
+                null, null);
+        return new ShowImport(contentResolver);
+    }
+
+    private ShowImport(ContentResolver contentResolver) {
+        this.contentResolver = contentResolver;
+    }
+
+    public void insertShow(ContentValues values) {
+        add(shows, values);
+    }
+
+    /**
+     * Must have values for all {@link SeriesGuideDatabase#IMPORT_SEASON_COLUMNS}.
+     */
+    public void insertSeason(ContentValues values) {
+        add(seasons, values);
+    }
+
+    /**
+     * Must have values for all {@link SeriesGuideDatabase#IMPORT_EPISODE_COLUMNS}.
+     */
+    public void insertEpisode(ContentValues values) {
+        add(episodes, values);
+    }
+
+    private void add(ArrayList<ContentValues> rows, ContentValues values) {
+        if (isClosed) {
+            throw new IllegalStateException("already closed");
+        }
+        rows.add(values);
+        if (shows.size() + seasons.size() + episodes.size() >= BATCH_SIZE) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        if (shows.isEmpty() && seasons.isEmpty() && episodes.isEmpty()) {
+            return;
+        }
+        Bundle extras = new Bundle();
+        extras.putParcelableArrayList(SeriesGuideProvider.EXTRA_SHOWS, shows);
+        extras.putParcelableArrayList(SeriesGuideProvider.EXTRA_SEASONS, seasons);
+        extras.putParcelableArrayList(SeriesGuideProvider.EXTRA_EPISODES, episodes);
+        contentResolver.call(Shows.CONTENT_URI, SeriesGuideProvider.METHOD_INSERT_SHOWS, null,
+                extras);
+        shows.clear();
+        seasons.clear();
+        episodes.clear();
+    }
+
+    /**
+     * Inserts remaining rows, then restores indexes and search triggers and rebuilds the search
+     * table and show stats. Those are also restored if inserting fails. Does nothing if already
+     * closed.
+     */
+    public void close() {
+        if (isClosed) {
+            return;
+        }
+        isClosed = true;
+        try {
+            flush();
+        } finally {
+            contentResolver.call(Shows.CONTENT_URI, SeriesGuideProvider.METHOD_END_SHOW_IMPORT,
+                    null, null);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.battlelancer.seriesguide.provider;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.support.annotation.Nullable;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Process-wide read-through cache of show metadata that is looked up one show at a time in
+ * loops, like the trakt id or language of a show, keyed by TVDB id. Also remembers shows that do
+ * not exist. A hit does not touch the database.
+ *
+ * <p> {@link SeriesGuideProvider} invalidates a show when it inserts or deletes it or writes one
+ * of the cached columns, all shows if it writes more than a single show. Thread safe.
+ */
+public class ShowMetadataCache {
+
+    public static class ShowMetadata {
+        public final int tvdbId;
+        public final String title;
+        @Nullable public final String poster;
+        /** {@code null} if there is no valid trakt id. */
+        @Nullable public final Integer traktId;
+        @Nullable public final String language;
+
+        ShowMetadata(int tvdbId, String title, @Nullable String poster, @Nullable Integer traktId,
+                @Nullable String language) {
+            this.tvdbId = tvdbId;
+            this.title = title;
+            this.poster = poster;
+            this.traktId = traktId;
+            this.language = language;
+        }
+    }
+
+    private static final String[] PROJECTION = {
+            Shows._ID,
+            Shows.TITLE,
+            Shows.POSTER,
+            Shows.TRAKT_ID,
+            Shows.LANGUAGE
+    };
+
+    /** Shows by TVDB id, {@code null} values for shows that do not exist. */
+    private static final Map<Integer, ShowMetadata> shows = new HashMap<>();
+    /** If all shows are loaded, so absent ids do not exist. */
+    private static boolean isComplete;
+    /**
+     * Incremented on every invalidation, so loads that started before are not stored.
+     */
+    private static int generation;
+    private static int hitCount;
+    private static int missCount;
+
+    private ShowMetadataCache() {
+    }
+
+    /**
+     * Returns the metadata of the show, or {@code null} if it does not exist or the query failed.
+     */
+    @Nullable
+    public static ShowMetadata get(Context context, int showTvdbId) {
+        int loadGeneration;
+        synchronized (ShowMetadataCache.class) {
+            if (isComplete || shows.containsKey(showTvdbId)) {
+                hitCount++;
+                return shows.get(showTvdbId);
+            }
+            missCount++;
+            loadGeneration = generation;
+        }
+
+        Cursor query = context.getContentResolver()
+                .query(Shows.buildShowUri(showTvdbId), PROJECTION, null, null, null);
+        if (query == null) {
+            return null;
+        }
+        ShowMetadata show = null;
+        if (query.moveToFirst()) {
+            show = fromCursor(query);
+        }
+        query.close();
+
+        synchronized (ShowMetadataCache.class) {
+            if (loadGeneration == generation) {
+                shows.put(showTvdbId, show);
+            }
+        }
+        return show;
+    }
+
+    /**
+     * Returns the metadata of all shows, or {@code null} if the query failed.
+     */
+    @Nullable
+    public static List<ShowMetadata> getAll(Context context) {
+        int loadGeneration;
+        synchronized (ShowMetadataCache.class) {
+            if (isComplete) {
+                hitCount++;
+                return getExistingShows();
+            }
+            missCount++;
+            loadGeneration = generation;
+        }
+
+        Cursor query = context.getContentResolver()
+                .query(Shows.CONTENT_URI, PROJECTION, null, null, null);
+        if (query == null) {
+            return null;
+        }
+        List<ShowMetadata> allShows = new ArrayList<>(query.getCount());
+        while (query.moveToNext()) {
+            allShows.add(fromCursor(query));
+        }
+        query.close();
+
+        synchronized (ShowMetadataCache.class) {
+            if (loadGeneration == generation) {
+                shows.clear();
+                for (ShowMetadata show : allShows) {
+                    shows.put(show.tvdbId, show);
+                }
+                isComplete = true;
+            }
+        }
+        return allShows;
+    }
+
+    private static List<ShowMetadata> getExistingShows() {
+        List<ShowMetadata> existingShows = new ArrayList<>(shows.size());
+        for (ShowMetadata show : shows.values()) {
+            if (show != null) {
+                existingShows.add(show);
+            }
+        }
+        return existingShows;
+    }
+
+    private static ShowMetadata fromCursor(Cursor query) {
+        Integer traktId = query.getInt(3);
+        if (traktId <= 0) {
+            traktId = null;
+        }
+        return new ShowMetadata(query.getInt(0), query.getString(1), query.getString(2), traktId,
+                query.getString(4));
+    }
+
+    /**
+     * Returns whether writing the given values to a show changes cached metadata.
+     */
+    static boolean isAffectedBy(ContentValues values) {
+        for (String column : PROJECTION) {
+            if (values.containsKey(column)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static synchronized void invalidate(int showTvdbId) {
+        generation++;
+        shows.remove(showTvdbId);
+        isComplete = false;
+    }
+
+    static synchronized void invalidateAll() {
+        generation++;
+        shows.clear();
+        isComplete = false;
+    }
+
+    public static synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    public static synchronized int getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns hit and miss counts and how many shows are cached.
+     */
+    public static synchronized String dump() {
+        return String.format(Locale.US, "hits %d misses %d cached %d complete %b", hitCount,
+                missCount, shows.size(), isComplete);
+    }
+}
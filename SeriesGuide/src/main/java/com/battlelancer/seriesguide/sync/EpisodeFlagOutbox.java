@@ -0,0 +1,499 @@
+package com.battlelancer.seriesguide.sync;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.support.v4.util.SparseArrayCompat;
+import android.text.TextUtils;
+import android.text.format.DateUtils;
+import com.battlelancer.seriesguide.SgApp;
+import com.battlelancer.seriesguide.backend.settings.HexagonSettings;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.EpisodeOutbox;
+import com.battlelancer.seriesguide.settings.TraktCredentials;
+import com.battlelancer.seriesguide.traktapi.SgTrakt;
+import com.battlelancer.seriesguide.util.EpisodeTools;
+import com.battlelancer.seriesguide.util.ShowTools;
+import com.uwetrottmann.androidutils.AndroidUtils;
+import com.uwetrottmann.seriesguide.backend.episodes.model.Episode;
+import com.uwetrottmann.seriesguide.backend.episodes.model.EpisodeList;
+import com.uwetrottmann.trakt5.entities.ShowIds;
+import com.uwetrottmann.trakt5.entities.SyncEpisode;
+import com.uwetrottmann.trakt5.entities.SyncItems;
+import com.uwetrottmann.trakt5.entities.SyncResponse;
+import com.uwetrottmann.trakt5.entities.SyncSeason;
+import com.uwetrottmann.trakt5.entities.SyncShow;
+import com.uwetrottmann.trakt5.services.Sync;
+import dagger.Lazy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import retrofit2.Call;
+import retrofit2.Response;
+import timber.log.Timber;
+
+/**
+ * Sends episode flag changes stored in the {@link EpisodeOutbox} to Hexagon and trakt. Pending
+ * changes of all shows are sent with as few requests as possible: one per batch of episodes of a
+ * show for Hexagon, one per kind of change for trakt.
+ *
+ * <p> Changes stay in the outbox until sent, so they survive the app being killed or the device
+ * being offline. If sending fails it is retried with exponential backoff, a sync also sends
+ * pending changes before downloading flags. Once all pending changes failed to send {@link
+ * EpisodeOutbox#MAX_ATTEMPTS} times, e.g. during a long outage, they are only retried by syncs.
+ * Only changes trakt rejects as invalid are dropped.
+ */
+public class EpisodeFlagOutbox {
+
+    private static final int EPISODE_MAX_BATCH_SIZE = 500;
+    private static final long BACKOFF_INITIAL_MS = 30 * DateUtils.SECOND_IN_MILLIS;
+    private static final long BACKOFF_MAX_MS = 30 * DateUtils.MINUTE_IN_MILLIS;
+
+    private static EpisodeFlagOutbox episodeFlagOutbox;
+
+    public static synchronized EpisodeFlagOutbox getInstance(SgApp app) {
+        if (episodeFlagOutbox == null) {
+            episodeFlagOutbox = new EpisodeFlagOutbox(app);
+        }
+        return episodeFlagOutbox;
+    }
+
+    private final SgApp app;
+    @Inject Lazy<Sync> traktSync;
+    private final ScheduledExecutorService executor;
+    private final Object flushLock = new Object();
+
+    private ScheduledFuture<?> scheduledFlush;
+    private long backoffMs;
+
+    private EpisodeFlagOutbox(SgApp app) {
+        this.app = app;
+        app.getServicesComponent().inject(this);
+        executor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    /**
+     * Sends pending changes in the background right away, replaces any scheduled retry.
+     */
+    public synchronized void scheduleFlush() {
+        schedule(0);
+    }
+
+    private synchronized void schedule(long delayMs) {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+        }
+        scheduledFlush = executor.schedule(flushRunnable, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flushOrScheduleRetry();
+        }
+    };
+
+    /**
+     * Like {@link #flush()}, but if changes are left schedules a retry with exponential backoff,
+     * unless all of them failed to send {@link EpisodeOutbox#MAX_ATTEMPTS} times.
+     */
+    public boolean flushOrScheduleRetry() {
+        boolean isEmpty = flush();
+        boolean isRetrying = !isEmpty && hasChangesToRetry();
+        synchronized (this) {
+            if (!isRetrying) {
+                backoffMs = 0;
+                return isEmpty;
+            }
+            backoffMs = backoffMs == 0 ? BACKOFF_INITIAL_MS
+                    : Math.min(backoffMs * 2, BACKOFF_MAX_MS);
+            Timber.d("flush: incomplete, retrying in %s ms", backoffMs);
+            schedule(backoffMs);
+        }
+        return isEmpty;
+    }
+
+    private boolean hasChangesToRetry() {
+        Cursor query = app.getContentResolver().query(EpisodeOutbox.CONTENT_URI,
+                new String[] { EpisodeOutbox._ID }, EpisodeOutbox.SELECTION_RETRY, null, null);
+        if (query == null) {
+            return true;
+        }
+        boolean hasChanges = query.getCount() > 0;
+        query.close();
+        if (!hasChanges) {
+            Timber.w("flush: changes failed to send %s times, retrying when syncing",
+                    EpisodeOutbox.MAX_ATTEMPTS);
+        }
+        return hasChanges;
+    }
+
+    /**
+     * Sends all pending changes. Changes for a service that was disconnected are dropped. Blocks
+     * until done, so do not call from the main thread.
+     *
+     * @return {@code true} if the outbox is empty.
+     */
+    public boolean flush() {
+        synchronized (flushLock) {
+            boolean sendToHexagon = HexagonSettings.isEnabled(app);
+            boolean sendToTrakt = TraktCredentials.get(app).hasCredentials();
+            if (!sendToHexagon) {
+                markSent(EpisodeOutbox.SEND_HEXAGON, null);
+            }
+            if (!sendToTrakt) {
+                markSent(EpisodeOutbox.SEND_TRAKT, null);
+            }
+
+            List<Change> changes = queryChanges();
+            if (changes == null) {
+                return false;
+            }
+            if (changes.isEmpty()) {
+                return true;
+            }
+            if (!AndroidUtils.isNetworkConnected(app)) {
+                return false;
+            }
+
+            Timber.d("flush: sending %s changes", changes.size());
+            boolean isComplete = true;
+            if (sendToHexagon && !uploadToHexagon(changes)) {
+                isComplete = false;
+            }
+            if (sendToTrakt && !uploadToTrakt(changes)) {
+                isComplete = false;
+            }
+            return isComplete;
+        }
+    }
+
+    private static class Change {
+        long id;
+        int showTvdbId;
+        /** Only set when sending to trakt. */
+        int showTraktId;
+        int season;
+        int number;
+        int type;
+        int value;
+        int attempts;
+        boolean sendToHexagon;
+        boolean sendToTrakt;
+    }
+
+    /**
+     * Returns changes sorted by show, season and number. Deletes changes already sent.
+     */
+    private List<Change> queryChanges() {
+        app.getContentResolver().delete(EpisodeOutbox.CONTENT_URI, EpisodeOutbox.SELECTION_SENT,
+                null);
+
+        Cursor query = app.getContentResolver().query(EpisodeOutbox.CONTENT_URI,
+                new String[] {
+                        EpisodeOutbox._ID,
+                        EpisodeOutbox.SHOW_TVDB_ID,
+                        EpisodeOutbox.SEASON,
+                        EpisodeOutbox.NUMBER,
+                        EpisodeOutbox.TYPE,
+                        EpisodeOutbox.VALUE,
+                        EpisodeOutbox.SEND_HEXAGON,
+                        EpisodeOutbox.SEND_TRAKT,
+                        EpisodeOutbox.ATTEMPTS
+                }, null, null,
+                EpisodeOutbox.SHOW_TVDB_ID + "," + EpisodeOutbox.SEASON + ","
+                        + EpisodeOutbox.NUMBER);
+        if (query == null) {
+            return null;
+        }
+
+        List<Change> changes = new ArrayList<>(query.getCount());
+        while (query.moveToNext()) {
+            Change change = new Change();
+            change.id = query.getLong(0);
+            change.showTvdbId = query.getInt(1);
+            change.season = query.getInt(2);
+            change.number = query.getInt(3);
+            change.type = query.getInt(4);
+            change.value = query.getInt(5);
+            change.sendToHexagon = query.getInt(6) == 1;
+            change.sendToTrakt = query.getInt(7) == 1;
+            change.attempts = query.getInt(8);
+            changes.add(change);
+        }
+        query.close();
+
+        return changes;
+    }
+
+    /**
+     * Clears the given send flag of the given changes, or of all changes if {@code null}. Then
+     * deletes changes that were sent to all services.
+     */
+    private void markSent(String sendColumn, List<Change> changes) {
+        String selection = null;
+        if (changes != null) {
+            if (changes.isEmpty()) {
+                return;
+            }
+            // only changes that were sent, they might have been replaced by newer ones since
+            selection = buildIdSelection(changes);
+        }
+
+        ContentValues values = new ContentValues();
+        values.put(sendColumn, 0);
+        app.getContentResolver().update(EpisodeOutbox.CONTENT_URI, values, selection, null);
+        app.getContentResolver().delete(EpisodeOutbox.CONTENT_URI, EpisodeOutbox.SELECTION_SENT,
+                null);
+    }
+
+    /**
+     * Increments the attempts of the given changes, so they are no longer retried on their own
+     * once they failed to send too often.
+     */
+    private void markFailed(List<Change> changes) {
+        // changes sent together were usually added together, so mostly have the same attempts
+        SparseArrayCompat<List<Change>> changesByAttempts = new SparseArrayCompat<>();
+        for (Change change : changes) {
+            List<Change> sameAttempts = changesByAttempts.get(change.attempts);
+            if (sameAttempts == null) {
+                sameAttempts = new ArrayList<>();
+                changesByAttempts.put(change.attempts, sameAttempts);
+            }
+            sameAttempts.add(change);
+        }
+        ContentValues values = new ContentValues();
+        for (int i = 0; i < changesByAttempts.size(); i++) {
+            values.put(EpisodeOutbox.ATTEMPTS, changesByAttempts.keyAt(i) + 1);
+            app.getContentResolver().update(EpisodeOutbox.CONTENT_URI, values,
+                    buildIdSelection(changesByAttempts.valueAt(i)), null);
+        }
+    }
+
+    private static String buildIdSelection(List<Change> changes) {
+        StringBuilder ids = new StringBuilder();
+        for (Change change : changes) {
+            if (ids.length() > 0) {
+                ids.append(",");
+            }
+            ids.append(change.id);
+        }
+        return EpisodeOutbox._ID + " IN (" + ids + ")";
+    }
+
+    /**
+     * Sends changes of each show in batches of {@link #EPISODE_MAX_BATCH_SIZE} episodes. A watched
+     * and a collected change of the same episode are sent as one.
+     *
+     * @return {@code false} if any batch failed to upload. Stops sending further batches.
+     */
+    private boolean uploadToHexagon(List<Change> changes) {
+        List<Change> batchChanges = new ArrayList<>();
+        List<Episode> batch = new ArrayList<>();
+        Episode episode = null;
+        Change previous = null;
+        for (Change change : changes) {
+            if (!change.sendToHexagon) {
+                continue;
+            }
+
+            boolean isNewShow = previous != null && previous.showTvdbId != change.showTvdbId;
+            if (isNewShow || batch.size() == EPISODE_MAX_BATCH_SIZE) {
+                if (!uploadBatchToHexagon(previous.showTvdbId, batch, batchChanges)) {
+                    return false;
+                }
+                batch = new ArrayList<>();
+                batchChanges.clear();
+                episode = null;
+            }
+
+            if (episode == null || previous.season != change.season
+                    || previous.number != change.number) {
+                episode = new Episode();
+                episode.setSeasonNumber(change.season);
+                episode.setEpisodeNumber(change.number);
+                batch.add(episode);
+            }
+            if (change.type == EpisodeOutbox.TYPE_WATCHED) {
+                episode.setWatchedFlag(change.value);
+            } else {
+                episode.setIsInCollection(EpisodeTools.isCollected(change.value));
+            }
+            batchChanges.add(change);
+            previous = change;
+        }
+
+        return batch.isEmpty()
+                || uploadBatchToHexagon(previous.showTvdbId, batch, batchChanges);
+    }
+
+    private boolean uploadBatchToHexagon(int showTvdbId, List<Episode> episodes,
+            List<Change> changes) {
+        EpisodeList uploadWrapper = new EpisodeList();
+        uploadWrapper.setShowTvdbId(showTvdbId);
+        uploadWrapper.setEpisodes(episodes);
+        if (!EpisodeTools.Upload.flagsToHexagon(app, uploadWrapper)) {
+            markFailed(changes);
+            return false;
+        }
+        markSent(EpisodeOutbox.SEND_HEXAGON, changes);
+        return true;
+    }
+
+    /**
+     * Sends changes of all shows in up to four requests: adding to and removing from watched
+     * history, adding to and removing from collection. Changes of shows without trakt id are
+     * dropped, they can not be sent.
+     *
+     * @return {@code false} if any request failed.
+     */
+    private boolean uploadToTrakt(List<Change> changes) {
+        List<Change> watched = new ArrayList<>();
+        List<Change> unwatched = new ArrayList<>();
+        List<Change> collected = new ArrayList<>();
+        List<Change> uncollected = new ArrayList<>();
+        List<Change> notOnTrakt = new ArrayList<>();
+
+        int currentShowTvdbId = 0;
+        Integer currentShowTraktId = null;
+        for (Change change : changes) {
+            if (!change.sendToTrakt) {
+                continue;
+            }
+            if (change.showTvdbId != currentShowTvdbId) {
+                currentShowTvdbId = change.showTvdbId;
+                currentShowTraktId = ShowTools.getShowTraktId(app, currentShowTvdbId);
+            }
+            if (currentShowTraktId == null) {
+                notOnTrakt.add(change);
+                continue;
+            }
+            change.showTraktId = currentShowTraktId;
+            if (change.type == EpisodeOutbox.TYPE_WATCHED) {
+                if (EpisodeTools.isWatched(change.value)) {
+                    watched.add(change);
+                } else if (EpisodeTools.isUnwatched(change.value)) {
+                    unwatched.add(change);
+                } else {
+                    // skipped episodes are not supported by trakt
+                    notOnTrakt.add(change);
+                }
+            } else {
+                if (EpisodeTools.isCollected(change.value)) {
+                    collected.add(change);
+                } else {
+                    uncollected.add(change);
+                }
+            }
+        }
+        markSent(EpisodeOutbox.SEND_TRAKT, notOnTrakt);
+
+        boolean isComplete = true;
+        if (!watched.isEmpty() && !uploadBatchToTrakt(watched, "set episodes watched",
+                traktSync.get().addItemsToWatchedHistory(buildSyncItems(watched)))) {
+            isComplete = false;
+        }
+        if (!unwatched.isEmpty() && !uploadBatchToTrakt(unwatched, "set episodes not watched",
+                traktSync.get().deleteItemsFromWatchedHistory(buildSyncItems(unwatched)))) {
+            isComplete = false;
+        }
+        if (!collected.isEmpty() && !uploadBatchToTrakt(collected, "add episodes to collection",
+                traktSync.get().addItemsToCollection(buildSyncItems(collected)))) {
+            isComplete = false;
+        }
+        if (!uncollected.isEmpty() && !uploadBatchToTrakt(uncollected,
+                "remove episodes from collection",
+                traktSync.get().deleteItemsFromCollection(buildSyncItems(uncollected)))) {
+            isComplete = false;
+        }
+        return isComplete;
+    }
+
+    /**
+     * Builds items for changes sorted by show, season and number.
+     */
+    private static SyncItems buildSyncItems(List<Change> changes) {
+        List<SyncShow> shows = new LinkedList<>();
+        SyncShow currentShow = null;
+        SyncSeason currentSeason = null;
+        int currentShowTraktId = 0;
+        for (Change change : changes) {
+            // start new show?
+            if (currentShow == null || change.showTraktId != currentShowTraktId) {
+                currentShowTraktId = change.showTraktId;
+                currentShow = new SyncShow().id(ShowIds.trakt(currentShowTraktId));
+                currentShow.seasons = new LinkedList<>();
+                currentSeason = null;
+                shows.add(currentShow);
+            }
+            // start new season?
+            if (currentSeason == null || change.season != currentSeason.number) {
+                currentSeason = new SyncSeason().number(change.season);
+                currentSeason.episodes = new LinkedList<>();
+                currentShow.seasons.add(currentSeason);
+            }
+            currentSeason.episodes.add(new SyncEpisode().number(change.number));
+        }
+        return new SyncItems().shows(shows);
+    }
+
+    private boolean uploadBatchToTrakt(List<Change> changes, String action,
+            Call<SyncResponse> call) {
+        try {
+            Response<SyncResponse> response = call.execute();
+            if (response.isSuccessful()) {
+                // sending items not found again will not help, only log them
+                logNotFound(response.body());
+                markSent(EpisodeOutbox.SEND_TRAKT, changes);
+                return true;
+            } else {
+                if (SgTrakt.isUnauthorized(app, response)) {
+                    // sent once signed in again
+                    return false;
+                }
+                SgTrakt.trackFailedRequest(app, action, response);
+                if (isPermanentFailure(response.code())) {
+                    // sending the same changes again will fail again
+                    Timber.w("uploadToTrakt: dropping %s changes, %s failed with %s",
+                            changes.size(), action, response.code());
+                    markSent(EpisodeOutbox.SEND_TRAKT, changes);
+                    return true;
+                }
+            }
+        } catch (IOException e) {
+            SgTrakt.trackFailedRequest(app, action, e);
+        }
+        markFailed(changes);
+        return false;
+    }
+
+    /**
+     * Client errors other than timeouts and rate limiting will not succeed when retried.
+     */
+    private static boolean isPermanentFailure(int code) {
+        return code >= 400 && code < 500 && code != 408 && code != 429;
+    }
+
+    private static void logNotFound(SyncResponse response) {
+        if (response == null || response.not_found == null) {
+            return;
+        }
+        List<String> notFound = new ArrayList<>();
+        if (response.not_found.shows != null && !response.not_found.shows.isEmpty()) {
+            notFound.add(response.not_found.shows.size() + " shows");
+        }
+        if (response.not_found.seasons != null && !response.not_found.seasons.isEmpty()) {
+            notFound.add(response.not_found.seasons.size() + " seasons");
+        }
+        if (response.not_found.episodes != null && !response.not_found.episodes.isEmpty()) {
+            notFound.add(response.not_found.episodes.size() + " episodes");
+        }
+        if (!notFound.isEmpty()) {
+            Timber.w("uploadToTrakt: not found %s", TextUtils.join(", ", notFound));
+        }
+    }
+}
@@ -22,12 +22,12 @@ import com.battlelancer.seriesguide.backend.HexagonTools;
 import com.battlelancer.seriesguide.backend.settings.HexagonSettings;
 import com.battlelancer.seriesguide.items.SearchResult;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.ListItems;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
 import com.battlelancer.seriesguide.settings.TmdbSettings;
 import com.battlelancer.seriesguide.settings.TraktCredentials;
 import com.battlelancer.seriesguide.settings.TraktSettings;
 import com.battlelancer.seriesguide.settings.UpdateSettings;
-import com.battlelancer.seriesguide.thetvdbapi.TvdbException;
 import com.battlelancer.seriesguide.thetvdbapi.TvdbTools;
 import com.battlelancer.seriesguide.tmdbapi.SgTmdb;
 import com.battlelancer.seriesguide.util.DBUtils;
@@ -36,6 +36,7 @@ import com.battlelancer.seriesguide.util.ShowTools;
 import com.battlelancer.seriesguide.util.TaskManager;
 import com.battlelancer.seriesguide.util.TraktTools;
 import com.battlelancer.seriesguide.util.Utils;
+import com.battlelancer.seriesguide.util.collections.IntSet;
 import com.uwetrottmann.androidutils.AndroidUtils;
 import com.uwetrottmann.tmdb2.entities.Configuration;
 import com.uwetrottmann.tmdb2.services.ConfigurationService;
@@ -44,7 +45,6 @@ import com.uwetrottmann.trakt5.entities.LastActivityMore;
 import dagger.Lazy;
 import java.io.IOException;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -77,7 +77,13 @@ public class SgSyncAdapter extends AbstractThreadedSyncAdapter {
     }
 
     public enum UpdateResult {
-        SUCCESS, INCOMPLETE
+        SUCCESS,
+        INCOMPLETE,
+        /**
+         * Synced, except downloading episode flags as episode changes are still waiting to be
+         * sent, see {@link EpisodeFlagOutbox}. Does not back off the sync.
+         */
+        OUTBOX_PENDING
     }
 
     public interface SyncInitBundle {
@@ -286,123 +292,151 @@ public class SgSyncAdapter extends AbstractThreadedSyncAdapter {
             }
         }
 
-        // from here on we need more sophisticated abort handling, so keep track of errors
-        UpdateResult resultCode = UpdateResult.SUCCESS;
-
-        // loop through shows and download latest data from TVDb
-        Timber.d("Syncing...TVDb");
-        final AtomicInteger updateCount = new AtomicInteger();
-        final ContentResolver resolver = getContext().getContentResolver();
-        for (int i = updateCount.get(); i < showsToUpdate.length; i++) {
-            int id = showsToUpdate[i];
-
-            // stop sync if connectivity is lost
-            if (!AndroidUtils.isNetworkConnected(getContext())) {
-                resultCode = UpdateResult.INCOMPLETE;
-                break;
-            }
-
+        // record durations and counters of each phase, see sync reports in debug drawer
+        final SyncTracer tracer = SyncTracer.start(syncType);
+        try {
+            // from here on we need more sophisticated abort handling, so keep track of errors
+            // download latest data from TVDb for multiple shows at once
+            Timber.d("Syncing...TVDb");
+            tracer.beginPhase("tvdb");
+            final AtomicInteger updateCount = new AtomicInteger();
+            // shows with changed episodes, only their next episodes have to be updated
+            final IntSet changedShows = new IntSet();
+            // notify once per changed URI instead of after each show
+            UpdateResult resultCode;
+            DBUtils.beginNotificationSession(getContext());
             try {
-                TvdbTools.getInstance(app).updateShow(id);
-
-                // make sure other loaders (activity, overview, details) are notified
-                resolver.notifyChange(Episodes.CONTENT_URI_WITHSHOW, null);
-            } catch (TvdbException e) {
-                // failed, continue with other shows
-                resultCode = UpdateResult.INCOMPLETE;
-                Timber.e(e, "Updating show failed");
+                resultCode = new ShowSyncPipeline(app).updateShows(showsToUpdate, updateCount,
+                        changedShows);
+            } finally {
+                DBUtils.endNotificationSession(getContext());
             }
 
-            updateCount.incrementAndGet();
-        }
-
-        // do some more things if this is not a quick update
-        if (syncType != SyncType.SINGLE) {
-            final SharedPreferences prefs = PreferenceManager
-                    .getDefaultSharedPreferences(getContext());
-
-            // get latest TMDb configuration
-            Timber.d("Syncing...TMDb config");
-            getTmdbConfiguration(prefs);
-
-            // sync with Hexagon or trakt
-            final HashSet<Integer> showsExisting = ShowTools.getShowTvdbIdsAsSet(getContext());
-            @SuppressLint("UseSparseArrays")
-            final HashMap<Integer, SearchResult> showsNew = new HashMap<>();
-            if (showsExisting == null) {
-                resultCode = UpdateResult.INCOMPLETE;
-            } else {
-                if (HexagonSettings.isEnabled(getContext())) {
-                    // sync with hexagon...
-                    Timber.d("Syncing...Hexagon");
-                    boolean success = HexagonTools.syncWithHexagon(app, showsExisting, showsNew);
-                    // don't overwrite failure
-                    if (resultCode == UpdateResult.SUCCESS) {
-                        resultCode = success ? UpdateResult.SUCCESS : UpdateResult.INCOMPLETE;
-                    }
+            // do some more things if this is not a quick update
+            if (syncType != SyncType.SINGLE) {
+                final SharedPreferences prefs = PreferenceManager
+                        .getDefaultSharedPreferences(getContext());
+
+                // get latest TMDb configuration
+                Timber.d("Syncing...TMDb config");
+                tracer.beginPhase("tmdb config");
+                getTmdbConfiguration(prefs);
+
+                // sync with Hexagon or trakt
+                final IntSet showsExisting = ShowTools.getShowTvdbIdsAsSet(getContext());
+                @SuppressLint("UseSparseArrays")
+                final HashMap<Integer, SearchResult> showsNew = new HashMap<>();
+                // send pending episode changes first, downloaded flags would overwrite them
+                // also sends changes left over from a previous run, e.g. if the app was killed
+                tracer.beginPhase("outbox");
+                boolean isOutboxEmpty = EpisodeFlagOutbox.getInstance(app).flushOrScheduleRetry();
+                if (!isOutboxEmpty) {
+                    // download episode flags once sent, sync everything else
+                    Timber.d("Syncing...episode flags skipped, episode changes pending");
+                }
+                if (showsExisting == null) {
+                    resultCode = UpdateResult.INCOMPLETE;
                 } else {
-                    // ...OR sync with trakt
-                    Timber.d("Syncing...trakt");
-                    UpdateResult resultTrakt = performTraktSync(showsExisting, currentTime);
-                    // don't overwrite failure
-                    if (resultCode == UpdateResult.SUCCESS) {
-                        resultCode = resultTrakt;
-                    }
-
-                    // add shows newly discovered on trakt
-                    if (showsNew.size() > 0) {
-                        List<SearchResult> showsNewList = new LinkedList<>(showsNew.values());
-                        TaskManager.getInstance(getContext())
-                                .performAddTask(app, showsNewList, true, false);
+                    // notify once per changed URI instead of after each show or batch
+                    DBUtils.beginNotificationSession(getContext());
+                    try {
+                        if (HexagonSettings.isEnabled(getContext())) {
+                            // sync with hexagon...
+                            Timber.d("Syncing...Hexagon");
+                            tracer.beginPhase("hexagon");
+                            boolean success = HexagonTools.syncWithHexagon(app, showsExisting,
+                                    showsNew, isOutboxEmpty, changedShows);
+                            if (!success) {
+                                SyncTracer.onFailure();
+                            }
+                            // don't overwrite failure
+                            if (resultCode == UpdateResult.SUCCESS) {
+                                resultCode = success
+                                        ? UpdateResult.SUCCESS : UpdateResult.INCOMPLETE;
+                            }
+                        } else {
+                            // ...OR sync with trakt
+                            Timber.d("Syncing...trakt");
+                            tracer.beginPhase("trakt");
+                            UpdateResult resultTrakt = performTraktSync(showsExisting, currentTime,
+                                    isOutboxEmpty, changedShows);
+                            if (resultTrakt != UpdateResult.SUCCESS) {
+                                SyncTracer.onFailure();
+                            }
+                            // don't overwrite failure
+                            if (resultCode == UpdateResult.SUCCESS) {
+                                resultCode = resultTrakt;
+                            }
+
+                            // add shows newly discovered on trakt
+                            if (showsNew.size() > 0) {
+                                List<SearchResult> showsNewList
+                                        = new LinkedList<>(showsNew.values());
+                                TaskManager.getInstance(getContext())
+                                        .performAddTask(app, showsNewList, true, false);
+                            }
+                        }
+
+                        // make sure other loaders (activity, overview, details) are notified
+                        DBUtils.notifyChange(getContext(), Episodes.CONTENT_URI_WITHSHOW);
+                    } finally {
+                        DBUtils.endNotificationSession(getContext());
                     }
                 }
 
-                // make sure other loaders (activity, overview, details) are notified of changes
-                resolver.notifyChange(Episodes.CONTENT_URI_WITHSHOW, null);
-            }
-
-            // renew search table if shows were updated and it will not be renewed by add task
-            if (updateCount.get() > 0 && showsToUpdate.length > 0 && showsNew.size() == 0) {
-                DBUtils.rebuildFtsTable(getContext());
-            }
+                // update next episodes of changed shows, added shows update their own
+                tracer.beginPhase("next episodes");
+                if (!changedShows.isEmpty()) {
+                    DBUtils.updateLatestEpisodes(getContext(), changedShows.toArray());
+                    getContext().getContentResolver()
+                            .notifyChange(ListItems.CONTENT_WITH_DETAILS_URI, null);
+                }
 
-            // update next episodes for all shows
-            TaskManager.getInstance(getContext()).tryNextEpisodeUpdateTask();
+                // the outbox retries on its own, so pending changes do not back off the sync
+                if (resultCode == UpdateResult.SUCCESS && !isOutboxEmpty) {
+                    resultCode = UpdateResult.OUTBOX_PENDING;
+                }
 
-            // store time of update, set retry counter on failure
-            if (resultCode == UpdateResult.SUCCESS) {
-                // we were successful, reset failed counter
-                prefs.edit().putLong(UpdateSettings.KEY_LASTUPDATE, currentTime)
-                        .putInt(UpdateSettings.KEY_FAILED_COUNTER, 0).commit();
-            } else {
-                int failed = UpdateSettings.getFailedNumberOfUpdates(getContext());
-
-                /*
-                 * Back off by 2**(failure + 2) * minutes. Purposely set a fake
-                 * last update time, because the next update will be triggered
-                 * UPDATE_INTERVAL minutes after the last update time. This way
-                 * we can trigger it earlier (4min up to 32min).
-                 */
-                long fakeLastUpdateTime;
-                if (failed < 4) {
-                    fakeLastUpdateTime = currentTime
-                            - ((SYNC_INTERVAL_MINIMUM_MINUTES - (int) Math.pow(2, failed + 2))
-                            * DateUtils.MINUTE_IN_MILLIS);
+                // store time of update, set retry counter on failure
+                if (resultCode != UpdateResult.INCOMPLETE) {
+                    // we were successful, reset failed counter
+                    prefs.edit().putLong(UpdateSettings.KEY_LASTUPDATE, currentTime)
+                            .putInt(UpdateSettings.KEY_FAILED_COUNTER, 0).commit();
                 } else {
-                    fakeLastUpdateTime = currentTime;
-                }
+                    int failed = UpdateSettings.getFailedNumberOfUpdates(getContext());
+
+                    /*
+                     * Back off by 2**(failure + 2) * minutes. Purposely set a fake
+                     * last update time, because the next update will be triggered
+                     * UPDATE_INTERVAL minutes after the last update time. This way
+                     * we can trigger it earlier (4min up to 32min).
+                     */
+                    long fakeLastUpdateTime;
+                    if (failed < 4) {
+                        fakeLastUpdateTime = currentTime
+                                - ((SYNC_INTERVAL_MINIMUM_MINUTES - (int) Math.pow(2, failed + 2))
+                                * DateUtils.MINUTE_IN_MILLIS);
+                    } else {
+                        fakeLastUpdateTime = currentTime;
+                    }
 
-                failed += 1;
-                prefs.edit()
-                        .putLong(UpdateSettings.KEY_LASTUPDATE, fakeLastUpdateTime)
-                        .putInt(UpdateSettings.KEY_FAILED_COUNTER, failed).commit();
+                    failed += 1;
+                    prefs.edit()
+                            .putLong(UpdateSettings.KEY_LASTUPDATE, fakeLastUpdateTime)
+                            .putInt(UpdateSettings.KEY_FAILED_COUNTER, failed).commit();
+                }
             }
-        }
 
-        // There could have been new episodes added after an update
-        Utils.runNotificationService(getContext());
+            // There could have been new episodes added after an update
+            Utils.runNotificationService(getContext());
 
-        Timber.i("Syncing...%s", resultCode.toString());
+            SyncReport report = tracer.finish(resultCode, updateCount.get());
+            SyncReportStore.save(getContext(), report);
+            Timber.i("Syncing...%s", report.toSummary());
+        } finally {
+            // also if the sync failed, so other syncs and writes are not counted against it
+            tracer.deactivate();
+        }
     }
 
     /**
@@ -461,7 +495,8 @@ public class SgSyncAdapter extends AbstractThreadedSyncAdapter {
         }
     }
 
-    private UpdateResult performTraktSync(HashSet<Integer> localShows, long currentTime) {
+    private UpdateResult performTraktSync(IntSet localShows, long currentTime,
+            boolean syncEpisodeFlags, IntSet changedShows) {
         if (!TraktCredentials.get(getContext()).hasCredentials()) {
             Timber.d("performTraktSync: no auth, skip");
             return UpdateResult.SUCCESS;
@@ -484,12 +519,14 @@ public class SgSyncAdapter extends AbstractThreadedSyncAdapter {
             return UpdateResult.INCOMPLETE;
         }
 
-        if (localShows.size() == 0) {
+        if (localShows.isEmpty()) {
             Timber.d("performTraktSync: no local shows, skip shows");
         } else {
-            // download and upload episode watched and collected flags
-            if (performTraktEpisodeSync(localShows, lastActivity.episodes, currentTime)
-                    != UpdateResult.SUCCESS) {
+            // download and upload episode watched and collected flags,
+            // unless downloaded flags would overwrite pending changes
+            if (syncEpisodeFlags
+                    && performTraktEpisodeSync(localShows, lastActivity.episodes, currentTime,
+                    changedShows) != UpdateResult.SUCCESS) {
                 return UpdateResult.INCOMPLETE;
             }
 
@@ -551,8 +588,9 @@ public class SgSyncAdapter extends AbstractThreadedSyncAdapter {
      * <p> Do <b>NOT</b> call if there are no local shows to avoid unnecessary work.
      */
     @SuppressLint("CommitPrefEdits")
-    private UpdateResult performTraktEpisodeSync(@NonNull HashSet<Integer> localShows,
-            @NonNull LastActivityMore lastActivity, long currentTime) {
+    private UpdateResult performTraktEpisodeSync(@NonNull IntSet localShows,
+            @NonNull LastActivityMore lastActivity, long currentTime,
+            @NonNull IntSet changedShows) {
         // do we need to merge data instead of overwriting with data from trakt?
         boolean isInitialSync = !TraktSettings.hasMergedEpisodes(getContext());
 
@@ -560,7 +598,7 @@ public class SgSyncAdapter extends AbstractThreadedSyncAdapter {
         // if initial sync, upload any flags missing on trakt
         // otherwise clear all local flags not on trakt
         int resultCode = app.getTraktTools().syncEpisodeFlags(localShows, lastActivity,
-                isInitialSync);
+                isInitialSync, changedShows);
 
         if (resultCode < 0) {
             return UpdateResult.INCOMPLETE;
@@ -0,0 +1,134 @@
+package com.battlelancer.seriesguide.sync;
+
+import com.battlelancer.seriesguide.SgApp;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
+import com.battlelancer.seriesguide.sync.SgSyncAdapter.UpdateResult;
+import com.battlelancer.seriesguide.thetvdbapi.TvdbException;
+import com.battlelancer.seriesguide.thetvdbapi.TvdbTools;
+import com.battlelancer.seriesguide.util.BoundedCompletionService;
+import com.battlelancer.seriesguide.util.DBUtils;
+import com.battlelancer.seriesguide.util.HostRateLimitInterceptor;
+import com.battlelancer.seriesguide.util.collections.IntSet;
+import com.uwetrottmann.androidutils.AndroidUtils;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import timber.log.Timber;
+
+/**
+ * Updates shows from TVDb using a bounded pool of worker threads which download show details and
+ * episodes concurrently. The calling thread is the only one writing to the database, it stores each
+ * show as soon as its download has finished.
+ *
+ * <p> Runs {@link #WORKER_COUNT} workers, their requests to each API are limited by {@link
+ * HostRateLimitInterceptor}. How far downloads may get ahead of the writer is limited by {@link
+ * BoundedCompletionService}.
+ */
+class ShowSyncPipeline {
+
+    private static final int WORKER_COUNT = 4;
+
+    private final SgApp app;
+    private final TvdbTools tvdbTools;
+
+    ShowSyncPipeline(SgApp app) {
+        this.app = app;
+        this.tvdbTools = TvdbTools.getInstance(app);
+    }
+
+    /**
+     * Updates the given shows. Stops downloading further shows if connectivity is lost.
+     *
+     * @param updateCount Incremented for each show an update was attempted for.
+     * @param changedShows Receives the TVDb ids of shows that were updated.
+     * @return {@link UpdateResult#INCOMPLETE} if any show failed to update or the network
+     * connection was lost.
+     */
+    UpdateResult updateShows(int[] showTvdbIds, AtomicInteger updateCount,
+            IntSet changedShows) {
+        if (showTvdbIds.length == 0) {
+            return UpdateResult.SUCCESS;
+        }
+
+        Timber.d("updateShows: %s shows with %s workers", showTvdbIds.length, WORKER_COUNT);
+        ExecutorService executor = Executors.newFixedThreadPool(WORKER_COUNT,
+                HostRateLimitInterceptor.newLimitedThreadFactory("show-sync"));
+        BoundedCompletionService<TvdbTools.ShowUpdate> downloads
+                = new BoundedCompletionService<>(executor, WORKER_COUNT);
+
+        UpdateResult resultCode = UpdateResult.SUCCESS;
+        int submitted = 0;
+        boolean isStopped = false;
+        try {
+            while (true) {
+                while (!isStopped && submitted < showTvdbIds.length && !downloads.isFull()) {
+                    // stop sync if connectivity is lost
+                    if (!AndroidUtils.isNetworkConnected(app)) {
+                        resultCode = UpdateResult.INCOMPLETE;
+                        isStopped = true;
+                        break;
+                    }
+                    downloads.submit(new FetchShowCallable(showTvdbIds[submitted]));
+                    submitted++;
+                }
+                if (downloads.isEmpty()) {
+                    break; // all submitted shows are done
+                }
+
+                Future<TvdbTools.ShowUpdate> future = downloads.take();
+                try {
+                    TvdbTools.ShowUpdate update = future.get();
+                    if (update != null) {
+                        tvdbTools.storeShowUpdate(update);
+                        changedShows.add(update.showTvdbId);
+
+                        // make sure other loaders (activity, overview, details) are notified
+                        DBUtils.notifyChange(app, Episodes.CONTENT_URI_WITHSHOW);
+                    }
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof TvdbException) {
+                        // failed, continue with other shows
+                        resultCode = UpdateResult.INCOMPLETE;
+                        SyncTracer.onFailure();
+                        Timber.e(cause, "Updating show failed");
+                    } else {
+                        throw BoundedCompletionService.rethrow(e);
+                    }
+                } catch (TvdbException e) {
+                    // failed to store, continue with other shows
+                    resultCode = UpdateResult.INCOMPLETE;
+                    SyncTracer.onFailure();
+                    Timber.e(e, "Updating show failed");
+                }
+
+                updateCount.incrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Timber.w("updateShows: interrupted");
+            resultCode = UpdateResult.INCOMPLETE;
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return resultCode;
+    }
+
+    private class FetchShowCallable implements Callable<TvdbTools.ShowUpdate> {
+
+        private final int showTvdbId;
+
+        FetchShowCallable(int showTvdbId) {
+            this.showTvdbId = showTvdbId;
+        }
+
+        @Override
+        public TvdbTools.ShowUpdate call() throws Exception {
+            return tvdbTools.fetchShowUpdate(showTvdbId);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.battlelancer.seriesguide.sync;
+
+import com.battlelancer.seriesguide.util.HttpMetrics;
+import java.util.List;
+
+/**
+ * Durations and counters of a single sync, built by {@link SyncTracer}. Stored as JSON, so do not
+ * rename fields.
+ */
+public class SyncReport {
+
+    /** Time the sync started at in ms since epoch. */
+    public long startedAt;
+    public String syncType;
+    public String result;
+    public long durationMs;
+    /** Number of shows an update from TVDb was attempted for. */
+    public int showCount;
+    public List<Phase> phases;
+    /** The endpoints with the longest total request time, the longest first. */
+    public List<Endpoint> endpoints;
+
+    public static class Phase {
+
+        public String name;
+        /** Wall time from beginning to end of the phase. */
+        public long durationMs;
+        /** Time spent writing to the database during the phase. */
+        public long databaseMs;
+        public int requests;
+        /** Bytes of all request and response bodies. */
+        public long bytes;
+        public int rowsWritten;
+        public int failures;
+    }
+
+    public static class Endpoint {
+
+        /** Host and path template, see {@link HttpMetrics#getEndpoint(okhttp3.HttpUrl)}. */
+        public String name;
+        public int requests;
+        /** Sum of the time until the response of each request was received. */
+        public long totalMs;
+        /** Bytes of all request and response bodies. */
+        public long bytes;
+        public int cacheHits;
+        public int conditionalHits;
+        public int failures;
+    }
+
+    /**
+     * Returns a one line summary, like {@code DELTA SUCCESS 1234 ms, tvdb 1000 ms 12 requests}.
+     */
+    public String toSummary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(syncType).append(' ').append(result).append(' ')
+                .append(durationMs).append(" ms");
+        if (phases != null) {
+            for (Phase phase : phases) {
+                summary.append(", ").append(phase.name).append(' ')
+                        .append(phase.durationMs).append(" ms");
+                if (phase.requests > 0) {
+                    summary.append(' ').append(phase.requests).append(" requests");
+                }
+                if (phase.failures > 0) {
+                    summary.append(' ').append(phase.failures).append(" failures");
+                }
+            }
+        }
+        return summary.toString();
+    }
+}
@@ -0,0 +1,112 @@
+package com.battlelancer.seriesguide.sync;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.SyncReports;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import timber.log.Timber;
+
+/**
+ * Stores the {@link SyncReport} of the latest {@link #MAX_REPORTS} syncs in the database and
+ * exports them as JSON.
+ */
+public class SyncReportStore {
+
+    static final int MAX_REPORTS = 20;
+
+    private static final String EXPORT_FILE_NAME = "sync-reports.json";
+
+    private SyncReportStore() {
+    }
+
+    /**
+     * Saves the report and removes all but the latest {@link #MAX_REPORTS} reports.
+     */
+    static void save(Context context, SyncReport report) {
+        ContentValues values = new ContentValues();
+        values.put(SyncReports.STARTED_AT, report.startedAt);
+        values.put(SyncReports.SYNC_TYPE, report.syncType);
+        values.put(SyncReports.RESULT, report.result);
+        values.put(SyncReports.DURATION_MS, report.durationMs);
+        values.put(SyncReports.JSON, new Gson().toJson(report));
+        context.getContentResolver().insert(SyncReports.CONTENT_URI, values);
+
+        // remove reports older than the oldest one to keep
+        Cursor query = context.getContentResolver().query(SyncReports.CONTENT_URI,
+                new String[] { SyncReports.STARTED_AT }, null, null,
+                SyncReports.SORT_LATEST_FIRST);
+        if (query == null) {
+            return;
+        }
+        if (query.moveToPosition(MAX_REPORTS - 1)) {
+            context.getContentResolver().delete(SyncReports.CONTENT_URI,
+                    SyncReports.STARTED_AT + "<?", new String[] { query.getString(0) });
+        }
+        query.close();
+    }
+
+    /**
+     * Returns stored reports, the latest first.
+     */
+    @NonNull
+    public static List<SyncReport> getLatest(Context context) {
+        List<SyncReport> reports = new ArrayList<>();
+        Cursor query = context.getContentResolver().query(SyncReports.CONTENT_URI,
+                new String[] { SyncReports.JSON }, null, null, SyncReports.SORT_LATEST_FIRST);
+        if (query == null) {
+            return reports;
+        }
+        Gson gson = new Gson();
+        while (query.moveToNext()) {
+            try {
+                reports.add(gson.fromJson(query.getString(0), SyncReport.class));
+            } catch (JsonParseException e) {
+                Timber.e(e, "getLatest: invalid report");
+            }
+        }
+        query.close();
+        return reports;
+    }
+
+    /**
+     * Writes all stored reports as a JSON array to the external files directory of the app.
+     *
+     * @return The written file, or {@code null} if external storage is not available or writing
+     * failed.
+     */
+    @Nullable
+    public static File exportToFile(Context context) {
+        File directory = context.getExternalFilesDir(null);
+        if (directory == null) {
+            return null;
+        }
+        File file = new File(directory, EXPORT_FILE_NAME);
+        Writer writer = null;
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+            new Gson().toJson(getLatest(context), writer);
+        } catch (IOException e) {
+            Timber.e(e, "exportToFile: failed");
+            return null;
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+        return file;
+    }
+}
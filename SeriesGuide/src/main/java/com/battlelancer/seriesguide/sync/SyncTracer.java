@@ -0,0 +1,285 @@
+package com.battlelancer.seriesguide.sync;
+
+import android.support.annotation.Nullable;
+import com.battlelancer.seriesguide.util.HttpMetrics;
+import com.battlelancer.seriesguide.util.LatencyHistogram;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records durations, requests, bytes transferred, rows written and failures of the phases of a
+ * sync. Phases run one after another, counters reported by the sync thread or worker threads it
+ * started are added to the current phase.
+ *
+ * <p> While a sync runs its tracer is {@link #getActive() active}, so the HTTP client (see {@link
+ * com.battlelancer.seriesguide.util.HttpMetricsInterceptor}) and the content provider can report
+ * to it without passing it around. If no sync runs, or reporting happens on another thread, like
+ * the UI writing to the database during a sync, reporting does nothing. Requests are also counted
+ * per endpoint, the {@link #MAX_ENDPOINTS} with the longest total time are included in the report.
+ */
+public class SyncTracer {
+
+    static final int MAX_ENDPOINTS = 10;
+
+    @Nullable private static volatile SyncTracer active;
+    /**
+     * The tracer of the sync that started this thread, inherited by threads created by it. Only
+     * used if it is still the active tracer, as threads of shared pools may outlive a sync.
+     */
+    private static final InheritableThreadLocal<SyncTracer> threadTracer
+            = new InheritableThreadLocal<>();
+
+    private final SgSyncAdapter.SyncType syncType;
+    private final long startedAt;
+    private final long startNanos;
+    private final List<Phase> phases = new ArrayList<>();
+    @Nullable private volatile Phase currentPhase;
+    private final Map<String, Endpoint> endpoints = new HashMap<>();
+
+    private static class Phase {
+        final String name;
+        final long startNanos;
+        long endNanos;
+        final AtomicLong databaseNanos = new AtomicLong();
+        final AtomicInteger requests = new AtomicInteger();
+        final AtomicLong bytes = new AtomicLong();
+        final AtomicInteger rowsWritten = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger();
+
+        Phase(String name, long startNanos) {
+            this.name = name;
+            this.startNanos = startNanos;
+        }
+    }
+
+    private static class Endpoint {
+        final String name;
+        int requests;
+        long nanos;
+        long bytes;
+        int cacheHits;
+        int conditionalHits;
+        int failures;
+
+        Endpoint(String name) {
+            this.name = name;
+        }
+    }
+
+    private SyncTracer(SgSyncAdapter.SyncType syncType) {
+        this.syncType = syncType;
+        this.startedAt = System.currentTimeMillis();
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Creates a tracer for a new sync running on the calling thread and makes it the {@link
+     * #getActive() active} one. Call {@link #deactivate()} once the sync is done, even if it
+     * failed.
+     */
+    public static SyncTracer start(SgSyncAdapter.SyncType syncType) {
+        SyncTracer tracer = new SyncTracer(syncType);
+        threadTracer.set(tracer);
+        active = tracer;
+        return tracer;
+    }
+
+    /**
+     * Returns the tracer of the currently running sync, or {@code null} if there is none or this
+     * thread does not belong to it.
+     */
+    @Nullable
+    public static SyncTracer getActive() {
+        SyncTracer tracer = active;
+        return tracer != null && tracer == threadTracer.get() ? tracer : null;
+    }
+
+    /**
+     * Adds a request, its body bytes and whether it failed to the current phase and the given
+     * endpoint of the active tracer, if any.
+     *
+     * @param nanos Time until the response was received.
+     * @param cacheResult {@code null} if the request failed without a response.
+     */
+    public static void onRequest(String endpoint, long bytes, long nanos,
+            @Nullable HttpMetrics.CacheResult cacheResult, boolean isFailure) {
+        SyncTracer tracer = getActive();
+        Phase phase = tracer == null ? null : tracer.currentPhase;
+        if (phase == null) {
+            return;
+        }
+        phase.requests.incrementAndGet();
+        phase.bytes.addAndGet(bytes);
+        if (isFailure) {
+            phase.failures.incrementAndGet();
+        }
+        synchronized (tracer.endpoints) {
+            Endpoint stats = tracer.getEndpoint(endpoint);
+            stats.requests++;
+            stats.nanos += nanos;
+            stats.bytes += bytes;
+            if (cacheResult == HttpMetrics.CacheResult.HIT) {
+                stats.cacheHits++;
+            } else if (cacheResult == HttpMetrics.CacheResult.CONDITIONAL_HIT) {
+                stats.conditionalHits++;
+            }
+            if (isFailure) {
+                stats.failures++;
+            }
+        }
+    }
+
+    /**
+     * Adds response body bytes read after the request was counted to the current phase and the
+     * given endpoint of the active tracer, if any.
+     */
+    public static void onBytesRead(String endpoint, long bytes) {
+        SyncTracer tracer = getActive();
+        Phase phase = tracer == null ? null : tracer.currentPhase;
+        if (phase == null) {
+            return;
+        }
+        phase.bytes.addAndGet(bytes);
+        synchronized (tracer.endpoints) {
+            tracer.getEndpoint(endpoint).bytes += bytes;
+        }
+    }
+
+    private Endpoint getEndpoint(String name) {
+        Endpoint endpoint = endpoints.get(name);
+        if (endpoint == null) {
+            endpoint = new Endpoint(name);
+            endpoints.put(name, endpoint);
+        }
+        return endpoint;
+    }
+
+    /**
+     * Adds a failure, like a show that could not be updated, to the current phase of the active
+     * tracer, if any.
+     */
+    public static void onFailure() {
+        Phase phase = getActivePhase();
+        if (phase != null) {
+            phase.failures.incrementAndGet();
+        }
+    }
+
+    /**
+     * Adds rows written and the time it took to the current phase of the active tracer, if any.
+     */
+    public static void onDatabaseWrite(int rows, long nanos) {
+        Phase phase = getActivePhase();
+        if (phase != null) {
+            phase.rowsWritten.addAndGet(rows);
+            phase.databaseNanos.addAndGet(nanos);
+        }
+    }
+
+    @Nullable
+    private static Phase getActivePhase() {
+        SyncTracer tracer = getActive();
+        return tracer == null ? null : tracer.currentPhase;
+    }
+
+    /**
+     * Ends the current phase, if any, and begins a new one.
+     */
+    public void beginPhase(String name) {
+        long now = System.nanoTime();
+        endPhase(now);
+        Phase phase = new Phase(name, now);
+        phases.add(phase);
+        currentPhase = phase;
+    }
+
+    /**
+     * Ends the current phase and deactivates this tracer.
+     *
+     * @return A report of all phases.
+     */
+    public SyncReport finish(SgSyncAdapter.UpdateResult result, int showCount) {
+        long now = System.nanoTime();
+        endPhase(now);
+        deactivate();
+
+        SyncReport report = new SyncReport();
+        report.startedAt = startedAt;
+        report.syncType = syncType.name();
+        report.result = result.name();
+        report.durationMs = toMillis(now - startNanos);
+        report.showCount = showCount;
+        report.phases = new ArrayList<>(phases.size());
+        for (Phase phase : phases) {
+            SyncReport.Phase reportPhase = new SyncReport.Phase();
+            reportPhase.name = phase.name;
+            reportPhase.durationMs = toMillis(phase.endNanos - phase.startNanos);
+            reportPhase.databaseMs = toMillis(phase.databaseNanos.get());
+            reportPhase.requests = phase.requests.get();
+            reportPhase.bytes = phase.bytes.get();
+            reportPhase.rowsWritten = phase.rowsWritten.get();
+            reportPhase.failures = phase.failures.get();
+            report.phases.add(reportPhase);
+        }
+        report.endpoints = buildSlowestEndpoints();
+        return report;
+    }
+
+    /**
+     * Stops reporting to this tracer if it is the active one. Does nothing if it was already
+     * deactivated, e.g. by {@link #finish}.
+     */
+    public void deactivate() {
+        if (active == this) {
+            active = null;
+        }
+        threadTracer.remove();
+    }
+
+    private List<SyncReport.Endpoint> buildSlowestEndpoints() {
+        List<Endpoint> sorted;
+        synchronized (endpoints) {
+            sorted = new ArrayList<>(endpoints.values());
+        }
+        Collections.sort(sorted, new Comparator<Endpoint>() {
+            @Override
+            public int compare(Endpoint left, Endpoint right) {
+                return LatencyHistogram.compareSlowestFirst(left.nanos, right.nanos);
+            }
+        });
+
+        int count = Math.min(sorted.size(), MAX_ENDPOINTS);
+        List<SyncReport.Endpoint> reportEndpoints = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Endpoint endpoint = sorted.get(i);
+            SyncReport.Endpoint reportEndpoint = new SyncReport.Endpoint();
+            reportEndpoint.name = endpoint.name;
+            reportEndpoint.requests = endpoint.requests;
+            reportEndpoint.totalMs = toMillis(endpoint.nanos);
+            reportEndpoint.bytes = endpoint.bytes;
+            reportEndpoint.cacheHits = endpoint.cacheHits;
+            reportEndpoint.conditionalHits = endpoint.conditionalHits;
+            reportEndpoint.failures = endpoint.failures;
+            reportEndpoints.add(reportEndpoint);
+        }
+        return reportEndpoints;
+    }
+
+    private void endPhase(long now) {
+        Phase phase = currentPhase;
+        if (phase != null) {
+            phase.endNanos = now;
+            currentPhase = null;
+        }
+    }
+
+    private static long toMillis(long nanos) {
+        return nanos / 1000000;
+    }
+}
@@ -1,11 +1,12 @@
 package com.battlelancer.seriesguide.thetvdbapi;
 
-import android.annotation.SuppressLint;
 import android.content.ContentProviderOperation;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.OperationApplicationException;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteException;
+import android.os.Bundle;
 import android.sax.Element;
 import android.sax.EndElementListener;
 import android.sax.EndTextElementListener;
@@ -25,16 +26,23 @@ import com.battlelancer.seriesguide.items.SearchResult;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.Seasons;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import com.battlelancer.seriesguide.provider.SeriesGuideProvider;
+import com.battlelancer.seriesguide.provider.ShowMetadataCache;
+import com.battlelancer.seriesguide.provider.ShowMetadataCache.ShowMetadata;
 import com.battlelancer.seriesguide.settings.AppSettings;
 import com.battlelancer.seriesguide.settings.DisplaySettings;
 import com.battlelancer.seriesguide.traktapi.SgTrakt;
 import com.battlelancer.seriesguide.util.DBUtils;
+import com.battlelancer.seriesguide.util.EpisodeReleaseResolver;
 import com.battlelancer.seriesguide.util.EpisodeTools;
+import com.battlelancer.seriesguide.util.IdMappingTools;
 import com.battlelancer.seriesguide.util.LanguageTools;
 import com.battlelancer.seriesguide.util.TextTools;
 import com.battlelancer.seriesguide.util.TimeTools;
 import com.battlelancer.seriesguide.util.TraktTools;
 import com.battlelancer.seriesguide.util.Utils;
+import com.battlelancer.seriesguide.util.collections.IntObjectMap;
+import com.battlelancer.seriesguide.util.collections.IntSet;
 import com.uwetrottmann.thetvdb.entities.Episode;
 import com.uwetrottmann.thetvdb.entities.EpisodesResponse;
 import com.uwetrottmann.thetvdb.entities.Series;
@@ -54,8 +62,8 @@ import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.TimeZone;
 import java.util.zip.ZipInputStream;
@@ -64,8 +72,6 @@ import javax.inject.Inject;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
-import org.threeten.bp.LocalTime;
-import org.threeten.bp.ZoneId;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.SAXException;
 import timber.log.Timber;
@@ -79,8 +85,6 @@ public class TvdbTools {
     private static final String TVDB_API_URL = "http://thetvdb.com/api/";
     private static final String TVDB_API_GETSERIES = TVDB_API_URL + "GetSeries.php?seriesname=";
     private static final String TVDB_PARAM_LANGUAGE = "&language=";
-    private static final String[] LANGUAGE_QUERY_PROJECTION = new String[] { Shows.LANGUAGE };
-
     private static TvdbTools tvdbTools;
     private final SgApp app;
     @Inject Lazy<TheTvdbSearch> tvdbSearch;
@@ -135,8 +139,8 @@ public class TvdbTools {
      * @return True, if the show and its episodes were added to the database.
      */
     public boolean addShow(int showTvdbId, @Nullable String language,
-            @Nullable HashMap<Integer, BaseShow> traktCollection,
-            @Nullable HashMap<Integer, BaseShow> traktWatched)
+            @Nullable IntObjectMap<BaseShow> traktCollection,
+            @Nullable IntObjectMap<BaseShow> traktWatched)
             throws TvdbException {
         boolean isShowExists = DBUtils.isShowExists(app, showTvdbId);
         if (isShowExists) {
@@ -187,14 +191,45 @@ public class TvdbTools {
         return true;
     }
 
+    /**
+     * Show details and episodes downloaded by {@link #fetchShowUpdate(int)}, ready to be stored
+     * with {@link #storeShowUpdate(ShowUpdate)}.
+     */
+    public static class ShowUpdate {
+        public final int showTvdbId;
+        final ArrayList<ContentProviderOperation> batch;
+        final ArrayList<ContentValues> episodesValues;
+
+        ShowUpdate(int showTvdbId, ArrayList<ContentProviderOperation> batch,
+                ArrayList<ContentValues> episodesValues) {
+            this.showTvdbId = showTvdbId;
+            this.batch = batch;
+            this.episodesValues = episodesValues;
+        }
+    }
+
     /**
      * Updates a show. Adds new, updates changed and removes orphaned episodes.
      */
     public void updateShow(int showTvdbId) throws TvdbException {
+        ShowUpdate update = fetchShowUpdate(showTvdbId);
+        if (update != null) {
+            storeShowUpdate(update);
+        }
+    }
+
+    /**
+     * Downloads show details and episodes for an existing show and builds the database ops to
+     * update it, but does not write to the database. Safe to call from multiple threads.
+     *
+     * @return {@code null} if the show language could not be determined.
+     */
+    @Nullable
+    public ShowUpdate fetchShowUpdate(int showTvdbId) throws TvdbException {
         // determine which translation to get
         String language = getShowLanguage(app, showTvdbId);
         if (language == null) {
-            return;
+            return null;
         }
 
         final ArrayList<ContentProviderOperation> batch = new ArrayList<>();
@@ -204,21 +239,21 @@ public class TvdbTools {
 
         // get episodes in the language as returned in the TVDB show entry
         // the show might not be available in the desired language
-        getEpisodesAndUpdateDatabase(batch, show, show.language);
+        ArrayList<ContentValues> episodesValues = fetchEpisodes(show, show.language);
+
+        return new ShowUpdate(showTvdbId, batch, episodesValues);
+    }
+
+    /**
+     * Writes a show update downloaded by {@link #fetchShowUpdate(int)} to the database.
+     */
+    public void storeShowUpdate(@NonNull ShowUpdate update) throws TvdbException {
+        storeEpisodes(update.batch, update.showTvdbId, update.episodesValues);
     }
 
     public static String getShowLanguage(Context context, int showTvdbId) {
-        Cursor languageQuery = context.getContentResolver()
-                .query(Shows.buildShowUri(showTvdbId), LANGUAGE_QUERY_PROJECTION, null, null, null);
-        if (languageQuery == null) {
-            // query failed, abort
-            return null;
-        }
-        String language = null;
-        if (languageQuery.moveToFirst()) {
-            language = languageQuery.getString(0);
-        }
-        languageQuery.close();
+        ShowMetadata show = ShowMetadataCache.get(context, showTvdbId);
+        String language = show == null ? null : show.language;
 
         if (TextUtils.isEmpty(language)) {
             // fall back to preferred language
@@ -328,6 +363,9 @@ public class TvdbTools {
         return series;
     }
 
+    /** Keeps each provider call well below the binder transaction limit. */
+    private static final int EPISODES_PER_UPSERT = 500;
+
     // Values based on the assumption that sync runs about every 24 hours
     private static final long UPDATE_THRESHOLD_WEEKLYS_MS = 6 * DateUtils.DAY_IN_MILLIS +
             12 * DateUtils.HOUR_IN_MILLIS;
@@ -374,24 +412,97 @@ public class TvdbTools {
     }
 
     /**
-     * Fetches episodes for the given show from TVDb, adds database ops for them. Then adds all
-     * information to the database.
+     * Fetches episodes for the given show from TVDb. Then adds all information to the database.
      */
     private void getEpisodesAndUpdateDatabase(final ArrayList<ContentProviderOperation> batch,
             Show show, String language) throws TvdbException {
-        // get ops for episodes of this show
-        ArrayList<ContentValues> importShowEpisodes = fetchEpisodes(batch, show, language);
-        ContentValues[] newEpisodesValues = new ContentValues[importShowEpisodes.size()];
-        newEpisodesValues = importShowEpisodes.toArray(newEpisodesValues);
+        ArrayList<ContentValues> episodesValues = fetchEpisodes(show, language);
+        storeEpisodes(batch, show.tvdb_id, episodesValues);
+    }
 
+    /**
+     * Applies the given show ops, then stores the given episodes of the show: inserts new, updates
+     * changed and removes local episodes that were not downloaded.
+     *
+     * <p> Episodes are passed to the provider in chunks of {@link #EPISODES_PER_UPSERT} to stay
+     * below the binder transaction limit, local episodes are only removed with the last chunk.
+     */
+    private void storeEpisodes(ArrayList<ContentProviderOperation> batch, int showTvdbId,
+            ArrayList<ContentValues> episodesValues) throws TvdbException {
         try {
             DBUtils.applyInSmallBatches(app, batch);
         } catch (OperationApplicationException e) {
-            throw new TvdbDataException("getEpisodesAndUpdateDatabase: " + e.getMessage(), e);
+            throw new TvdbDataException("storeEpisodes: " + e.getMessage(), e);
         }
 
-        // insert all new episodes in bulk
-        app.getContentResolver().bulkInsert(Episodes.CONTENT_URI, newEpisodesValues);
+        // Only update episodes if edited on TVDb or not older than a month (ensures show air
+        // time changes get stored).
+        final long dateLastMonthEpoch = (System.currentTimeMillis()
+                - (DateUtils.DAY_IN_MILLIS * 30)) / 1000;
+        ArrayList<ContentValues> episodes = removeDuplicateEpisodes(episodesValues);
+        int[] episodeIds = new int[episodes.size()];
+        int episodeIdCount = 0;
+        for (ContentValues values : episodes) {
+            Integer episodeId = values.getAsInteger(Episodes._ID);
+            if (episodeId != null) {
+                episodeIds[episodeIdCount++] = episodeId;
+            }
+        }
+        episodeIds = Arrays.copyOf(episodeIds, episodeIdCount);
+
+        int inserted = 0;
+        int updated = 0;
+        int deleted = 0;
+        int unchanged = 0;
+        int start = 0;
+        do {
+            int end = Math.min(start + EPISODES_PER_UPSERT, episodes.size());
+            boolean isLastChunk = end == episodes.size();
+            Bundle extras = new Bundle();
+            extras.putParcelableArrayList(SeriesGuideProvider.EXTRA_EPISODES,
+                    new ArrayList<>(episodes.subList(start, end)));
+            extras.putLong(SeriesGuideProvider.EXTRA_UPDATE_EDITED_AFTER, dateLastMonthEpoch);
+            if (isLastChunk) {
+                extras.putIntArray(SeriesGuideProvider.EXTRA_EPISODE_IDS, episodeIds);
+            }
+            Bundle counts;
+            try {
+                counts = app.getContentResolver().call(Episodes.CONTENT_URI,
+                        SeriesGuideProvider.METHOD_UPSERT_EPISODES, String.valueOf(showTvdbId),
+                        extras);
+            } catch (SQLiteException e) {
+                throw new TvdbDataException("storeEpisodes: " + e.getMessage(), e);
+            }
+            if (counts != null) {
+                inserted += counts.getInt(SeriesGuideProvider.EXTRA_INSERTED);
+                updated += counts.getInt(SeriesGuideProvider.EXTRA_UPDATED);
+                deleted += counts.getInt(SeriesGuideProvider.EXTRA_DELETED);
+                unchanged += counts.getInt(SeriesGuideProvider.EXTRA_UNCHANGED);
+            }
+            start = end;
+        } while (start < episodes.size());
+
+        Timber.d("storeEpisodes: show %s: %s inserted, %s updated, %s deleted, %s unchanged",
+                showTvdbId, inserted, updated, deleted, unchanged);
+    }
+
+    /**
+     * TVDb may return an episode more than once. Keeps only the last one, as it would win if
+     * stored with a single upsert, which chunks can not guarantee.
+     */
+    private static ArrayList<ContentValues> removeDuplicateEpisodes(
+            ArrayList<ContentValues> episodesValues) {
+        IntSet episodeIds = new IntSet(episodesValues.size());
+        ArrayList<ContentValues> episodes = new ArrayList<>(episodesValues.size());
+        for (int i = episodesValues.size() - 1; i >= 0; i--) {
+            ContentValues values = episodesValues.get(i);
+            Integer episodeId = values.getAsInteger(Episodes._ID);
+            if (episodeId == null || episodeIds.add(episodeId)) {
+                episodes.add(values);
+            }
+        }
+        Collections.reverse(episodes);
+        return episodes;
     }
 
     /**
@@ -456,8 +567,8 @@ public class TvdbTools {
      */
     @NonNull
     public Show getShowDetails(int showTvdbId, @NonNull String language) throws TvdbException {
-        // always look up the trakt id
         // a TVDb id might be linked against the wrong trakt entry, then get fixed
+        // so stored trakt ids expire, see IdMappingTools
         Integer showTraktId = lookupShowTraktId(showTvdbId);
 
         // get show from TVDb
@@ -475,6 +586,13 @@ public class TvdbTools {
             if (traktShow.ids != null && traktShow.ids.trakt != null) {
                 show.trakt_id = traktShow.ids.trakt;
             }
+            if (traktShow.ids != null && traktShow.ids.tvdb != null
+                    && traktShow.ids.tvdb != showTvdbId) {
+                // trakt now links the trakt id to another show, look it up again next time
+                IdMappingTools.removeShow(app, showTvdbId);
+            } else {
+                new IdMappingTools.Batch().addShow(traktShow.ids).store(app);
+            }
             if (traktShow.airs != null) {
                 show.release_time = TimeTools.parseShowReleaseTime(traktShow.airs.time);
                 show.release_weekday = TimeTools.parseShowReleaseWeekDay(traktShow.airs.day);
@@ -497,12 +615,18 @@ public class TvdbTools {
     }
 
     /**
-     * Look up a show's trakt id, may return {@code null} if not found.
+     * Look up a show's trakt id, may return {@code null} if not found. Returns a stored id without
+     * a request, see {@link IdMappingTools}.
      *
      * @throws TvdbException If the request failed or the response appears to be corrupted.
      */
     @Nullable
     private Integer lookupShowTraktId(int showTvdbId) throws TvdbException {
+        Integer storedTraktId = IdMappingTools.getShowTraktId(app, showTvdbId);
+        if (storedTraktId != null) {
+            return storedTraktId == IdMappingTools.TRAKT_ID_NONE ? null : storedTraktId;
+        }
+
         List<com.uwetrottmann.trakt5.entities.SearchResult> searchResults = SgTrakt.executeCall(
                 app,
                 traktSearch.get().idLookup(IdType.TVDB, String.valueOf(showTvdbId), Type.SHOW,
@@ -515,11 +639,13 @@ public class TvdbTools {
         }
 
         if (searchResults.size() != 1) {
+            new IdMappingTools.Batch().addShowNotOnTrakt(showTvdbId).store(app);
             return null; // no results
         }
 
         com.uwetrottmann.trakt5.entities.SearchResult result = searchResults.get(0);
         if (result.show != null && result.show.ids != null) {
+            new IdMappingTools.Batch().addShow(result.show.ids).store(app);
             return result.show.ids.trakt;
         } else {
             throw new TvdbTraktException("lookupShowTraktId: response corrupted.");
@@ -641,66 +767,34 @@ public class TvdbTools {
     }
 
     /**
-     * Loads and parses episodes for the given show and language to create an array of {@link
-     * ContentValues} for new episodes.<br> Adds update ops for updated episodes and delete ops for
-     * local orphaned episodes to the given {@link ContentProviderOperation} batch.
+     * Loads and parses all episodes for the given show and language to create an array of {@link
+     * ContentValues}, to be compared against local episodes when storing them.
      */
-    private ArrayList<ContentValues> fetchEpisodes(ArrayList<ContentProviderOperation> batch,
-            Show show, @NonNull String language) throws TvdbException {
+    private ArrayList<ContentValues> fetchEpisodes(Show show, @NonNull String language)
+            throws TvdbException {
         final int showTvdbId = show.tvdb_id;
-        final ArrayList<ContentValues> newEpisodesValues = new ArrayList<>();
-        final HashMap<Integer, Long> localEpisodeIds = DBUtils.getEpisodeMapForShow(app,
-                showTvdbId);
-        @SuppressLint("UseSparseArrays") final HashMap<Integer, Long> removableEpisodeIds =
-                new HashMap<>(localEpisodeIds); // just copy episodes list, then remove valid ones
-        final HashSet<Integer> localSeasonIds = DBUtils.getSeasonIdsOfShow(app, showTvdbId);
-        // store updated seasons to avoid duplicate ops
-        final HashSet<Integer> seasonIdsToUpdate = new HashSet<>();
+        final ArrayList<ContentValues> episodesValues = new ArrayList<>();
 
-        final long dateLastMonthEpoch = (System.currentTimeMillis()
-                - (DateUtils.DAY_IN_MILLIS * 30)) / 1000;
-        final ZoneId showTimeZone = TimeTools.getDateTimeZone(show.release_timezone);
-        final LocalTime showReleaseTime = TimeTools.getShowReleaseTime(show.release_time);
-        final String deviceTimeZone = TimeZone.getDefault().getID();
+        final EpisodeReleaseResolver releaseResolver = new EpisodeReleaseResolver(app,
+                TimeTools.getDateTimeZone(show.release_timezone),
+                TimeTools.getShowReleaseTime(show.release_time), show.country, show.network,
+                TimeZone.getDefault().getID());
 
         Integer page = 0;
         while (page != null) {
             EpisodesResponse response = getEpisodes(showTvdbId, page, language);
             page = response.links.next;
 
-            final ContentValues values = new ContentValues();
             for (Episode episode : response.data) {
                 Integer episodeId = episode.id;
                 if (episodeId == null || episodeId <= 0) {
                     continue; // invalid id, skip
                 }
 
-                // don't clean up this episode
-                removableEpisodeIds.remove(episodeId);
-
-                boolean insert = true;
-                if (localEpisodeIds.containsKey(episodeId)) {
-                    /*
-                     * Update uses provider ops which take a long time. Only
-                     * update if episode was edited on TVDb or is not older than
-                     * a month (ensures show air time changes get stored).
-                     */
-                    Long lastEditEpoch = localEpisodeIds.get(episodeId);
-                    Long lastEditEpochNew = episode.lastUpdated;
-                    if (lastEditEpoch != null && lastEditEpochNew != null
-                            && (lastEditEpoch < lastEditEpochNew
-                            || dateLastMonthEpoch < lastEditEpoch)) {
-                        // update episode
-                        insert = false;
-                    } else {
-                        continue; // too old to update, skip
-                    }
-                }
-
                 // extract values
+                final ContentValues values = new ContentValues();
                 values.put(Episodes._ID, episode.id);
-                Integer seasonId = episode.airedSeasonID;
-                values.put(Seasons.REF_SEASON_ID, seasonId);
+                values.put(Seasons.REF_SEASON_ID, episode.airedSeasonID);
                 values.put(Shows.REF_SHOW_ID, showTvdbId);
 
                 values.put(Episodes.NUMBER, episode.airedEpisodeNumber);
@@ -708,39 +802,17 @@ public class TvdbTools {
                 values.put(Episodes.SEASON, episode.airedSeason);
                 values.put(Episodes.DVDNUMBER, episode.dvdEpisodeNumber);
 
-                long releaseDateTime = TimeTools.parseEpisodeReleaseDate(app, showTimeZone,
-                        episode.firstAired, showReleaseTime, show.country, show.network,
-                        deviceTimeZone);
+                long releaseDateTime = releaseResolver.resolve(episode.firstAired);
                 values.put(Episodes.FIRSTAIREDMS, releaseDateTime);
                 values.put(Episodes.TITLE, episode.episodeName == null ? "" : episode.episodeName);
                 values.put(Episodes.OVERVIEW, episode.overview);
                 values.put(Episodes.LAST_EDITED, episode.lastUpdated);
 
-                if (insert) {
-                    // episode does not exist, yet: insert
-                    newEpisodesValues.add(new ContentValues(values));
-                } else {
-                    // episode exists: update
-                    batch.add(DBUtils.buildEpisodeUpdateOp(values));
-                }
-
-                if (seasonId != null && !seasonIdsToUpdate.contains(seasonId)) {
-                    // add insert/update op for season
-                    batch.add(DBUtils.buildSeasonOp(values, !localSeasonIds.contains(seasonId)));
-                    seasonIdsToUpdate.add(seasonId);
-                }
-
-                values.clear();
+                episodesValues.add(values);
             }
         }
 
-        // add delete ops for leftover episodeIds in our db
-        for (Integer episodeId : removableEpisodeIds.keySet()) {
-            batch.add(ContentProviderOperation.newDelete(Episodes.buildEpisodeUri(episodeId))
-                    .build());
-        }
-
-        return newEpisodesValues;
+        return episodesValues;
     }
 
     @NonNull
@@ -23,23 +23,32 @@ import android.widget.TextView;
 import butterknife.ButterKnife;
 import com.battlelancer.seriesguide.BuildConfig;
 import com.battlelancer.seriesguide.R;
+import com.battlelancer.seriesguide.SgApp;
 import com.battlelancer.seriesguide.backend.CloudSetupActivity;
 import com.battlelancer.seriesguide.backend.settings.HexagonSettings;
 import com.battlelancer.seriesguide.billing.BillingActivity;
 import com.battlelancer.seriesguide.billing.amazon.AmazonBillingActivity;
 import com.battlelancer.seriesguide.customtabs.CustomTabsHelper;
 import com.battlelancer.seriesguide.customtabs.FeedbackBroadcastReceiver;
+import com.battlelancer.seriesguide.provider.QueryProfiler;
+import com.battlelancer.seriesguide.provider.ShowMetadataCache;
 import com.battlelancer.seriesguide.settings.TraktCredentials;
 import com.battlelancer.seriesguide.settings.TraktOAuthSettings;
+import com.battlelancer.seriesguide.sync.SyncReport;
+import com.battlelancer.seriesguide.sync.SyncReportStore;
+import com.battlelancer.seriesguide.util.HttpMetrics;
 import com.battlelancer.seriesguide.util.Utils;
 import io.palaima.debugdrawer.actions.ActionsModule;
 import io.palaima.debugdrawer.actions.ButtonAction;
+import io.palaima.debugdrawer.actions.SwitchAction;
 import io.palaima.debugdrawer.commons.DeviceModule;
 import io.palaima.debugdrawer.timber.TimberModule;
 import io.palaima.debugdrawer.view.DebugView;
+import java.io.File;
 import org.greenrobot.eventbus.EventBus;
 import org.greenrobot.eventbus.Subscribe;
 import org.greenrobot.eventbus.ThreadMode;
+import timber.log.Timber;
 
 /**
  * Adds onto {@link BaseActivity} by attaching a navigation drawer.
@@ -232,11 +241,85 @@ public abstract class BaseNavDrawerActivity extends BaseActivity {
                         }
                     });
 
+            final Context context = getApplicationContext();
+            ButtonAction buttonLogSyncReports = new ButtonAction(
+                    "Log sync reports",
+                    new ButtonAction.Listener() {
+                        @Override
+                        public void onClick() {
+                            new Thread(new Runnable() {
+                                @Override
+                                public void run() {
+                                    for (SyncReport report : SyncReportStore.getLatest(context)) {
+                                        Timber.i("%tF %<tT %s", report.startedAt,
+                                                report.toSummary());
+                                    }
+                                }
+                            }).start();
+                        }
+                    });
+
+            ButtonAction buttonExportSyncReports = new ButtonAction(
+                    "Export sync reports",
+                    new ButtonAction.Listener() {
+                        @Override
+                        public void onClick() {
+                            new Thread(new Runnable() {
+                                @Override
+                                public void run() {
+                                    File file = SyncReportStore.exportToFile(context);
+                                    Timber.i("Exported sync reports to %s", file);
+                                }
+                            }).start();
+                        }
+                    });
+
+            SwitchAction switchProfileProvider = new SwitchAction(
+                    "Profile database queries",
+                    new SwitchAction.Listener() {
+                        @Override
+                        public void onCheckedChanged(boolean value) {
+                            QueryProfiler.setEnabled(value);
+                        }
+                    });
+
+            ButtonAction buttonLogQueryProfile = new ButtonAction(
+                    "Log query profile",
+                    new ButtonAction.Listener() {
+                        @Override
+                        public void onClick() {
+                            Timber.i("Query profile:\n%s\nShow metadata cache: %s",
+                                    QueryProfiler.dump(), ShowMetadataCache.dump());
+                        }
+                    });
+
+            ButtonAction buttonLogHttpMetrics = new ButtonAction(
+                    "Log HTTP metrics",
+                    new ButtonAction.Listener() {
+                        @Override
+                        public void onClick() {
+                            final SgApp app = SgApp.from(BaseNavDrawerActivity.this);
+                            // reads cache size from disk
+                            new Thread(new Runnable() {
+                                @Override
+                                public void run() {
+                                    Timber.i("HTTP metrics:\n%s", HttpMetrics.dump(
+                                            app.getServicesComponent().okHttpClient().cache()));
+                                }
+                            }).start();
+                        }
+                    });
+
             debugView.modules(
                     new ActionsModule(
                             buttonClearTraktRefreshToken,
                             buttonInvalidateTraktAccessToken,
-                            buttonInvalidateTraktRefreshToken
+                            buttonInvalidateTraktRefreshToken,
+                            buttonLogSyncReports,
+                            buttonExportSyncReports,
+                            switchProfileProvider,
+                            buttonLogQueryProfile,
+                            buttonLogHttpMetrics
                     ),
                     new TimberModule(),
                     new DeviceModule(this)
@@ -22,6 +22,7 @@ import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AbsListView;
 import android.widget.AdapterView;
 import android.widget.AdapterView.OnItemClickListener;
 import android.widget.PopupMenu;
@@ -41,12 +42,19 @@ import com.battlelancer.seriesguide.util.Utils;
 import com.battlelancer.seriesguide.util.ViewTools;
 import com.tonicartos.widget.stickygridheaders.StickyGridHeadersGridView;
 import com.uwetrottmann.androidutils.AndroidUtils;
+import java.util.ArrayList;
+import java.util.List;
 import org.greenrobot.eventbus.EventBus;
 import org.greenrobot.eventbus.Subscribe;
 import org.greenrobot.eventbus.ThreadMode;
 
 /**
  * Displays upcoming or recent episodes in a scrollable grid, by default grouped by day.
+ *
+ * <p> Episodes are loaded in pages of about {@link #PAGE_SIZE} episodes, each by its own loader.
+ * The first page starts now, further pages are loaded once the user scrolls close to the end of
+ * the loaded ones. So only episodes close to what is displayed are kept in memory, regardless of
+ * how many episodes are in the database.
  */
 public class CalendarFragment extends Fragment
         implements OnItemClickListener, OnSharedPreferenceChangeListener,
@@ -58,11 +66,18 @@ public class CalendarFragment extends Fragment
     private static final int CONTEXT_CHECKIN_ID = 2;
     private static final int CONTEXT_COLLECTION_ADD_ID = 3;
     private static final int CONTEXT_COLLECTION_REMOVE_ID = 4;
+    private static final int PAGE_SIZE = 50;
+    /** Load the next page if fewer items than this are left below the visible ones. */
+    private static final int PAGE_PRELOAD_ITEMS = 20;
 
     private StickyGridHeadersGridView gridView;
     private CalendarAdapter adapter;
     private Handler handler;
     private String type;
+    /** Start release time of each page, see {@link DBUtils#buildActivityPageQuery}. */
+    private final List<Long> pageStarts = new ArrayList<>();
+    /** Loaded page of each page start, or {@code null} if it is loading. */
+    private final List<Cursor> pages = new ArrayList<>();
 
     /**
      * Data which has to be passed when creating {@link CalendarFragment}. All Bundle extras are
@@ -116,6 +131,7 @@ public class CalendarFragment extends Fragment
         gridView.setAdapter(adapter);
         gridView.setOnItemClickListener(this);
         gridView.setOnItemLongClickListener(this);
+        gridView.setOnScrollListener(pagingScrollListener);
         gridView.setFastScrollEnabled(infiniteScrolling);
 
         PreferenceManager.getDefaultSharedPreferences(getActivity())
@@ -142,9 +158,11 @@ public class CalendarFragment extends Fragment
           https://github.com/UweTrottmann/SeriesGuide/issues/257.
          */
         boolean isLoaderExists = getLoaderManager().getLoader(getLoaderId()) != null;
-        getLoaderManager().initLoader(getLoaderId(), null, calendarLoaderCallbacks);
         if (isLoaderExists) {
             requery();
+        } else {
+            initPages();
+            getLoaderManager().initLoader(getLoaderId(), null, calendarLoaderCallbacks);
         }
     }
 
@@ -369,10 +387,74 @@ public class CalendarFragment extends Fragment
         }
     }
 
+    /**
+     * Drops all but the first page and reloads it starting now.
+     */
     private void requery() {
-        getLoaderManager().restartLoader(getLoaderId(), null, calendarLoaderCallbacks);
+        // pages after the first one are loaded again when scrolling,
+        // loaders may also remain from before a config change
+        LoaderManager loaderManager = getLoaderManager();
+        for (int page = 1; loaderManager.getLoader(getLoaderId() + page) != null; page++) {
+            loaderManager.destroyLoader(getLoaderId() + page);
+        }
+        // keep displaying the first page until it is reloaded
+        Cursor firstPage = pages.isEmpty() ? null : pages.get(0);
+        initPages();
+        pages.set(0, firstPage);
+        adapter.swapPages(pages);
+        loaderManager.restartLoader(getLoaderId(), null, calendarLoaderCallbacks);
+    }
+
+    private void initPages() {
+        pageStarts.clear();
+        pages.clear();
+        pageStarts.add(DBUtils.getCalendarThreshold(getContext()));
+        pages.add(null);
+    }
+
+    /**
+     * Loads the page after the last one, if it is loaded and not empty so there may be more
+     * episodes.
+     */
+    private void loadNextPage() {
+        if (pages.isEmpty()) {
+            return;
+        }
+        int lastPage = pages.size() - 1;
+        Cursor lastPageData = pages.get(lastPage);
+        // a page may have fewer than PAGE_SIZE episodes if episodes released at the same time
+        // moved to the next page, so only an empty page marks the end
+        if (lastPageData == null || lastPageData.getCount() == 0) {
+            return;
+        }
+        pageStarts.add(getNextPageStart(lastPageData));
+        pages.add(null);
+        // a loader of a dropped page may remain, so do not re-use it
+        getLoaderManager().restartLoader(getLoaderId() + lastPage + 1, null,
+                calendarLoaderCallbacks);
+    }
+
+    private long getNextPageStart(Cursor page) {
+        page.moveToLast();
+        return DBUtils.getNextCalendarPageStart(type,
+                page.getLong(CalendarAdapter.Query.RELEASE_TIME_MS));
     }
 
+    private AbsListView.OnScrollListener pagingScrollListener = new AbsListView.OnScrollListener() {
+        @Override
+        public void onScrollStateChanged(AbsListView view, int scrollState) {
+        }
+
+        @Override
+        public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount,
+                int totalItemCount) {
+            if (totalItemCount > 0
+                    && firstVisibleItem + visibleItemCount >= totalItemCount - PAGE_PRELOAD_ITEMS) {
+                loadNextPage();
+            }
+        }
+    };
+
     private void schedulePeriodicDataRefresh(boolean enableRefresh) {
         if (handler == null) {
             handler = new Handler();
@@ -387,7 +469,7 @@ public class CalendarFragment extends Fragment
         @Override
         public void run() {
             if (isAdded()) {
-                getLoaderManager().restartLoader(getLoaderId(), null, calendarLoaderCallbacks);
+                requery();
             }
         }
     };
@@ -395,14 +477,17 @@ public class CalendarFragment extends Fragment
     private LoaderManager.LoaderCallbacks<Cursor> calendarLoaderCallbacks
             = new LoaderManager.LoaderCallbacks<Cursor>() {
         public Loader<Cursor> onCreateLoader(int id, Bundle args) {
+            int page = id - getLoaderId();
             boolean isInfiniteScrolling = CalendarSettings.isInfiniteScrolling(getActivity());
 
             // infinite or 30 days activity stream
-            String[][] queryArgs = DBUtils.buildActivityQuery(getActivity(), type,
-                    isInfiniteScrolling ? -1 : 30);
+            String[][] queryArgs = DBUtils.buildActivityPageQuery(getActivity(), type,
+                    isInfiniteScrolling ? -1 : 30, pageStarts.get(page), PAGE_SIZE);
 
-            // prevent upcoming/recent episodes from becoming stale
-            schedulePeriodicDataRefresh(true);
+            if (page == 0) {
+                // prevent upcoming/recent episodes from becoming stale
+                schedulePeriodicDataRefresh(true);
+            }
 
             return new CursorLoader(getActivity(), Episodes.CONTENT_URI_WITHSHOW,
                     CalendarAdapter.Query.PROJECTION, queryArgs[0][0], queryArgs[1],
@@ -410,11 +495,35 @@ public class CalendarFragment extends Fragment
         }
 
         public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-            adapter.swapCursor(data);
+            int page = loader.getId() - getLoaderId();
+            if (page >= pages.size()) {
+                // page was dropped, e.g. loader remains from before a config change
+                getLoaderManager().destroyLoader(loader.getId());
+                return;
+            }
+            pages.set(page, data);
+
+            // if changes moved the end of this page, reload the next one from the new end
+            int nextPage = page + 1;
+            if (nextPage < pages.size()) {
+                long nextPageStart = data.getCount() == 0 ? pageStarts.get(page)
+                        : getNextPageStart(data);
+                if (nextPageStart != pageStarts.get(nextPage)) {
+                    pageStarts.set(nextPage, nextPageStart);
+                    getLoaderManager().restartLoader(getLoaderId() + nextPage, null,
+                            calendarLoaderCallbacks);
+                }
+            }
+
+            adapter.swapPages(pages);
         }
 
         public void onLoaderReset(Loader<Cursor> loader) {
-            adapter.swapCursor(null);
+            int page = loader.getId() - getLoaderId();
+            if (page < pages.size()) {
+                pages.set(page, null);
+                adapter.swapPages(pages);
+            }
         }
     };
 
@@ -10,6 +10,7 @@ import android.content.SharedPreferences;
 import android.content.SharedPreferences.OnSharedPreferenceChangeListener;
 import android.media.RingtoneManager;
 import android.net.Uri;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Vibrator;
 import android.preference.CheckBoxPreference;
@@ -26,6 +27,7 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.StyleRes;
 import android.support.v4.app.TaskStackBuilder;
+import android.support.v4.os.AsyncTaskCompat;
 import android.support.v7.app.ActionBar;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.Toolbar;
@@ -67,6 +69,9 @@ public class SeriesGuidePreferences extends AppCompatActivity {
     public static class UpdateSummariesEvent {
     }
 
+    public static class SearchIndexRebuiltEvent {
+    }
+
     private static final String EXTRA_SETTINGS_SCREEN = "settingsScreen";
 
     private static final String TAG = "Settings";
@@ -74,6 +79,8 @@ public class SeriesGuidePreferences extends AppCompatActivity {
     // Preference keys
     private static final String KEY_CLEAR_CACHE = "clearCache";
 
+    private static final String KEY_REBUILD_SEARCH_INDEX = "rebuildSearchIndex";
+
     public static final String KEY_DATABASEIMPORTED = "com.battlelancer.seriesguide.dbimported";
 
 //    public static final String KEY_SECURE = "com.battlelancer.seriesguide.secure";
@@ -375,6 +382,19 @@ public class SeriesGuidePreferences extends AppCompatActivity {
                         }
                     });
 
+            // Rebuild episode search table, it is usually kept up to date by the database
+            findPreference(KEY_REBUILD_SEARCH_INDEX)
+                    .setOnPreferenceClickListener(new OnPreferenceClickListener() {
+
+                        public boolean onPreferenceClick(Preference preference) {
+                            // enabled again once done, see SearchIndexRebuiltEvent
+                            preference.setEnabled(false);
+                            AsyncTaskCompat.executeParallel(
+                                    new RebuildSearchIndexTask(getActivity()));
+                            return true;
+                        }
+                    });
+
             // GA opt-out
             findPreference(AppSettings.KEY_GOOGLEANALYTICS).setOnPreferenceChangeListener(
                     new OnPreferenceChangeListener() {
@@ -569,6 +589,15 @@ public class SeriesGuidePreferences extends AppCompatActivity {
             }
         }
 
+        @Subscribe(threadMode = ThreadMode.MAIN, sticky = true)
+        public void onEvent(SearchIndexRebuiltEvent event) {
+            EventBus.getDefault().removeStickyEvent(event);
+            Preference rebuildPref = findPreference(KEY_REBUILD_SEARCH_INDEX);
+            if (rebuildPref != null) {
+                rebuildPref.setEnabled(true);
+            }
+        }
+
         private void updateThresholdSummary(Preference thresholdPref) {
             thresholdPref.setSummary(NotificationSettings.getLatestToIncludeTresholdValue(
                     thresholdPref.getContext()));
@@ -588,4 +617,28 @@ public class SeriesGuidePreferences extends AppCompatActivity {
             );
         }
     }
+
+    /**
+     * Rebuilds the episode search table, then posts a sticky {@link SearchIndexRebuiltEvent}, so
+     * a settings screen stopped in the meantime still enables the preference again.
+     */
+    private static class RebuildSearchIndexTask extends AsyncTask<Void, Void, Void> {
+
+        private final Context context;
+
+        RebuildSearchIndexTask(Context context) {
+            this.context = context.getApplicationContext();
+        }
+
+        @Override
+        protected Void doInBackground(Void... params) {
+            DBUtils.rebuildFtsTable(context);
+            return null;
+        }
+
+        @Override
+        protected void onPostExecute(Void result) {
+            EventBus.getDefault().postSticky(new SearchIndexRebuiltEvent());
+        }
+    }
 }
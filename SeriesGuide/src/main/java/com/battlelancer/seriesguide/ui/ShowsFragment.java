@@ -547,7 +547,8 @@ public class ShowsFragment extends Fragment implements
         // keep unwatched and upcoming shows from becoming stale
         schedulePeriodicDataRefresh(true);
 
-        return new CursorLoader(getActivity(), Shows.CONTENT_URI, ShowsAdapter.Query.PROJECTION,
+        return new CursorLoader(getActivity(), Shows.CONTENT_URI_WITH_NEXT_EPISODE,
+                ShowsAdapter.Query.PROJECTION,
                 selection.toString(), null,
                 ShowsDistillationSettings.getSortQuery(sortOrderId, isSortFavoritesFirst,
                         isSortIgnoreArticles)
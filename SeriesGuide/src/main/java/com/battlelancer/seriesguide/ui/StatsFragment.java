@@ -1,6 +1,5 @@
 package com.battlelancer.seriesguide.ui;
 
-import android.content.ContentResolver;
 import android.content.Context;
 import android.database.Cursor;
 import android.os.AsyncTask;
@@ -11,7 +10,6 @@ import android.support.annotation.Nullable;
 import android.support.v4.app.Fragment;
 import android.support.v4.os.AsyncTaskCompat;
 import android.text.format.DateUtils;
-import android.util.SparseIntArray;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuInflater;
@@ -25,12 +23,8 @@ import butterknife.ButterKnife;
 import butterknife.Unbinder;
 import com.battlelancer.seriesguide.R;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract;
-import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
-import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
 import com.battlelancer.seriesguide.settings.DisplaySettings;
-import com.battlelancer.seriesguide.util.DBUtils;
 import com.battlelancer.seriesguide.util.ShareUtils;
-import com.battlelancer.seriesguide.util.ShowTools;
 import com.battlelancer.seriesguide.widgets.EmptyView;
 import java.util.Locale;
 import org.greenrobot.eventbus.EventBus;
@@ -63,7 +57,7 @@ public class StatsFragment extends Fragment {
     @BindView(R.id.textViewStatsMoviesWatchlistRuntime) TextView mMoviesWatchlistRuntime;
 
     private Unbinder unbinder;
-    private AsyncTask<Void, StatsUpdateEvent, StatsUpdateEvent> statsTask;
+    private AsyncTask<Void, Void, StatsUpdateEvent> statsTask;
     private Stats currentStats;
     private boolean hasFinalValues;
 
@@ -359,9 +353,7 @@ public class StatsFragment extends Fragment {
         }
     }
 
-    private static class StatsTask extends AsyncTask<Void, StatsUpdateEvent, StatsUpdateEvent> {
-
-        private static final long PREVIEW_UPDATE_INTERVAL_MS = DateUtils.SECOND_IN_MILLIS;
+    private static class StatsTask extends AsyncTask<Void, Void, StatsUpdateEvent> {
 
         private final Context context;
 
@@ -373,70 +365,33 @@ public class StatsFragment extends Fragment {
         @Override
         protected StatsUpdateEvent doInBackground(Void... params) {
             Stats stats = new Stats();
-            ContentResolver resolver = context.getContentResolver();
-
-            // movies
-            if (!processMovies(resolver, stats)) {
-                return buildFailure(stats); // failed to process movies
-            }
-
-            if (isCancelled()) {
-                return buildFailure(stats);
-            }
-
-            // shows
-            SparseIntArray showRuntimes = processShows(resolver, stats);
-            if (showRuntimes == null) {
-                return buildFailure(stats); // failed to process shows
-            }
 
-            if (isCancelled()) {
-                return buildFailure(stats);
-            }
-
-            // episodes
+            // all stats in a single query, episode counts are already stored per show
             boolean includeSpecials = !DisplaySettings.isHidingSpecials(context);
-            if (!processEpisodes(resolver, stats, includeSpecials)) {
-                return buildFailure(stats); // failed to process episodes
+            Cursor query = context.getContentResolver().query(
+                    includeSpecials ? SeriesGuideContract.Stats.CONTENT_URI
+                            : SeriesGuideContract.Stats.CONTENT_URI_NO_SPECIALS,
+                    StatsQuery.PROJECTION, null, null, null);
+            if (query == null) {
+                return buildFailure(stats);
             }
-
-            if (isCancelled()) {
+            if (!query.moveToFirst()) {
+                query.close();
                 return buildFailure(stats);
             }
 
-            // report intermediate results before longest op
-            publishProgress(buildUpdate(stats));
-
-            // calculate runtime of watched episodes per show
-            long totalRuntimeMin = 0;
-            long previewTime = System.currentTimeMillis() + PREVIEW_UPDATE_INTERVAL_MS;
-            for (int i = 0, size = showRuntimes.size(); i < size; i++) {
-                int showTvdbId = showRuntimes.keyAt(i);
-                long runtimeOfShowMin = showRuntimes.valueAt(i);
-
-                int watchedEpisodesOfShowCount = DBUtils.getCountOf(resolver,
-                        Episodes.buildEpisodesOfShowUri(showTvdbId),
-                        Episodes.SELECTION_WATCHED
-                                + (includeSpecials ? "" : " AND " + Episodes.SELECTION_NO_SPECIALS),
-                        null, -1);
-                if (watchedEpisodesOfShowCount == -1) {
-                    // episode query failed, return what we have so far
-                    stats.episodesWatchedRuntime(totalRuntimeMin * DateUtils.MINUTE_IN_MILLIS);
-                    return buildFailure(stats);
-                }
-                // make sure we calculate with long here (first arg is long) to avoid overflows
-                long runtimeOfEpisodesMin = runtimeOfShowMin * watchedEpisodesOfShowCount;
-
-                totalRuntimeMin += runtimeOfEpisodesMin;
-                // post regular update of minimum
-                long currentTime = System.currentTimeMillis();
-                if (currentTime > previewTime) {
-                    previewTime = currentTime + PREVIEW_UPDATE_INTERVAL_MS;
-                    stats.episodesWatchedRuntime(totalRuntimeMin * DateUtils.MINUTE_IN_MILLIS);
-                    publishProgress(buildUpdate(stats));
-                }
-            }
-            stats.episodesWatchedRuntime(totalRuntimeMin * DateUtils.MINUTE_IN_MILLIS);
+            stats.shows(query.getInt(StatsQuery.SHOWS))
+                    .showsContinuing(query.getInt(StatsQuery.SHOWS_CONTINUING))
+                    .showsWithNextEpisodes(query.getInt(StatsQuery.SHOWS_WITH_NEXT_EPISODE))
+                    .episodes(query.getInt(StatsQuery.EPISODES))
+                    .episodesWatched(query.getInt(StatsQuery.EPISODES_WATCHED))
+                    .episodesWatchedRuntime(query.getLong(StatsQuery.EPISODES_WATCHED_RUNTIME)
+                            * DateUtils.MINUTE_IN_MILLIS);
+            stats.movies = query.getInt(StatsQuery.MOVIES);
+            stats.moviesWatchlist = query.getInt(StatsQuery.MOVIES_WATCHLIST);
+            stats.moviesWatchlistRuntime = query.getLong(StatsQuery.MOVIES_WATCHLIST_RUNTIME)
+                    * DateUtils.MINUTE_IN_MILLIS;
+            query.close();
 
             // return final values
             return new StatsUpdateEvent(stats, true, true);
@@ -446,108 +401,35 @@ public class StatsFragment extends Fragment {
             return new StatsUpdateEvent(stats, false, false);
         }
 
-        private static StatsUpdateEvent buildUpdate(Stats stats) {
-            return new StatsUpdateEvent(stats, false, true);
-        }
-
-        @Override
-        protected void onProgressUpdate(StatsUpdateEvent... values) {
-            EventBus.getDefault().post(values[0]);
-        }
-
         @Override
         protected void onPostExecute(StatsUpdateEvent event) {
             EventBus.getDefault().post(event);
         }
+    }
 
-        private boolean processMovies(ContentResolver resolver, Stats stats) {
-            // movies (count, in watchlist, runtime of watchlist)
-            final Cursor movies = resolver.query(SeriesGuideContract.Movies.CONTENT_URI,
-                    new String[] { SeriesGuideContract.Movies._ID,
-                            SeriesGuideContract.Movies.IN_WATCHLIST,
-                            SeriesGuideContract.Movies.RUNTIME_MIN }, null, null, null
-            );
-            if (movies == null) {
-                return false;
-            }
-            stats.movies = movies.getCount();
-
-            int inWatchlist = 0;
-            long watchlistRuntime = 0;
-            while (movies.moveToNext()) {
-                if (movies.getInt(1) == 1) {
-                    inWatchlist++;
-                    watchlistRuntime += movies.getInt(2) * DateUtils.MINUTE_IN_MILLIS;
-                }
-            }
-            movies.close();
-
-            stats.moviesWatchlist = inWatchlist;
-            stats.moviesWatchlistRuntime = watchlistRuntime;
-            return true;
-        }
-
-        @Nullable
-        private static SparseIntArray processShows(ContentResolver resolver, Stats stats) {
-            Cursor shows = resolver.query(Shows.CONTENT_URI,
-                    new String[] {
-                            Shows._ID, // 0
-                            Shows.STATUS,
-                            Shows.NEXTEPISODE,
-                            Shows.RUNTIME // 3
-                    }, null, null, null
-            );
-            if (shows == null) {
-                return null;
-            }
-
-            int continuing = 0;
-            int withnext = 0;
-            // count all shows
-            int showsCount = shows.getCount();
-            SparseIntArray showRuntimes = new SparseIntArray(showsCount);
-            while (shows.moveToNext()) {
-                // count continuing shows
-                if (shows.getInt(1) == ShowTools.Status.CONTINUING) {
-                    continuing++;
-                }
-                // count shows with next episodes
-                if (shows.getInt(2) != ShowTools.Status.ENDED) {
-                    withnext++;
-                }
-                // map show to its runtime
-                showRuntimes.put(shows.getInt(0), shows.getInt(3));
-            }
-            shows.close();
-
-            stats.shows(showsCount)
-                    .showsContinuing(continuing)
-                    .showsWithNextEpisodes(withnext);
-            return showRuntimes;
-        }
-
-        private boolean processEpisodes(ContentResolver resolver, Stats stats,
-                boolean includeSpecials) {
-            // all episodes
-            int allEpisodesCount = DBUtils.getCountOf(resolver, Episodes.CONTENT_URI,
-                    includeSpecials ? null : Episodes.SELECTION_NO_SPECIALS, null, -1);
-            if (allEpisodesCount == -1) {
-                return false;
-            }
-            stats.episodes(allEpisodesCount);
-
-            // watched episodes
-            int watchedEpisodesCount = DBUtils.getCountOf(resolver, Episodes.CONTENT_URI,
-                    Episodes.SELECTION_WATCHED
-                            + (includeSpecials ? "" : " AND " + Episodes.SELECTION_NO_SPECIALS),
-                    null, -1);
-            if (watchedEpisodesCount == -1) {
-                return false;
-            }
-            stats.episodesWatched(watchedEpisodesCount);
-
-            return true;
-        }
+    private interface StatsQuery {
+
+        String[] PROJECTION = new String[] {
+                SeriesGuideContract.Stats.SHOWS,
+                SeriesGuideContract.Stats.SHOWS_CONTINUING,
+                SeriesGuideContract.Stats.SHOWS_WITH_NEXT_EPISODE,
+                SeriesGuideContract.Stats.EPISODES,
+                SeriesGuideContract.Stats.EPISODES_WATCHED,
+                SeriesGuideContract.Stats.EPISODES_WATCHED_RUNTIME,
+                SeriesGuideContract.Stats.MOVIES,
+                SeriesGuideContract.Stats.MOVIES_WATCHLIST,
+                SeriesGuideContract.Stats.MOVIES_WATCHLIST_RUNTIME
+        };
+
+        int SHOWS = 0;
+        int SHOWS_CONTINUING = 1;
+        int SHOWS_WITH_NEXT_EPISODE = 2;
+        int EPISODES = 3;
+        int EPISODES_WATCHED = 4;
+        int EPISODES_WATCHED_RUNTIME = 5;
+        int MOVIES = 6;
+        int MOVIES_WATCHLIST = 7;
+        int MOVIES_WATCHLIST_RUNTIME = 8;
     }
 
     private static class Stats {
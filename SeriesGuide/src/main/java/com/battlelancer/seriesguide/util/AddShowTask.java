@@ -14,12 +14,12 @@ import com.battlelancer.seriesguide.settings.TraktSettings;
 import com.battlelancer.seriesguide.thetvdbapi.TvdbException;
 import com.battlelancer.seriesguide.thetvdbapi.TvdbTools;
 import com.battlelancer.seriesguide.traktapi.SgTrakt;
+import com.battlelancer.seriesguide.util.collections.IntObjectMap;
 import com.uwetrottmann.androidutils.AndroidUtils;
 import com.uwetrottmann.trakt5.entities.BaseShow;
 import com.uwetrottmann.trakt5.services.Sync;
 import dagger.Lazy;
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import javax.inject.Inject;
@@ -156,12 +156,12 @@ public class AddShowTask extends AsyncTask<Void, Integer, Void> {
         }
 
         // if not connected to Hexagon, get episodes from trakt
-        HashMap<Integer, BaseShow> traktCollection = null;
-        HashMap<Integer, BaseShow> traktWatched = null;
+        IntObjectMap<BaseShow> traktCollection = null;
+        IntObjectMap<BaseShow> traktWatched = null;
         if (!HexagonSettings.isEnabled(app) && TraktCredentials.get(app).hasCredentials()) {
             Timber.d("Getting watched and collected episodes from trakt.");
             // get collection
-            HashMap<Integer, BaseShow> traktShows = getTraktShows("get collection", true);
+            IntObjectMap<BaseShow> traktShows = getTraktShows("get collection", true);
             if (traktShows == null) {
                 return null; // can not get collected state from trakt, give up.
             }
@@ -245,10 +245,6 @@ public class AddShowTask extends AsyncTask<Void, Integer, Void> {
                     .putLong(TraktSettings.KEY_LAST_SHOWS_RATED_AT, 0)
                     .putLong(TraktSettings.KEY_LAST_EPISODES_RATED_AT, 0)
                     .apply();
-
-            // renew FTS3 table
-            Timber.d("Renewing search table.");
-            DBUtils.rebuildFtsTable(app);
         }
 
         Timber.d("Finished adding shows.");
@@ -313,7 +309,7 @@ public class AddShowTask extends AsyncTask<Void, Integer, Void> {
     }
 
     @Nullable
-    private HashMap<Integer, BaseShow> getTraktShows(String action,
+    private IntObjectMap<BaseShow> getTraktShows(String action,
             boolean isCollectionNotWatched) {
         try {
             Response<List<BaseShow>> response;
@@ -33,6 +33,7 @@ public class AllApisAuthenticator implements Authenticator {
     @Override
     public Request authenticate(Route route, Response response) throws IOException {
         String host = response.request().url().host();
+        HttpMetrics.onAuthenticate(host);
         if (TheTvdb.API_HOST.equals(host)) {
             Timber.d("TheTVDB requires auth.");
             return TheTvdbAuthenticator.handleRequest(response, theTvdb.get());
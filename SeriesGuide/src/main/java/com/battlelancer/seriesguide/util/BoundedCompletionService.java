@@ -0,0 +1,95 @@
+package com.battlelancer.seriesguide.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Runs tasks on a pool of worker threads and hands their results to a single consuming thread,
+ * e.g. the one writing downloaded data to the database, in the order they complete.
+ *
+ * <p> Up to twice as many tasks as there are workers should be in flight, see {@link #isFull()}:
+ * workers stay busy while the consumer handles a result, but do not get too far ahead of it, which
+ * keeps memory use bounded.
+ */
+public class BoundedCompletionService<T> {
+
+    private final CompletionService<T> completionService;
+    private final int maxInFlight;
+    private int inFlight;
+
+    /**
+     * @param workers The number of threads of the executor.
+     */
+    public BoundedCompletionService(ExecutorService executor, int workers) {
+        this.completionService = new ExecutorCompletionService<>(executor);
+        this.maxInFlight = workers * 2;
+    }
+
+    /**
+     * Returns whether enough tasks are in flight, so no more should be submitted until one was
+     * taken.
+     */
+    public boolean isFull() {
+        return inFlight >= maxInFlight;
+    }
+
+    /**
+     * Returns whether all submitted tasks were taken.
+     */
+    public boolean isEmpty() {
+        return inFlight == 0;
+    }
+
+    public void submit(Callable<T> task) {
+        completionService.submit(task);
+        inFlight++;
+    }
+
+    /**
+     * Waits for the next task to complete and returns its future, which is done.
+     */
+    public Future<T> take() throws InterruptedException {
+        Future<T> future = completionService.take();
+        inFlight--;
+        return future;
+    }
+
+    /**
+     * Like {@link #take()}, but returns the result of the task, see {@link #getResult(Future)}.
+     */
+    public T takeResult() throws InterruptedException {
+        return getResult(take());
+    }
+
+    /**
+     * Returns the result of a completed future. Re-throws unchecked exceptions thrown by its task,
+     * see {@link #rethrow(ExecutionException)}.
+     */
+    public static <T> T getResult(Future<T> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * Throws the unchecked exception or error that caused the given exception. A checked exception
+     * is wrapped in a {@link RuntimeException}. Declared to return an exception so callers can
+     * {@code throw} the result, which makes it clear to the compiler the call never returns.
+     */
+    public static RuntimeException rethrow(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        } else {
+            throw new RuntimeException(cause);
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package com.battlelancer.seriesguide.util;
 
-import android.annotation.SuppressLint;
 import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
@@ -10,6 +9,7 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabaseCorruptException;
 import android.database.sqlite.SQLiteException;
 import android.net.Uri;
+import android.os.Bundle;
 import android.os.RemoteException;
 import android.provider.BaseColumns;
 import android.support.annotation.NonNull;
@@ -28,19 +28,18 @@ import com.battlelancer.seriesguide.provider.SeriesGuideContract;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.Seasons;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Tables;
+import com.battlelancer.seriesguide.provider.SeriesGuideProvider;
+import com.battlelancer.seriesguide.provider.ShowMetadataCache;
+import com.battlelancer.seriesguide.provider.ShowMetadataCache.ShowMetadata;
 import com.battlelancer.seriesguide.settings.CalendarSettings;
 import com.battlelancer.seriesguide.settings.DisplaySettings;
 import com.battlelancer.seriesguide.ui.CalendarFragment.CalendarType;
 import java.util.ArrayList;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
+import java.util.Collections;
 import org.greenrobot.eventbus.EventBus;
 import timber.log.Timber;
 
-import static com.battlelancer.seriesguide.provider.SeriesGuideDatabase.Qualified;
-
 public class DBUtils {
 
     /**
@@ -110,7 +109,8 @@ public class DBUtils {
     }
 
     /**
-     * Triggers the rebuilding of the episode search table.
+     * Triggers the rebuilding of the episode search table. It is kept up to date by the database,
+     * so only required to repair it.
      */
     public static void rebuildFtsTable(Context context) {
         Timber.d("Query to renew FTS table");
@@ -293,11 +293,81 @@ public class DBUtils {
                 numberOfDaysToInclude);
     }
 
+    /**
+     * Like {@link #buildActivityQuery(Context, String, int)}, but only returns the page of about
+     * {@code pageSize} episodes starting at the given release time. Episodes released at the same
+     * time are never split across pages, so a page may be larger or smaller. Only an empty page
+     * means there are no further episodes.
+     *
+     * <p> Pages are found by release time instead of an offset, so the database only has to look
+     * at episodes of the requested page.
+     *
+     * @param pageStart For upcoming episodes the release time to start at, for recent episodes the
+     * release time to end before. For the first page use {@link #getCalendarThreshold(Context)},
+     * for the next pages {@link #getNextCalendarPageStart(String, long)}.
+     */
+    public static String[][] buildActivityPageQuery(Context context, String type,
+            int numberOfDaysToInclude, long pageStart, int pageSize) {
+        String[][] query = buildActivityQuery(context, type, numberOfDaysToInclude);
+        String selection = query[0][0];
+        String[] selectionArgs = query[1];
+        boolean isRecent = CalendarType.RECENT.equals(type);
+
+        String time = Episodes.FIRSTAIREDMS;
+        String fromPageStart = " FROM " + Tables.EPISODES_JOIN_SHOWS
+                + " WHERE " + selection + " AND " + time + (isRecent ? "<?" : ">=?");
+        // release time of the first episode after the page
+        String nextPageTime = "(SELECT " + time + fromPageStart
+                + " ORDER BY " + time + (isRecent ? " DESC" : " ASC")
+                + " LIMIT 1 OFFSET " + pageSize + ")";
+        // release time of the first episode of the page
+        String firstTime = "(SELECT " + (isRecent ? "MAX(" : "MIN(") + time + ")"
+                + fromPageStart + ")";
+        // if all episodes up to the next page release at the same time, include them all
+        String pageEnd;
+        if (isRecent) {
+            pageEnd = time + ">MIN(IFNULL(" + nextPageTime + "," + Long.MIN_VALUE + "),"
+                    + "IFNULL(" + firstTime + ",0)-1)";
+        } else {
+            pageEnd = time + "<MAX(IFNULL(" + nextPageTime + "," + Long.MAX_VALUE + "),"
+                    + "IFNULL(" + firstTime + ",0)+1)";
+        }
+
+        String start = String.valueOf(pageStart);
+        ArrayList<String> pageArgs = new ArrayList<>();
+        // once for the page itself and each sub-query
+        for (int i = 0; i < 3; i++) {
+            Collections.addAll(pageArgs, selectionArgs);
+            pageArgs.add(start);
+        }
+
+        query[0][0] = selection + " AND " + time + (isRecent ? "<?" : ">=?")
+                + " AND " + pageEnd;
+        query[1] = pageArgs.toArray(new String[pageArgs.size()]);
+        return query;
+    }
+
+    /**
+     * Returns the release time separating upcoming from recent episodes. It is an hour in the
+     * past, so episodes move to recent one hour late.
+     */
+    public static long getCalendarThreshold(Context context) {
+        return TimeTools.getCurrentTime(context) - DateUtils.HOUR_IN_MILLIS;
+    }
+
+    /**
+     * Returns the start of the page following a page of the given type of {@link
+     * #buildActivityPageQuery}, based on the release time of its last episode.
+     */
+    public static long getNextCalendarPageStart(String type, long lastReleaseTime) {
+        // recent pages end before their start, upcoming pages include it
+        return CalendarType.RECENT.equals(type) ? lastReleaseTime : lastReleaseTime + 1;
+    }
+
     private static String[][] buildActivityQuery(Context context, String type,
             boolean isOnlyCollected, boolean isOnlyFavorites, boolean isOnlyUnwatched,
             int numberOfDaysToInclude) {
-        // go an hour back in time, so episodes move to recent one hour late
-        long recentThreshold = TimeTools.getCurrentTime(context) - DateUtils.HOUR_IN_MILLIS;
+        long recentThreshold = getCalendarThreshold(context);
 
         StringBuilder query;
         String[] selectionArgs;
@@ -385,33 +455,21 @@ public class DBUtils {
         }
     }
 
-    private static final String[] SHOW_PROJECTION = new String[] {
-            Shows._ID,
-            Shows.POSTER,
-            Shows.TITLE
-    };
-
     /**
      * Returns a {@link Show} object with only TVDB id, title and poster populated. Might return
      * {@code null} if there is no show with that TVDb id.
      */
     @Nullable
     public static Show getShow(Context context, int showTvdbId) {
-        Cursor details = context.getContentResolver().query(Shows.buildShowUri(showTvdbId),
-                SHOW_PROJECTION, null,
-                null, null);
-
-        Show show = null;
-        if (details != null) {
-            if (details.moveToFirst()) {
-                show = new Show();
-                show.tvdb_id = details.getInt(0);
-                show.poster = details.getString(1);
-                show.title = details.getString(2);
-            }
-            details.close();
+        ShowMetadata metadata = ShowMetadataCache.get(context, showTvdbId);
+        if (metadata == null) {
+            return null;
         }
 
+        Show show = new Show();
+        show.tvdb_id = metadata.tvdbId;
+        show.poster = metadata.poster;
+        show.title = metadata.title;
         return show;
     }
 
@@ -420,17 +478,7 @@ public class DBUtils {
      * show is already in the database.
      */
     public static boolean isShowExists(Context context, int showTvdbId) {
-        Cursor testsearch = context.getContentResolver().query(Shows.buildShowUri(showTvdbId),
-                new String[] {
-                        Shows._ID
-                }, null, null, null
-        );
-        if (testsearch == null) {
-            return false;
-        }
-        boolean isShowExists = testsearch.getCount() != 0;
-        testsearch.close();
-        return isShowExists;
+        return ShowMetadataCache.get(context, showTvdbId) != null;
     }
 
     /**
@@ -479,9 +527,7 @@ public class DBUtils {
             values.put(Shows.RATING_USER, 0);
             values.put(Shows.HEXAGON_MERGE_COMPLETE, 1);
             values.put(Shows.NEXTEPISODE, "");
-            values.put(Shows.NEXTTEXT, "");
             values.put(Shows.NEXTAIRDATEMS, UNKNOWN_NEXT_RELEASE_DATE);
-            values.put(Shows.NEXTAIRDATETEXT, "");
             values.put(Shows.LASTWATCHEDID, 0);
             return ContentProviderOperation.newInsert(Shows.CONTENT_URI).withValues(values).build();
         } else {
@@ -492,311 +538,104 @@ public class DBUtils {
     }
 
     /**
-     * Returns the episode IDs and their last edit time for a given show as a efficiently searchable
-     * HashMap.
+     * Update next episode field and unwatched episode count for the given show. If no show id is
+     * passed, will update next episodes for all shows. Does nothing if the show id is invalid.
      *
-     * @return HashMap containing the shows existing episodes
+     * @return If only one show was passed, the TVDb id of the new next episode. Otherwise -1.
      */
-    public static HashMap<Integer, Long> getEpisodeMapForShow(Context context, int showTvdbId) {
-        Cursor episodes = context.getContentResolver().query(
-                Episodes.buildEpisodesOfShowUri(showTvdbId), new String[] {
-                        Episodes._ID, Episodes.LAST_EDITED
-                }, null, null, null
-        );
-        @SuppressLint("UseSparseArrays") HashMap<Integer, Long> episodeMap = new HashMap<>();
-        if (episodes != null) {
-            while (episodes.moveToNext()) {
-                episodeMap.put(episodes.getInt(0), episodes.getLong(1));
-            }
-            episodes.close();
+    public static long updateLatestEpisode(Context context, Integer showTvdbIdToUpdate) {
+        if (showTvdbIdToUpdate == null) {
+            updateLatestEpisodes(context, null);
+            return -1;
+        }
+        if (showTvdbIdToUpdate <= 0) {
+            return -1;
         }
-        return episodeMap;
+        if (!updateLatestEpisodes(context, new int[] { showTvdbIdToUpdate })) {
+            return -1;
+        }
+
+        // look up the new next episode
+        Cursor show;
+        try {
+            show = context.getContentResolver().query(Shows.buildShowUri(showTvdbIdToUpdate),
+                    new String[] { Shows.NEXTEPISODE }, null, null, null);
+        } catch (SQLiteException e) {
+            show = null;
+            Timber.e(e, "updateLatestEpisode: show query failed.");
+            postDatabaseError(e);
+        }
+        if (show == null) {
+            return -1;
+        }
+        // no next episode is stored as empty string, read as 0
+        long nextEpisodeTvdbId = show.moveToFirst() ? show.getLong(0) : -1;
+        show.close();
+        return nextEpisodeTvdbId;
     }
 
     /**
-     * Returns the season IDs for a given show as a efficiently searchable HashMap.
+     * Update next episode field and unwatched episode count for the given shows, or all shows if
+     * null. Computes the values for all shows in the database at once, so prefer passing only the
+     * shows whose episodes have changed. Also updates episode counts used for {@link
+     * SeriesGuideContract.Stats}.
+     *
+     * <p> The next episode text is not stored, it is formatted when displayed.
      *
-     * @return HashMap containing the shows existing seasons
+     * @return {@code false} if the update failed.
      */
-    public static HashSet<Integer> getSeasonIdsOfShow(Context context, int showTvdbId) {
-        Cursor seasons = context.getContentResolver().query(
-                Seasons.buildSeasonsOfShowUri(showTvdbId),
-                new String[] {
-                        Seasons._ID
-                }, null, null, null
-        );
-        HashSet<Integer> seasonIds = new HashSet<>();
-        if (seasons != null) {
-            while (seasons.moveToNext()) {
-                seasonIds.add(seasons.getInt(0));
-            }
-            seasons.close();
+    public static boolean updateLatestEpisodes(Context context, @Nullable int[] showTvdbIds) {
+        Bundle extras = new Bundle();
+        if (showTvdbIds != null) {
+            extras.putIntArray(SeriesGuideProvider.EXTRA_SHOW_TVDB_IDS, showTvdbIds);
+        }
+        extras.putBoolean(SeriesGuideProvider.EXTRA_HIDE_SPECIALS,
+                DisplaySettings.isHidingSpecials(context));
+        extras.putBoolean(SeriesGuideProvider.EXTRA_NO_RELEASED_EPISODES,
+                DisplaySettings.isNoReleasedEpisodes(context));
+        extras.putLong(SeriesGuideProvider.EXTRA_CURRENT_TIME,
+                TimeTools.getCurrentTime(context));
+        try {
+            context.getContentResolver().call(Shows.CONTENT_URI,
+                    SeriesGuideProvider.METHOD_UPDATE_NEXT_EPISODES, null, extras);
+        } catch (SQLiteException e) {
+            Timber.e(e, "Failed to update next episode values");
+            postDatabaseError(e);
+            return false;
         }
-        return seasonIds;
+        return true;
     }
 
     /**
-     * Creates an update {@link ContentProviderOperation} for the given episode values.
+     * Until {@link #endNotificationSession(Context)} is called on this thread, change
+     * notifications of the provider are collected and then sent once per URI. See {@link
+     * SeriesGuideProvider#METHOD_BEGIN_NOTIFICATION_SESSION}.
      */
-    public static ContentProviderOperation buildEpisodeUpdateOp(ContentValues values) {
-        final String episodeId = values.getAsString(Episodes._ID);
-        return ContentProviderOperation
-                .newUpdate(Episodes.buildEpisodeUri(episodeId))
-                .withValues(values).build();
+    public static void beginNotificationSession(Context context) {
+        context.getContentResolver().call(Shows.CONTENT_URI,
+                SeriesGuideProvider.METHOD_BEGIN_NOTIFICATION_SESSION, null, null);
     }
 
     /**
-     * Creates a {@link ContentProviderOperation} for insert if isNew, or update instead for with
-     * the given season values.
+     * Ends a session started with {@link #beginNotificationSession(Context)}.
      */
-    public static ContentProviderOperation buildSeasonOp(ContentValues values, boolean isNew) {
-        ContentProviderOperation op;
-        final String seasonId = values.getAsString(Seasons.REF_SEASON_ID);
-        final ContentValues seasonValues = new ContentValues();
-        seasonValues.put(Seasons.COMBINED, values.getAsString(Episodes.SEASON));
-
-        if (isNew) {
-            seasonValues.put(Seasons._ID, seasonId);
-            seasonValues.put(Shows.REF_SHOW_ID, values.getAsString(Shows.REF_SHOW_ID));
-            op = ContentProviderOperation.newInsert(Seasons.CONTENT_URI).withValues(seasonValues)
-                    .build();
-        } else {
-            op = ContentProviderOperation.newUpdate(Seasons.buildSeasonUri(seasonId))
-                    .withValues(seasonValues).build();
+    public static void endNotificationSession(Context context) {
+        Bundle counts = context.getContentResolver().call(Shows.CONTENT_URI,
+                SeriesGuideProvider.METHOD_END_NOTIFICATION_SESSION, null, null);
+        if (counts != null) {
+            Timber.d("endNotificationSession: suppressed %s notifications, %s in total",
+                    counts.getInt(SeriesGuideProvider.EXTRA_SUPPRESSED),
+                    counts.getInt(SeriesGuideProvider.EXTRA_SUPPRESSED_TOTAL));
         }
-        return op;
-    }
-
-    private interface LastWatchedEpisodeQuery {
-        String[] PROJECTION = new String[] {
-                Qualified.SHOWS_ID,
-                Shows.LASTWATCHEDID,
-                Episodes.SEASON,
-                Episodes.NUMBER,
-                Episodes.FIRSTAIREDMS
-        };
-
-        int SHOW_TVDB_ID = 0;
-        int LAST_EPISODE_TVDB_ID = 1;
-        int LAST_EPISODE_SEASON = 2;
-        int LAST_EPISODE_NUMBER = 3;
-        int LAST_EPISODE_FIRST_RELEASE_MS = 4;
-    }
-
-    private interface NextEpisodesQuery {
-        String[] PROJECTION = new String[] {
-                Episodes._ID,
-                Episodes.SEASON,
-                Episodes.NUMBER,
-                Episodes.FIRSTAIREDMS,
-                Episodes.TITLE
-        };
-
-        /**
-         * Unwatched, airing later or has a different number or season if airing the same time.
-         */
-        String SELECT_NEXT = Episodes.WATCHED + "=0 AND ("
-                + "(" + Episodes.FIRSTAIREDMS + "=? AND "
-                + "(" + Episodes.NUMBER + "!=? OR " + Episodes.SEASON + "!=?)) "
-                + "OR " + Episodes.FIRSTAIREDMS + ">?)";
-
-        String SELECT_WITHAIRDATE = " AND " + Episodes.FIRSTAIREDMS + "!=-1";
-
-        String SELECT_ONLYFUTURE = " AND " + Episodes.FIRSTAIREDMS + ">=?";
-
-        /**
-         * Air time, then lowest season, or if identical lowest episode number.
-         */
-        String SORTORDER = Episodes.FIRSTAIREDMS + " ASC," + Episodes.SEASON + " ASC,"
-                + Episodes.NUMBER + " ASC";
-
-        int ID = 0;
-        int SEASON = 1;
-        int NUMBER = 2;
-        int FIRST_RELEASE_MS = 3;
-        int TITLE = 4;
     }
 
     /**
-     * Update next episode field and unwatched episode count for the given show. If no show id is
-     * passed, will update next episodes for all shows.
-     *
-     * @return If only one show was passed, the TVDb id of the new next episode. Otherwise -1.
+     * Notifies observers of the given URI, or if a notification session is active on this thread,
+     * once it ends.
      */
-    public static long updateLatestEpisode(Context context, Integer showTvdbIdToUpdate) {
-        // get a list of shows and their last watched episodes
-        Cursor shows;
-        try {
-            shows = context.getContentResolver().query(Shows.CONTENT_URI_WITH_LAST_EPISODE,
-                    LastWatchedEpisodeQuery.PROJECTION,
-                    showTvdbIdToUpdate != null ?
-                            Qualified.SHOWS_ID + "=" + showTvdbIdToUpdate : null,
-                    null, null
-            );
-        } catch (SQLiteException e) {
-            shows = null;
-            Timber.e(e, "updateLatestEpisode: show query failed.");
-            postDatabaseError(e);
-        }
-        if (shows == null) {
-            // abort completely on query failure
-            Timber.e("Failed to update next episode values");
-            return -1;
-        }
-        final List<String[]> showsLastEpisodes = new ArrayList<>();
-        while (shows.moveToNext()) {
-            showsLastEpisodes.add(
-                    new String[] {
-                            shows.getString(LastWatchedEpisodeQuery.SHOW_TVDB_ID), // 0
-                            shows.getString(LastWatchedEpisodeQuery.LAST_EPISODE_TVDB_ID), // 1
-                            shows.getString(LastWatchedEpisodeQuery.LAST_EPISODE_SEASON), // 2
-                            shows.getString(LastWatchedEpisodeQuery.LAST_EPISODE_NUMBER), // 3
-                            shows.getString(LastWatchedEpisodeQuery.LAST_EPISODE_FIRST_RELEASE_MS)
-                            // 4
-                    }
-            );
-        }
-        shows.close();
-
-        // pre-build next episode selection
-        final boolean isNoReleasedEpisodes = DisplaySettings.isNoReleasedEpisodes(context);
-        final String nextEpisodeSelection = buildNextEpisodeSelection(
-                DisplaySettings.isHidingSpecials(context), isNoReleasedEpisodes);
-
-        // build updated next episode values for each show
-        int nextEpisodeTvdbId = -1;
-        final ContentValues newShowValues = new ContentValues();
-        final ArrayList<ContentProviderOperation> batch = new ArrayList<>();
-        final String currentTime = String.valueOf(TimeTools.getCurrentTime(context));
-        final boolean displayExactDate = DisplaySettings.isDisplayExactDate(context);
-        DisplaySettings.preventSpoilers(context);
-        for (String[] show : showsLastEpisodes) {
-            // STEP 1: get last watched episode details
-            final String showTvdbId = show[0];
-            final String lastEpisodeTvdbId = show[1];
-            String season = show[2];
-            String number = show[3];
-            String releaseTime = show[4];
-            if (TextUtils.isEmpty(lastEpisodeTvdbId)
-                    || season == null || number == null || releaseTime == null) {
-                // by default: no watched episodes, include all starting with special 0
-                season = "-1";
-                number = "-1";
-                releaseTime = String.valueOf(Long.MIN_VALUE);
-            }
-
-            // STEP 2: get episode released closest afterwards; or at the same time,
-            // but with a higher number
-            final String[] selectionArgs;
-            if (isNoReleasedEpisodes) {
-                // restrict to episodes with future release date
-                selectionArgs = new String[] {
-                        releaseTime, number, season, releaseTime, currentTime
-                };
-            } else {
-                // restrict to episodes with any valid air date
-                selectionArgs = new String[] {
-                        releaseTime, number, season, releaseTime
-                };
-            }
-            Cursor next;
-            try {
-                next = context.getContentResolver()
-                        .query(Episodes.buildEpisodesOfShowUri(showTvdbId),
-                                NextEpisodesQuery.PROJECTION, nextEpisodeSelection, selectionArgs,
-                                NextEpisodesQuery.SORTORDER);
-            } catch (SQLiteException e) {
-                next = null;
-                Timber.e(e, "updateLatestEpisode: next episode query failed.");
-                postDatabaseError(e);
-            }
-            if (next == null) {
-                // abort completely on query failure
-                Timber.e("Failed to update next episode values");
-                return -1;
-            }
-
-            // STEP 3: build updated next episode values
-            if (next.moveToFirst()) {
-                final String nextEpisodeString;
-                int seasonNumber = next.getInt(NextEpisodesQuery.SEASON);
-                int episodeNumber = next.getInt(NextEpisodesQuery.NUMBER);
-                if (DisplaySettings.preventSpoilers(context)) {
-                    // just the number, like '0x12'
-                    nextEpisodeString = TextTools.getEpisodeNumber(context,
-                            seasonNumber,
-                            episodeNumber);
-                } else {
-                    // next episode text, like '0x12 Episode Name'
-                    nextEpisodeString = TextTools.getNextEpisodeString(context,
-                            seasonNumber,
-                            episodeNumber,
-                            next.getString(NextEpisodesQuery.TITLE));
-                }
-
-                // next release date text, e.g. "in 15 mins (Fri)"
-                long releaseTimeNext = next.getLong(NextEpisodesQuery.FIRST_RELEASE_MS);
-                Date actualRelease = TimeTools.applyUserOffset(context, releaseTimeNext);
-                String dateTime = displayExactDate ?
-                        TimeTools.formatToLocalDateShort(context, actualRelease)
-                        : TimeTools.formatToLocalRelativeTime(context, actualRelease);
-                final String nextReleaseDateString = context.getString(
-                        R.string.release_date_and_day,
-                        dateTime,
-                        TimeTools.formatToLocalDay(actualRelease));
-
-                nextEpisodeTvdbId = next.getInt(NextEpisodesQuery.ID);
-                newShowValues.put(Shows.NEXTEPISODE, nextEpisodeTvdbId);
-                newShowValues.put(Shows.NEXTAIRDATEMS, releaseTimeNext);
-                newShowValues.put(Shows.NEXTTEXT, nextEpisodeString);
-                newShowValues.put(Shows.NEXTAIRDATETEXT, nextReleaseDateString);
-            } else {
-                // no next episode, set empty values
-                nextEpisodeTvdbId = 0;
-                newShowValues.put(Shows.NEXTEPISODE, "");
-                newShowValues.put(Shows.NEXTAIRDATEMS, UNKNOWN_NEXT_RELEASE_DATE);
-                newShowValues.put(Shows.NEXTTEXT, "");
-                newShowValues.put(Shows.NEXTAIRDATETEXT, "");
-            }
-            next.close();
-
-            // STEP 4: get remaining episodes count
-            int unwatchedEpisodesCount = getUnwatchedEpisodesOfShow(context, showTvdbId);
-            newShowValues.put(Shows.UNWATCHED_COUNT, unwatchedEpisodesCount);
-
-            // update the show with the new next episode values
-            batch.add(ContentProviderOperation.newUpdate(Shows.buildShowUri(showTvdbId))
-                    .withValues(newShowValues)
-                    .build());
-            newShowValues.clear();
-        }
-
-        try {
-            DBUtils.applyInSmallBatches(context, batch);
-        } catch (OperationApplicationException e) {
-            Timber.e(e, "Failed to update next episode values");
-            return -1;
-        }
-
-        return nextEpisodeTvdbId;
-    }
-
-    private static String buildNextEpisodeSelection(boolean isHidingSpecials,
-            boolean isNoReleasedEpisodes) {
-        StringBuilder nextEpisodeSelectionBuilder = new StringBuilder(
-                NextEpisodesQuery.SELECT_NEXT);
-        if (isHidingSpecials) {
-            // do not take specials into account
-            nextEpisodeSelectionBuilder.append(" AND ").append(Episodes.SELECTION_NO_SPECIALS);
-        }
-        if (isNoReleasedEpisodes) {
-            // restrict to episodes with future release date
-            nextEpisodeSelectionBuilder.append(NextEpisodesQuery.SELECT_ONLYFUTURE);
-        } else {
-            // restrict to episodes with any valid air date
-            nextEpisodeSelectionBuilder.append(NextEpisodesQuery.SELECT_WITHAIRDATE);
-        }
-        return nextEpisodeSelectionBuilder.toString();
+    public static void notifyChange(Context context, Uri uri) {
+        context.getContentResolver().call(Shows.CONTENT_URI,
+                SeriesGuideProvider.METHOD_NOTIFY_CHANGE, uri.toString(), null);
     }
 
     /**
@@ -852,7 +691,8 @@ public class DBUtils {
      * follows). <p> <em>Currently only supports English articles (the, a and an).</em>
      */
     public static String trimLeadingArticle(String title) {
-        if (TextUtils.isEmpty(title)) {
+        // not using TextUtils, so this can run in local unit tests and benchmarks
+        if (title == null || title.length() == 0) {
             return title;
         }
 
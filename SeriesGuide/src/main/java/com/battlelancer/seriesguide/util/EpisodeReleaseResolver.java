@@ -0,0 +1,316 @@
+package com.battlelancer.seriesguide.util;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import org.threeten.bp.Instant;
+import org.threeten.bp.LocalTime;
+import org.threeten.bp.ZoneId;
+import org.threeten.bp.zone.ZoneOffsetTransition;
+import org.threeten.bp.zone.ZoneRules;
+
+/**
+ * Calculates episode release times of a single show like {@link
+ * TimeTools#parseEpisodeReleaseDate(Context, ZoneId, String, LocalTime, String, String, String)},
+ * but resolves the show time zone, release time and United States corrections only once.
+ *
+ * <p> Offsets of time zones are looked up in tables of their transitions, which are built once
+ * per time zone and shared by all resolvers. Release dates in the ISO format (e.g. "2013-05-31")
+ * from 1901 until 2099 are then converted without allocating any objects, others are passed to
+ * {@link TimeTools#parseEpisodeReleaseDate} to get the same result (or error handling).
+ */
+public class EpisodeReleaseResolver {
+
+    private static final int SECONDS_PER_DAY = 86400;
+    private static final int SECONDS_PER_HOUR = 3600;
+    /** 1900-01-01T00:00:00Z */
+    private static final long TABLE_START_EPOCH_SECOND = -2208988800L;
+    /** 2100-01-01T00:00:00Z */
+    private static final long TABLE_END_EPOCH_SECOND = 4102444800L;
+
+    private static final ConcurrentHashMap<ZoneId, ZoneTable> zoneTables
+            = new ConcurrentHashMap<>();
+
+    @Nullable private final Context context;
+    private final ZoneId showTimeZone;
+    private final LocalTime showReleaseTime;
+    @Nullable private final String showCountry;
+    @Nullable private final String showNetwork;
+    private final String deviceTimeZone;
+
+    private final ZoneTable showZoneTable;
+    /** Only set if the Eastern time zone decides about the US correction. */
+    @Nullable private final ZoneTable easternZoneTable;
+    private final int releaseSecondOfDay;
+    private final int releaseMillisOfSecond;
+    private final int releaseDayOffset;
+    private final int correctionHours;
+    private final int correctionHoursIfEasternDst;
+
+    /**
+     * @param context If not null, used to track date parsing failures.
+     * @param showTimeZone See {@link TimeTools#getDateTimeZone(String)}.
+     * @param showReleaseTime See {@link TimeTools#getShowReleaseTime(int)}.
+     * @param deviceTimeZone The id of the time zone of the device.
+     */
+    public EpisodeReleaseResolver(@Nullable Context context, @NonNull ZoneId showTimeZone,
+            @NonNull LocalTime showReleaseTime, @Nullable String showCountry,
+            @Nullable String showNetwork, @NonNull String deviceTimeZone) {
+        this.context = context;
+        this.showTimeZone = showTimeZone;
+        this.showReleaseTime = showReleaseTime;
+        this.showCountry = showCountry;
+        this.showNetwork = showNetwork;
+        this.deviceTimeZone = deviceTimeZone;
+
+        showZoneTable = getZoneTable(showTimeZone);
+        releaseSecondOfDay = showReleaseTime.toSecondOfDay();
+        releaseMillisOfSecond = showReleaseTime.getNano() / 1000000;
+        releaseDayOffset = TimeTools.isReleasedNextDay(showCountry, showNetwork,
+                showReleaseTime.getHour()) ? 1 : 0;
+
+        // handle time zone effects on release time for US shows (only if device is set to US zone)
+        if (TimeTools.isUnitedStatesCorrectionRequired(showCountry, deviceTimeZone)) {
+            correctionHours = TimeTools.getUnitedStatesCorrectionHours(deviceTimeZone, false);
+            correctionHoursIfEasternDst = TimeTools.getUnitedStatesCorrectionHours(
+                    deviceTimeZone, true);
+        } else {
+            correctionHours = 0;
+            correctionHoursIfEasternDst = 0;
+        }
+        easternZoneTable = correctionHours != correctionHoursIfEasternDst
+                ? getZoneTable(ZoneId.of(TimeTools.TIMEZONE_ID_US_EASTERN)) : null;
+    }
+
+    /**
+     * Calculates the release date time of an episode as a millisecond instant.
+     *
+     * @param releaseDate An ISO 8601 date, e.g. "2013-05-31".
+     * @return {@link com.battlelancer.seriesguide.Constants#EPISODE_UNKNOWN_RELEASE} if no
+     * conversion was possible. Otherwise, any other long value (may be negative!).
+     */
+    public long resolve(@Nullable String releaseDate) {
+        long epochDay = parseEpochDay(releaseDate);
+        if (epochDay == Long.MIN_VALUE || showZoneTable == null) {
+            return parseSlow(releaseDate);
+        }
+
+        long localEpochSecond = (epochDay + releaseDayOffset) * SECONDS_PER_DAY
+                + releaseSecondOfDay;
+        if (!showZoneTable.covers(localEpochSecond)) {
+            return parseSlow(releaseDate);
+        }
+        // like LocalDateTime.atZone(): in a gap or overlap uses the offset before the transition
+        long epochSecond = localEpochSecond - showZoneTable.offsetAtLocal(localEpochSecond);
+
+        if (easternZoneTable != null) {
+            if (!easternZoneTable.covers(epochSecond)) {
+                return parseSlow(releaseDate);
+            }
+            epochSecond += (easternZoneTable.isDaylightSavingsAt(epochSecond)
+                    ? correctionHoursIfEasternDst : correctionHours) * SECONDS_PER_HOUR;
+        } else {
+            epochSecond += correctionHours * SECONDS_PER_HOUR;
+        }
+
+        return epochSecond * 1000 + releaseMillisOfSecond;
+    }
+
+    private long parseSlow(@Nullable String releaseDate) {
+        return TimeTools.parseEpisodeReleaseDate(context, showTimeZone, releaseDate,
+                showReleaseTime, showCountry, showNetwork, deviceTimeZone);
+    }
+
+    /**
+     * Parses dates in the format "yyyy-MM-dd" with a year from 1901 until 2099.
+     *
+     * @return The epoch day, or {@link Long#MIN_VALUE} if the date is in any other format or
+     * invalid.
+     */
+    static long parseEpochDay(@Nullable String date) {
+        if (date == null || date.length() != 10
+                || date.charAt(4) != '-' || date.charAt(7) != '-') {
+            return Long.MIN_VALUE;
+        }
+        int year = parseDigits(date, 0, 4);
+        int month = parseDigits(date, 5, 7);
+        int day = parseDigits(date, 8, 10);
+        if (year <= 1900 || year >= 2100 || month < 1 || month > 12
+                || day < 1 || day > lengthOfMonth(year, month)) {
+            return Long.MIN_VALUE;
+        }
+
+        // see LocalDate.toEpochDay()
+        long total = 365L * year;
+        total += (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        total += ((367 * month - 362) / 12);
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            if (!isLeapYear(year)) {
+                total--;
+            }
+        }
+        // days from year 0 to 1970
+        return total - 719528;
+    }
+
+    /**
+     * Returns -1 if any char is not a digit.
+     */
+    private static int parseDigits(String text, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    /**
+     * Returns the cached transition table of the time zone, or {@code null} if its offsets can not
+     * be looked up in a table.
+     */
+    @Nullable
+    private static ZoneTable getZoneTable(ZoneId zoneId) {
+        ZoneTable table = zoneTables.get(zoneId);
+        if (table == null) {
+            table = ZoneTable.build(zoneId.getRules());
+            // tables of the same zone are equal, fine to replace
+            zoneTables.put(zoneId, table);
+        }
+        return table.isValid ? table : null;
+    }
+
+    /**
+     * The transitions of a time zone from 1900 until 2100.
+     */
+    private static class ZoneTable {
+
+        final boolean isValid;
+        final long[] transitionEpochSeconds;
+        /** For each transition the local time after which the offset after it applies. */
+        final long[] localLimits;
+        final int[] offsetsBefore;
+        final boolean[] isDaylightSavingsAfter;
+        /** The offset after the last transition. */
+        final int lastOffset;
+        final boolean isDaylightSavingsAtStart;
+
+        private ZoneTable(boolean isValid, long[] transitionEpochSeconds, long[] localLimits,
+                int[] offsetsBefore, boolean[] isDaylightSavingsAfter, int lastOffset,
+                boolean isDaylightSavingsAtStart) {
+            this.isValid = isValid;
+            this.transitionEpochSeconds = transitionEpochSeconds;
+            this.localLimits = localLimits;
+            this.offsetsBefore = offsetsBefore;
+            this.isDaylightSavingsAfter = isDaylightSavingsAfter;
+            this.lastOffset = lastOffset;
+            this.isDaylightSavingsAtStart = isDaylightSavingsAtStart;
+        }
+
+        static ZoneTable build(ZoneRules rules) {
+            Instant start = Instant.ofEpochSecond(TABLE_START_EPOCH_SECOND);
+            List<ZoneOffsetTransition> transitions = new ArrayList<>();
+            ZoneOffsetTransition transition = rules.nextTransition(start);
+            while (transition != null
+                    && transition.toEpochSecond() < TABLE_END_EPOCH_SECOND) {
+                transitions.add(transition);
+                transition = rules.nextTransition(transition.getInstant());
+            }
+
+            int count = transitions.size();
+            long[] transitionEpochSeconds = new long[count];
+            long[] localLimits = new long[count];
+            int[] offsetsBefore = new int[count];
+            boolean[] isDaylightSavingsAfter = new boolean[count];
+            boolean isValid = true;
+            for (int i = 0; i < count; i++) {
+                ZoneOffsetTransition t = transitions.get(i);
+                int before = t.getOffsetBefore().getTotalSeconds();
+                int after = t.getOffsetAfter().getTotalSeconds();
+                transitionEpochSeconds[i] = t.toEpochSecond();
+                // local times before the end of a gap or overlap use the offset before
+                localLimits[i] = t.toEpochSecond() + Math.max(before, after);
+                offsetsBefore[i] = before;
+                isDaylightSavingsAfter[i] = rules.isDaylightSavings(t.getInstant());
+                if (i > 0 && localLimits[i] <= localLimits[i - 1]) {
+                    isValid = false; // transitions too close to each other to look up
+                }
+            }
+            int lastOffset = count > 0
+                    ? transitions.get(count - 1).getOffsetAfter().getTotalSeconds()
+                    : rules.getOffset(start).getTotalSeconds();
+
+            return new ZoneTable(isValid, transitionEpochSeconds, localLimits, offsetsBefore,
+                    isDaylightSavingsAfter, lastOffset, rules.isDaylightSavings(start));
+        }
+
+        /**
+         * Whether the local or instant epoch second is well within the range of the table.
+         */
+        boolean covers(long epochSecond) {
+            return epochSecond > TABLE_START_EPOCH_SECOND + SECONDS_PER_DAY
+                    && epochSecond < TABLE_END_EPOCH_SECOND - SECONDS_PER_DAY;
+        }
+
+        /**
+         * Returns the offset in seconds of the given local date time, given as seconds since
+         * 1970-01-01T00:00 (local). In gaps and overlaps returns the offset before the
+         * transition.
+         */
+        int offsetAtLocal(long localEpochSecond) {
+            // find the first transition whose gap or overlap ends after the local time
+            int low = 0;
+            int high = localLimits.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (localLimits[mid] > localEpochSecond) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return low < localLimits.length ? offsetsBefore[low] : lastOffset;
+        }
+
+        boolean isDaylightSavingsAt(long epochSecond) {
+            // find the last transition at or before the instant
+            int low = 0;
+            int high = transitionEpochSeconds.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (transitionEpochSeconds[mid] > epochSecond) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return low > 0 ? isDaylightSavingsAfter[low - 1] : isDaylightSavingsAtStart;
+        }
+    }
+}
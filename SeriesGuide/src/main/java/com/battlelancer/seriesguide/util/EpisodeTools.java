@@ -21,28 +21,19 @@ import com.battlelancer.seriesguide.backend.settings.HexagonSettings;
 import com.battlelancer.seriesguide.enums.EpisodeFlags;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract;
 import com.battlelancer.seriesguide.settings.TraktCredentials;
-import com.battlelancer.seriesguide.traktapi.SgTrakt;
+import com.battlelancer.seriesguide.sync.EpisodeFlagOutbox;
 import com.battlelancer.seriesguide.ui.BaseNavDrawerActivity;
+import com.battlelancer.seriesguide.util.collections.IntSet;
 import com.battlelancer.seriesguide.util.tasks.EpisodeTaskTypes;
 import com.google.api.client.util.DateTime;
 import com.uwetrottmann.androidutils.AndroidUtils;
 import com.uwetrottmann.seriesguide.backend.episodes.Episodes;
 import com.uwetrottmann.seriesguide.backend.episodes.model.Episode;
 import com.uwetrottmann.seriesguide.backend.episodes.model.EpisodeList;
-import com.uwetrottmann.trakt5.entities.ShowIds;
-import com.uwetrottmann.trakt5.entities.SyncItems;
-import com.uwetrottmann.trakt5.entities.SyncResponse;
-import com.uwetrottmann.trakt5.entities.SyncSeason;
-import com.uwetrottmann.trakt5.entities.SyncShow;
-import com.uwetrottmann.trakt5.services.Sync;
-import dagger.Lazy;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import javax.inject.Inject;
 import org.greenrobot.eventbus.EventBus;
-import retrofit2.Call;
-import retrofit2.Response;
 import timber.log.Timber;
 
 public class EpisodeTools {
@@ -178,16 +169,14 @@ public class EpisodeTools {
         }
     }
 
-    public static class EpisodeFlagTask extends AsyncTask<Void, Void, Integer> {
-
-        private static final int SUCCESS = 0;
-        private static final int ERROR_NETWORK = -1;
-        private static final int ERROR_TRAKT_AUTH = -2;
-        private static final int ERROR_TRAKT_API = -3;
-        private static final int ERROR_HEXAGON_API = -4;
+    /**
+     * Flags episodes in the local database and adds the change to the {@link
+     * SeriesGuideContract.EpisodeOutbox}, which sends it to Hexagon or trakt in the background. So
+     * flagging works offline and does not wait for the network.
+     */
+    public static class EpisodeFlagTask extends AsyncTask<Void, Void, Boolean> {
 
         private final SgApp app;
-        @Inject Lazy<Sync> traktSync;
         private final EpisodeTaskTypes.FlagType flagType;
 
         private boolean shouldSendToTrakt;
@@ -197,7 +186,6 @@ public class EpisodeTools {
 
         public EpisodeFlagTask(SgApp app, EpisodeTaskTypes.FlagType type) {
             this.app = app;
-            app.getServicesComponent().inject(this);
             flagType = type;
         }
 
@@ -212,21 +200,7 @@ public class EpisodeTools {
         }
 
         @Override
-        protected Integer doInBackground(Void... params) {
-            // upload to hexagon
-            if (shouldSendToHexagon) {
-                if (!AndroidUtils.isNetworkConnected(app)) {
-                    return ERROR_NETWORK;
-                }
-
-                int result = uploadToHexagon(app, flagType.getShowTvdbId(),
-                        flagType.getEpisodesForHexagon());
-                if (result < 0) {
-                    return result;
-                }
-            }
-
-            // upload to trakt
+        protected Boolean doInBackground(Void... params) {
             /*
               Do net send skipped episodes, this is not supported by trakt.
               However, if the skipped flag is removed this will be handled identical
@@ -236,185 +210,25 @@ public class EpisodeTools {
                 // Do not send if show has no trakt id (was not on trakt last time we checked).
                 Integer traktId = ShowTools.getShowTraktId(app, flagType.getShowTvdbId());
                 canSendToTrakt = traktId != null;
-                if (canSendToTrakt) {
-                    if (!AndroidUtils.isNetworkConnected(app)) {
-                        return ERROR_NETWORK;
-                    }
-
-                    int result = uploadToTrakt(traktId);
-                    if (result < 0) {
-                        return result;
-                    }
-                }
-            }
-
-            // update local database (if uploading went smoothly or not uploading at all)
-            flagType.updateDatabase();
-            flagType.onPostExecute();
-
-            return SUCCESS;
-        }
-
-        private static int uploadToHexagon(SgApp app, int showTvdbId,
-                @NonNull List<Episode> batch) {
-            EpisodeList uploadWrapper = new EpisodeList();
-            uploadWrapper.setShowTvdbId(showTvdbId);
-
-            // upload in small batches
-            List<Episode> smallBatch = new ArrayList<>();
-            while (!batch.isEmpty()) {
-                // batch small enough?
-                if (batch.size() <= EPISODE_MAX_BATCH_SIZE) {
-                    smallBatch = batch;
-                } else {
-                    // build smaller batch
-                    for (int count = 0; count < EPISODE_MAX_BATCH_SIZE; count++) {
-                        if (batch.isEmpty()) {
-                            break;
-                        }
-                        smallBatch.add(batch.remove(0));
-                    }
-                }
-
-                // upload
-                uploadWrapper.setEpisodes(smallBatch);
-                if (!Upload.flagsToHexagon(app, uploadWrapper)) {
-                    return ERROR_HEXAGON_API;
-                }
-
-                // prepare for next batch
-                smallBatch.clear();
-            }
-
-            return SUCCESS;
-        }
-
-        private int uploadToTrakt(int showTraktId) {
-            List<SyncSeason> flags = flagType.getEpisodesForTrakt();
-            if (flags != null && flags.isEmpty()) {
-                return SUCCESS; // nothing to upload, done.
-            }
-
-            if (!TraktCredentials.get(app).hasCredentials()) {
-                return ERROR_TRAKT_AUTH;
-            }
-
-            // outer wrapper and show are always required
-            SyncShow show = new SyncShow().id(ShowIds.trakt(showTraktId));
-            SyncItems items = new SyncItems().shows(show);
-            // add season or episodes
-            EpisodeTaskTypes.Action flagAction = flagType.getAction();
-            if (flagAction == EpisodeTaskTypes.Action.SEASON_WATCHED
-                    || flagAction == EpisodeTaskTypes.Action.SEASON_COLLECTED
-                    || flagAction == EpisodeTaskTypes.Action.EPISODE_WATCHED
-                    || flagAction == EpisodeTaskTypes.Action.EPISODE_COLLECTED
-                    || flagAction == EpisodeTaskTypes.Action.EPISODE_WATCHED_PREVIOUS) {
-                show.seasons(flags);
             }
 
-            // determine network call
-            String action;
-            Call<SyncResponse> call;
-            boolean isAddNotDelete = !isUnwatched(flagType.getFlagValue());
-            switch (flagAction) {
-                case SHOW_WATCHED:
-                case SEASON_WATCHED:
-                case EPISODE_WATCHED:
-                case EPISODE_WATCHED_PREVIOUS:
-                    if (isAddNotDelete) {
-                        action = "set episodes watched";
-                        call = traktSync.get().addItemsToWatchedHistory(items);
-                    } else {
-                        action = "set episodes not watched";
-                        call = traktSync.get().deleteItemsFromWatchedHistory(items);
-                    }
-                    break;
-                case SHOW_COLLECTED:
-                case SEASON_COLLECTED:
-                case EPISODE_COLLECTED:
-                    if (isAddNotDelete) {
-                        action = "add episodes to collection";
-                        call = traktSync.get().addItemsToCollection(items);
-                    } else {
-                        action = "remove episodes from collection";
-                        call = traktSync.get().deleteItemsFromCollection(items);
-                    }
-                    break;
-                default:
-                    return ERROR_TRAKT_API;
-            }
-
-            // execute call
-            try {
-                Response<SyncResponse> response = call.execute();
-                if (response.isSuccessful()) {
-                    // check if any items were not found
-                    if (isSyncSuccessful(response.body())) {
-                        return SUCCESS;
-                    }
-                } else {
-                    if (SgTrakt.isUnauthorized(app, response)) {
-                        return ERROR_TRAKT_AUTH;
-                    }
-                    SgTrakt.trackFailedRequest(app, action, response);
-                }
-            } catch (IOException e) {
-                SgTrakt.trackFailedRequest(app, action, e);
-            }
-            return ERROR_TRAKT_API;
-        }
-
-        /**
-         * If the {@link SyncResponse} is invalid or any show, season or episode was not found
-         * returns {@code false}.
-         */
-        private static boolean isSyncSuccessful(SyncResponse response) {
-            if (response == null || response.not_found == null) {
-                // invalid response, assume failure
+            // update local database and queue sending the change
+            if (!flagType.updateDatabase(shouldSendToHexagon, canSendToTrakt)) {
                 return false;
             }
+            flagType.onPostExecute();
 
-            if (response.not_found.shows != null && !response.not_found.shows.isEmpty()) {
-                // show not found
-                return false;
-            }
-            if (response.not_found.seasons != null && !response.not_found.seasons.isEmpty()) {
-                // show exists, but seasons not found
-                return false;
-            }
-            //noinspection RedundantIfStatement
-            if (response.not_found.episodes != null && !response.not_found.episodes.isEmpty()) {
-                // show and season exists, but episodes not found
-                return false;
+            if (shouldSendToHexagon || canSendToTrakt) {
+                EpisodeFlagOutbox.getInstance(app).scheduleFlush();
             }
 
             return true;
         }
 
         @Override
-        protected void onPostExecute(Integer result) {
+        protected void onPostExecute(Boolean isSuccessful) {
             EventBus.getDefault().removeStickyEvent(BaseNavDrawerActivity.ServiceActiveEvent.class);
 
-            // handle errors
-            String error = null;
-            switch (result) {
-                case ERROR_NETWORK:
-                    error = app.getString(R.string.offline);
-                    break;
-                case ERROR_TRAKT_AUTH:
-                    error = app.getString(R.string.trakt_error_credentials);
-                    break;
-                case ERROR_TRAKT_API:
-                    error = app.getString(R.string.api_error_generic,
-                            app.getString(R.string.trakt));
-                    break;
-                case ERROR_HEXAGON_API:
-                    error = app.getString(R.string.api_error_generic,
-                            app.getString(R.string.hexagon));
-                    break;
-            }
-            boolean isSuccessful = error == null;
-
             // post completed status
             String confirmationText;
             boolean displaySuccess;
@@ -423,7 +237,8 @@ public class EpisodeTools {
                 confirmationText = app.getString(R.string.trakt_notice_not_exists);
                 displaySuccess = false;
             } else {
-                confirmationText = isSuccessful ? flagType.getConfirmationText() : error;
+                confirmationText = isSuccessful ? flagType.getConfirmationText()
+                        : app.getString(R.string.database_error);
                 displaySuccess = isSuccessful;
             }
             EventBus.getDefault()
@@ -444,9 +259,11 @@ public class EpisodeTools {
         /**
          * Downloads all episodes changed since the last time this was called and applies changes to
          * the database.
+         *
+         * @param changedShows Receives the TVDb ids of shows with changed episodes.
          */
         @SuppressLint("ApplySharedPref")
-        public static boolean flagsFromHexagon(SgApp app) {
+        public static boolean flagsFromHexagon(SgApp app, IntSet changedShows) {
             List<Episode> episodes;
             boolean hasMoreEpisodes = true;
             String cursor = null;
@@ -529,6 +346,9 @@ public class EpisodeTools {
                             .build();
 
                     batch.add(op);
+                    if (showTvdbId != null) {
+                        changedShows.add(showTvdbId);
+                    }
                 }
 
                 // execute database update
@@ -0,0 +1,149 @@
+package com.battlelancer.seriesguide.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * An {@link Interceptor} that limits how many requests may be in flight to the same host at the
+ * same time. Callers exceeding the limit block until a request to that host completes, which is
+ * when its response body is closed.
+ *
+ * <p> Used so the sync adapter can download multiple shows concurrently without flooding a single
+ * API (e.g. TheTVDB or trakt) with requests. Only limits requests made on threads of a {@link
+ * #newLimitedThreadFactory(String)}, requests of the UI are passed on right away.
+ */
+public class HostRateLimitInterceptor implements Interceptor {
+
+    private static final ThreadLocal<Boolean> isLimitedThread = new ThreadLocal<>();
+
+    private final int maxRequestsPerHost;
+    private final Map<String, Semaphore> hostPermits = new HashMap<>();
+
+    public HostRateLimitInterceptor(int maxRequestsPerHost) {
+        this.maxRequestsPerHost = maxRequestsPerHost;
+    }
+
+    /**
+     * Returns a factory for worker threads whose requests are limited by this interceptor, e.g. to
+     * create a sync thread pool with.
+     */
+    public static ThreadFactory newLimitedThreadFactory(final String name) {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        isLimitedThread.set(true);
+                        runnable.run();
+                    }
+                }, name + "-" + count.incrementAndGet());
+            }
+        };
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        if (isLimitedThread.get() == null) {
+            return chain.proceed(chain.request());
+        }
+
+        Semaphore permits = getPermits(chain.request().url().host());
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for request permit");
+        }
+        Response response;
+        try {
+            response = chain.proceed(chain.request());
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+
+        ResponseBody body = response.body();
+        if (body == null) {
+            permits.release();
+            return response;
+        }
+        // keep the permit until the body is read and closed
+        return response.newBuilder()
+                .body(new PermitResponseBody(body, permits))
+                .build();
+    }
+
+    private synchronized Semaphore getPermits(String host) {
+        Semaphore permits = hostPermits.get(host);
+        if (permits == null) {
+            permits = new Semaphore(maxRequestsPerHost, true);
+            hostPermits.put(host, permits);
+        }
+        return permits;
+    }
+
+    private static class PermitResponseBody extends ResponseBody {
+
+        private final ResponseBody body;
+        private final BufferedSource source;
+
+        PermitResponseBody(ResponseBody body, Semaphore permits) {
+            this.body = body;
+            this.source = Okio.buffer(new PermitSource(body.source(), permits));
+        }
+
+        @Override
+        public MediaType contentType() {
+            return body.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return body.contentLength();
+        }
+
+        @Override
+        public BufferedSource source() {
+            return source;
+        }
+    }
+
+    private static class PermitSource extends ForwardingSource {
+
+        private final Semaphore permits;
+        private final AtomicBoolean isReleased = new AtomicBoolean();
+
+        PermitSource(Source delegate, Semaphore permits) {
+            super(delegate);
+            this.permits = permits;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (isReleased.compareAndSet(false, true)) {
+                    permits.release();
+                }
+            }
+        }
+    }
+}
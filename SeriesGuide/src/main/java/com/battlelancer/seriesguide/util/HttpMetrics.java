@@ -0,0 +1,270 @@
+package com.battlelancer.seriesguide.util;
+
+import android.support.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import okhttp3.Cache;
+import okhttp3.HttpUrl;
+import okhttp3.Response;
+
+/**
+ * Aggregates metrics of all calls made through the API {@link okhttp3.OkHttpClient}, reported by
+ * {@link HttpMetricsInterceptor} and {@link AllApisAuthenticator}: latency, response body sizes,
+ * how the response cache was used and follow-up requests, per {@link #getEndpoint(HttpUrl)
+ * endpoint} and summed per host.
+ *
+ * <p> Use {@link #dump(Cache)} to get the results, e.g. from the debug drawer.
+ */
+public class HttpMetrics {
+
+    public enum CacheResult {
+        /** Response served from the cache without a network request. */
+        HIT,
+        /** Cached response validated with a conditional network request. */
+        CONDITIONAL_HIT,
+        /** Response fetched from the network. */
+        MISS
+    }
+
+    private static final String PLACEHOLDER_ID = "{id}";
+    /**
+     * Once this many endpoints are recorded, calls to further endpoints are summed per host as
+     * {@value #OTHER_ENDPOINTS}. So URLs with path segments not replaced by {@value
+     * #PLACEHOLDER_ID} can not grow the stats without limit.
+     */
+    static final int MAX_ENDPOINTS = 100;
+    private static final String OTHER_ENDPOINTS = "{other}";
+
+    private static final Map<String, EndpointStats> endpoints = new LinkedHashMap<>();
+    private static final Map<String, Integer> authentications = new LinkedHashMap<>();
+
+    private static class EndpointStats {
+        final String host;
+        final String endpoint;
+        final LatencyHistogram latency = new LatencyHistogram();
+        int failures;
+        int cacheHits;
+        int conditionalHits;
+        int misses;
+        /** Requests made by OkHttp in addition to the original one, e.g. redirects or auth. */
+        int followUps;
+        long bytes;
+
+        EndpointStats(String host, String endpoint) {
+            this.host = host;
+            this.endpoint = endpoint;
+        }
+
+        void addAll(EndpointStats other) {
+            latency.addAll(other.latency);
+            failures += other.failures;
+            cacheHits += other.cacheHits;
+            conditionalHits += other.conditionalHits;
+            misses += other.misses;
+            followUps += other.followUps;
+            bytes += other.bytes;
+        }
+    }
+
+    private HttpMetrics() {
+    }
+
+    /**
+     * Returns the host and path of the URL with all path segments containing a digit, except a
+     * leading API version like {@code 3}, replaced by {@value #PLACEHOLDER_ID}. So calls for
+     * different shows or episodes are grouped, like {@code api.thetvdb.com/series/{id}/episodes}.
+     */
+    public static String getEndpoint(HttpUrl url) {
+        StringBuilder endpoint = new StringBuilder(url.host());
+        List<String> segments = url.pathSegments();
+        for (int i = 0; i < segments.size(); i++) {
+            String segment = segments.get(i);
+            endpoint.append('/');
+            if (isVariable(segment) && !(i == 0 && segment.length() <= 2)) {
+                endpoint.append(PLACEHOLDER_ID);
+            } else {
+                endpoint.append(segment);
+            }
+        }
+        return endpoint.toString();
+    }
+
+    private static boolean isVariable(String segment) {
+        for (int i = 0; i < segment.length(); i++) {
+            if (Character.isDigit(segment.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns how the cache was used for the response as returned to application interceptors.
+     */
+    public static CacheResult getCacheResult(Response response) {
+        if (response.cacheResponse() != null) {
+            return response.networkResponse() == null
+                    ? CacheResult.HIT : CacheResult.CONDITIONAL_HIT;
+        }
+        return CacheResult.MISS;
+    }
+
+    /**
+     * Returns the number of requests OkHttp made before the given response, like redirects or
+     * retries with credentials added by {@link AllApisAuthenticator}.
+     */
+    public static int getFollowUpCount(Response response) {
+        int count = 0;
+        Response prior = response.priorResponse();
+        while (prior != null) {
+            count++;
+            prior = prior.priorResponse();
+        }
+        return count;
+    }
+
+    /**
+     * Records a call that returned a response after the given time.
+     */
+    static synchronized void onResponse(HttpUrl url, String endpoint, long nanos,
+            CacheResult cacheResult, int followUps, boolean isFailure) {
+        EndpointStats stats = getStats(url.host(), endpoint);
+        stats.latency.add(nanos);
+        switch (cacheResult) {
+            case HIT:
+                stats.cacheHits++;
+                break;
+            case CONDITIONAL_HIT:
+                stats.conditionalHits++;
+                break;
+            default:
+                stats.misses++;
+                break;
+        }
+        stats.followUps += followUps;
+        if (isFailure) {
+            stats.failures++;
+        }
+    }
+
+    /**
+     * Records a call that failed with an exception after the given time.
+     */
+    static synchronized void onFailure(HttpUrl url, String endpoint, long nanos) {
+        EndpointStats stats = getStats(url.host(), endpoint);
+        stats.latency.add(nanos);
+        stats.failures++;
+    }
+
+    static synchronized void onBytesRead(HttpUrl url, String endpoint, long bytes) {
+        getStats(url.host(), endpoint).bytes += bytes;
+    }
+
+    /**
+     * Records that the authenticator was asked to provide credentials for the given host.
+     */
+    static synchronized void onAuthenticate(String host) {
+        Integer count = authentications.get(host);
+        authentications.put(host, count == null ? 1 : count + 1);
+    }
+
+    private static EndpointStats getStats(String host, String endpoint) {
+        EndpointStats stats = endpoints.get(endpoint);
+        if (stats == null && endpoints.size() >= MAX_ENDPOINTS) {
+            endpoint = host + "/" + OTHER_ENDPOINTS;
+            stats = endpoints.get(endpoint);
+        }
+        if (stats == null) {
+            stats = new EndpointStats(host, endpoint);
+            endpoints.put(endpoint, stats);
+        }
+        return stats;
+    }
+
+    public static synchronized void clear() {
+        endpoints.clear();
+        authentications.clear();
+    }
+
+    /**
+     * Returns the size and counters of the given response cache, if any, then one line per host
+     * and one per endpoint with request count, cache hits, conditional hits and misses, follow-up
+     * requests, failures, total, mean, approximate p50 and p95 and maximum latency up to receiving
+     * the response headers and response body bytes read. Endpoints with the slowest total time
+     * first.
+     *
+     * <p> Reads the cache size from disk, so do not call on the main thread.
+     */
+    public static String dump(@Nullable Cache cache) {
+        StringBuilder dump = new StringBuilder();
+        if (cache != null) {
+            long size;
+            try {
+                size = cache.size();
+            } catch (IOException e) {
+                size = -1;
+            }
+            dump.append(String.format(Locale.US,
+                    "cache size_kb %d/%d requests %d network %d hits %d\n",
+                    size / 1024, cache.maxSize() / 1024, cache.requestCount(),
+                    cache.networkCount(), cache.hitCount()));
+        }
+
+        synchronized (HttpMetrics.class) {
+            Map<String, EndpointStats> hosts = new LinkedHashMap<>();
+            for (EndpointStats stats : endpoints.values()) {
+                EndpointStats hostStats = hosts.get(stats.host);
+                if (hostStats == null) {
+                    hostStats = new EndpointStats(stats.host, stats.host);
+                    hosts.put(stats.host, hostStats);
+                }
+                hostStats.addAll(stats);
+            }
+
+            dump.append("endpoint count hit cond miss follow fail total_ms mean_ms p50_ms p95_ms"
+                    + " max_ms kb\n");
+            for (EndpointStats hostStats : hosts.values()) {
+                appendStats(dump, hostStats);
+                Integer authCount = authentications.get(hostStats.host);
+                if (authCount != null) {
+                    dump.append("  authenticator invocations ").append(authCount).append('\n');
+                }
+            }
+            dump.append('\n');
+            for (EndpointStats stats : sortedBySlowest(endpoints.values())) {
+                appendStats(dump, stats);
+            }
+        }
+        return dump.toString();
+    }
+
+    private static List<EndpointStats> sortedBySlowest(Iterable<EndpointStats> stats) {
+        List<EndpointStats> sorted = new ArrayList<>();
+        for (EndpointStats endpointStats : stats) {
+            sorted.add(endpointStats);
+        }
+        Collections.sort(sorted, new Comparator<EndpointStats>() {
+            @Override
+            public int compare(EndpointStats left, EndpointStats right) {
+                return LatencyHistogram.compareSlowestFirst(left.latency.getTotalNanos(),
+                        right.latency.getTotalNanos());
+            }
+        });
+        return sorted;
+    }
+
+    private static void appendStats(StringBuilder dump, EndpointStats stats) {
+        LatencyHistogram latency = stats.latency;
+        dump.append(String.format(Locale.US, "%s %d %d %d %d %d %d %.1f %.2f %s %s %.1f %d\n",
+                stats.endpoint, latency.getCount(), stats.cacheHits, stats.conditionalHits,
+                stats.misses, stats.followUps, stats.failures, latency.getTotalMs(),
+                latency.getMeanMs(), latency.formatPercentile(50), latency.formatPercentile(95),
+                latency.getMaxMs(), stats.bytes / 1024));
+    }
+}
@@ -0,0 +1,112 @@
+package com.battlelancer.seriesguide.util;
+
+import com.battlelancer.seriesguide.sync.SyncTracer;
+import java.io.IOException;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * An {@link Interceptor} reporting latency, cache use, follow-up requests, failures and body bytes
+ * of every call to {@link HttpMetrics} and, if a sync is running, to the {@link
+ * SyncTracer#getActive() active} {@link SyncTracer}.
+ *
+ * <p> Must be added as an application interceptor so it sees the final response including cache
+ * and follow-up information.
+ */
+public class HttpMetricsInterceptor implements Interceptor {
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        HttpUrl url = request.url();
+        String endpoint = HttpMetrics.getEndpoint(url);
+
+        long requestBytes = 0;
+        if (request.body() != null) {
+            // -1 if unknown
+            requestBytes = Math.max(request.body().contentLength(), 0);
+        }
+        long startNanos = System.nanoTime();
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException e) {
+            long nanos = System.nanoTime() - startNanos;
+            HttpMetrics.onFailure(url, endpoint, nanos);
+            SyncTracer.onRequest(endpoint, requestBytes, nanos, null, true);
+            throw e;
+        }
+        long nanos = System.nanoTime() - startNanos;
+        HttpMetrics.CacheResult cacheResult = HttpMetrics.getCacheResult(response);
+        boolean isFailure = !response.isSuccessful();
+        HttpMetrics.onResponse(url, endpoint, nanos, cacheResult,
+                HttpMetrics.getFollowUpCount(response), isFailure);
+        SyncTracer.onRequest(endpoint, requestBytes, nanos, cacheResult, isFailure);
+
+        ResponseBody body = response.body();
+        if (body == null) {
+            return response;
+        }
+        // count response bytes as they are read
+        return response.newBuilder()
+                .body(new CountingResponseBody(body, url, endpoint))
+                .build();
+    }
+
+    private static class CountingResponseBody extends ResponseBody {
+
+        private final ResponseBody body;
+        private final BufferedSource source;
+
+        CountingResponseBody(ResponseBody body, HttpUrl url, String endpoint) {
+            this.body = body;
+            this.source = Okio.buffer(new CountingSource(body.source(), url, endpoint));
+        }
+
+        @Override
+        public MediaType contentType() {
+            return body.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return body.contentLength();
+        }
+
+        @Override
+        public BufferedSource source() {
+            return source;
+        }
+    }
+
+    private static class CountingSource extends ForwardingSource {
+
+        private final HttpUrl url;
+        private final String endpoint;
+
+        CountingSource(Source delegate, HttpUrl url, String endpoint) {
+            super(delegate);
+            this.url = url;
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public long read(Buffer sink, long byteCount) throws IOException {
+            long read = super.read(sink, byteCount);
+            if (read > 0) {
+                HttpMetrics.onBytesRead(url, endpoint, read);
+                SyncTracer.onBytesRead(endpoint, read);
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.battlelancer.seriesguide.util;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.format.DateUtils;
+import android.util.SparseIntArray;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.IdMappingTypes;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.IdMappings;
+import com.battlelancer.seriesguide.provider.SeriesGuideProvider;
+import com.uwetrottmann.trakt5.entities.MovieIds;
+import com.uwetrottmann.trakt5.entities.ShowIds;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import timber.log.Timber;
+
+/**
+ * Stores and resolves ids of shows and movies across TheTVDB, TMDb, trakt and IMDb, so trakt ids
+ * do not have to be looked up with a search request every time they are needed. Mappings are
+ * collected from trakt and TMDb responses that carry ids with a {@link Batch}. Hexagon responses
+ * only carry the TheTVDB or TMDb id, so they add no mappings.
+ *
+ * <p> A trakt id is used for {@link #MAX_AGE_MS} after a trakt response last confirmed it, so a
+ * TheTVDB or TMDb id linked to the wrong trakt entry eventually gets fixed. That an item is not
+ * on trakt is only remembered for {@link #NOT_FOUND_MAX_AGE_MS}.
+ */
+public class IdMappingTools {
+
+    /** Trakt id of items a lookup did not find on trakt. */
+    public static final int TRAKT_ID_NONE = 0;
+
+    static final long MAX_AGE_MS = 30 * DateUtils.DAY_IN_MILLIS;
+    static final long NOT_FOUND_MAX_AGE_MS = DateUtils.DAY_IN_MILLIS;
+    /** Keeps the selection of {@link #getTraktIds} queries reasonably short. */
+    private static final int IDS_PER_QUERY = 500;
+
+    /**
+     * Collects id mappings to {@link #store(Context)} them at once. Mappings may be added from
+     * multiple threads, e.g. by workers downloading movies.
+     */
+    public static class Batch {
+
+        private final ArrayList<ContentValues> mappings = new ArrayList<>();
+        private final long now = System.currentTimeMillis();
+
+        /**
+         * Adds the ids of a show from a trakt response, ignored if there is no TheTVDB id.
+         */
+        public Batch addShow(@Nullable ShowIds ids) {
+            if (ids == null || ids.tvdb == null) {
+                return this;
+            }
+            ContentValues values = buildMapping(IdMappingTypes.SHOW, ids.trakt, ids.imdb);
+            values.put(IdMappings.TVDB_ID, ids.tvdb);
+            if (ids.tmdb != null) {
+                values.put(IdMappings.TMDB_ID, ids.tmdb);
+            }
+            add(values);
+            return this;
+        }
+
+        public Batch addShowNotOnTrakt(int showTvdbId) {
+            ContentValues values = buildMapping(IdMappingTypes.SHOW, TRAKT_ID_NONE, null);
+            values.put(IdMappings.TVDB_ID, showTvdbId);
+            add(values);
+            return this;
+        }
+
+        /**
+         * Adds the ids of a movie from a trakt response, ignored if there is no TMDb id.
+         */
+        public Batch addMovie(@Nullable MovieIds ids) {
+            if (ids == null || ids.tmdb == null) {
+                return this;
+            }
+            ContentValues values = buildMapping(IdMappingTypes.MOVIE, ids.trakt, ids.imdb);
+            values.put(IdMappings.TMDB_ID, ids.tmdb);
+            add(values);
+            return this;
+        }
+
+        public Batch addMovieNotOnTrakt(int movieTmdbId) {
+            ContentValues values = buildMapping(IdMappingTypes.MOVIE, TRAKT_ID_NONE, null);
+            values.put(IdMappings.TMDB_ID, movieTmdbId);
+            add(values);
+            return this;
+        }
+
+        /**
+         * Adds the IMDb id of a movie from a TMDb response. Keeps a known trakt id.
+         */
+        public Batch addMovieImdbId(int movieTmdbId, @Nullable String imdbId) {
+            if (imdbId == null || imdbId.length() == 0) {
+                return this;
+            }
+            ContentValues values = buildMapping(IdMappingTypes.MOVIE, null, imdbId);
+            values.put(IdMappings.TMDB_ID, movieTmdbId);
+            add(values);
+            return this;
+        }
+
+        private void add(ContentValues values) {
+            synchronized (mappings) {
+                mappings.add(values);
+            }
+        }
+
+        private ContentValues buildMapping(int type, @Nullable Integer traktId,
+                @Nullable String imdbId) {
+            ContentValues values = new ContentValues();
+            values.put(IdMappings.TYPE, type);
+            if (traktId != null) {
+                values.put(IdMappings.TRAKT_ID, traktId);
+                values.put(IdMappings.TRAKT_UPDATED_MS, now);
+            }
+            if (imdbId != null && imdbId.length() > 0) {
+                values.put(IdMappings.IMDB_ID, imdbId);
+            }
+            return values;
+        }
+
+        public int size() {
+            synchronized (mappings) {
+                return mappings.size();
+            }
+        }
+
+        /**
+         * Writes all added mappings in a single transaction and removes them from this batch, so
+         * it can be stored again once more mappings were added. Does nothing if none were added.
+         */
+        public void store(Context context) {
+            ArrayList<ContentValues> toStore;
+            synchronized (mappings) {
+                if (mappings.isEmpty()) {
+                    return;
+                }
+                toStore = new ArrayList<>(mappings);
+                mappings.clear();
+            }
+            Bundle extras = new Bundle();
+            extras.putParcelableArrayList(SeriesGuideProvider.EXTRA_ID_MAPPINGS, toStore);
+            try {
+                context.getContentResolver().call(IdMappings.CONTENT_URI,
+                        SeriesGuideProvider.METHOD_PUT_ID_MAPPINGS, null, extras);
+            } catch (IllegalArgumentException e) {
+                // mappings are an optimization, do not fail the caller
+                Timber.e(e, "store: failed to store %s id mappings", toStore.size());
+            }
+        }
+    }
+
+    private IdMappingTools() {
+    }
+
+    /**
+     * Returns the known trakt id of the show, {@link #TRAKT_ID_NONE} if it is known to not be on
+     * trakt or {@code null} if it has to be looked up.
+     */
+    @Nullable
+    public static Integer getShowTraktId(Context context, int showTvdbId) {
+        return getTraktId(getShowTraktIds(context, Collections.singleton(showTvdbId)),
+                showTvdbId);
+    }
+
+    /**
+     * Like {@link #getShowTraktId(Context, int)}, but for a movie.
+     */
+    @Nullable
+    public static Integer getMovieTraktId(Context context, int movieTmdbId) {
+        return getTraktId(getMovieTraktIds(context, Collections.singleton(movieTmdbId)),
+                movieTmdbId);
+    }
+
+    @Nullable
+    private static Integer getTraktId(SparseIntArray traktIds, int id) {
+        int index = traktIds.indexOfKey(id);
+        return index < 0 ? null : traktIds.valueAt(index);
+    }
+
+    /**
+     * Resolves the trakt ids of the given shows with one query per {@link #IDS_PER_QUERY} shows.
+     * Shows that have to be looked
+     * up are not contained in the result, shows known to not be on trakt map to {@link
+     * #TRAKT_ID_NONE}.
+     */
+    @NonNull
+    public static SparseIntArray getShowTraktIds(Context context,
+            Collection<Integer> showTvdbIds) {
+        return getTraktIds(context, IdMappingTypes.SHOW, IdMappings.TVDB_ID, showTvdbIds);
+    }
+
+    /**
+     * Like {@link #getShowTraktIds(Context, Collection)}, but for movies.
+     */
+    @NonNull
+    public static SparseIntArray getMovieTraktIds(Context context,
+            Collection<Integer> movieTmdbIds) {
+        return getTraktIds(context, IdMappingTypes.MOVIE, IdMappings.TMDB_ID, movieTmdbIds);
+    }
+
+    private static SparseIntArray getTraktIds(Context context, int type, String idColumn,
+            Collection<Integer> ids) {
+        SparseIntArray traktIds = new SparseIntArray(ids.size());
+        if (ids.isEmpty()) {
+            return traktIds;
+        }
+
+        long now = System.currentTimeMillis();
+        String selectionMapped = IdMappings.TYPE + "=" + type
+                + " AND ((" + IdMappings.TRAKT_ID + ">0 AND "
+                + IdMappings.TRAKT_UPDATED_MS + ">" + (now - MAX_AGE_MS)
+                + ") OR (" + IdMappings.TRAKT_ID + "=" + TRAKT_ID_NONE
+                + " AND " + IdMappings.TRAKT_UPDATED_MS + ">" + (now - NOT_FOUND_MAX_AGE_MS)
+                + ")) AND " + idColumn + " IN (";
+
+        StringBuilder selection = new StringBuilder();
+        int count = 0;
+        for (Integer id : ids) {
+            if (count == 0) {
+                selection.setLength(0);
+                selection.append(selectionMapped);
+            } else {
+                selection.append(",");
+            }
+            selection.append(id);
+            count++;
+            if (count == IDS_PER_QUERY) {
+                queryTraktIds(context, idColumn, selection.append(")").toString(), traktIds);
+                count = 0;
+            }
+        }
+        if (count > 0) {
+            queryTraktIds(context, idColumn, selection.append(")").toString(), traktIds);
+        }
+        return traktIds;
+    }
+
+    private static void queryTraktIds(Context context, String idColumn, String selection,
+            SparseIntArray traktIds) {
+        Cursor query = context.getContentResolver().query(IdMappings.CONTENT_URI,
+                new String[] { idColumn, IdMappings.TRAKT_ID }, selection, null, null);
+        if (query == null) {
+            return;
+        }
+        while (query.moveToNext()) {
+            traktIds.put(query.getInt(0), query.getInt(1));
+        }
+        query.close();
+    }
+
+    /**
+     * Removes the mapping of the show, e.g. if trakt now links another show to its TheTVDB id.
+     */
+    public static void removeShow(Context context, int showTvdbId) {
+        context.getContentResolver().delete(IdMappings.CONTENT_URI,
+                IdMappings.TYPE + "=" + IdMappingTypes.SHOW + " AND " + IdMappings.TVDB_ID + "=?",
+                new String[] { String.valueOf(showTvdbId) });
+    }
+}
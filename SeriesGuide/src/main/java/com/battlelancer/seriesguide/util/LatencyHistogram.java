@@ -0,0 +1,96 @@
+package com.battlelancer.seriesguide.util;
+
+/**
+ * Counts latencies in buckets with power of two upper bounds from 1 ms to 512 ms, and one bucket
+ * for everything slower. Percentiles are approximated by the upper bound of their bucket. This
+ * class is <em>not</em> thread safe.
+ */
+public class LatencyHistogram {
+
+    /**
+     * Upper bounds of the buckets in ms, the last bucket has no upper bound.
+     */
+    private static final long[] BUCKET_BOUNDS_MS = { 1, 2, 4, 8, 16, 32, 64, 128, 256, 512 };
+
+    private final int[] buckets = new int[BUCKET_BOUNDS_MS.length + 1];
+    private int count;
+    private long totalNanos;
+    private long maxNanos;
+
+    public void add(long nanos) {
+        long ms = nanos / 1000000;
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_MS.length && ms >= BUCKET_BOUNDS_MS[bucket]) {
+            bucket++;
+        }
+        buckets[bucket]++;
+        count++;
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+    }
+
+    /**
+     * Adds all latencies of the other histogram to this one.
+     */
+    public void addAll(LatencyHistogram other) {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] += other.buckets[i];
+        }
+        count += other.count;
+        totalNanos += other.totalNanos;
+        maxNanos = Math.max(maxNanos, other.maxNanos);
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public double getTotalMs() {
+        return totalNanos / 1000000.0;
+    }
+
+    public double getMeanMs() {
+        return count == 0 ? 0 : getTotalMs() / count;
+    }
+
+    public double getMaxMs() {
+        return maxNanos / 1000000.0;
+    }
+
+    /**
+     * Returns the upper bound in ms of the bucket containing the given percentile, or -1 if it is
+     * in the last bucket which has no upper bound.
+     */
+    public long getPercentileUpperBoundMs(int percentile) {
+        int rank = (int) Math.ceil(count * percentile / 100.0);
+        int seen = 0;
+        for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return BUCKET_BOUNDS_MS[i];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares total times so the slowest sorts first. Like {@code Long.compare(right, left)},
+     * which requires API 19.
+     */
+    public static int compareSlowestFirst(long leftNanos, long rightNanos) {
+        return rightNanos < leftNanos ? -1 : (rightNanos == leftNanos ? 0 : 1);
+    }
+
+    /**
+     * Returns the percentile like {@code <16} or {@code >512} if in the last bucket.
+     */
+    public String formatPercentile(int percentile) {
+        long boundMs = getPercentileUpperBoundMs(percentile);
+        return boundMs == -1 ? ">" + BUCKET_BOUNDS_MS[BUCKET_BOUNDS_MS.length - 1]
+                : "<" + boundMs;
+    }
+}
@@ -3,11 +3,12 @@ package com.battlelancer.seriesguide.util;
 import android.content.Context;
 import android.os.AsyncTask;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract;
+import java.util.Arrays;
 import timber.log.Timber;
 
 /**
- * Updates the latest episode value for a given show or all shows. If supplied a show TVDb id will
- * update only latest episode for that show.
+ * Updates the latest episode value for a given show or all shows. If supplied show TVDb ids will
+ * update only latest episodes for those shows.
  *
  * <p><b>Do NOT run in parallel as this task is memory intensive.</b>
  */
@@ -21,12 +22,21 @@ public class LatestEpisodeUpdateTask extends AsyncTask<Integer, Void, Void> {
 
     @Override
     protected Void doInBackground(Integer... params) {
-        int showTvdbId = (params != null && params.length > 0) ? params[0] : -1;
-
-        if (showTvdbId > 0) {
-            // update single show
-            Timber.d("Updating next episode for show " + showTvdbId);
-            DBUtils.updateLatestEpisode(mContext, showTvdbId);
+        if (params != null && params.length > 0) {
+            // update only given shows, skip invalid ids instead of updating all shows
+            int[] showTvdbIds = new int[params.length];
+            int count = 0;
+            for (Integer showTvdbId : params) {
+                if (showTvdbId != null && showTvdbId > 0) {
+                    showTvdbIds[count++] = showTvdbId;
+                }
+            }
+            if (count == 0) {
+                Timber.e("Not updating next episodes, no valid show id");
+                return null;
+            }
+            Timber.d("Updating next episodes for %s shows", count);
+            DBUtils.updateLatestEpisodes(mContext, Arrays.copyOf(showTvdbIds, count));
         } else {
             // update all shows
             Timber.d("Updating next episodes for all shows");
@@ -14,9 +14,11 @@ import com.battlelancer.seriesguide.SgApp;
 import com.battlelancer.seriesguide.backend.HexagonTools;
 import com.battlelancer.seriesguide.backend.settings.HexagonSettings;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract;
+import com.battlelancer.seriesguide.provider.SeriesGuideDatabase;
 import com.battlelancer.seriesguide.util.tasks.AddListTask;
 import com.battlelancer.seriesguide.util.tasks.ChangeListItemListsTask;
 import com.battlelancer.seriesguide.util.tasks.RemoveListItemTask;
+import com.battlelancer.seriesguide.util.tasks.RemoveListItemsFromHexagonTask;
 import com.battlelancer.seriesguide.util.tasks.RemoveListTask;
 import com.battlelancer.seriesguide.util.tasks.RenameListTask;
 import com.battlelancer.seriesguide.util.tasks.ReorderListsTask;
@@ -91,6 +93,39 @@ public class ListsTools {
         AsyncTaskCompat.executeParallel(new RemoveListItemTask(app, listItemId));
     }
 
+    /**
+     * Removes the given list items from Hexagon, does not change the local database. Used to
+     * remove the list items of a removed show, so they are not downloaded again, see {@link
+     * #getListItemIdsOfShow(Context, int)}.
+     */
+    public static void removeListItemsFromHexagon(@NonNull SgApp app,
+            @NonNull List<String> listItemIds) {
+        AsyncTaskCompat.executeParallel(new RemoveListItemsFromHexagonTask(app, listItemIds));
+    }
+
+    /**
+     * Returns the ids of list items of the show, its seasons and its episodes.
+     *
+     * @return null if the query failed.
+     */
+    @Nullable
+    public static List<String> getListItemIdsOfShow(Context context, int showTvdbId) {
+        String showId = String.valueOf(showTvdbId);
+        Cursor query = context.getContentResolver().query(
+                SeriesGuideContract.ListItems.CONTENT_URI, Query.PROJECTION_LIST_ITEMS,
+                SeriesGuideDatabase.SELECTION_LIST_ITEMS_OF_SHOW,
+                new String[] { showId, showId, showId }, null);
+        if (query == null) {
+            return null; // query failed
+        }
+        List<String> listItemIds = new ArrayList<>(query.getCount());
+        while (query.moveToNext()) {
+            listItemIds.add(query.getString(Query.LIST_ITEM_ID));
+        }
+        query.close();
+        return listItemIds;
+    }
+
     public static boolean removeListsRemovedOnHexagon(SgApp app) {
         Timber.d("removeListsRemovedOnHexagon");
         HashSet<String> localListIds = getListIds(app);
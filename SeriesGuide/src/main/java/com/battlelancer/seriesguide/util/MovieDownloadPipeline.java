@@ -0,0 +1,173 @@
+package com.battlelancer.seriesguide.util;
+
+import android.content.Context;
+import android.util.SparseIntArray;
+import com.battlelancer.seriesguide.items.MovieDetails;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract;
+import com.battlelancer.seriesguide.settings.DisplaySettings;
+import com.battlelancer.seriesguide.sync.SgSyncAdapter.UpdateResult;
+import com.uwetrottmann.androidutils.AndroidUtils;
+import com.uwetrottmann.trakt5.entities.Ratings;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import timber.log.Timber;
+
+/**
+ * Downloads details of new movies using a bounded pool of worker threads, so several movies are
+ * downloaded at once. For each movie the trakt ratings and the TMDb summary are requested in
+ * parallel. The calling thread inserts downloaded movies in batches as they complete. Known trakt
+ * ids are resolved up front with {@link IdMappingTools}, so only unknown ones are looked up. Ids
+ * learned while downloading are stored together with each batch of movies.
+ *
+ * <p> Runs {@link #WORKER_COUNT} workers, their requests to each API are limited by {@link
+ * HostRateLimitInterceptor}. How far downloads may get ahead of
+ * the writer is limited by {@link BoundedCompletionService}.
+ */
+class MovieDownloadPipeline {
+
+    private static final int BATCH_SIZE = 10;
+    private static final int WORKER_COUNT = 4;
+
+    private final Context context;
+    private final MovieTools movieTools;
+    private final IdMappingTools.Batch idMappings = new IdMappingTools.Batch();
+
+    MovieDownloadPipeline(Context context, MovieTools movieTools) {
+        this.context = context;
+        this.movieTools = movieTools;
+    }
+
+    /**
+     * Downloads and inserts the given movies. Movies whose TMDb summary fails to load are skipped.
+     * Stops downloading further movies if connectivity is lost.
+     *
+     * @return {@link UpdateResult#INCOMPLETE} if the network connection was lost.
+     */
+    UpdateResult addMovies(Set<Integer> newMovies, Set<Integer> newCollectionMovies,
+            Set<Integer> newWatchlistMovies) {
+        if (newMovies.isEmpty()) {
+            return UpdateResult.SUCCESS;
+        }
+
+        String languageCode = DisplaySettings.getMoviesLanguage(context);
+        SparseIntArray traktIds = IdMappingTools.getMovieTraktIds(context, newMovies);
+        ExecutorService movieExecutor = Executors.newFixedThreadPool(WORKER_COUNT,
+                HostRateLimitInterceptor.newLimitedThreadFactory("movie-sync"));
+        // trakt requests do not wait on anything, so workers may block on them
+        ExecutorService traktExecutor = Executors.newFixedThreadPool(WORKER_COUNT,
+                HostRateLimitInterceptor.newLimitedThreadFactory("movie-sync-trakt"));
+        BoundedCompletionService<MovieDetails> downloads
+                = new BoundedCompletionService<>(movieExecutor, WORKER_COUNT);
+
+        List<MovieDetails> batch = new ArrayList<>(BATCH_SIZE);
+        UpdateResult resultCode = UpdateResult.SUCCESS;
+        Iterator<Integer> iterator = newMovies.iterator();
+        boolean isStopped = false;
+        try {
+            while (true) {
+                while (!isStopped && iterator.hasNext() && !downloads.isFull()) {
+                    if (!AndroidUtils.isNetworkConnected(context)) {
+                        Timber.e("addMovies: no network connection");
+                        resultCode = UpdateResult.INCOMPLETE;
+                        isStopped = true;
+                        break;
+                    }
+                    int tmdbId = iterator.next();
+                    downloads.submit(new DownloadMovieCallable(tmdbId,
+                            traktIds.get(tmdbId, -1), languageCode,
+                            newCollectionMovies.contains(tmdbId),
+                            newWatchlistMovies.contains(tmdbId), traktExecutor));
+                }
+                if (downloads.isEmpty()) {
+                    break; // all submitted movies are done
+                }
+
+                MovieDetails movieDetails = downloads.takeResult();
+                if (movieDetails.tmdbMovie() == null) {
+                    // skip if minimal values failed to load
+                    continue;
+                }
+                batch.add(movieDetails);
+                if (batch.size() == BATCH_SIZE) {
+                    insert(batch);
+                    batch.clear();
+                }
+            }
+        } catch (InterruptedException e) {
+            Timber.w("addMovies: interrupted");
+            resultCode = UpdateResult.INCOMPLETE;
+            Thread.currentThread().interrupt();
+        } finally {
+            movieExecutor.shutdownNow();
+            traktExecutor.shutdownNow();
+        }
+
+        // store movies downloaded so far, also if stopped early
+        if (!batch.isEmpty()) {
+            insert(batch);
+        }
+        // ids of skipped movies
+        idMappings.store(context);
+
+        return resultCode;
+    }
+
+    private void insert(List<MovieDetails> movies) {
+        context.getContentResolver().bulkInsert(SeriesGuideContract.Movies.CONTENT_URI,
+                MovieTools.buildMoviesContentValues(movies));
+        idMappings.store(context);
+    }
+
+    private class DownloadMovieCallable implements Callable<MovieDetails> {
+
+        private final int tmdbId;
+        /** -1 if unknown, {@link IdMappingTools#TRAKT_ID_NONE} if not on trakt. */
+        private final int traktId;
+        private final String languageCode;
+        private final boolean inCollection;
+        private final boolean inWatchlist;
+        private final ExecutorService traktExecutor;
+
+        DownloadMovieCallable(int tmdbId, int traktId, String languageCode,
+                boolean inCollection, boolean inWatchlist, ExecutorService traktExecutor) {
+            this.tmdbId = tmdbId;
+            this.traktId = traktId;
+            this.languageCode = languageCode;
+            this.inCollection = inCollection;
+            this.inWatchlist = inWatchlist;
+            this.traktExecutor = traktExecutor;
+        }
+
+        @Override
+        public MovieDetails call() throws Exception {
+            Future<Ratings> traktRatings = traktExecutor.submit(new Callable<Ratings>() {
+                @Override
+                public Ratings call() {
+                    if (traktId == IdMappingTools.TRAKT_ID_NONE) {
+                        return null;
+                    }
+                    if (traktId > 0) {
+                        return movieTools.loadRatingsFromTrakt(traktId);
+                    }
+                    return movieTools.loadTraktRatings(tmdbId, idMappings);
+                }
+            });
+
+            MovieDetails details = new MovieDetails();
+            details.tmdbMovie(movieTools.loadSummaryFromTmdb(languageCode, tmdbId, idMappings));
+            details.traktRatings(BoundedCompletionService.getResult(traktRatings));
+            if (details.tmdbMovie() == null) {
+                Timber.d("addMovies: downloaded movie %s incomplete, skipping", tmdbId);
+            }
+            details.inCollection = inCollection;
+            details.inWatchlist = inWatchlist;
+            return details;
+        }
+    }
+}
@@ -23,6 +23,7 @@ import com.battlelancer.seriesguide.settings.TraktCredentials;
 import com.battlelancer.seriesguide.settings.TraktSettings;
 import com.battlelancer.seriesguide.tmdbapi.SgTmdb;
 import com.battlelancer.seriesguide.traktapi.SgTrakt;
+import com.battlelancer.seriesguide.util.collections.IntSet;
 import com.battlelancer.seriesguide.util.tasks.AddMovieToCollectionTask;
 import com.battlelancer.seriesguide.util.tasks.AddMovieToWatchlistTask;
 import com.battlelancer.seriesguide.util.tasks.RemoveMovieFromCollectionTask;
@@ -53,7 +54,6 @@ import java.text.DateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
@@ -220,7 +220,7 @@ public class MovieTools {
         }
     }
 
-    private static ContentValues[] buildMoviesContentValues(List<MovieDetails> movies) {
+    static ContentValues[] buildMoviesContentValues(List<MovieDetails> movies) {
         ContentValues[] valuesArray = new ContentValues[movies.size()];
         int index = 0;
         for (MovieDetails movie : movies) {
@@ -294,9 +294,7 @@ public class MovieTools {
      *
      * @return null if there was an error, empty list if there are no movies.
      */
-    public static HashSet<Integer> getMovieTmdbIdsAsSet(Context context) {
-        HashSet<Integer> localMoviesIds = new HashSet<>();
-
+    public static IntSet getMovieTmdbIdsAsSet(Context context) {
         Cursor movies = context.getContentResolver().query(SeriesGuideContract.Movies.CONTENT_URI,
                 new String[] { SeriesGuideContract.Movies.TMDB_ID },
                 null, null, null);
@@ -304,6 +302,7 @@ public class MovieTools {
             return null;
         }
 
+        IntSet localMoviesIds = new IntSet(movies.getCount());
         while (movies.moveToNext()) {
             localMoviesIds.add(movies.getInt(0));
         }
@@ -418,11 +417,30 @@ public class MovieTools {
     }
 
     /**
+     * Returns a stored id without a request, see {@link IdMappingTools}.
+     *
      * @return {@code null} if looking up the id failed, -1 if the movie was not found or the movie
      * id if it was found.
      */
     @Nullable
     public Integer lookupTraktId(int movieTmdbId) {
+        IdMappingTools.Batch idMappings = new IdMappingTools.Batch();
+        Integer traktId = lookupTraktId(movieTmdbId, idMappings);
+        idMappings.store(context);
+        return traktId;
+    }
+
+    /**
+     * Like {@link #lookupTraktId(int)}, but adds the looked up id to the given mappings instead of
+     * storing it.
+     */
+    @Nullable
+    private Integer lookupTraktId(int movieTmdbId, IdMappingTools.Batch idMappings) {
+        Integer storedTraktId = IdMappingTools.getMovieTraktId(context, movieTmdbId);
+        if (storedTraktId != null) {
+            return storedTraktId == IdMappingTools.TRAKT_ID_NONE ? -1 : storedTraktId;
+        }
+
         try {
             Response<List<SearchResult>> response = traktSearch.get().idLookup(IdType.TMDB,
                     String.valueOf(movieTmdbId), Type.MOVIE, null, 1, 1).execute();
@@ -430,10 +448,12 @@ public class MovieTools {
                 List<SearchResult> results = response.body();
                 if (results == null || results.size() != 1) {
                     Timber.e("Finding trakt movie failed (no results)");
+                    idMappings.addMovieNotOnTrakt(movieTmdbId);
                     return -1;
                 }
                 SearchResult result = results.get(0);
                 if (result.movie != null && result.movie.ids != null) {
+                    idMappings.addMovie(result.movie.ids);
                     return result.movie.ids.trakt;
                 }
                 Timber.e("Finding trakt movie failed (not in results)");
@@ -464,7 +484,7 @@ public class MovieTools {
             String cursor = null;
             long currentTime = System.currentTimeMillis();
             DateTime lastSyncTime = new DateTime(HexagonSettings.getLastMoviesSyncTime(app));
-            HashSet<Integer> localMovies = getMovieTmdbIdsAsSet(app);
+            IntSet localMovies = getMovieTmdbIdsAsSet(app);
             if (localMovies == null) {
                 Timber.e("fromHexagon: querying for local movies failed.");
                 return false;
@@ -611,14 +631,15 @@ public class MovieTools {
             return UpdateResult.SUCCESS;
         }
 
-        // download collection
+        // download collection, store ids of movies to not look them up again
+        IdMappingTools.Batch idMappings = new IdMappingTools.Batch();
         Set<Integer> collection;
         try {
             Response<List<BaseMovie>> response = traktSync.get()
                     .collectionMovies(null)
                     .execute();
             if (response.isSuccessful()) {
-                collection = buildTmdbIdSet(response.body());
+                collection = buildTmdbIdSet(response.body(), idMappings);
             } else {
                 if (SgTrakt.isUnauthorized(context, response)) {
                     return UpdateResult.INCOMPLETE;
@@ -641,7 +662,7 @@ public class MovieTools {
                     .watchlistMovies(null)
                     .execute();
             if (response.isSuccessful()) {
-                watchlist = buildTmdbIdSet(response.body());
+                watchlist = buildTmdbIdSet(response.body(), idMappings);
             } else {
                 if (SgTrakt.isUnauthorized(context, response)) {
                     return UpdateResult.INCOMPLETE;
@@ -657,18 +678,19 @@ public class MovieTools {
             Timber.e("syncMoviesWithTrakt: null watchlist response");
             return UpdateResult.INCOMPLETE;
         }
+        idMappings.store(context);
 
         // build updates
         // loop through all local movies
         Set<Integer> moviesNotOnTraktCollection = new HashSet<>();
         Set<Integer> moviesNotOnTraktWatchlist = new HashSet<>();
         ArrayList<ContentProviderOperation> batch = new ArrayList<>();
-        HashSet<Integer> localMovies = getMovieTmdbIdsAsSet(context);
+        IntSet localMovies = getMovieTmdbIdsAsSet(context);
         if (localMovies == null) {
             Timber.e("syncMoviesWithTrakt: querying local movies failed");
             return UpdateResult.INCOMPLETE;
         }
-        for (Integer tmdbId : localMovies) {
+        for (int tmdbId : localMovies.toArray()) {
             // is local movie in trakt collection or watchlist?
             boolean inCollection = collection.remove(tmdbId);
             boolean inWatchlist = watchlist.remove(tmdbId);
@@ -750,7 +772,8 @@ public class MovieTools {
         return result;
     }
 
-    private static Set<Integer> buildTmdbIdSet(List<BaseMovie> movies) {
+    private static Set<Integer> buildTmdbIdSet(List<BaseMovie> movies,
+            IdMappingTools.Batch idMappings) {
         if (movies == null) {
             return null;
         }
@@ -762,6 +785,7 @@ public class MovieTools {
                 continue; // skip invalid values
             }
             tmdbIdSet.add(movie.movie.ids.tmdb);
+            idMappings.addMovie(movie.movie.ids);
         }
         return tmdbIdSet;
     }
@@ -786,43 +810,8 @@ public class MovieTools {
             newMovies.add(tmdbId);
         }
 
-        String languageCode = DisplaySettings.getMoviesLanguage(context);
-        List<MovieDetails> movies = new LinkedList<>();
-
-        // loop through ids
-        for (Iterator<Integer> iterator = newMovies.iterator(); iterator.hasNext(); ) {
-            int tmdbId = iterator.next();
-            if (!AndroidUtils.isNetworkConnected(context)) {
-                Timber.e("addMovies: no network connection");
-                return UpdateResult.INCOMPLETE;
-            }
-
-            // download movie data
-            MovieDetails movieDetails = getMovieDetails(languageCode, tmdbId);
-            if (movieDetails.tmdbMovie() == null) {
-                // skip if minimal values failed to load
-                Timber.d("addMovies: downloaded movie %s incomplete, skipping", tmdbId);
-                continue;
-            }
-
-            // set flags
-            movieDetails.inCollection = newCollectionMovies.contains(tmdbId);
-            movieDetails.inWatchlist = newWatchlistMovies.contains(tmdbId);
-
-            movies.add(movieDetails);
-
-            // add to database in batches of at most 10
-            if (movies.size() == 10 || !iterator.hasNext()) {
-                // insert into database
-                context.getContentResolver().bulkInsert(SeriesGuideContract.Movies.CONTENT_URI,
-                        buildMoviesContentValues(movies));
-
-                // start new batch
-                movies.clear();
-            }
-        }
-
-        return UpdateResult.SUCCESS;
+        return new MovieDownloadPipeline(context, this)
+                .addMovies(newMovies, newCollectionMovies, newWatchlistMovies);
     }
 
     /**
@@ -838,20 +827,34 @@ public class MovieTools {
      */
     private MovieDetails getMovieDetails(String languageCode, int movieTmdbId) {
         MovieDetails details = new MovieDetails();
+        IdMappingTools.Batch idMappings = new IdMappingTools.Batch();
 
         // load ratings from trakt
-        Integer movieTraktId = lookupTraktId(movieTmdbId);
-        if (movieTraktId != null) {
-            details.traktRatings(loadRatingsFromTrakt(movieTraktId));
-        }
+        details.traktRatings(loadTraktRatings(movieTmdbId, idMappings));
 
         // load summary from tmdb
-        details.tmdbMovie(loadSummaryFromTmdb(languageCode, movieTmdbId));
+        details.tmdbMovie(loadSummaryFromTmdb(languageCode, movieTmdbId, idMappings));
 
+        idMappings.store(context);
         return details;
     }
 
-    private Ratings loadRatingsFromTrakt(int movieTraktId) {
+    /**
+     * Looks up the trakt id of the movie, then loads its ratings from trakt.
+     *
+     * @param idMappings Receives the looked up trakt id, store it once done.
+     */
+    @Nullable
+    Ratings loadTraktRatings(int movieTmdbId, IdMappingTools.Batch idMappings) {
+        Integer movieTraktId = lookupTraktId(movieTmdbId, idMappings);
+        if (movieTraktId == null || movieTraktId == -1) {
+            return null;
+        }
+        return loadRatingsFromTrakt(movieTraktId);
+    }
+
+    @Nullable
+    Ratings loadRatingsFromTrakt(int movieTraktId) {
         try {
             Response<Ratings> response = traktMovies.get()
                     .ratings(String.valueOf(movieTraktId))
@@ -866,18 +869,23 @@ public class MovieTools {
         return null;
     }
 
+    /**
+     * @param idMappings Receives the IMDb id of the movie, store it once done.
+     */
     @Nullable
-    private com.uwetrottmann.tmdb2.entities.Movie loadSummaryFromTmdb(String languageCode,
-            int movieTmdbId) {
+    com.uwetrottmann.tmdb2.entities.Movie loadSummaryFromTmdb(String languageCode,
+            int movieTmdbId, IdMappingTools.Batch idMappings) {
         // try to get local movie summary
         Movie movie = getMovieSummary("get local movie summary", languageCode, movieTmdbId);
         if (movie != null && !TextUtils.isEmpty(movie.overview)) {
+            idMappings.addMovieImdbId(movieTmdbId, movie.imdb_id);
             return movie;
         }
 
         // fall back to default language if TMDb has no localized text
         movie = getMovieSummary("get default movie summary", null, movieTmdbId);
         if (movie != null) {
+            idMappings.addMovieImdbId(movieTmdbId, movie.imdb_id);
             // add note about non-translated or non-existing overview
             String untranslatedOverview = movie.overview;
             movie.overview = context.getString(R.string.no_translation,
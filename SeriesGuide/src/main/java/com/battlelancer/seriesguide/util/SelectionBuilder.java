@@ -3,6 +3,7 @@ package com.battlelancer.seriesguide.util;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
 import android.text.TextUtils;
 import com.battlelancer.seriesguide.provider.SeriesGuideProvider;
 import java.util.ArrayList;
@@ -117,6 +118,29 @@ public class SelectionBuilder {
                 + ", selectionArgs=" + Arrays.toString(getSelectionArgs()) + "]";
     }
 
+    /**
+     * Returns the SQL {@link #query(SQLiteDatabase, String[], String)} executes with the current
+     * internal state, use with {@link #getSelectionArgs()}.
+     */
+    public String buildQuerySql(String[] columns, String orderBy) {
+        assertTable();
+        if (columns != null)
+            mapColumns(columns);
+        return SQLiteQueryBuilder.buildQueryString(false, mTable, columns, getSelection(), null,
+                null, orderBy, null);
+    }
+
+    /**
+     * Returns SQL selecting the rows {@link #update(SQLiteDatabase, ContentValues)} or {@link
+     * #delete(SQLiteDatabase)} change with the current internal state, e.g. to explain how they
+     * are found. Use with {@link #getSelectionArgs()}.
+     */
+    public String buildRowSelectSql() {
+        assertTable();
+        return SQLiteQueryBuilder.buildQueryString(false, mTable, new String[] { "rowid" },
+                getSelection(), null, null, null, null);
+    }
+
     /**
      * Execute query using the current internal state as {@code WHERE} clause.
      */
@@ -6,6 +6,7 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.content.OperationApplicationException;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteException;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.preference.PreferenceManager;
@@ -22,10 +23,13 @@ import com.battlelancer.seriesguide.SgApp;
 import com.battlelancer.seriesguide.backend.HexagonTools;
 import com.battlelancer.seriesguide.backend.settings.HexagonSettings;
 import com.battlelancer.seriesguide.enums.NetworkResult;
-import com.battlelancer.seriesguide.enums.Result;
 import com.battlelancer.seriesguide.items.SearchResult;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract;
+import com.battlelancer.seriesguide.provider.SeriesGuideProvider;
+import com.battlelancer.seriesguide.provider.ShowMetadataCache;
+import com.battlelancer.seriesguide.provider.ShowMetadataCache.ShowMetadata;
 import com.battlelancer.seriesguide.sync.SgSyncAdapter;
+import com.battlelancer.seriesguide.util.collections.IntSet;
 import com.battlelancer.seriesguide.util.tasks.AddShowToWatchlistTask;
 import com.battlelancer.seriesguide.util.tasks.RemoveShowFromWatchlistTask;
 import com.google.api.client.util.DateTime;
@@ -36,7 +40,6 @@ import com.uwetrottmann.seriesguide.backend.shows.model.ShowList;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import timber.log.Timber;
@@ -71,74 +74,45 @@ public class ShowTools {
 
     /**
      * Removes a show and its seasons and episodes, including all images. Sends isRemoved flag to
-     * Hexagon.
+     * Hexagon and removes list items of the show there, see {@link
+     * ListsTools#removeListItemsFromHexagon(SgApp, List)}.
      *
      * @return One of {@link com.battlelancer.seriesguide.enums.NetworkResult}.
      */
     public int removeShow(int showTvdbId) {
-        if (HexagonSettings.isEnabled(app)) {
+        List<String> listItemIds = null;
+        boolean isHexagonEnabled = HexagonSettings.isEnabled(app);
+        if (isHexagonEnabled) {
             if (!AndroidUtils.isNetworkConnected(app)) {
                 return NetworkResult.OFFLINE;
             }
-            // send to cloud
-            sendIsRemoved(showTvdbId);
-        }
-
-        // remove database entries in stages, so if an earlier stage fails, user can at least try again
-        // also saves memory by applying batches early
-
-        // SEARCH DATABASE ENTRIES
-        final Cursor episodes = app.getContentResolver().query(
-                SeriesGuideContract.Episodes.buildEpisodesOfShowUri(showTvdbId), new String[] {
-                        SeriesGuideContract.Episodes._ID
-                }, null, null, null
-        );
-        if (episodes == null) {
-            // failed
-            return Result.ERROR;
-        }
-        List<String> episodeTvdbIds = new LinkedList<>(); // need those for search entries
-        while (episodes.moveToNext()) {
-            episodeTvdbIds.add(episodes.getString(0));
+            // list items are removed locally with the show, get them to remove them on hexagon
+            listItemIds = ListsTools.getListItemIdsOfShow(app, showTvdbId);
+            if (listItemIds == null) {
+                return NetworkResult.ERROR;
+            }
         }
-        episodes.close();
 
-        // remove episode search database entries
-        final ArrayList<ContentProviderOperation> batch = new ArrayList<>();
-        for (String episodeTvdbId : episodeTvdbIds) {
-            batch.add(ContentProviderOperation.newDelete(
-                    SeriesGuideContract.EpisodeSearch.buildDocIdUri(episodeTvdbId)).build());
-        }
-        try {
-            DBUtils.applyInSmallBatches(app, batch);
-        } catch (OperationApplicationException e) {
-            Timber.e(e, "Removing episode search entries failed");
-            return Result.ERROR;
-        }
-        batch.clear();
-
-        // ACTUAL ENTITY ENTRIES
-        // remove episodes, seasons and show
-        batch.add(ContentProviderOperation.newDelete(
-                SeriesGuideContract.Episodes.buildEpisodesOfShowUri(showTvdbId)).build());
-        batch.add(ContentProviderOperation.newDelete(
-                SeriesGuideContract.Seasons.buildSeasonsOfShowUri(showTvdbId)).build());
-        batch.add(ContentProviderOperation.newDelete(
-                SeriesGuideContract.Shows.buildShowUri(showTvdbId)).build());
+        // remove show, seasons, episodes, search entries, list items and activity in a single
+        // transaction, the provider notifies loaders (activity, overview, details, search, lists)
         try {
-            DBUtils.applyInSmallBatches(app, batch);
-        } catch (OperationApplicationException e) {
-            Timber.e(e, "Removing episodes, seasons and show failed");
-            return Result.ERROR;
+            app.getContentResolver().call(SeriesGuideContract.Shows.CONTENT_URI,
+                    SeriesGuideProvider.METHOD_REMOVE_SHOW, String.valueOf(showTvdbId), null);
+        } catch (SQLiteException e) {
+            Timber.e(e, "Removing show failed");
+            return NetworkResult.ERROR;
         }
 
-        // make sure other loaders (activity, overview, details, search) are notified
-        app.getContentResolver().notifyChange(
-                SeriesGuideContract.Episodes.CONTENT_URI_WITHSHOW, null);
-        app.getContentResolver().notifyChange(
-                SeriesGuideContract.Shows.CONTENT_URI_FILTER, null);
+        if (isHexagonEnabled) {
+            // send to cloud
+            sendIsRemoved(showTvdbId);
+            // remove list items so they are not downloaded again
+            if (listItemIds != null && !listItemIds.isEmpty()) {
+                ListsTools.removeListItemsFromHexagon(app, listItemIds);
+            }
+        }
 
-        return Result.SUCCESS;
+        return NetworkResult.SUCCESS;
     }
 
     /**
@@ -424,7 +398,7 @@ public class ShowTools {
          * to the given map.
          */
         @SuppressLint("ApplySharedPref")
-        public static boolean fromHexagon(SgApp app, HashSet<Integer> existingShows,
+        public static boolean fromHexagon(SgApp app, IntSet existingShows,
                 HashMap<Integer, SearchResult> newShows, boolean hasMergedShows) {
             List<Show> shows;
             boolean hasMoreShows = true;
@@ -509,7 +483,7 @@ public class ShowTools {
         }
 
         private static ArrayList<ContentProviderOperation> buildShowUpdateOps(List<Show> shows,
-                HashSet<Integer> existingShows, HashMap<Integer, SearchResult> newShows,
+                IntSet existingShows, HashMap<Integer, SearchResult> newShows,
                 boolean mergeValues) {
             ArrayList<ContentProviderOperation> batch = new ArrayList<>();
 
@@ -612,24 +586,8 @@ public class ShowTools {
      */
     @Nullable
     public static Integer getShowTraktId(@NonNull Context context, int showTvdbId) {
-        Cursor traktIdQuery = context.getContentResolver()
-                .query(SeriesGuideContract.Shows.buildShowUri(showTvdbId),
-                        new String[] { SeriesGuideContract.Shows.TRAKT_ID }, null, null, null);
-        if (traktIdQuery == null) {
-            return null;
-        }
-
-        Integer traktId = null;
-        if (traktIdQuery.moveToFirst()) {
-            traktId = traktIdQuery.getInt(0);
-            if (traktId <= 0) {
-                traktId = null;
-            }
-        }
-
-        traktIdQuery.close();
-
-        return traktId;
+        ShowMetadata show = ShowMetadataCache.get(context, showTvdbId);
+        return show == null ? null : show.traktId;
     }
 
     /**
@@ -638,15 +596,14 @@ public class ShowTools {
      * @return null if there was an error, empty list if there are no shows.
      */
     @Nullable
-    public static HashSet<Integer> getShowTvdbIdsAsSet(Context context) {
-        HashSet<Integer> existingShows = new HashSet<>();
-
+    public static IntSet getShowTvdbIdsAsSet(Context context) {
         Cursor shows = context.getContentResolver().query(SeriesGuideContract.Shows.CONTENT_URI,
                 new String[] { SeriesGuideContract.Shows._ID }, null, null, null);
         if (shows == null) {
             return null;
         }
 
+        IntSet existingShows = new IntSet(shows.getCount());
         while (shows.moveToNext()) {
             existingShows.add(shows.getInt(0));
         }
@@ -664,21 +621,15 @@ public class ShowTools {
      */
     @Nullable
     public static SparseArrayCompat<String> getShowTvdbIdsAndPosters(Context context) {
-        SparseArrayCompat<String> existingShows = new SparseArrayCompat<>();
-
-        Cursor shows = context.getContentResolver().query(SeriesGuideContract.Shows.CONTENT_URI,
-                new String[] { SeriesGuideContract.Shows._ID, SeriesGuideContract.Shows.POSTER },
-                null, null, null);
+        List<ShowMetadata> shows = ShowMetadataCache.getAll(context);
         if (shows == null) {
             return null;
         }
 
-        while (shows.moveToNext()) {
-            existingShows.put(shows.getInt(0), shows.getString(1));
+        SparseArrayCompat<String> existingShows = new SparseArrayCompat<>(shows.size());
+        for (ShowMetadata show : shows) {
+            existingShows.put(show.tvdbId, show.poster);
         }
-
-        shows.close();
-
         return existingShows;
     }
 
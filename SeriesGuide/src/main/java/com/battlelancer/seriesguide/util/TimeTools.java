@@ -29,6 +29,7 @@ import org.threeten.bp.ZoneOffset;
 import org.threeten.bp.ZonedDateTime;
 import org.threeten.bp.format.DateTimeParseException;
 import org.threeten.bp.temporal.ChronoField;
+import org.threeten.bp.zone.ZoneRules;
 import timber.log.Timber;
 
 /**
@@ -286,14 +287,22 @@ public class TimeTools {
      */
     private static LocalDateTime handleHourPastMidnight(@Nullable String country,
             @Nullable String network, LocalDateTime localDateTime) {
-        if (ISO3166_1_UNITED_STATES.equals(country)
-                && !NETWORK_AMAZON.equals(network) && !NETWORK_NETFLIX.equals(network)
-                && localDateTime.getHour() == 0) {
+        if (isReleasedNextDay(country, network, localDateTime.getHour())) {
             return localDateTime.plusDays(1);
         }
         return localDateTime;
     }
 
+    /**
+     * See {@link #handleHourPastMidnight(String, String, LocalDateTime)}.
+     */
+    static boolean isReleasedNextDay(@Nullable String country, @Nullable String network,
+            int releaseHour) {
+        return ISO3166_1_UNITED_STATES.equals(country)
+                && !NETWORK_AMAZON.equals(network) && !NETWORK_NETFLIX.equals(network)
+                && releaseHour == 0;
+    }
+
     /**
      * Parses the ISO-8601, such as '2013-08-20T15:16:26.355Z', or TVDB date format representation
      * of a show first release date and outputs the year string in the user's default
@@ -338,34 +347,60 @@ public class TimeTools {
         // same local time in Central + Mountain (e.g. 19:00)
 
         // not a US show or no correction necessary (getting east feed)
-        if (!ISO3166_1_UNITED_STATES.equals(country)
-                || localTimeZone.equals(TIMEZONE_ID_US_EASTERN)
-                || localTimeZone.equals(TIMEZONE_ID_US_EASTERN_DETROIT)
-                || localTimeZone.equals(TIMEZONE_ID_US_CENTRAL)) {
+        if (!isUnitedStatesCorrectionRequired(country, localTimeZone)) {
             return dateTime;
         }
 
-        int offset = 0;
+        boolean dstInEastern = localTimeZone.equals(TIMEZONE_ID_US_ARIZONA)
+                && EasternRules.RULES.isDaylightSavings(dateTime.toInstant());
+        int offset = getUnitedStatesCorrectionHours(localTimeZone, dstInEastern);
+
+        dateTime = dateTime.plusHours(offset);
+
+        return dateTime;
+    }
+
+    /**
+     * Whether release times of a show from the given country may need to be corrected for a
+     * device in the given time zone, see {@link #applyUnitedStatesCorrections(String, String,
+     * ZonedDateTime)}.
+     */
+    static boolean isUnitedStatesCorrectionRequired(@Nullable String country,
+            @NonNull String localTimeZone) {
+        return localTimeZone.startsWith(TIMEZONE_ID_PREFIX_AMERICA)
+                && ISO3166_1_UNITED_STATES.equals(country)
+                && !localTimeZone.equals(TIMEZONE_ID_US_EASTERN)
+                && !localTimeZone.equals(TIMEZONE_ID_US_EASTERN_DETROIT)
+                && !localTimeZone.equals(TIMEZONE_ID_US_CENTRAL);
+    }
+
+    /**
+     * Returns by how many hours the release time of a US show is delayed in the given time zone.
+     *
+     * @param dstInEastern Whether daylight saving time is in effect in the Eastern time zone at
+     * the release time. Only relevant for Arizona.
+     */
+    static int getUnitedStatesCorrectionHours(@NonNull String localTimeZone,
+            boolean dstInEastern) {
         if (localTimeZone.equals(TIMEZONE_ID_US_MOUNTAIN)) {
             // MST UTC−7:00, MDT UTC−6:00
-            offset += 1;
+            return 1;
         } else if (localTimeZone.equals(TIMEZONE_ID_US_ARIZONA)) {
             // is always UTC-07:00, so like Mountain, but no DST
-            boolean dstInEastern = ZoneId.of(TIMEZONE_ID_US_EASTERN).getRules()
-                    .isDaylightSavings(dateTime.toInstant());
-            if (dstInEastern) {
-                offset += 2;
-            } else {
-                offset += 1;
-            }
+            return dstInEastern ? 2 : 1;
         } else if (localTimeZone.equals(TIMEZONE_ID_US_PACIFIC)) {
             // PST UTC−8:00 or PDT UTC−7:00
-            offset += 3;
+            return 3;
         }
+        return 0;
+    }
 
-        dateTime = dateTime.plusHours(offset);
-
-        return dateTime;
+    /**
+     * Loads the rules of the Eastern time zone on first use, not on class load (the time zone
+     * database might not be initialized, yet).
+     */
+    private static class EasternRules {
+        static final ZoneRules RULES = ZoneId.of(TIMEZONE_ID_US_EASTERN).getRules();
     }
 
     /**
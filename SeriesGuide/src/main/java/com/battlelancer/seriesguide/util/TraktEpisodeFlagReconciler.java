@@ -0,0 +1,312 @@
+package com.battlelancer.seriesguide.util;
+
+import android.content.ContentProviderOperation;
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract;
+import com.battlelancer.seriesguide.util.collections.IntLongMap;
+import com.battlelancer.seriesguide.util.collections.IntObjectMap;
+import com.battlelancer.seriesguide.util.collections.IntSet;
+import com.uwetrottmann.trakt5.entities.BaseSeason;
+import com.uwetrottmann.trakt5.entities.BaseShow;
+import com.uwetrottmann.trakt5.entities.SyncEpisode;
+import com.uwetrottmann.trakt5.entities.SyncSeason;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Diffs the watched or collected flags of all local episodes against the shows watched or
+ * collected on trakt in memory, instead of querying and updating episodes season by season.
+ * Applies the same rules as {@link TraktTools#processTraktSeasons(boolean, int, BaseShow,
+ * TraktTools.Flag)}, e.g. on initial syncs flags missing on trakt are uploaded instead of removed
+ * and skipped episodes are never set unwatched.
+ */
+public class TraktEpisodeFlagReconciler {
+
+    /**
+     * Selects the given flag of all local episodes, sorted so episodes of a show and season are
+     * next to each other.
+     */
+    public static class LocalEpisodesQuery {
+
+        public static final int ID = 0;
+        public static final int SHOW_ID = 1;
+        public static final int SEASON = 2;
+        public static final int NUMBER = 3;
+        public static final int FLAG = 4;
+
+        public static final String SORT = SeriesGuideContract.Shows.REF_SHOW_ID + ","
+                + SeriesGuideContract.Episodes.SEASON + ","
+                + SeriesGuideContract.Episodes.NUMBER;
+
+        public static String[] projection(TraktTools.Flag flag) {
+            return new String[] {
+                    SeriesGuideContract.Episodes._ID,
+                    SeriesGuideContract.Shows.REF_SHOW_ID,
+                    SeriesGuideContract.Episodes.SEASON,
+                    SeriesGuideContract.Episodes.NUMBER,
+                    flag.databaseColumn
+            };
+        }
+    }
+
+    /**
+     * Id, show, season, number and flag value of local episodes, stored in parallel arrays.
+     */
+    public static class LocalEpisodes {
+
+        private int size;
+        private int[] ids;
+        private int[] shows;
+        private int[] seasons;
+        private int[] numbers;
+        private int[] flags;
+
+        public LocalEpisodes(int capacity) {
+            capacity = Math.max(capacity, 1);
+            ids = new int[capacity];
+            shows = new int[capacity];
+            seasons = new int[capacity];
+            numbers = new int[capacity];
+            flags = new int[capacity];
+        }
+
+        /**
+         * Reads all rows of a {@link LocalEpisodesQuery} cursor. Does not close the cursor.
+         */
+        public static LocalEpisodes fromCursor(Cursor query) {
+            LocalEpisodes episodes = new LocalEpisodes(query.getCount());
+            while (query.moveToNext()) {
+                episodes.add(query.getInt(LocalEpisodesQuery.ID),
+                        query.getInt(LocalEpisodesQuery.SHOW_ID),
+                        query.getInt(LocalEpisodesQuery.SEASON),
+                        query.getInt(LocalEpisodesQuery.NUMBER),
+                        query.getInt(LocalEpisodesQuery.FLAG));
+            }
+            return episodes;
+        }
+
+        /**
+         * Episodes of the same show and season must be added one after another.
+         */
+        public void add(int episodeTvdbId, int showTvdbId, int season, int number, int flagValue) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                shows = Arrays.copyOf(shows, capacity);
+                seasons = Arrays.copyOf(seasons, capacity);
+                numbers = Arrays.copyOf(numbers, capacity);
+                flags = Arrays.copyOf(flags, capacity);
+            }
+            ids[size] = episodeTvdbId;
+            shows[size] = showTvdbId;
+            seasons[size] = season;
+            numbers[size] = number;
+            flags[size] = flagValue;
+            size++;
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Flagged episodes of a show that are not flagged on trakt, to upload on initial syncs.
+     */
+    public static class ShowUpload {
+
+        public final int showTvdbId;
+        /** If the show is watched/collected on trakt, if not the upload may fail. */
+        public final boolean isShowOnTrakt;
+        public final List<SyncSeason> seasons;
+
+        ShowUpload(int showTvdbId, boolean isShowOnTrakt, List<SyncSeason> seasons) {
+            this.showTvdbId = showTvdbId;
+            this.isShowOnTrakt = isShowOnTrakt;
+            this.seasons = seasons;
+        }
+    }
+
+    public static class Result {
+
+        private final IntList episodesToFlag = new IntList();
+        private final IntList episodesToUnflag = new IntList();
+        private final List<ShowUpload> uploads = new ArrayList<>();
+        private final IntSet changedShows = new IntSet();
+
+        public int[] getEpisodesToFlag() {
+            return episodesToFlag.toArray();
+        }
+
+        public int[] getEpisodesToUnflag() {
+            return episodesToUnflag.toArray();
+        }
+
+        public List<ShowUpload> getUploads() {
+            return uploads;
+        }
+
+        /**
+         * Returns the TVDb ids of shows with episodes to flag or unflag.
+         */
+        public int[] getChangedShows() {
+            return changedShows.toArray();
+        }
+
+        /**
+         * Builds set-based updates, each changing the flag of up to {@link
+         * TraktEpisodeFlagReconciler#IDS_PER_UPDATE} episodes to the same value.
+         */
+        ArrayList<ContentProviderOperation> buildUpdateOps(TraktTools.Flag flag) {
+            ArrayList<ContentProviderOperation> batch = new ArrayList<>();
+            addUpdateOps(batch, episodesToFlag, flag.databaseColumn, flag.flaggedValue);
+            addUpdateOps(batch, episodesToUnflag, flag.databaseColumn, flag.notFlaggedValue);
+            return batch;
+        }
+
+        private static void addUpdateOps(ArrayList<ContentProviderOperation> batch,
+                IntList episodeIds, String column, int value) {
+            for (int start = 0; start < episodeIds.size; start += IDS_PER_UPDATE) {
+                int end = Math.min(start + IDS_PER_UPDATE, episodeIds.size);
+                StringBuilder selection = new StringBuilder(SeriesGuideContract.Episodes._ID)
+                        .append(" IN (");
+                for (int i = start; i < end; i++) {
+                    selection.append(i > start ? "," : "").append(episodeIds.values[i]);
+                }
+                selection.append(")");
+                batch.add(ContentProviderOperation
+                        .newUpdate(SeriesGuideContract.Episodes.CONTENT_URI)
+                        .withSelection(selection.toString(), null)
+                        .withValue(column, value)
+                        .build());
+            }
+        }
+    }
+
+    /** Keeps statements well below the SQLite statement length limit. */
+    static final int IDS_PER_UPDATE = 500;
+
+    /**
+     * Returns the episodes whose flag has to change to mirror trakt, and on initial syncs the
+     * episodes to upload instead of removing their flag.
+     *
+     * @param localShows Only episodes of these shows are processed.
+     * @param traktShows Shows watched/collected on trakt, see {@link
+     * TraktTools#buildTraktShowsMap(List)}.
+     * @param showTraktIds Trakt ids of local shows. Flags of shows not on trakt without a trakt id
+     * are kept.
+     */
+    @NonNull
+    public static Result reconcile(@NonNull LocalEpisodes episodes,
+            @NonNull IntSet localShows, @NonNull IntObjectMap<BaseShow> traktShows,
+            @NonNull IntLongMap showTraktIds, boolean isInitialSync,
+            @NonNull TraktTools.Flag flag) {
+        Result result = new Result();
+        int showStart = 0;
+        while (showStart < episodes.size) {
+            int showTvdbId = episodes.shows[showStart];
+            int showEnd = endOfRun(episodes.shows, showStart, episodes.size);
+
+            BaseShow traktShow = traktShows.get(showTvdbId);
+            // a show not on trakt and without trakt id can not be tracked with trakt (yet)
+            // some shows only exist on TheTVDB, keep state local and maybe upload in the future
+            if (localShows.contains(showTvdbId)
+                    && (traktShow != null || showTraktIds.containsKey(showTvdbId))) {
+                IntObjectMap<BaseSeason> traktSeasons = traktShow == null
+                        ? null : TraktTools.buildTraktSeasonsMap(traktShow.seasons);
+                List<SyncSeason> syncSeasons = new ArrayList<>();
+
+                int seasonStart = showStart;
+                while (seasonStart < showEnd) {
+                    int seasonEnd = endOfRun(episodes.seasons, seasonStart, showEnd);
+                    int season = episodes.seasons[seasonStart];
+                    BaseSeason traktSeason = traktSeasons == null ? null : traktSeasons.get(season);
+                    IntSet traktEpisodes = traktSeason == null
+                            ? null : TraktTools.buildTraktEpisodesMap(traktSeason.episodes);
+
+                    List<SyncEpisode> syncEpisodes = reconcileSeason(episodes, seasonStart,
+                            seasonEnd, traktEpisodes, isInitialSync, flag, result);
+                    if (syncEpisodes != null) {
+                        syncSeasons.add(new SyncSeason().number(season).episodes(syncEpisodes));
+                    }
+                    seasonStart = seasonEnd;
+                }
+
+                if (!syncSeasons.isEmpty()) {
+                    result.uploads.add(new ShowUpload(showTvdbId, traktShow != null,
+                            syncSeasons));
+                }
+            }
+
+            showStart = showEnd;
+        }
+        return result;
+    }
+
+    /**
+     * @param traktEpisodes Numbers of episodes watched/collected on trakt, {@code null} if the
+     * season is not watched/collected on trakt.
+     * @return Episodes to upload, or {@code null} if there are none.
+     */
+    private static List<SyncEpisode> reconcileSeason(LocalEpisodes episodes, int start, int end,
+            IntSet traktEpisodes, boolean isInitialSync, TraktTools.Flag flag,
+            Result result) {
+        List<SyncEpisode> syncEpisodes = null;
+        for (int i = start; i < end; i++) {
+            int flagValue = episodes.flags[i];
+            boolean isFlagged = flag == TraktTools.Flag.WATCHED
+                    ? EpisodeTools.isWatched(flagValue) : EpisodeTools.isCollected(flagValue);
+            if (traktEpisodes != null && traktEpisodes.contains(episodes.numbers[i])) {
+                // episode watched/collected on trakt
+                if (!isFlagged) {
+                    result.episodesToFlag.add(episodes.ids[i]);
+                    result.changedShows.add(episodes.shows[i]);
+                }
+            } else if (isFlagged) {
+                // episode not watched/collected on trakt
+                if (isInitialSync) {
+                    if (syncEpisodes == null) {
+                        syncEpisodes = new ArrayList<>();
+                    }
+                    syncEpisodes.add(new SyncEpisode().number(episodes.numbers[i]));
+                } else if (!(flag == TraktTools.Flag.WATCHED
+                        && EpisodeTools.isSkipped(flagValue))) {
+                    result.episodesToUnflag.add(episodes.ids[i]);
+                    result.changedShows.add(episodes.shows[i]);
+                }
+            }
+        }
+        return syncEpisodes;
+    }
+
+    /**
+     * Returns the index after the last element with the same value as the one at start.
+     */
+    private static int endOfRun(int[] values, int start, int end) {
+        int value = values[start];
+        int i = start + 1;
+        while (i < end && values[i] == value) {
+            i++;
+        }
+        return i;
+    }
+
+    private static class IntList {
+
+        int size;
+        int[] values = new int[16];
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
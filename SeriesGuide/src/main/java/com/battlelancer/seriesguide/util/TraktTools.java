@@ -1,6 +1,5 @@
 package com.battlelancer.seriesguide.util;
 
-import android.annotation.SuppressLint;
 import android.content.ContentProviderOperation;
 import android.content.Context;
 import android.content.OperationApplicationException;
@@ -18,6 +17,9 @@ import com.battlelancer.seriesguide.provider.SeriesGuideContract;
 import com.battlelancer.seriesguide.settings.TraktCredentials;
 import com.battlelancer.seriesguide.settings.TraktSettings;
 import com.battlelancer.seriesguide.traktapi.SgTrakt;
+import com.battlelancer.seriesguide.util.collections.IntLongMap;
+import com.battlelancer.seriesguide.util.collections.IntObjectMap;
+import com.battlelancer.seriesguide.util.collections.IntSet;
 import com.uwetrottmann.trakt5.TraktLink;
 import com.uwetrottmann.trakt5.entities.BaseEpisode;
 import com.uwetrottmann.trakt5.entities.BaseMovie;
@@ -40,12 +42,8 @@ import dagger.Lazy;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
-import java.util.Set;
 import javax.inject.Inject;
 import org.threeten.bp.OffsetDateTime;
 import retrofit2.Response;
@@ -153,11 +151,11 @@ public class TraktTools {
 
         // apply watched flags for all watched trakt movies that are in the local database
         ArrayList<ContentProviderOperation> batch = new ArrayList<>();
-        Set<Integer> localMovies = MovieTools.getMovieTmdbIdsAsSet(context);
+        IntSet localMovies = MovieTools.getMovieTmdbIdsAsSet(context);
         if (localMovies == null) {
             return UpdateResult.INCOMPLETE;
         }
-        Set<Integer> unwatchedMovies = new HashSet<>(localMovies);
+        IntSet watchedLocalMovies = new IntSet(localMovies.size());
         for (BaseMovie movie : watchedMovies) {
             if (movie.movie == null || movie.movie.ids == null || movie.movie.ids.tmdb == null) {
                 // required values are missing
@@ -180,12 +178,15 @@ public class TraktTools {
                         SeriesGuideContract.Movies.buildMovieUri(movie.movie.ids.tmdb))
                         .withValue(SeriesGuideContract.Movies.WATCHED, true)
                         .build());
-                unwatchedMovies.remove(movie.movie.ids.tmdb);
+                watchedLocalMovies.add(movie.movie.ids.tmdb);
             }
         }
 
         // remove watched flags from all remaining local movies
-        for (Integer tmdbId : unwatchedMovies) {
+        for (int tmdbId : localMovies.toArray()) {
+            if (watchedLocalMovies.contains(tmdbId)) {
+                continue;
+            }
             batch.add(ContentProviderOperation.newUpdate(
                     SeriesGuideContract.Movies.buildMovieUri(tmdbId))
                     .withValue(SeriesGuideContract.Movies.WATCHED, false)
@@ -505,28 +506,32 @@ public class TraktTools {
      * @param isInitialSync If set, will upload any episodes flagged locally, but not flagged on
      * trakt. If not set, all watched and collected (and only those, e.g. not skipped flag) flags
      * will be removed prior to getting the actual flags from trakt (season by season).
+     * @param changedShows Receives the TVDb ids of shows whose local episode flags were changed.
      * @return Any of the {@link TraktTools} result codes.
      */
-    public int syncEpisodeFlags(@NonNull HashSet<Integer> localShows,
-            @NonNull LastActivityMore activity, boolean isInitialSync) {
+    public int syncEpisodeFlags(@NonNull IntSet localShows,
+            @NonNull LastActivityMore activity, boolean isInitialSync,
+            @NonNull IntSet changedShows) {
         if (!TraktCredentials.get(context).hasCredentials()) {
             return FAILED_CREDENTIALS;
         }
 
         // watched episodes
-        int result = syncWatchedEpisodes(localShows, activity.watched_at, isInitialSync);
+        int result = syncWatchedEpisodes(localShows, activity.watched_at, isInitialSync,
+                changedShows);
         if (result < SUCCESS) {
             return result; // failed to process watched episodes, give up.
         }
 
         // collected episodes
-        result = syncCollectedEpisodes(localShows, activity.collected_at, isInitialSync);
+        result = syncCollectedEpisodes(localShows, activity.collected_at, isInitialSync,
+                changedShows);
         return result;
     }
 
-    private int syncWatchedEpisodes(@NonNull HashSet<Integer> localShows,
+    private int syncWatchedEpisodes(@NonNull IntSet localShows,
             @Nullable OffsetDateTime watchedAt,
-            boolean isInitialSync) {
+            boolean isInitialSync, @NonNull IntSet changedShows) {
         if (watchedAt == null) {
             Timber.e("syncWatchedEpisodes: null watched_at");
             return FAILED;
@@ -559,7 +564,7 @@ public class TraktTools {
             // apply database updates, if initial sync upload diff
             long startTime = System.currentTimeMillis();
             int result = processTraktShows(watchedShowsTrakt, localShows,
-                    isInitialSync, Flag.WATCHED);
+                    isInitialSync, Flag.WATCHED, changedShows);
             Timber.d("syncWatchedEpisodes: processing took %s ms",
                     System.currentTimeMillis() - startTime);
             if (result < SUCCESS) {
@@ -581,8 +586,9 @@ public class TraktTools {
         return SUCCESS;
     }
 
-    private int syncCollectedEpisodes(@NonNull HashSet<Integer> localShows,
-            @Nullable OffsetDateTime collectedAt, boolean isInitialSync) {
+    private int syncCollectedEpisodes(@NonNull IntSet localShows,
+            @Nullable OffsetDateTime collectedAt, boolean isInitialSync,
+            @NonNull IntSet changedShows) {
         if (collectedAt == null) {
             Timber.e("syncCollectedEpisodes: null collected_at");
             return FAILED;
@@ -615,7 +621,7 @@ public class TraktTools {
             // apply database updates,  if initial sync upload diff
             long startTime = System.currentTimeMillis();
             int result = processTraktShows(collectedShowsTrakt, localShows,
-                    isInitialSync, Flag.COLLECTED);
+                    isInitialSync, Flag.COLLECTED, changedShows);
             Timber.d("syncCollectedEpisodes: processing took %s ms",
                     System.currentTimeMillis() - startTime);
             if (result < SUCCESS) {
@@ -638,10 +644,10 @@ public class TraktTools {
     }
 
     /**
-     * Similar to {@link #syncEpisodeFlags(HashSet, LastActivityMore, boolean)}, but only processes
+     * Similar to {@link #syncEpisodeFlags(IntSet, LastActivityMore, boolean)}, but only processes
      * a single show and only downloads watched/collected episodes from trakt.
      */
-    public boolean storeEpisodeFlags(@Nullable HashMap<Integer, BaseShow> traktShows,
+    public boolean storeEpisodeFlags(@Nullable IntObjectMap<BaseShow> traktShows,
             int showTvdbId, @NonNull Flag flag) {
         if (traktShows == null || traktShows.isEmpty()) {
             return true; // no watched/collected shows on trakt, done.
@@ -654,54 +660,89 @@ public class TraktTools {
     }
 
     private int processTraktShows(@NonNull List<BaseShow> remoteShows,
-            @NonNull HashSet<Integer> localShows, boolean isInitialSync, Flag flag) {
-        HashMap<Integer, BaseShow> traktShows = buildTraktShowsMap(remoteShows);
+            @NonNull IntSet localShows, boolean isInitialSync, Flag flag,
+            @NonNull IntSet changedShows) {
+        IntObjectMap<BaseShow> traktShows = buildTraktShowsMap(remoteShows);
+        IdMappingTools.Batch idMappings = new IdMappingTools.Batch();
+        for (BaseShow remoteShow : remoteShows) {
+            if (remoteShow.show != null) {
+                idMappings.addShow(remoteShow.show.ids);
+            }
+        }
+        idMappings.store(context);
 
-        int uploadedShowsCount = 0;
-        final ArrayList<ContentProviderOperation> batch = new ArrayList<>();
-        for (Integer localShow : localShows) {
-            if (traktShows.containsKey(localShow)) {
-                // show watched/collected on trakt
+        // load the flags of all local episodes at once and diff them in memory
+        Cursor episodesQuery = context.getContentResolver().query(
+                SeriesGuideContract.Episodes.CONTENT_URI,
+                TraktEpisodeFlagReconciler.LocalEpisodesQuery.projection(flag), null, null,
+                TraktEpisodeFlagReconciler.LocalEpisodesQuery.SORT);
+        if (episodesQuery == null) {
+            Timber.e("processTraktShows: episodes query failed");
+            return FAILED;
+        }
+        TraktEpisodeFlagReconciler.LocalEpisodes localEpisodes
+                = TraktEpisodeFlagReconciler.LocalEpisodes.fromCursor(episodesQuery);
+        episodesQuery.close();
+
+        Cursor showsQuery = context.getContentResolver().query(
+                SeriesGuideContract.Shows.CONTENT_URI, ShowsQuery.PROJECTION, null, null, null);
+        if (showsQuery == null) {
+            Timber.e("processTraktShows: shows query failed");
+            return FAILED;
+        }
+        IntLongMap showTraktIds = new IntLongMap(showsQuery.getCount());
+        IntLongMap showsLastWatchedMs = new IntLongMap(showsQuery.getCount());
+        while (showsQuery.moveToNext()) {
+            int showTvdbId = showsQuery.getInt(ShowsQuery.ID);
+            int showTraktId = showsQuery.getInt(ShowsQuery.TRAKT_ID);
+            if (showTraktId > 0) {
+                showTraktIds.put(showTvdbId, showTraktId);
+            }
+            showsLastWatchedMs.put(showTvdbId, showsQuery.getLong(ShowsQuery.LAST_WATCHED_MS));
+        }
+        showsQuery.close();
+
+        TraktEpisodeFlagReconciler.Result diff = TraktEpisodeFlagReconciler.reconcile(
+                localEpisodes, localShows, traktShows, showTraktIds, isInitialSync, flag);
+
+        final ArrayList<ContentProviderOperation> batch = diff.buildUpdateOps(flag);
+        if (flag == Flag.WATCHED) {
+            for (int localShow : localShows.toArray()) {
                 BaseShow traktShow = traktShows.get(localShow);
-                int result = processTraktSeasons(isInitialSync, localShow, traktShow, flag);
-                if (result < SUCCESS) {
-                    return result; // processing seasons failed, give up.
-                }
-                if (flag == Flag.WATCHED) {
-                    updateLastWatchedTime(localShow, traktShow, batch);
-                }
-            } else {
-                // show not watched/collected on trakt
-                // check if this is because the show can not be tracked with trakt (yet)
-                // some shows only exist on TheTVDB, keep state local and maybe upload in the future
-                Integer showTraktId = ShowTools.getShowTraktId(context, localShow);
-                if (showTraktId != null) {
-                    if (isInitialSync) {
-                        // upload all watched/collected episodes of the show
-                        // do in between processing to stretch uploads over longer time periods
-                        uploadEpisodes(localShow, showTraktId, flag);
-                        uploadedShowsCount++;
-                    } else {
-                        // set all watched/collected episodes of show not watched/collected
-                        batch.add(ContentProviderOperation.newUpdate(
-                                SeriesGuideContract.Episodes.buildEpisodesOfShowUri(localShow))
-                                .withSelection(flag.clearFlagSelection, null)
-                                .withValue(flag.databaseColumn, flag.notFlaggedValue)
-                                .build());
-                    }
+                if (traktShow != null) {
+                    updateLastWatchedTime(localShow, traktShow, showsLastWatchedMs, batch);
                 }
             }
         }
-
         try {
             DBUtils.applyInSmallBatches(context, batch);
         } catch (OperationApplicationException e) {
-            Timber.e(e, "processTraktShows: failed to remove flag for %s.", flag.name);
+            Timber.e(e, "processTraktShows: failed to update flag for %s.", flag.name);
+        }
+        for (int showTvdbId : diff.getChangedShows()) {
+            changedShows.add(showTvdbId);
+        }
+
+        int uploadedShowsCount = 0;
+        for (TraktEpisodeFlagReconciler.ShowUpload upload : diff.getUploads()) {
+            int showTraktId = (int) showTraktIds.get(upload.showTvdbId, 0);
+            if (showTraktId == 0) {
+                return FAILED; // show should have a trakt id, give up
+            }
+            int result = uploadEpisodes(showTraktId, upload.seasons, flag);
+            if (upload.isShowOnTrakt) {
+                if (result < SUCCESS) {
+                    return result; // uploading episodes failed, give up.
+                }
+            } else {
+                // show not watched/collected on trakt, upload again on next initial sync
+                uploadedShowsCount++;
+            }
         }
 
         if (uploadedShowsCount > 0) {
             Timber.d("processTraktShows: uploaded %s flags for %s complete shows.", flag.name,
-                    localShows.size());
+                    uploadedShowsCount);
         }
         return SUCCESS;
     }
@@ -710,14 +751,22 @@ public class TraktTools {
      * Adds an update op for the last watched time of the given show if the last watched time on
      * trakt is later.
      */
-    private void updateLastWatchedTime(Integer showTvdbId, BaseShow traktShow,
-            ArrayList<ContentProviderOperation> batch) {
+    private static void updateLastWatchedTime(int showTvdbId, BaseShow traktShow,
+            IntLongMap showsLastWatchedMs, ArrayList<ContentProviderOperation> batch) {
         if (traktShow.last_watched_at == null) {
             return;
         }
 
-        ShowTools.addLastWatchedUpdateOpIfNewer(context, batch, showTvdbId,
-                traktShow.last_watched_at.toInstant().toEpochMilli());
+        if (!showsLastWatchedMs.containsKey(showTvdbId)) {
+            return; // show does not exist
+        }
+        long lastWatchedMsNew = traktShow.last_watched_at.toInstant().toEpochMilli();
+        if (showsLastWatchedMs.get(showTvdbId, 0) < lastWatchedMsNew) {
+            batch.add(ContentProviderOperation.newUpdate(
+                    SeriesGuideContract.Shows.buildShowUri(showTvdbId))
+                    .withValue(SeriesGuideContract.Shows.LASTWATCHED_MS, lastWatchedMsNew)
+                    .build());
+        }
     }
 
     /**
@@ -730,7 +779,7 @@ public class TraktTools {
      */
     public int processTraktSeasons(boolean isInitialSync, int localShow,
             @NonNull BaseShow traktShow, @NonNull Flag flag) {
-        HashMap<Integer, BaseSeason> traktSeasons = buildTraktSeasonsMap(traktShow.seasons);
+        IntObjectMap<BaseSeason> traktSeasons = buildTraktSeasonsMap(traktShow.seasons);
 
         Cursor localSeasonsQuery = context.getContentResolver()
                 .query(SeriesGuideContract.Seasons.buildSeasonsOfShowUri(localShow),
@@ -791,7 +840,7 @@ public class TraktTools {
 
     private boolean processTraktEpisodes(boolean isInitialSync,
             String seasonId, BaseSeason traktSeason, List<SyncSeason> syncSeasons, Flag flag) {
-        HashSet<Integer> traktEpisodes = buildTraktEpisodesMap(traktSeason.episodes);
+        IntSet traktEpisodes = buildTraktEpisodesMap(traktSeason.episodes);
 
         Cursor localEpisodesQuery = context.getContentResolver()
                 .query(SeriesGuideContract.Episodes.buildEpisodesOfSeasonUri(
@@ -875,9 +924,8 @@ public class TraktTools {
     }
 
     @NonNull
-    public static HashMap<Integer, BaseShow> buildTraktShowsMap(List<BaseShow> traktShows) {
-        @SuppressLint("UseSparseArrays")
-        HashMap<Integer, BaseShow> traktShowsMap = new HashMap<>(traktShows.size());
+    public static IntObjectMap<BaseShow> buildTraktShowsMap(List<BaseShow> traktShows) {
+        IntObjectMap<BaseShow> traktShowsMap = new IntObjectMap<>(traktShows.size());
         for (BaseShow traktShow : traktShows) {
             if (traktShow.show == null
                     || traktShow.show.ids == null
@@ -892,9 +940,8 @@ public class TraktTools {
     }
 
     @NonNull
-    private static HashMap<Integer, BaseSeason> buildTraktSeasonsMap(List<BaseSeason> seasons) {
-        @SuppressLint("UseSparseArrays")
-        HashMap<Integer, BaseSeason> traktSeasonsMap = new HashMap<>(seasons.size());
+    static IntObjectMap<BaseSeason> buildTraktSeasonsMap(List<BaseSeason> seasons) {
+        IntObjectMap<BaseSeason> traktSeasonsMap = new IntObjectMap<>(seasons.size());
         for (BaseSeason season : seasons) {
             if (season.number == null
                     || season.episodes == null
@@ -907,8 +954,8 @@ public class TraktTools {
     }
 
     @NonNull
-    private static HashSet<Integer> buildTraktEpisodesMap(List<BaseEpisode> episodes) {
-        HashSet<Integer> traktEpisodesMap = new HashSet<>(episodes.size());
+    static IntSet buildTraktEpisodesMap(List<BaseEpisode> episodes) {
+        IntSet traktEpisodesMap = new IntSet(episodes.size());
         for (BaseEpisode episode : episodes) {
             if (episode.number == null) {
                 continue; // trakt episode misses required data, skip.
@@ -918,36 +965,6 @@ public class TraktTools {
         return traktEpisodesMap;
     }
 
-    /**
-     * Uploads all watched/collected episodes for the given show to trakt.
-     *
-     * @return Any of the {@link TraktTools} result codes.
-     */
-    private int uploadEpisodes(int showTvdbId, int showTraktId, Flag flag) {
-        // query for watched/collected episodes
-        Cursor localEpisodes = context.getContentResolver().query(
-                SeriesGuideContract.Episodes.buildEpisodesOfShowUri(showTvdbId),
-                EpisodesQuery.PROJECTION,
-                flag.flagSelection,
-                null,
-                SeriesGuideContract.Episodes.SORT_SEASON_ASC);
-        if (localEpisodes == null) {
-            Timber.e("uploadEpisodes: query failed");
-            return FAILED;
-        }
-
-        // build a list of watched/collected episodes
-        List<SyncSeason> syncSeasons = new LinkedList<>();
-        buildEpisodeList(localEpisodes, syncSeasons);
-        localEpisodes.close();
-
-        if (syncSeasons.size() == 0) {
-            return SUCCESS; // nothing to upload for this show
-        }
-
-        return uploadEpisodes(showTraktId, syncSeasons, flag);
-    }
-
     /**
      * Uploads all the given watched/collected episodes of the given show to trakt.
      *
@@ -984,28 +1001,6 @@ public class TraktTools {
         return FAILED_API;
     }
 
-    /**
-     * @param episodesCursor Cursor of episodes sorted by season (ascending).
-     * @param seasons Empty list.
-     */
-    private static void buildEpisodeList(Cursor episodesCursor, List<SyncSeason> seasons) {
-        SyncSeason currentSeason = null;
-        while (episodesCursor.moveToNext()) {
-            int season = episodesCursor.getInt(EpisodesQuery.SEASON);
-            int episode = episodesCursor.getInt(EpisodesQuery.EPISODE);
-
-            // create new season if none exists or number has changed
-            if (currentSeason == null || currentSeason.number != season) {
-                currentSeason = new SyncSeason().number(season);
-                currentSeason.episodes = new LinkedList<>();
-                seasons.add(currentSeason);
-            }
-
-            // add episode
-            currentSeason.episodes.add(new SyncEpisode().number(episode));
-        }
-    }
-
     /**
      * Returns a list of watched/collected episodes of a season. Packaged ready for upload to
      * trakt.
@@ -1142,13 +1137,16 @@ public class TraktTools {
         return null;
     }
 
-    public interface EpisodesQuery {
+    private interface ShowsQuery {
 
         String[] PROJECTION = new String[] {
-                SeriesGuideContract.Episodes.SEASON, SeriesGuideContract.Episodes.NUMBER
+                SeriesGuideContract.Shows._ID,
+                SeriesGuideContract.Shows.TRAKT_ID,
+                SeriesGuideContract.Shows.LASTWATCHED_MS
         };
 
-        int SEASON = 0;
-        int EPISODE = 1;
+        int ID = 0;
+        int TRAKT_ID = 1;
+        int LAST_WATCHED_MS = 2;
     }
 }
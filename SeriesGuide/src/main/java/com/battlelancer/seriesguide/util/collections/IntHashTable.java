@@ -0,0 +1,205 @@
+package com.battlelancer.seriesguide.util.collections;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash table of int keys using linear probing. Keys are stored unboxed in a
+ * single array, subclasses store values in parallel arrays one longer than the key array: a free
+ * slot is marked by key 0, so the value of key 0 is stored in the extra last slot.
+ */
+abstract class IntHashTable {
+
+    private static final int MIN_CAPACITY = 8;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    int[] keys;
+    boolean hasZeroKey;
+    private int size;
+    private int resizeAt;
+
+    IntHashTable(int expectedSize) {
+        int capacity = capacityFor(expectedSize);
+        allocate(capacity);
+        allocateValues(capacity + 1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        hasZeroKey = false;
+        size = 0;
+        clearValues();
+    }
+
+    /**
+     * Returns all keys in no particular order.
+     */
+    int[] copyKeys() {
+        int[] result = new int[size];
+        int index = 0;
+        if (hasZeroKey) {
+            result[index++] = 0;
+        }
+        for (int key : keys) {
+            if (key != 0) {
+                result[index++] = key;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the slot of the key, or -1 if it is not contained.
+     */
+    final int slotOf(int key) {
+        if (key == 0) {
+            return hasZeroKey ? keys.length : -1;
+        }
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        int existing;
+        while ((existing = keys[slot]) != 0) {
+            if (existing == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the slot of the key. If it was not contained, adds it first and returns the
+     * complement ({@code ~slot}) of its new slot.
+     */
+    final int insert(int key) {
+        if (key == 0) {
+            if (hasZeroKey) {
+                return keys.length;
+            }
+            hasZeroKey = true;
+            size++;
+            return ~keys.length;
+        }
+
+        int slot = probe(keys, key);
+        if (keys[slot] == key) {
+            return slot;
+        }
+        if (size >= resizeAt) {
+            rehash(keys.length * 2);
+            slot = probe(keys, key);
+        }
+        keys[slot] = key;
+        size++;
+        return ~slot;
+    }
+
+    /**
+     * Removes the key in the given slot. Moves following keys of the same probe sequence back
+     * into the freed slot, so lookups do not need to skip deleted slots.
+     */
+    final void removeAt(int slot) {
+        size--;
+        if (slot == keys.length) {
+            hasZeroKey = false;
+            clearValue(slot);
+            return;
+        }
+
+        int mask = keys.length - 1;
+        int free = slot;
+        int next = (free + 1) & mask;
+        int key;
+        while ((key = keys[next]) != 0) {
+            int home = hash(key) & mask;
+            // move the key if its home slot is not between the free and its current slot
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                keys[free] = key;
+                moveValue(next, free);
+                free = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[free] = 0;
+        clearValue(free);
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        allocate(capacity);
+        int[] newSlots = new int[oldKeys.length + 1];
+        for (int i = 0; i < oldKeys.length; i++) {
+            int key = oldKeys[i];
+            if (key != 0) {
+                int slot = probe(keys, key);
+                keys[slot] = key;
+                newSlots[i] = slot;
+            } else {
+                newSlots[i] = -1;
+            }
+        }
+        newSlots[oldKeys.length] = hasZeroKey ? capacity : -1;
+        rehashValues(newSlots);
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        resizeAt = Math.min(capacity - 1, (int) (capacity * LOAD_FACTOR));
+    }
+
+    /**
+     * Returns the slot containing the key, or the first free slot of its probe sequence.
+     */
+    private static int probe(int[] keys, int key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        int existing;
+        while ((existing = keys[slot]) != 0 && existing != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Spreads sequential ids, like TVDb ids, over the table.
+     */
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int required = (int) Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR) + 1;
+        int capacity = MIN_CAPACITY;
+        while (capacity < required) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Allocates empty value arrays of the given length.
+     */
+    abstract void allocateValues(int length);
+
+    /**
+     * Replaces the value arrays with ones of length {@code keys.length + 1}, moving values to
+     * the new slot of their key.
+     *
+     * @param newSlots For each slot of the current value arrays the new slot, or -1 if empty.
+     */
+    abstract void rehashValues(int[] newSlots);
+
+    abstract void moveValue(int from, int to);
+
+    abstract void clearValue(int slot);
+
+    abstract void clearValues();
+}
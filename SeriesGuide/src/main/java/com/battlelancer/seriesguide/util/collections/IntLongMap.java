@@ -0,0 +1,87 @@
+package com.battlelancer.seriesguide.util.collections;
+
+import java.util.Arrays;
+
+/**
+ * A map of int keys to long values that does not box them. Not thread-safe.
+ */
+public class IntLongMap extends IntHashTable {
+
+    private long[] values;
+
+    public IntLongMap() {
+        this(0);
+    }
+
+    public IntLongMap(int expectedSize) {
+        super(expectedSize);
+    }
+
+    public void put(int key, long value) {
+        int slot = insert(key);
+        values[slot < 0 ? ~slot : slot] = value;
+    }
+
+    public boolean containsKey(int key) {
+        return slotOf(key) >= 0;
+    }
+
+    /**
+     * Returns the value of the key, or {@code defaultValue} if it is not contained.
+     */
+    public long get(int key, long defaultValue) {
+        int slot = slotOf(key);
+        return slot < 0 ? defaultValue : values[slot];
+    }
+
+    /**
+     * Removes the key and returns its value, or {@code defaultValue} if it was not contained.
+     */
+    public long remove(int key, long defaultValue) {
+        int slot = slotOf(key);
+        if (slot < 0) {
+            return defaultValue;
+        }
+        long value = values[slot];
+        removeAt(slot);
+        return value;
+    }
+
+    /**
+     * Returns all keys in no particular order.
+     */
+    public int[] keys() {
+        return copyKeys();
+    }
+
+    @Override
+    void allocateValues(int length) {
+        values = new long[length];
+    }
+
+    @Override
+    void rehashValues(int[] newSlots) {
+        long[] oldValues = values;
+        values = new long[keys.length + 1];
+        for (int i = 0; i < newSlots.length; i++) {
+            if (newSlots[i] >= 0) {
+                values[newSlots[i]] = oldValues[i];
+            }
+        }
+    }
+
+    @Override
+    void moveValue(int from, int to) {
+        values[to] = values[from];
+    }
+
+    @Override
+    void clearValue(int slot) {
+        values[slot] = 0;
+    }
+
+    @Override
+    void clearValues() {
+        Arrays.fill(values, 0);
+    }
+}
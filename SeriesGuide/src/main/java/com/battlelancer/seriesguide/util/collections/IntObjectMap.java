@@ -0,0 +1,92 @@
+package com.battlelancer.seriesguide.util.collections;
+
+import android.support.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * A map of int keys to object values that does not box keys. Not thread-safe.
+ */
+public class IntObjectMap<V> extends IntHashTable {
+
+    private Object[] values;
+
+    public IntObjectMap() {
+        this(0);
+    }
+
+    public IntObjectMap(int expectedSize) {
+        super(expectedSize);
+    }
+
+    public void put(int key, V value) {
+        int slot = insert(key);
+        values[slot < 0 ? ~slot : slot] = value;
+    }
+
+    public boolean containsKey(int key) {
+        return slotOf(key) >= 0;
+    }
+
+    /**
+     * Returns the value of the key, or {@code null} if it is not contained.
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int slot = slotOf(key);
+        return slot < 0 ? null : (V) values[slot];
+    }
+
+    /**
+     * Removes the key and returns its value, or {@code null} if it was not contained.
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int slot = slotOf(key);
+        if (slot < 0) {
+            return null;
+        }
+        V value = (V) values[slot];
+        removeAt(slot);
+        return value;
+    }
+
+    /**
+     * Returns all keys in no particular order.
+     */
+    public int[] keys() {
+        return copyKeys();
+    }
+
+    @Override
+    void allocateValues(int length) {
+        values = new Object[length];
+    }
+
+    @Override
+    void rehashValues(int[] newSlots) {
+        Object[] oldValues = values;
+        values = new Object[keys.length + 1];
+        for (int i = 0; i < newSlots.length; i++) {
+            if (newSlots[i] >= 0) {
+                values[newSlots[i]] = oldValues[i];
+            }
+        }
+    }
+
+    @Override
+    void moveValue(int from, int to) {
+        values[to] = values[from];
+    }
+
+    @Override
+    void clearValue(int slot) {
+        values[slot] = null;
+    }
+
+    @Override
+    void clearValues() {
+        Arrays.fill(values, null);
+    }
+}
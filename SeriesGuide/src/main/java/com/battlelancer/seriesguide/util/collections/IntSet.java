@@ -0,0 +1,70 @@
+package com.battlelancer.seriesguide.util.collections;
+
+/**
+ * A set of int values that does not box them. Not thread-safe.
+ */
+public class IntSet extends IntHashTable {
+
+    public IntSet() {
+        this(0);
+    }
+
+    public IntSet(int expectedSize) {
+        super(expectedSize);
+    }
+
+    /**
+     * @return {@code true} if the value was not contained before.
+     */
+    public boolean add(int value) {
+        return insert(value) < 0;
+    }
+
+    public boolean contains(int value) {
+        return slotOf(value) >= 0;
+    }
+
+    /**
+     * @return {@code true} if the value was contained.
+     */
+    public boolean remove(int value) {
+        int slot = slotOf(value);
+        if (slot < 0) {
+            return false;
+        }
+        removeAt(slot);
+        return true;
+    }
+
+    /**
+     * Returns all values in no particular order.
+     */
+    public int[] toArray() {
+        return copyKeys();
+    }
+
+    @Override
+    void allocateValues(int length) {
+        // no values
+    }
+
+    @Override
+    void rehashValues(int[] newSlots) {
+        // no values
+    }
+
+    @Override
+    void moveValue(int from, int to) {
+        // no values
+    }
+
+    @Override
+    void clearValue(int slot) {
+        // no values
+    }
+
+    @Override
+    void clearValues() {
+        // no values
+    }
+}
@@ -3,7 +3,9 @@ package com.battlelancer.seriesguide.util.tasks;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteException;
 import android.net.Uri;
+import android.os.Bundle;
 import android.support.annotation.CallSuper;
 import android.support.annotation.Nullable;
 import android.text.format.DateUtils;
@@ -11,16 +13,12 @@ import com.battlelancer.seriesguide.R;
 import com.battlelancer.seriesguide.appwidget.ListWidgetProvider;
 import com.battlelancer.seriesguide.enums.EpisodeFlags;
 import com.battlelancer.seriesguide.provider.SeriesGuideContract;
+import com.battlelancer.seriesguide.provider.SeriesGuideProvider;
 import com.battlelancer.seriesguide.util.ActivityTools;
 import com.battlelancer.seriesguide.util.EpisodeTools;
 import com.battlelancer.seriesguide.util.TextTools;
 import com.battlelancer.seriesguide.util.TimeTools;
-import com.uwetrottmann.seriesguide.backend.episodes.model.Episode;
-import com.uwetrottmann.trakt5.entities.SyncEpisode;
-import com.uwetrottmann.trakt5.entities.SyncSeason;
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
+import timber.log.Timber;
 
 public class EpisodeTaskTypes {
 
@@ -78,93 +76,6 @@ public class EpisodeTaskTypes {
 
         public abstract String getDatabaseSelection();
 
-        /**
-         * Builds a list of episodes ready to upload to hexagon. However, the show TVDb id is not
-         * set. It should be set in a wrapping {@link com.uwetrottmann.seriesguide.backend.episodes.model.EpisodeList}.
-         */
-        public List<Episode> getEpisodesForHexagon() {
-            List<Episode> episodes = new ArrayList<>();
-
-            // determine uri
-            Uri uri = getDatabaseUri();
-            String selection = getDatabaseSelection();
-
-            // query and add episodes to list
-            final Cursor episodeCursor = context.getContentResolver().query(
-                    uri,
-                    new String[] {
-                            SeriesGuideContract.Episodes.SEASON, SeriesGuideContract.Episodes.NUMBER
-                    }, selection, null, null
-            );
-            if (episodeCursor != null) {
-                while (episodeCursor.moveToNext()) {
-                    Episode episode = new Episode();
-                    setEpisodeProperties(episode);
-                    episode.setSeasonNumber(episodeCursor.getInt(0));
-                    episode.setEpisodeNumber(episodeCursor.getInt(1));
-                    episodes.add(episode);
-                }
-                episodeCursor.close();
-            }
-
-            return episodes;
-        }
-
-        /**
-         * Return {@code null} to upload the complete show.
-         */
-        @Nullable
-        public abstract List<SyncSeason> getEpisodesForTrakt();
-
-        /**
-         * Set any additional properties besides show id, season or episode number.
-         */
-        protected abstract void setEpisodeProperties(Episode episode);
-
-        /**
-         * Builds a list of {@link com.uwetrottmann.trakt5.entities.SyncSeason} objects to submit to
-         * trakt.
-         */
-        protected List<SyncSeason> buildTraktEpisodeList() {
-            List<SyncSeason> seasons = new ArrayList<>();
-
-            // determine uri
-            Uri uri = getDatabaseUri();
-            String selection = getDatabaseSelection();
-
-            // query and add episodes to list
-            // sort ascending by season, then number for trakt
-            final Cursor episodeCursor = context.getContentResolver().query(
-                    uri,
-                    new String[] {
-                            SeriesGuideContract.Episodes.SEASON, SeriesGuideContract.Episodes.NUMBER
-                    },
-                    selection,
-                    null,
-                    SeriesGuideContract.Episodes.SORT_SEASON_ASC + ", "
-                            + SeriesGuideContract.Episodes.SORT_NUMBER_ASC
-            );
-            if (episodeCursor != null) {
-                SyncSeason currentSeason = null;
-                while (episodeCursor.moveToNext()) {
-                    int seasonNumber = episodeCursor.getInt(0);
-
-                    // start new season?
-                    if (currentSeason == null || seasonNumber > currentSeason.number) {
-                        currentSeason = new SyncSeason().number(seasonNumber);
-                        currentSeason.episodes = new LinkedList<>();
-                        seasons.add(currentSeason);
-                    }
-
-                    // add episode
-                    currentSeason.episodes.add(new SyncEpisode().number(episodeCursor.getInt(1)));
-                }
-                episodeCursor.close();
-            }
-
-            return seasons;
-        }
-
         /**
          * Return the column which should get updated, either {@link SeriesGuideContract.Episodes}
          * .WATCHED or {@link SeriesGuideContract.Episodes}.COLLECTED.
@@ -174,24 +85,40 @@ public class EpisodeTaskTypes {
         protected abstract ContentValues getContentValues();
 
         /**
-         * Builds and executes the database op required to flag episodes in the local database.
+         * Flags episodes in the local database. In the same transaction adds them to the episode
+         * outbox if the change should be sent to Hexagon or trakt, see {@link
+         * SeriesGuideProvider#METHOD_FLAG_EPISODES}.
+         *
+         * @return Whether the database was updated.
          */
-        public void updateDatabase() {
+        public boolean updateDatabase(boolean sendToHexagon, boolean sendToTrakt) {
             // determine query uri
             Uri uri = getDatabaseUri();
             if (uri == null) {
-                return;
+                return false;
             }
 
-            // build and execute query
-            ContentValues values = getContentValues();
-            context.getContentResolver().update(uri, values, getDatabaseSelection(), null);
+            Bundle extras = new Bundle();
+            extras.putString(SeriesGuideProvider.EXTRA_SELECTION, getDatabaseSelection());
+            extras.putParcelable(SeriesGuideProvider.EXTRA_VALUES, getContentValues());
+            extras.putInt(SeriesGuideProvider.EXTRA_OUTBOX_TYPE, action.isWatchNotCollect
+                    ? SeriesGuideContract.EpisodeOutbox.TYPE_WATCHED
+                    : SeriesGuideContract.EpisodeOutbox.TYPE_COLLECTED);
+            extras.putInt(SeriesGuideProvider.EXTRA_OUTBOX_VALUE, flagValue);
+            extras.putBoolean(SeriesGuideProvider.EXTRA_SEND_HEXAGON, sendToHexagon);
+            extras.putBoolean(SeriesGuideProvider.EXTRA_SEND_TRAKT, sendToTrakt);
+            try {
+                context.getContentResolver().call(SeriesGuideContract.Episodes.CONTENT_URI,
+                        SeriesGuideProvider.METHOD_FLAG_EPISODES, uri.toString(), extras);
+            } catch (SQLiteException e) {
+                Timber.e(e, "updateDatabase: failed to flag episodes");
+                return false;
+            }
 
-            // notify the content provider for udpates
-            context.getContentResolver()
-                    .notifyChange(SeriesGuideContract.Episodes.CONTENT_URI, null);
+            // list item cursors need to be notified manually as uri differs
             context.getContentResolver()
                     .notifyChange(SeriesGuideContract.ListItems.CONTENT_WITH_DETAILS_URI, null);
+            return true;
         }
 
         public void onPostExecute() {
@@ -202,8 +129,8 @@ public class EpisodeTaskTypes {
         }
 
         /**
-         * Will be called after {@link #updateDatabase()}. Do any additional operations here. Make
-         * sure to call through to super.
+         * Will be called after {@link #updateDatabase(boolean, boolean)}. Do any additional
+         * operations here. Make sure to call through to super.
          *
          * @param lastWatchedEpisodeId The last watched episode for a show to save to the database.
          * -1 for no-op.
@@ -266,28 +193,6 @@ public class EpisodeTaskTypes {
             values.put(getColumn(), getFlagValue());
             return values;
         }
-
-        @Override
-        public List<Episode> getEpisodesForHexagon() {
-            List<Episode> episodes = new ArrayList<>();
-
-            Episode episode = new Episode();
-            setEpisodeProperties(episode);
-            episode.setSeasonNumber(season);
-            episode.setEpisodeNumber(this.episode);
-            episodes.add(episode);
-
-            return episodes;
-        }
-
-        @Override
-        public List<SyncSeason> getEpisodesForTrakt() {
-            // flag a single episode
-            List<SyncSeason> seasons = new LinkedList<>();
-            seasons.add(new SyncSeason().number(season)
-                    .episodes(new SyncEpisode().number(episode)));
-            return seasons;
-        }
     }
 
     public static class EpisodeWatchedType extends EpisodeType {
@@ -298,11 +203,6 @@ public class EpisodeTaskTypes {
                     Action.EPISODE_WATCHED);
         }
 
-        @Override
-        protected void setEpisodeProperties(Episode episode) {
-            episode.setWatchedFlag(getFlagValue());
-        }
-
         @Override
         protected String getColumn() {
             return SeriesGuideContract.Episodes.WATCHED;
@@ -406,11 +306,6 @@ public class EpisodeTaskTypes {
                     Action.EPISODE_COLLECTED);
         }
 
-        @Override
-        protected void setEpisodeProperties(Episode episode) {
-            episode.setIsInCollection(EpisodeTools.isCollected(getFlagValue()));
-        }
-
         @Override
         protected String getColumn() {
             return SeriesGuideContract.Episodes.COLLECTED;
@@ -485,21 +380,11 @@ public class EpisodeTaskTypes {
             }
         }
 
-        @Override
-        protected void setEpisodeProperties(Episode episode) {
-            episode.setWatchedFlag(getFlagValue());
-        }
-
         @Override
         protected String getColumn() {
             return SeriesGuideContract.Episodes.WATCHED;
         }
 
-        @Override
-        public List<SyncSeason> getEpisodesForTrakt() {
-            return buildTraktEpisodeList();
-        }
-
         private int getLastWatchedEpisodeTvdbId() {
             if (EpisodeTools.isUnwatched(getFlagValue())) {
                 // unwatched season
@@ -570,24 +455,11 @@ public class EpisodeTaskTypes {
             return null;
         }
 
-        @Override
-        protected void setEpisodeProperties(Episode episode) {
-            episode.setIsInCollection(EpisodeTools.isCollected(getFlagValue()));
-        }
-
         @Override
         protected String getColumn() {
             return SeriesGuideContract.Episodes.COLLECTED;
         }
 
-        @Override
-        public List<SyncSeason> getEpisodesForTrakt() {
-            // flag the whole season
-            List<SyncSeason> seasons = new LinkedList<>();
-            seasons.add(new SyncSeason().number(season));
-            return seasons;
-        }
-
         @Override
         public String getConfirmationText() {
             String number = TextTools.getEpisodeNumber(getContext(), season, -1);
@@ -649,21 +521,11 @@ public class EpisodeTaskTypes {
             }
         }
 
-        @Override
-        protected void setEpisodeProperties(Episode episode) {
-            episode.setWatchedFlag(getFlagValue());
-        }
-
         @Override
         protected String getColumn() {
             return SeriesGuideContract.Episodes.WATCHED;
         }
 
-        @Override
-        public List<SyncSeason> getEpisodesForTrakt() {
-            return buildTraktEpisodeList();
-        }
-
         private int getLastWatchedEpisodeTvdbId() {
             if (EpisodeTools.isUnwatched(getFlagValue())) {
                 // just reset
@@ -697,21 +559,10 @@ public class EpisodeTaskTypes {
             return SeriesGuideContract.Episodes.SELECTION_NO_SPECIALS;
         }
 
-        @Override
-        protected void setEpisodeProperties(Episode episode) {
-            episode.setIsInCollection(EpisodeTools.isCollected(getFlagValue()));
-        }
-
         @Override
         protected String getColumn() {
             return SeriesGuideContract.Episodes.COLLECTED;
         }
-
-        @Override
-        public List<SyncSeason> getEpisodesForTrakt() {
-            // send whole show
-            return null;
-        }
     }
 
     public static class EpisodeWatchedPreviousType extends FlagType {
@@ -748,16 +599,6 @@ public class EpisodeTaskTypes {
             return values;
         }
 
-        @Override
-        public List<SyncSeason> getEpisodesForTrakt() {
-            return buildTraktEpisodeList();
-        }
-
-        @Override
-        protected void setEpisodeProperties(Episode episode) {
-            episode.setWatchedFlag(EpisodeFlags.WATCHED);
-        }
-
         @Override
         protected String getColumn() {
             // not used
@@ -0,0 +1,92 @@
+package com.battlelancer.seriesguide.util.tasks;
+
+import android.support.annotation.NonNull;
+import com.battlelancer.seriesguide.SgApp;
+import com.battlelancer.seriesguide.backend.HexagonTools;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract;
+import com.uwetrottmann.seriesguide.backend.lists.Lists;
+import com.uwetrottmann.seriesguide.backend.lists.model.SgList;
+import com.uwetrottmann.seriesguide.backend.lists.model.SgListItem;
+import com.uwetrottmann.seriesguide.backend.lists.model.SgListList;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Task to remove list items from Hexagon that were already removed locally, e.g. the list items
+ * of a removed show.
+ */
+public class RemoveListItemsFromHexagonTask extends BaseActionTask {
+
+    private static final int LISTS_MAX_BATCH_SIZE = 10;
+
+    private final List<String> listItemIds;
+
+    public RemoveListItemsFromHexagonTask(@NonNull SgApp app, @NonNull List<String> listItemIds) {
+        super(app);
+        this.listItemIds = listItemIds;
+    }
+
+    @Override
+    protected boolean isSendingToTrakt() {
+        return false;
+    }
+
+    @Override
+    protected Integer doBackgroundAction(Void... params) {
+        if (!isSendingToHexagon()) {
+            return SUCCESS;
+        }
+
+        Lists listsService = getContext().getHexagonTools().getListsService();
+        if (listsService == null) {
+            return ERROR_HEXAGON_API; // no longer signed in
+        }
+
+        List<SgList> lists = buildListItemLists(listItemIds);
+        for (int i = 0; i < lists.size(); i += LISTS_MAX_BATCH_SIZE) {
+            SgListList wrapper = new SgListList();
+            wrapper.setLists(lists.subList(i, Math.min(i + LISTS_MAX_BATCH_SIZE, lists.size())));
+            try {
+                listsService.removeItems(wrapper).execute();
+            } catch (IOException e) {
+                HexagonTools.trackFailedRequest(getContext(), "remove list items", e);
+                return ERROR_HEXAGON_API;
+            }
+        }
+
+        return SUCCESS;
+    }
+
+    /**
+     * Groups the list items by their list.
+     */
+    @NonNull
+    private static List<SgList> buildListItemLists(List<String> listItemIds) {
+        HashMap<String, SgList> listsById = new HashMap<>();
+        for (String listItemId : listItemIds) {
+            String[] splitListItemId = SeriesGuideContract.ListItems.splitListItemId(listItemId);
+            if (splitListItemId == null) {
+                continue; // invalid id, can not be on hexagon
+            }
+            String listId = splitListItemId[2];
+            SgList list = listsById.get(listId);
+            if (list == null) {
+                list = new SgList();
+                list.setListId(listId);
+                list.setListItems(new ArrayList<SgListItem>());
+                listsById.put(listId, list);
+            }
+            SgListItem item = new SgListItem();
+            item.setListItemId(listItemId);
+            list.getListItems().add(item);
+        }
+        return new ArrayList<>(listsById.values());
+    }
+
+    @Override
+    protected int getSuccessTextResId() {
+        return 0; // display no success message
+    }
+}
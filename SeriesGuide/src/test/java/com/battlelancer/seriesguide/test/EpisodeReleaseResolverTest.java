@@ -0,0 +1,135 @@
+package com.battlelancer.seriesguide.test;
+
+import com.battlelancer.seriesguide.Constants;
+import com.battlelancer.seriesguide.util.EpisodeReleaseResolver;
+import com.battlelancer.seriesguide.util.TimeTools;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.threeten.bp.Instant;
+import org.threeten.bp.LocalDate;
+import org.threeten.bp.LocalTime;
+import org.threeten.bp.ZoneId;
+import org.threeten.bp.ZoneOffset;
+import org.threeten.bp.zone.ZoneOffsetTransition;
+import org.threeten.bp.zone.ZoneRules;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EpisodeReleaseResolverTest {
+
+    private static final String[] SHOW_TIME_ZONES = {
+            "America/New_York", "America/Los_Angeles", "America/Sao_Paulo", "Europe/Berlin",
+            "Europe/London", "Australia/Sydney", "Australia/Lord_Howe", "Asia/Kolkata", "UTC"
+    };
+    private static final String[] DEVICE_TIME_ZONES = {
+            "America/New_York", "America/Detroit", "America/Chicago", "America/Denver",
+            "America/Phoenix", "America/Los_Angeles", "America/Anchorage", "Europe/Berlin"
+    };
+    /** Includes times in the hour past midnight and inside the gaps and overlaps of DST. */
+    private static final LocalTime[] RELEASE_TIMES = {
+            LocalTime.of(0, 0), LocalTime.of(0, 35), LocalTime.of(1, 30), LocalTime.of(2, 0),
+            LocalTime.of(2, 30), LocalTime.of(3, 0), LocalTime.of(20, 0), LocalTime.of(23, 59)
+    };
+    private static final String[][] COUNTRIES_AND_NETWORKS = {
+            {TimeToolsTest.UNITED_STATES, null},
+            {TimeToolsTest.UNITED_STATES, "Netflix"},
+            {TimeToolsTest.GERMANY, null},
+            {null, null}
+    };
+
+    /**
+     * Compares against {@link TimeTools#parseEpisodeReleaseDate} for days around all DST
+     * transitions since 1950 and every day of 2017.
+     */
+    @Test
+    public void sameAsParseEpisodeReleaseDate() {
+        int checked = 0;
+        for (String showTimeZone : SHOW_TIME_ZONES) {
+            ZoneId zoneId = ZoneId.of(showTimeZone);
+            List<String> dates = buildDates(zoneId.getRules());
+            for (String deviceTimeZone : DEVICE_TIME_ZONES) {
+                for (LocalTime releaseTime : RELEASE_TIMES) {
+                    for (String[] countryAndNetwork : COUNTRIES_AND_NETWORKS) {
+                        checked += assertSameResults(zoneId, releaseTime, countryAndNetwork[0],
+                                countryAndNetwork[1], deviceTimeZone, dates);
+                    }
+                }
+            }
+        }
+        assertThat(checked).isGreaterThan(1000000);
+    }
+
+    @Test
+    public void sameAsParseEpisodeReleaseDate_outsideTable() {
+        List<String> dates = new ArrayList<>();
+        dates.add("1850-03-01");
+        dates.add("1900-01-01");
+        dates.add("1901-01-01");
+        dates.add("2099-12-31");
+        dates.add("2100-01-01");
+        dates.add("2200-06-15");
+        for (String deviceTimeZone : DEVICE_TIME_ZONES) {
+            for (LocalTime releaseTime : RELEASE_TIMES) {
+                assertSameResults(ZoneId.of(TimeToolsTest.AMERICA_NEW_YORK), releaseTime,
+                        TimeToolsTest.UNITED_STATES, null, deviceTimeZone, dates);
+            }
+        }
+    }
+
+    @Test
+    public void invalidDates() {
+        EpisodeReleaseResolver resolver = new EpisodeReleaseResolver(null,
+                ZoneId.of(TimeToolsTest.AMERICA_NEW_YORK), LocalTime.of(20, 0),
+                TimeToolsTest.UNITED_STATES, null, TimeToolsTest.AMERICA_LOS_ANGELES);
+        String[] invalid = {
+                null, "", "2013", "2013-5-31", "2013-05-31T20:00", "2013/05/31", "2013-00-10",
+                "2013-13-10", "2013-02-29", "2013-04-31", "2013-05-00", "20a3-05-31", "-013-05-31"
+        };
+        for (String date : invalid) {
+            assertThat(resolver.resolve(date))
+                    .as(String.valueOf(date))
+                    .isEqualTo(Constants.EPISODE_UNKNOWN_RELEASE);
+        }
+        // leap day is valid
+        assertThat(resolver.resolve("2016-02-29"))
+                .isNotEqualTo(Constants.EPISODE_UNKNOWN_RELEASE);
+    }
+
+    private static int assertSameResults(ZoneId showTimeZone, LocalTime releaseTime,
+            String country, String network, String deviceTimeZone, List<String> dates) {
+        EpisodeReleaseResolver resolver = new EpisodeReleaseResolver(null, showTimeZone,
+                releaseTime, country, network, deviceTimeZone);
+        for (String date : dates) {
+            long expected = TimeTools.parseEpisodeReleaseDate(null, showTimeZone, date,
+                    releaseTime, country, network, deviceTimeZone);
+            long actual = resolver.resolve(date);
+            if (actual != expected) {
+                assertThat(actual)
+                        .as(date + " " + releaseTime + " in " + showTimeZone + ", " + country
+                                + ", " + network + ", device in " + deviceTimeZone)
+                        .isEqualTo(expected);
+            }
+        }
+        return dates.size();
+    }
+
+    private static List<String> buildDates(ZoneRules rules) {
+        List<String> dates = new ArrayList<>();
+        ZoneOffsetTransition transition = rules.nextTransition(
+                LocalDate.of(1950, 1, 1).atStartOfDay().toInstant(ZoneOffset.UTC));
+        Instant end = LocalDate.of(2040, 1, 1).atStartOfDay().toInstant(ZoneOffset.UTC);
+        while (transition != null && transition.getInstant().isBefore(end)) {
+            LocalDate date = transition.getDateTimeBefore().toLocalDate();
+            for (int days = -2; days <= 1; days++) {
+                dates.add(date.plusDays(days).toString());
+            }
+            transition = rules.nextTransition(transition.getInstant());
+        }
+        for (LocalDate date = LocalDate.of(2017, 1, 1); date.getYear() == 2017;
+                date = date.plusDays(1)) {
+            dates.add(date.toString());
+        }
+        return dates;
+    }
+}
@@ -0,0 +1,60 @@
+package com.battlelancer.seriesguide.test;
+
+import com.battlelancer.seriesguide.util.HttpMetrics;
+import okhttp3.HttpUrl;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HttpMetricsTest {
+
+    @Test
+    public void endpoint() {
+        assertThat(HttpMetrics.getEndpoint(
+                HttpUrl.parse("https://api.thetvdb.com/series/81189/episodes?page=2")))
+                .isEqualTo("api.thetvdb.com/series/{id}/episodes");
+        assertThat(HttpMetrics.getEndpoint(
+                HttpUrl.parse("https://api.themoviedb.org/3/tv/1396/external_ids")))
+                .isEqualTo("api.themoviedb.org/3/tv/{id}/external_ids");
+        assertThat(HttpMetrics.getEndpoint(
+                HttpUrl.parse("https://api.trakt.tv/sync/watched/shows")))
+                .isEqualTo("api.trakt.tv/sync/watched/shows");
+    }
+
+    @Test
+    public void cacheResultAndFollowUps() {
+        Response network = response(null, null, null);
+        assertThat(HttpMetrics.getCacheResult(network)).isEqualTo(HttpMetrics.CacheResult.MISS);
+        assertThat(HttpMetrics.getFollowUpCount(network)).isEqualTo(0);
+
+        Response cached = response(response(null, null, null), null, null);
+        assertThat(HttpMetrics.getCacheResult(cached)).isEqualTo(HttpMetrics.CacheResult.HIT);
+
+        Response validated = response(response(null, null, null), response(null, null, null),
+                null);
+        assertThat(HttpMetrics.getCacheResult(validated))
+                .isEqualTo(HttpMetrics.CacheResult.CONDITIONAL_HIT);
+
+        Response unauthorized = response(null, null, null);
+        Response redirect = response(null, null, unauthorized);
+        Response retried = response(null, null, redirect);
+        assertThat(HttpMetrics.getFollowUpCount(retried)).isEqualTo(2);
+    }
+
+    private static Response response(Response cacheResponse, Response networkResponse,
+            Response priorResponse) {
+        // cache, network and prior responses must not have a body
+        return new Response.Builder()
+                .request(new Request.Builder().url("https://api.trakt.tv/shows/1").build())
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                .cacheResponse(cacheResponse)
+                .networkResponse(networkResponse)
+                .priorResponse(priorResponse)
+                .build();
+    }
+}
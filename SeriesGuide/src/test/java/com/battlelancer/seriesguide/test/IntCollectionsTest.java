@@ -0,0 +1,85 @@
+package com.battlelancer.seriesguide.test;
+
+import com.battlelancer.seriesguide.util.collections.IntLongMap;
+import com.battlelancer.seriesguide.util.collections.IntObjectMap;
+import com.battlelancer.seriesguide.util.collections.IntSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IntCollectionsTest {
+
+    @Test
+    public void intSet() {
+        IntSet set = new IntSet();
+        assertThat(set.isEmpty()).isTrue();
+        assertThat(set.add(0)).isTrue();
+        assertThat(set.add(-1)).isTrue();
+        assertThat(set.add(42)).isTrue();
+        assertThat(set.add(42)).isFalse();
+        assertThat(set.size()).isEqualTo(3);
+        assertThat(set.contains(0)).isTrue();
+        assertThat(set.contains(43)).isFalse();
+        assertThat(set.toArray()).containsOnly(0, -1, 42);
+
+        assertThat(set.remove(0)).isTrue();
+        assertThat(set.remove(0)).isFalse();
+        assertThat(set.contains(0)).isFalse();
+        set.clear();
+        assertThat(set.isEmpty()).isTrue();
+        assertThat(set.contains(42)).isFalse();
+    }
+
+    @Test
+    public void intObjectMap() {
+        IntObjectMap<String> map = new IntObjectMap<>();
+        map.put(0, "zero");
+        map.put(1, "one");
+        map.put(1, "uno");
+        assertThat(map.size()).isEqualTo(2);
+        assertThat(map.get(0)).isEqualTo("zero");
+        assertThat(map.get(1)).isEqualTo("uno");
+        assertThat(map.get(2)).isNull();
+        assertThat(map.remove(1)).isEqualTo("uno");
+        assertThat(map.containsKey(1)).isFalse();
+        assertThat(map.keys()).containsExactly(0);
+    }
+
+    /**
+     * Compares against {@link HashMap}, also while growing and removing keys that collide.
+     */
+    @Test
+    public void intLongMap_sameAsHashMap() {
+        Random random = new Random(42);
+        IntLongMap map = new IntLongMap();
+        Map<Integer, Long> expected = new HashMap<>();
+        for (int i = 0; i < 100000; i++) {
+            int key = random.nextInt(5000) - 1000;
+            switch (random.nextInt(3)) {
+                case 0:
+                    long value = random.nextLong();
+                    map.put(key, value);
+                    expected.put(key, value);
+                    break;
+                case 1:
+                    Long removed = expected.remove(key);
+                    assertThat(map.remove(key, -1)).isEqualTo(removed == null ? -1 : removed);
+                    break;
+                default:
+                    Long stored = expected.get(key);
+                    assertThat(map.get(key, -1)).isEqualTo(stored == null ? -1 : stored);
+                    assertThat(map.containsKey(key)).isEqualTo(stored != null);
+                    break;
+            }
+            assertThat(map.size()).isEqualTo(expected.size());
+        }
+
+        assertThat(map.keys()).hasSize(expected.size());
+        for (int key : map.keys()) {
+            assertThat(map.get(key, -1)).isEqualTo(expected.get(key));
+        }
+    }
+}
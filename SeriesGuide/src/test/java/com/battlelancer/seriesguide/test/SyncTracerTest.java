@@ -0,0 +1,114 @@
+package com.battlelancer.seriesguide.test;
+
+import com.battlelancer.seriesguide.sync.SgSyncAdapter;
+import com.battlelancer.seriesguide.sync.SyncReport;
+import com.battlelancer.seriesguide.sync.SyncTracer;
+import com.battlelancer.seriesguide.util.HttpMetrics;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SyncTracerTest {
+
+    private static final String SERIES = "api.thetvdb.com/series/{id}";
+    private static final String EPISODES = "api.thetvdb.com/series/{id}/episodes";
+
+    @Test
+    public void phases() {
+        // no active tracer, does nothing
+        SyncTracer.onRequest(SERIES, 100, 0, HttpMetrics.CacheResult.MISS, false);
+
+        SyncTracer tracer = SyncTracer.start(SgSyncAdapter.SyncType.DELTA);
+        assertThat(SyncTracer.getActive()).isSameAs(tracer);
+        // no phase yet, ignored
+        SyncTracer.onRequest(SERIES, 100, 0, HttpMetrics.CacheResult.MISS, true);
+
+        tracer.beginPhase("tvdb");
+        SyncTracer.onRequest(SERIES, 10, 2000000, HttpMetrics.CacheResult.CONDITIONAL_HIT, false);
+        SyncTracer.onRequest(EPISODES, 0, 1000000, null, true);
+        SyncTracer.onBytesRead(SERIES, 1000);
+        SyncTracer.onDatabaseWrite(42, 0);
+        SyncTracer.onFailure();
+
+        tracer.beginPhase("trakt");
+        SyncTracer.onDatabaseWrite(7, 0);
+
+        SyncReport report = tracer.finish(SgSyncAdapter.UpdateResult.INCOMPLETE, 3);
+        assertThat(SyncTracer.getActive()).isNull();
+        // tracer no longer active, ignored
+        SyncTracer.onDatabaseWrite(1, 0);
+
+        assertThat(report.syncType).isEqualTo("DELTA");
+        assertThat(report.result).isEqualTo("INCOMPLETE");
+        assertThat(report.showCount).isEqualTo(3);
+        assertThat(report.phases).hasSize(2);
+
+        SyncReport.Phase tvdb = report.phases.get(0);
+        assertThat(tvdb.name).isEqualTo("tvdb");
+        assertThat(tvdb.requests).isEqualTo(2);
+        assertThat(tvdb.bytes).isEqualTo(1010);
+        assertThat(tvdb.rowsWritten).isEqualTo(42);
+        assertThat(tvdb.failures).isEqualTo(2);
+
+        SyncReport.Phase trakt = report.phases.get(1);
+        assertThat(trakt.name).isEqualTo("trakt");
+        assertThat(trakt.requests).isEqualTo(0);
+        assertThat(trakt.rowsWritten).isEqualTo(7);
+        assertThat(trakt.failures).isEqualTo(0);
+
+        assertThat(report.endpoints).hasSize(2);
+        SyncReport.Endpoint series = report.endpoints.get(0);
+        assertThat(series.name).isEqualTo(SERIES);
+        assertThat(series.requests).isEqualTo(1);
+        assertThat(series.totalMs).isEqualTo(2);
+        assertThat(series.bytes).isEqualTo(1010);
+        assertThat(series.conditionalHits).isEqualTo(1);
+        assertThat(report.endpoints.get(1).failures).isEqualTo(1);
+
+        assertThat(report.toSummary()).startsWith("DELTA INCOMPLETE");
+    }
+
+    @Test
+    public void onlyThreadsOfSync() throws Exception {
+        Runnable write = new Runnable() {
+            @Override
+            public void run() {
+                SyncTracer.onDatabaseWrite(5, 0);
+            }
+        };
+        // thread not started by the sync, like the UI thread
+        ExecutorService otherThread = Executors.newSingleThreadExecutor();
+        otherThread.submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }).get();
+
+        SyncTracer tracer = SyncTracer.start(SgSyncAdapter.SyncType.FULL);
+        tracer.beginPhase("tvdb");
+        Thread worker = new Thread(write);
+        worker.start();
+        worker.join();
+        otherThread.submit(write).get();
+        otherThread.shutdownNow();
+
+        SyncReport report = tracer.finish(SgSyncAdapter.UpdateResult.SUCCESS, 0);
+        // only the write of the worker thread
+        assertThat(report.phases.get(0).rowsWritten).isEqualTo(5);
+    }
+
+    @Test
+    public void deactivate() {
+        SyncTracer tracer = SyncTracer.start(SgSyncAdapter.SyncType.DELTA);
+        tracer.beginPhase("tvdb");
+        // sync failed without finishing the tracer
+        tracer.deactivate();
+        assertThat(SyncTracer.getActive()).isNull();
+        SyncTracer.onDatabaseWrite(1, 0);
+
+        SyncReport report = tracer.finish(SgSyncAdapter.UpdateResult.INCOMPLETE, 0);
+        assertThat(report.phases.get(0).rowsWritten).isEqualTo(0);
+    }
+}
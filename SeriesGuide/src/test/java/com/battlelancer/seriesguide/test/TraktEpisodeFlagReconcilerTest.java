@@ -0,0 +1,392 @@
+package com.battlelancer.seriesguide.test;
+
+import com.battlelancer.seriesguide.enums.EpisodeFlags;
+import com.battlelancer.seriesguide.util.TraktEpisodeFlagReconciler;
+import com.battlelancer.seriesguide.util.TraktTools;
+import com.battlelancer.seriesguide.util.collections.IntLongMap;
+import com.battlelancer.seriesguide.util.collections.IntObjectMap;
+import com.battlelancer.seriesguide.util.collections.IntSet;
+import com.uwetrottmann.trakt5.entities.BaseEpisode;
+import com.uwetrottmann.trakt5.entities.BaseSeason;
+import com.uwetrottmann.trakt5.entities.BaseShow;
+import com.uwetrottmann.trakt5.entities.Show;
+import com.uwetrottmann.trakt5.entities.ShowIds;
+import com.uwetrottmann.trakt5.entities.SyncEpisode;
+import com.uwetrottmann.trakt5.entities.SyncSeason;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares {@link TraktEpisodeFlagReconciler} to the previous season by season processing of
+ * {@link TraktTools}, which is re-implemented here on an in-memory library.
+ */
+public class TraktEpisodeFlagReconcilerTest {
+
+    private static class Episode {
+        final int id;
+        final int show;
+        final int season;
+        final int number;
+        int flag;
+
+        Episode(int id, int show, int season, int number, int flag) {
+            this.id = id;
+            this.show = show;
+            this.season = season;
+            this.number = number;
+            this.flag = flag;
+        }
+    }
+
+    private static class Library {
+        final List<Episode> episodes = new ArrayList<>();
+        final Set<Integer> localShows = new LinkedHashSet<>();
+        final Set<Integer> showsWithTraktId = new HashSet<>();
+        final List<BaseShow> traktShows = new ArrayList<>();
+        final Set<String> uploads = new TreeSet<>();
+    }
+
+    @Test
+    public void skippedEpisodesKeepFlag() {
+        Library library = new Library();
+        library.localShows.add(1);
+        library.showsWithTraktId.add(1);
+        library.episodes.add(new Episode(11, 1, 1, 1, EpisodeFlags.WATCHED));
+        library.episodes.add(new Episode(12, 1, 1, 2, EpisodeFlags.SKIPPED));
+        library.episodes.add(new Episode(13, 1, 1, 3, EpisodeFlags.UNWATCHED));
+        library.traktShows.add(traktShow(1, traktSeason(1, 3)));
+
+        TraktEpisodeFlagReconciler.Result result = reconcile(library, false,
+                TraktTools.Flag.WATCHED);
+
+        assertThat(result.getEpisodesToFlag()).containsExactly(13);
+        assertThat(result.getEpisodesToUnflag()).containsExactly(11);
+        assertThat(result.getUploads()).isEmpty();
+    }
+
+    @Test
+    public void initialSyncUploadsInsteadOfRemoving() {
+        Library library = new Library();
+        library.localShows.add(1);
+        library.localShows.add(2);
+        library.localShows.add(3);
+        library.showsWithTraktId.add(1);
+        library.showsWithTraktId.add(2);
+        // on trakt, but season 2 is not
+        library.episodes.add(new Episode(11, 1, 1, 1, 1));
+        library.episodes.add(new Episode(12, 1, 2, 1, 1));
+        // not on trakt
+        library.episodes.add(new Episode(21, 2, 1, 1, 1));
+        // not on trakt and without trakt id
+        library.episodes.add(new Episode(31, 3, 1, 1, 1));
+        library.traktShows.add(traktShow(1, traktSeason(1, 1)));
+
+        TraktEpisodeFlagReconciler.Result result = reconcile(library, true,
+                TraktTools.Flag.COLLECTED);
+
+        assertThat(result.getEpisodesToFlag()).isEmpty();
+        assertThat(result.getEpisodesToUnflag()).isEmpty();
+        assertThat(toStrings(result)).containsExactly("1/2/1", "2/1/1");
+        assertThat(result.getUploads().get(0).isShowOnTrakt).isTrue();
+        assertThat(result.getUploads().get(1).isShowOnTrakt).isFalse();
+    }
+
+    @Test
+    public void sameAsSeasonBySeason() {
+        Random random = new Random(42);
+        for (int run = 0; run < 200; run++) {
+            for (TraktTools.Flag flag : TraktTools.Flag.values()) {
+                for (boolean isInitialSync : new boolean[] { false, true }) {
+                    long seed = random.nextLong();
+                    Library expected = randomLibrary(new Random(seed), flag);
+                    Library actual = randomLibrary(new Random(seed), flag);
+
+                    processSeasonBySeason(expected, isInitialSync, flag);
+                    TraktEpisodeFlagReconciler.Result result = reconcile(actual, isInitialSync,
+                            flag);
+                    apply(actual, result, flag);
+
+                    String description = "seed " + seed + " " + flag + " initial "
+                            + isInitialSync;
+                    for (int i = 0; i < expected.episodes.size(); i++) {
+                        assertThat(actual.episodes.get(i).flag).as(description)
+                                .isEqualTo(expected.episodes.get(i).flag);
+                    }
+                    assertThat(actual.uploads).as(description).isEqualTo(expected.uploads);
+                }
+            }
+        }
+    }
+
+    private static Library randomLibrary(Random random, TraktTools.Flag flag) {
+        Library library = new Library();
+        int episodeId = 1;
+        int showCount = 1 + random.nextInt(8);
+        for (int show = 1; show <= showCount; show++) {
+            // some shows are not tracked locally, some can not be tracked with trakt
+            if (random.nextInt(8) != 0) {
+                library.localShows.add(show);
+            }
+            if (random.nextInt(4) != 0) {
+                library.showsWithTraktId.add(show);
+            }
+
+            List<BaseSeason> traktSeasons = new ArrayList<>();
+            int seasonCount = random.nextInt(4);
+            for (int season = 0; season <= seasonCount; season++) {
+                List<BaseEpisode> traktEpisodes = new ArrayList<>();
+                int episodeCount = random.nextInt(6);
+                for (int number = 1; number <= episodeCount; number++) {
+                    library.episodes.add(new Episode(episodeId++, show, season, number,
+                            randomFlag(random, flag)));
+                    if (random.nextBoolean()) {
+                        traktEpisodes.add(traktEpisode(number));
+                    }
+                }
+                // trakt may also know episodes that do not exist locally
+                if (random.nextInt(5) == 0) {
+                    traktEpisodes.add(traktEpisode(episodeCount + 1));
+                }
+                if (random.nextInt(3) != 0) {
+                    BaseSeason traktSeason = new BaseSeason();
+                    traktSeason.number = season;
+                    traktSeason.episodes = traktEpisodes;
+                    traktSeasons.add(traktSeason);
+                }
+            }
+            if (random.nextInt(3) != 0) {
+                library.traktShows.add(traktShow(show,
+                        traktSeasons.toArray(new BaseSeason[traktSeasons.size()])));
+            }
+        }
+        return library;
+    }
+
+    private static int randomFlag(Random random, TraktTools.Flag flag) {
+        if (flag == TraktTools.Flag.COLLECTED) {
+            return random.nextInt(2);
+        }
+        int[] flags = { EpisodeFlags.UNWATCHED, EpisodeFlags.WATCHED, EpisodeFlags.SKIPPED };
+        return flags[random.nextInt(flags.length)];
+    }
+
+    private static TraktEpisodeFlagReconciler.Result reconcile(Library library,
+            boolean isInitialSync, TraktTools.Flag flag) {
+        TraktEpisodeFlagReconciler.LocalEpisodes episodes
+                = new TraktEpisodeFlagReconciler.LocalEpisodes(library.episodes.size());
+        for (Episode episode : library.episodes) {
+            episodes.add(episode.id, episode.show, episode.season, episode.number, episode.flag);
+        }
+        IntSet localShows = new IntSet();
+        for (int show : library.localShows) {
+            localShows.add(show);
+        }
+        IntLongMap showTraktIds = new IntLongMap();
+        for (int show : library.showsWithTraktId) {
+            showTraktIds.put(show, 1000 + show);
+        }
+        return TraktEpisodeFlagReconciler.reconcile(episodes, localShows,
+                TraktTools.buildTraktShowsMap(library.traktShows), showTraktIds, isInitialSync,
+                flag);
+    }
+
+    private static void apply(Library library, TraktEpisodeFlagReconciler.Result result,
+            TraktTools.Flag flag) {
+        Map<Integer, Episode> episodesById = new HashMap<>();
+        for (Episode episode : library.episodes) {
+            episodesById.put(episode.id, episode);
+        }
+        for (int id : result.getEpisodesToFlag()) {
+            episodesById.get(id).flag = flaggedValue(flag);
+        }
+        for (int id : result.getEpisodesToUnflag()) {
+            episodesById.get(id).flag = notFlaggedValue(flag);
+        }
+        library.uploads.addAll(toStrings(result));
+    }
+
+    private static List<String> toStrings(TraktEpisodeFlagReconciler.Result result) {
+        List<String> uploads = new ArrayList<>();
+        for (TraktEpisodeFlagReconciler.ShowUpload upload : result.getUploads()) {
+            for (SyncSeason season : upload.seasons) {
+                for (SyncEpisode episode : season.episodes) {
+                    uploads.add(upload.showTvdbId + "/" + season.number + "/" + episode.number);
+                }
+            }
+        }
+        return uploads;
+    }
+
+    /**
+     * The previous implementation: processes shows, then their seasons, then their episodes.
+     */
+    private static void processSeasonBySeason(Library library, boolean isInitialSync,
+            TraktTools.Flag flag) {
+        IntObjectMap<BaseShow> traktShows = TraktTools.buildTraktShowsMap(library.traktShows);
+        for (Integer localShow : library.localShows) {
+            List<Episode> showEpisodes = new ArrayList<>();
+            for (Episode episode : library.episodes) {
+                if (episode.show == localShow) {
+                    showEpisodes.add(episode);
+                }
+            }
+
+            BaseShow traktShow = traktShows.get(localShow);
+            if (traktShow == null) {
+                if (library.showsWithTraktId.contains(localShow)) {
+                    if (isInitialSync) {
+                        // upload all flagged episodes of the show
+                        for (Episode episode : showEpisodes) {
+                            if (isFlagged(episode, flag)) {
+                                library.uploads.add(localShow + "/" + episode.season + "/"
+                                        + episode.number);
+                            }
+                        }
+                    } else {
+                        clearFlags(showEpisodes, flag);
+                    }
+                }
+                continue;
+            }
+
+            Map<Integer, BaseSeason> traktSeasons = new HashMap<>();
+            for (BaseSeason season : traktShow.seasons) {
+                if (season.number != null && season.episodes != null
+                        && !season.episodes.isEmpty()) {
+                    traktSeasons.put(season.number, season);
+                }
+            }
+            Set<Integer> localSeasons = new LinkedHashSet<>();
+            for (Episode episode : showEpisodes) {
+                localSeasons.add(episode.season);
+            }
+            for (Integer localSeason : localSeasons) {
+                List<Episode> seasonEpisodes = new ArrayList<>();
+                for (Episode episode : showEpisodes) {
+                    if (episode.season == localSeason) {
+                        seasonEpisodes.add(episode);
+                    }
+                }
+
+                BaseSeason traktSeason = traktSeasons.get(localSeason);
+                if (traktSeason == null) {
+                    if (isInitialSync) {
+                        for (Episode episode : seasonEpisodes) {
+                            if (isFlagged(episode, flag)) {
+                                library.uploads.add(localShow + "/" + localSeason + "/"
+                                        + episode.number);
+                            }
+                        }
+                    } else {
+                        clearFlags(seasonEpisodes, flag);
+                    }
+                } else {
+                    processEpisodes(library, localShow, seasonEpisodes, traktSeason,
+                            isInitialSync, flag);
+                }
+            }
+        }
+    }
+
+    private static void processEpisodes(Library library, int show, List<Episode> episodes,
+            BaseSeason traktSeason, boolean isInitialSync, TraktTools.Flag flag) {
+        Set<Integer> traktEpisodes = new HashSet<>();
+        for (BaseEpisode episode : traktSeason.episodes) {
+            if (episode.number != null) {
+                traktEpisodes.add(episode.number);
+            }
+        }
+
+        Map<Episode, Integer> updates = new HashMap<>();
+        int addCount = 0;
+        int removeCount = 0;
+        for (Episode episode : episodes) {
+            boolean isFlagged = isFlagged(episode, flag);
+            if (traktEpisodes.contains(episode.number)) {
+                if (!isFlagged) {
+                    updates.put(episode, flaggedValue(flag));
+                    addCount++;
+                }
+            } else if (isFlagged) {
+                if (isInitialSync) {
+                    library.uploads.add(show + "/" + traktSeason.number + "/" + episode.number);
+                } else if (!(flag == TraktTools.Flag.WATCHED
+                        && episode.flag == EpisodeFlags.SKIPPED)) {
+                    updates.put(episode, notFlaggedValue(flag));
+                    removeCount++;
+                }
+            }
+        }
+
+        if (addCount == episodes.size() || removeCount == episodes.size()) {
+            // whole season update
+            int value = addCount == episodes.size() ? flaggedValue(flag) : notFlaggedValue(flag);
+            for (Episode episode : episodes) {
+                episode.flag = value;
+            }
+        } else {
+            for (Map.Entry<Episode, Integer> update : updates.entrySet()) {
+                update.getKey().flag = update.getValue();
+            }
+        }
+    }
+
+    private static void clearFlags(List<Episode> episodes, TraktTools.Flag flag) {
+        for (Episode episode : episodes) {
+            // only watched or collected episodes, e.g. not skipped ones
+            if (episode.flag == flaggedValue(flag)) {
+                episode.flag = notFlaggedValue(flag);
+            }
+        }
+    }
+
+    private static boolean isFlagged(Episode episode, TraktTools.Flag flag) {
+        return episode.flag == flaggedValue(flag);
+    }
+
+    private static int flaggedValue(TraktTools.Flag flag) {
+        return flag == TraktTools.Flag.WATCHED ? EpisodeFlags.WATCHED : 1;
+    }
+
+    private static int notFlaggedValue(TraktTools.Flag flag) {
+        return flag == TraktTools.Flag.WATCHED ? EpisodeFlags.UNWATCHED : 0;
+    }
+
+    private static BaseShow traktShow(int showTvdbId, BaseSeason... seasons) {
+        BaseShow traktShow = new BaseShow();
+        traktShow.show = new Show();
+        traktShow.show.ids = new ShowIds();
+        traktShow.show.ids.tvdb = showTvdbId;
+        traktShow.seasons = new ArrayList<>();
+        for (BaseSeason season : seasons) {
+            traktShow.seasons.add(season);
+        }
+        return traktShow;
+    }
+
+    private static BaseSeason traktSeason(int number, int... episodeNumbers) {
+        BaseSeason season = new BaseSeason();
+        season.number = number;
+        season.episodes = new ArrayList<>();
+        for (int episodeNumber : episodeNumbers) {
+            season.episodes.add(traktEpisode(episodeNumber));
+        }
+        return season;
+    }
+
+    private static BaseEpisode traktEpisode(int number) {
+        BaseEpisode episode = new BaseEpisode();
+        episode.number = number;
+        return episode;
+    }
+}
@@ -0,0 +1,97 @@
+package com.battlelancer.seriesguide.test.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Measures the bytes allocated by all threads of the JVM, including threads of executors started
+ * and stopped while measuring. As the allocations of a thread can only be read while it is alive,
+ * they are sampled every few milliseconds, so the last few allocations of short lived threads may
+ * be missed.
+ *
+ * <p> Requires a HotSpot based JVM, otherwise reports -1.
+ */
+class AllocationMeter {
+
+    private static final long SAMPLE_INTERVAL_MS = 5;
+
+    private final com.sun.management.ThreadMXBean threadBean;
+    private final Map<Long, Long> baseline = new HashMap<>();
+    private final Map<Long, Long> latest = new HashMap<>();
+    private Thread sampler;
+    private volatile boolean isSampling;
+
+    AllocationMeter() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            threadBean = (com.sun.management.ThreadMXBean) bean;
+            threadBean.setThreadAllocatedMemoryEnabled(true);
+        } else {
+            threadBean = null;
+        }
+    }
+
+    void start() {
+        if (threadBean == null) {
+            return;
+        }
+        baseline.clear();
+        latest.clear();
+        sample(baseline);
+        isSampling = true;
+        sampler = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (isSampling) {
+                    synchronized (latest) {
+                        sample(latest);
+                    }
+                    try {
+                        Thread.sleep(SAMPLE_INTERVAL_MS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }, "AllocationMeter");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    /**
+     * Stops measuring and returns the bytes allocated since {@link #start()}, or -1 if not
+     * supported.
+     */
+    long stop() throws InterruptedException {
+        if (threadBean == null) {
+            return -1;
+        }
+        isSampling = false;
+        sampler.join();
+
+        synchronized (latest) {
+            sample(latest);
+            long allocated = 0;
+            for (Map.Entry<Long, Long> entry : latest.entrySet()) {
+                if (entry.getKey() == sampler.getId()) {
+                    continue;
+                }
+                Long before = baseline.get(entry.getKey());
+                allocated += entry.getValue() - (before == null ? 0 : before);
+            }
+            return allocated;
+        }
+    }
+
+    private void sample(Map<Long, Long> allocations) {
+        long[] threadIds = threadBean.getAllThreadIds();
+        long[] bytes = threadBean.getThreadAllocatedBytes(threadIds);
+        for (int i = 0; i < threadIds.length; i++) {
+            if (bytes[i] >= 0) {
+                allocations.put(threadIds[i], bytes[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.battlelancer.seriesguide.test.benchmark;
+
+import com.battlelancer.seriesguide.SgApp;
+import com.battlelancer.seriesguide.modules.AppModule;
+import com.battlelancer.seriesguide.modules.ServicesComponent;
+import com.battlelancer.seriesguide.modules.TmdbModule;
+import com.battlelancer.seriesguide.modules.TraktModule;
+import com.battlelancer.seriesguide.modules.TvdbModule;
+
+/**
+ * Application for {@link SyncBenchmarkTest}, its API services talk to {@link MockApiServers}.
+ */
+public class BenchmarkApp extends SgApp {
+
+    @Override
+    protected ServicesComponent createServicesComponent() {
+        return DaggerBenchmarkServicesComponent.builder()
+                .appModule(new AppModule(this))
+                .benchmarkHttpClientModule(new BenchmarkHttpClientModule())
+                .tmdbModule(new TmdbModule())
+                .traktModule(new TraktModule())
+                .tvdbModule(new TvdbModule())
+                .build();
+    }
+}
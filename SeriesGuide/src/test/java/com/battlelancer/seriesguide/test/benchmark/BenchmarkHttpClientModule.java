@@ -0,0 +1,33 @@
+package com.battlelancer.seriesguide.test.benchmark;
+
+import com.battlelancer.seriesguide.SgApp;
+import com.battlelancer.seriesguide.thetvdbapi.SgTheTvdbInterceptor;
+import com.battlelancer.seriesguide.tmdbapi.SgTmdbInterceptor;
+import com.battlelancer.seriesguide.traktapi.SgTraktInterceptor;
+import com.battlelancer.seriesguide.util.AllApisAuthenticator;
+import com.battlelancer.seriesguide.util.HttpMetricsInterceptor;
+import dagger.Module;
+import dagger.Provides;
+import javax.inject.Singleton;
+import okhttp3.OkHttpClient;
+
+/**
+ * Replaces {@link com.battlelancer.seriesguide.modules.HttpClientModule} for the sync scenarios:
+ * sends API requests to the running {@link MockApiServers} and does not cache responses.
+ */
+@Module
+class BenchmarkHttpClientModule {
+
+    @Provides
+    @Singleton
+    OkHttpClient provideOkHttpClient(SgApp app) {
+        OkHttpClient.Builder builder = new OkHttpClient.Builder();
+        builder.addInterceptor(MockApiServers.REDIRECT_INTERCEPTOR);
+        builder.addInterceptor(new HttpMetricsInterceptor());
+        builder.addInterceptor(new SgTmdbInterceptor());
+        builder.addNetworkInterceptor(new SgTheTvdbInterceptor(app));
+        builder.addNetworkInterceptor(new SgTraktInterceptor(app));
+        builder.authenticator(new AllApisAuthenticator(app));
+        return builder.build();
+    }
+}
@@ -0,0 +1,112 @@
+package com.battlelancer.seriesguide.test.benchmark;
+
+import com.google.gson.Gson;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs all JMH benchmarks of this package and writes a JSON report. Use the {@code benchmark}
+ * Gradle task to run.
+ *
+ * <p> If the report of an earlier run (e.g. of the last release, on the same machine) is given
+ * as baseline, fails if any benchmark got slower by more than {@link #TOLERANCE}.
+ *
+ * <p> Usage: {@code BenchmarkMain <report.json> [<baseline.json>]}
+ */
+public class BenchmarkMain {
+
+    /** Allowed slow down compared to the baseline, to not fail due to noise. */
+    private static final double TOLERANCE = 0.25;
+
+    /**
+     * The parts of a benchmark in a JMH JSON report that are compared.
+     */
+    private static class BaselineResult {
+        String benchmark;
+        PrimaryMetric primaryMetric;
+    }
+
+    private static class PrimaryMetric {
+        double score;
+        String scoreUnit;
+    }
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        if (args.length < 1) {
+            throw new IllegalArgumentException("Usage: BenchmarkMain <report> [<baseline>]");
+        }
+
+        Options options = new OptionsBuilder()
+                .include(BenchmarkMain.class.getPackage().getName() + "\\..*Benchmark\\..*")
+                .resultFormat(ResultFormatType.JSON)
+                .result(args[0])
+                .build();
+        Collection<RunResult> results = new Runner(options).run();
+
+        if (args.length > 1) {
+            int regressions = compareWithBaseline(results, readBaseline(args[1]));
+            if (regressions > 0) {
+                System.err.println(regressions + " benchmark(s) slower than baseline");
+                System.exit(1);
+            }
+        }
+    }
+
+    private static Map<String, PrimaryMetric> readBaseline(String path) throws IOException {
+        BaselineResult[] baseline;
+        try (Reader reader = new InputStreamReader(new FileInputStream(path),
+                Charset.forName("UTF-8"))) {
+            baseline = new Gson().fromJson(reader, BaselineResult[].class);
+        }
+        Map<String, PrimaryMetric> metrics = new HashMap<>();
+        for (BaselineResult result : baseline) {
+            metrics.put(result.benchmark, result.primaryMetric);
+        }
+        return metrics;
+    }
+
+    /**
+     * Prints the change of each benchmark compared to the baseline.
+     *
+     * @return The number of benchmarks that got slower than allowed.
+     */
+    private static int compareWithBaseline(Collection<RunResult> results,
+            Map<String, PrimaryMetric> baseline) {
+        int regressions = 0;
+        System.out.println("Comparison with baseline:");
+        for (RunResult result : results) {
+            String benchmark = result.getParams().getBenchmark();
+            double score = result.getPrimaryResult().getScore();
+            String unit = result.getPrimaryResult().getScoreUnit();
+
+            PrimaryMetric expected = baseline.get(benchmark);
+            if (expected == null || !unit.equals(expected.scoreUnit)) {
+                System.out.println(String.format(Locale.US, "%-90s %12.3f %s (new)",
+                        benchmark, score, unit));
+                continue;
+            }
+
+            double change = (score - expected.score) / expected.score;
+            boolean isRegression = change > TOLERANCE;
+            if (isRegression) {
+                regressions++;
+            }
+            System.out.println(String.format(Locale.US, "%-90s %12.3f %s %+7.1f%%%s",
+                    benchmark, score, unit, change * 100, isRegression ? " REGRESSION" : ""));
+        }
+        return regressions;
+    }
+}
@@ -0,0 +1,24 @@
+package com.battlelancer.seriesguide.test.benchmark;
+
+import com.battlelancer.seriesguide.modules.AppModule;
+import com.battlelancer.seriesguide.modules.ServicesComponent;
+import com.battlelancer.seriesguide.modules.TmdbModule;
+import com.battlelancer.seriesguide.modules.TraktModule;
+import com.battlelancer.seriesguide.modules.TvdbModule;
+import dagger.Component;
+import javax.inject.Singleton;
+
+/**
+ * The {@link ServicesComponent} of {@link BenchmarkApp}, uses {@link BenchmarkHttpClientModule}
+ * instead of the regular HTTP client.
+ */
+@Singleton
+@Component(modules = {
+        AppModule.class,
+        BenchmarkHttpClientModule.class,
+        TmdbModule.class,
+        TraktModule.class,
+        TvdbModule.class
+})
+interface BenchmarkServicesComponent extends ServicesComponent {
+}
@@ -0,0 +1,91 @@
+package com.battlelancer.seriesguide.test.benchmark;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import com.battlelancer.seriesguide.provider.SeriesGuideProvider;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the database operations requested from {@link SeriesGuideProvider}. Each operation of a
+ * batch and each row of a bulk insert counts as one.
+ */
+public class CountingSeriesGuideProvider extends SeriesGuideProvider {
+
+    private final AtomicInteger operationCount = new AtomicInteger();
+    private final ThreadLocal<Boolean> isInBatch = new ThreadLocal<>();
+
+    int getOperationCount() {
+        return operationCount.get();
+    }
+
+    private void count(int operations) {
+        // operations of a batch call insert, update or delete again
+        if (!Boolean.TRUE.equals(isInBatch.get())) {
+            operationCount.addAndGet(operations);
+        }
+    }
+
+    @Override
+    public Cursor query(@NonNull Uri uri, String[] projection, String selection,
+            String[] selectionArgs, String sortOrder) {
+        count(1);
+        return super.query(uri, projection, selection, selectionArgs, sortOrder);
+    }
+
+    @Override
+    public Uri insert(@NonNull Uri uri, ContentValues values) {
+        count(1);
+        return super.insert(uri, values);
+    }
+
+    @Override
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
+        count(values.length);
+        isInBatch.set(true);
+        try {
+            return super.bulkInsert(uri, values);
+        } finally {
+            isInBatch.set(false);
+        }
+    }
+
+    @Override
+    public int update(@NonNull Uri uri, ContentValues values, String selection,
+            String[] selectionArgs) {
+        count(1);
+        return super.update(uri, values, selection, selectionArgs);
+    }
+
+    @Override
+    public int delete(@NonNull Uri uri, String selection, String[] selectionArgs) {
+        count(1);
+        return super.delete(uri, selection, selectionArgs);
+    }
+
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(
+            @NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        count(operations.size());
+        isInBatch.set(true);
+        try {
+            return super.applyBatch(operations);
+        } finally {
+            isInBatch.set(false);
+        }
+    }
+
+    @Override
+    public Bundle call(@NonNull String method, String arg, Bundle extras) {
+        count(1);
+        return super.call(method, arg, extras);
+    }
+}
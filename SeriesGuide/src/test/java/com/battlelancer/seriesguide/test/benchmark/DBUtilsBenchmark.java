@@ -0,0 +1,44 @@
+package com.battlelancer.seriesguide.test.benchmark;
+
+import com.battlelancer.seriesguide.util.DBUtils;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DBUtilsBenchmark {
+
+    private String[] titles;
+
+    @Setup
+    public void setup() {
+        titles = new String[] {
+                "The Expanse", "the office", "A Series of Unfortunate Events", "An Idiot Abroad",
+                "Breaking Bad", "Atlanta", "Andor", "The", ""
+        };
+    }
+
+    /**
+     * Trims all titles, so all branches are covered.
+     */
+    @Benchmark
+    public void trimLeadingArticle(Blackhole blackhole) {
+        for (String title : titles) {
+            blackhole.consume(DBUtils.trimLeadingArticle(title));
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.battlelancer.seriesguide.test.benchmark;
+
+import com.battlelancer.seriesguide.dataliberation.DataLiberationTools;
+import com.battlelancer.seriesguide.dataliberation.JsonExportTask;
+import com.battlelancer.seriesguide.dataliberation.model.Episode;
+import com.battlelancer.seriesguide.dataliberation.model.ListItem;
+import com.battlelancer.seriesguide.dataliberation.model.Season;
+import com.battlelancer.seriesguide.dataliberation.model.Show;
+import com.google.gson.Gson;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Covers status encoding and the Gson (de-)serialization of the JSON export and import of a show
+ * with 10 seasons of 22 episodes each and a list of 100 items.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DataLiberationBenchmark {
+
+    private static final int SEASON_COUNT = 10;
+    private static final int EPISODES_PER_SEASON = 22;
+    private static final int LIST_ITEM_COUNT = 100;
+
+    private Gson gson;
+    private Show show;
+    private String showJson;
+    private com.battlelancer.seriesguide.dataliberation.model.List list;
+    private String listJson;
+    private String[] statuses;
+    private int[] encodedStatuses;
+
+    @Setup
+    public void setup() {
+        gson = new Gson();
+
+        show = buildShow();
+        showJson = gson.toJson(show);
+        list = buildList();
+        listJson = gson.toJson(list);
+
+        statuses = new String[] {
+                JsonExportTask.ShowStatusExport.CONTINUING, JsonExportTask.ShowStatusExport.ENDED,
+                JsonExportTask.ShowStatusExport.UNKNOWN, null
+        };
+        encodedStatuses = new int[statuses.length];
+        for (int i = 0; i < statuses.length; i++) {
+            encodedStatuses[i] = DataLiberationTools.encodeShowStatus(statuses[i]);
+        }
+    }
+
+    @Benchmark
+    public void encodeShowStatus(Blackhole blackhole) {
+        for (String status : statuses) {
+            blackhole.consume(DataLiberationTools.encodeShowStatus(status));
+        }
+    }
+
+    @Benchmark
+    public void decodeShowStatus(Blackhole blackhole) {
+        for (int encodedStatus : encodedStatuses) {
+            blackhole.consume(DataLiberationTools.decodeShowStatus(encodedStatus));
+        }
+    }
+
+    @Benchmark
+    public String showToJson() {
+        return gson.toJson(show);
+    }
+
+    @Benchmark
+    public Show showFromJson() {
+        return gson.fromJson(showJson, Show.class);
+    }
+
+    @Benchmark
+    public String listToJson() {
+        return gson.toJson(list);
+    }
+
+    @Benchmark
+    public com.battlelancer.seriesguide.dataliberation.model.List listFromJson() {
+        return gson.fromJson(listJson,
+                com.battlelancer.seriesguide.dataliberation.model.List.class);
+    }
+
+    private static Show buildShow() {
+        Show show = new Show();
+        show.tvdb_id = 80379;
+        show.imdb_id = "tt0898266";
+        show.trakt_id = 1409;
+        show.title = "The Big Bang Theory";
+        show.overview = "What happens when hyperintelligent roommates Sheldon and Leonard meet"
+                + " Penny, a free-spirited beauty moving in next door?";
+        show.language = "en";
+        show.first_aired = "2007-09-25T00:00:00.000Z";
+        show.release_time = 2000;
+        show.release_weekday = 4;
+        show.release_timezone = "America/New_York";
+        show.country = "us";
+        show.poster = "posters/80379-1.jpg";
+        show.content_rating = "TV-PG";
+        show.status = JsonExportTask.ShowStatusExport.CONTINUING;
+        show.runtime = 25;
+        show.genres = "Comedy";
+        show.network = "CBS";
+        show.rating = 8.4;
+        show.rating_votes = 12345;
+        show.last_edited = 1500000000L;
+        show.favorite = true;
+        show.notify = true;
+        show.last_updated = 1500000000000L;
+
+        show.seasons = new ArrayList<>(SEASON_COUNT);
+        for (int seasonNumber = 1; seasonNumber <= SEASON_COUNT; seasonNumber++) {
+            Season season = new Season();
+            season.tvdbId = 20000 + seasonNumber;
+            season.season = seasonNumber;
+            season.episodes = new ArrayList<>(EPISODES_PER_SEASON);
+            for (int number = 1; number <= EPISODES_PER_SEASON; number++) {
+                Episode episode = new Episode();
+                episode.tvdbId = 300000 + seasonNumber * 100 + number;
+                episode.episode = number;
+                episode.episodeAbsolute = (seasonNumber - 1) * EPISODES_PER_SEASON + number;
+                episode.title = "Episode " + number;
+                episode.firstAired = 1190678400000L + episode.episodeAbsolute * 604800000L;
+                episode.watched = seasonNumber < SEASON_COUNT;
+                episode.collected = number % 2 == 0;
+                episode.imdbId = "tt" + episode.tvdbId;
+                episode.overview = "An overview of episode " + number + " of season "
+                        + seasonNumber + ".";
+                episode.rating = 7.9;
+                episode.rating_votes = 1000;
+                episode.lastEdited = 1500000000L;
+                season.episodes.add(episode);
+            }
+            show.seasons.add(season);
+        }
+        return show;
+    }
+
+    private static com.battlelancer.seriesguide.dataliberation.model.List buildList() {
+        com.battlelancer.seriesguide.dataliberation.model.List list
+                = new com.battlelancer.seriesguide.dataliberation.model.List();
+        list.listId = "favorites";
+        list.name = "Favorites";
+        list.order = 1;
+        List<ListItem> items = new ArrayList<>(LIST_ITEM_COUNT);
+        for (int i = 0; i < LIST_ITEM_COUNT; i++) {
+            ListItem item = new ListItem();
+            item.tvdbId = 70000 + i;
+            item.listItemId = item.tvdbId + "-1-favorites";
+            item.type = JsonExportTask.ListItemTypesExport.SHOW;
+            items.add(item);
+        }
+        list.items = items;
+        return list;
+    }
+}
@@ -0,0 +1,198 @@
+package com.battlelancer.seriesguide.test.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Local stand-ins for TheTVDB v2, trakt and TMDb APIs, serving a {@link SyntheticLibrary}. Each
+ * response is delayed by the configured latency. While started, {@link #REDIRECT_INTERCEPTOR}
+ * sends requests of the app to these servers instead of the real APIs.
+ */
+class MockApiServers {
+
+    private static final String HOST_TVDB = "api.thetvdb.com";
+    private static final String HOST_TRAKT = "api.trakt.tv";
+    private static final String HOST_TMDB = "api.themoviedb.org";
+
+    /** The servers started last, until they are shut down. */
+    private static volatile MockApiServers started;
+
+    /**
+     * Rewrites requests to the TheTVDB, trakt and TMDb APIs to go to the servers started last.
+     * Requests are passed on unchanged if no servers are running.
+     */
+    static final Interceptor REDIRECT_INTERCEPTOR = new Interceptor() {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            MockApiServers servers = started;
+            Request request = chain.request();
+            MockWebServer server = servers == null ? null : servers.serverFor(request.url().host());
+            if (server == null) {
+                return chain.proceed(request);
+            }
+            HttpUrl url = request.url().newBuilder()
+                    .scheme("http")
+                    .host(server.getHostName())
+                    .port(server.getPort())
+                    .build();
+            return chain.proceed(request.newBuilder().url(url).build());
+        }
+    };
+
+    private final SyntheticLibrary library;
+    private final long latencyMs;
+    private final MockWebServer tvdb = new MockWebServer();
+    private final MockWebServer trakt = new MockWebServer();
+    private final MockWebServer tmdb = new MockWebServer();
+
+    MockApiServers(SyntheticLibrary library, long latencyMs) {
+        this.library = library;
+        this.latencyMs = latencyMs;
+        tvdb.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return dispatchTvdb(request);
+            }
+        });
+        trakt.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return dispatchTrakt(request);
+            }
+        });
+        tmdb.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return dispatchTmdb(request);
+            }
+        });
+    }
+
+    void start() throws IOException {
+        tvdb.start();
+        trakt.start();
+        tmdb.start();
+        started = this;
+    }
+
+    void shutdown() throws IOException {
+        started = null;
+        tvdb.shutdown();
+        trakt.shutdown();
+        tmdb.shutdown();
+    }
+
+    /**
+     * Returns the number of requests received by all servers so far.
+     */
+    int getRequestCount() {
+        return tvdb.getRequestCount() + trakt.getRequestCount() + tmdb.getRequestCount();
+    }
+
+    private MockWebServer serverFor(String host) {
+        switch (host) {
+            case HOST_TVDB:
+                return tvdb;
+            case HOST_TRAKT:
+                return trakt;
+            case HOST_TMDB:
+                return tmdb;
+            default:
+                return null;
+        }
+    }
+
+    private MockResponse dispatchTvdb(RecordedRequest request) {
+        HttpUrl url = request.getRequestUrl();
+        List<String> path = url.pathSegments();
+        if (path.size() == 1 && ("login".equals(path.get(0))
+                || "refresh_token".equals(path.get(0)))) {
+            return ok(library.tvdbLogin());
+        }
+        if (path.size() >= 2 && "series".equals(path.get(0))) {
+            int show = library.findShow(parseInt(path.get(1)));
+            if (show == -1) {
+                return notFound();
+            }
+            if (path.size() == 2) {
+                return ok(library.tvdbSeries(show));
+            }
+            if (path.size() == 3 && "episodes".equals(path.get(2))) {
+                String page = url.queryParameter("page");
+                return ok(library.tvdbEpisodes(show, page == null ? 1 : parseInt(page)));
+            }
+            if (path.size() == 4 && "images".equals(path.get(2))) {
+                return ok(library.tvdbPosters(show));
+            }
+        }
+        return notFound();
+    }
+
+    private MockResponse dispatchTrakt(RecordedRequest request) {
+        List<String> path = request.getRequestUrl().pathSegments();
+        if (path.size() == 3 && "search".equals(path.get(0))) {
+            // id lookup, e.g. search/tvdb/12345?type=show
+            int show = library.findShow(parseInt(path.get(2)));
+            return show == -1 ? ok("[]") : ok(library.traktIdLookup(show));
+        }
+        if (path.size() == 2 && "shows".equals(path.get(0))) {
+            int show = library.findShow(parseInt(path.get(1)));
+            return show == -1 ? notFound() : ok(library.traktShowSummary(show));
+        }
+        if (path.size() >= 2 && "sync".equals(path.get(0))) {
+            if ("POST".equals(request.getMethod())) {
+                // adding to or removing from history or collection
+                return ok(library.traktSyncResponse());
+            }
+            if (path.size() == 3 && "shows".equals(path.get(2))) {
+                if ("watched".equals(path.get(1))) {
+                    return ok(library.traktWatchedShows());
+                }
+                if ("collection".equals(path.get(1))) {
+                    return ok(library.traktCollectedShows());
+                }
+            }
+            // nothing else synced with trakt, like movies
+            return ok("[]");
+        }
+        return notFound();
+    }
+
+    private MockResponse dispatchTmdb(RecordedRequest request) {
+        List<String> path = request.getRequestUrl().pathSegments();
+        if (path.size() == 2 && "configuration".equals(path.get(1))) {
+            return ok(library.tmdbConfiguration());
+        }
+        return notFound();
+    }
+
+    private MockResponse ok(String body) {
+        return new MockResponse()
+                .setHeader("Content-Type", "application/json")
+                .setBody(body)
+                .setBodyDelay(latencyMs, TimeUnit.MILLISECONDS);
+    }
+
+    private MockResponse notFound() {
+        return new MockResponse()
+                .setResponseCode(404)
+                .setBodyDelay(latencyMs, TimeUnit.MILLISECONDS);
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.battlelancer.seriesguide.test.benchmark;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentValues;
+import android.content.SyncResult;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import com.battlelancer.seriesguide.BuildConfig;
+import com.battlelancer.seriesguide.SgApp;
+import com.battlelancer.seriesguide.enums.EpisodeFlags;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Episodes;
+import com.battlelancer.seriesguide.provider.SeriesGuideContract.Shows;
+import com.battlelancer.seriesguide.settings.TraktCredentials;
+import com.battlelancer.seriesguide.sync.SgSyncAdapter;
+import com.battlelancer.seriesguide.thetvdbapi.TvdbTools;
+import com.battlelancer.seriesguide.util.DBUtils;
+import com.battlelancer.seriesguide.util.ShowTools;
+import com.battlelancer.seriesguide.util.TraktTools;
+import com.battlelancer.seriesguide.util.collections.IntSet;
+import com.uwetrottmann.trakt5.entities.LastActivityMore;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.threeten.bp.OffsetDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the app's sync code against a {@link SyntheticLibrary} served by {@link MockApiServers}:
+ * first adding all shows, a delta sync, a full sync and merging episode flags with trakt. For
+ * each scenario reports wall time, request count, database operation count and allocated bytes
+ * to build/reports/benchmarks/sync-scenarios.csv.
+ *
+ * <p> Not part of the regular unit tests, run with the benchmark task, or on its own with
+ * ./gradlew :SeriesGuide:syncBenchmark. Increase the library size and latency for meaningful
+ * measurements.
+ *
+ * <p> All scenarios run in a single test as they build on each other, and as {@link
+ * TvdbTools#getInstance(SgApp)} keeps the services of the first test.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23, application = BenchmarkApp.class)
+public class SyncBenchmarkTest {
+
+    private static final int SHOW_COUNT = 20;
+    private static final int SEASONS_PER_SHOW = 5;
+    private static final int EPISODES_PER_SEASON = 20;
+    private static final long LATENCY_MS = 5;
+    /** Every n-th show is due for a delta sync. */
+    private static final int DELTA_SYNC_SHOW_INTERVAL = 4;
+
+    private static final String REPORT_PATH = "build/reports/benchmarks/sync-scenarios.csv";
+
+    private interface Scenario {
+        void run() throws Exception;
+    }
+
+    private static class ScenarioResult {
+        final String name;
+        final long wallTimeMs;
+        final int requestCount;
+        final int dbOperationCount;
+        final long allocatedBytes;
+
+        ScenarioResult(String name, long wallTimeMs, int requestCount, int dbOperationCount,
+                long allocatedBytes) {
+            this.name = name;
+            this.wallTimeMs = wallTimeMs;
+            this.requestCount = requestCount;
+            this.dbOperationCount = dbOperationCount;
+            this.allocatedBytes = allocatedBytes;
+        }
+    }
+
+    private SgApp app;
+    private SyntheticLibrary library;
+    private MockApiServers servers;
+    private CountingSeriesGuideProvider provider;
+    private final List<ScenarioResult> results = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        app = (SgApp) RuntimeEnvironment.application;
+        provider = Robolectric.buildContentProvider(CountingSeriesGuideProvider.class)
+                .create(SgApp.CONTENT_AUTHORITY)
+                .get();
+
+        library = new SyntheticLibrary(SHOW_COUNT, SEASONS_PER_SHOW, EPISODES_PER_SEASON);
+        servers = new MockApiServers(library, LATENCY_MS);
+        servers.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        servers.shutdown();
+    }
+
+    @Test
+    public void syncScenarios() throws Exception {
+        measure("first add", new Scenario() {
+            @Override
+            public void run() throws Exception {
+                // like AddShowTask if not connected to trakt or Hexagon
+                TvdbTools tvdbTools = TvdbTools.getInstance(app);
+                for (int show = 0; show < library.showCount; show++) {
+                    tvdbTools.addShow(library.getShowTvdbId(show), "en", null, null);
+                }
+            }
+        });
+        assertThat(queryCount(Episodes.CONTENT_URI)).isEqualTo(library.getEpisodeCount());
+
+        library.setRevision(1);
+        markShowsDueForDeltaSync();
+        measure("delta sync", new Scenario() {
+            @Override
+            public void run() throws Exception {
+                performSync(SgSyncAdapter.SyncType.DELTA);
+            }
+        });
+
+        library.setRevision(2);
+        measure("full sync", new Scenario() {
+            @Override
+            public void run() throws Exception {
+                performSync(SgSyncAdapter.SyncType.FULL);
+            }
+        });
+
+        flagLocalEpisodes();
+        TraktCredentials.get(app).storeAccessToken("synthetic-access-token");
+        measure("trakt merge", new Scenario() {
+            @Override
+            public void run() throws Exception {
+                LastActivityMore activity = new LastActivityMore();
+                activity.watched_at = OffsetDateTime.now();
+                activity.collected_at = OffsetDateTime.now();
+                int result = app.getTraktTools().syncEpisodeFlags(
+                        ShowTools.getShowTvdbIdsAsSet(app), activity, true, new IntSet());
+                assertThat(result).isEqualTo(TraktTools.SUCCESS);
+            }
+        });
+
+        report();
+        for (ScenarioResult result : results) {
+            assertThat(result.requestCount).as(result.name).isGreaterThan(0);
+            assertThat(result.dbOperationCount).as(result.name).isGreaterThan(0);
+        }
+    }
+
+    private void measure(String name, Scenario scenario) throws Exception {
+        int requestCount = servers.getRequestCount();
+        int dbOperationCount = provider.getOperationCount();
+        AllocationMeter allocationMeter = new AllocationMeter();
+
+        allocationMeter.start();
+        long start = System.nanoTime();
+        scenario.run();
+        long wallTimeMs = (System.nanoTime() - start) / 1000000;
+        long allocatedBytes = allocationMeter.stop();
+
+        results.add(new ScenarioResult(name, wallTimeMs,
+                servers.getRequestCount() - requestCount,
+                provider.getOperationCount() - dbOperationCount,
+                allocatedBytes));
+    }
+
+    private void performSync(SgSyncAdapter.SyncType syncType) {
+        Bundle extras = new Bundle();
+        extras.putInt(SgSyncAdapter.SyncInitBundle.SYNC_TYPE, syncType.id);
+        extras.putBoolean(SgSyncAdapter.SyncInitBundle.SYNC_IMMEDIATE, true);
+        new SgSyncAdapter(app, false)
+                .onPerformSync(null, extras, SgApp.CONTENT_AUTHORITY, null, new SyncResult());
+    }
+
+    private void markShowsDueForDeltaSync() {
+        ContentValues values = new ContentValues();
+        values.put(Shows.LASTUPDATED, 0);
+        for (int show = 0; show < library.showCount; show += DELTA_SYNC_SHOW_INTERVAL) {
+            app.getContentResolver().update(Shows.buildShowUri(library.getShowTvdbId(show)),
+                    values, null, null);
+        }
+    }
+
+    /**
+     * Sets the watched and collected flags of the library locally, trakt only knows some of them.
+     */
+    private void flagLocalEpisodes() throws Exception {
+        ArrayList<ContentProviderOperation> batch = new ArrayList<>();
+        for (int show = 0; show < library.showCount; show++) {
+            for (int season = 1; season <= library.seasonsPerShow; season++) {
+                for (int number = 1; number <= library.episodesPerSeason; number++) {
+                    boolean isWatched = library.isWatched(show, season, number);
+                    boolean isCollected = library.isCollected(show, season, number);
+                    if (!isWatched && !isCollected) {
+                        continue;
+                    }
+                    batch.add(ContentProviderOperation.newUpdate(Episodes.buildEpisodeUri(
+                            library.getEpisodeTvdbId(show, season, number)))
+                            .withValue(Episodes.WATCHED,
+                                    isWatched ? EpisodeFlags.WATCHED : EpisodeFlags.UNWATCHED)
+                            .withValue(Episodes.COLLECTED, isCollected)
+                            .build());
+                }
+            }
+        }
+        DBUtils.applyInSmallBatches(app, batch);
+    }
+
+    private int queryCount(Uri uri) {
+        Cursor query = app.getContentResolver().query(uri, new String[] { Episodes._ID },
+                null, null, null);
+        assertThat(query).isNotNull();
+        int count = query.getCount();
+        query.close();
+        return count;
+    }
+
+    private void report() throws IOException {
+        File reportFile = new File(REPORT_PATH);
+        //noinspection ResultOfMethodCallIgnored
+        reportFile.getParentFile().mkdirs();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(reportFile),
+                Charset.forName("UTF-8"))) {
+            writer.write(String.format(Locale.US,
+                    "# %d shows x %d seasons x %d episodes, %d ms latency\n",
+                    library.showCount, library.seasonsPerShow, library.episodesPerSeason,
+                    LATENCY_MS));
+            writer.write("scenario,wall_time_ms,requests,db_operations,allocated_bytes\n");
+            for (ScenarioResult result : results) {
+                writer.write(String.format(Locale.US, "%s,%d,%d,%d,%d\n", result.name,
+                        result.wallTimeMs, result.requestCount, result.dbOperationCount,
+                        result.allocatedBytes));
+            }
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.battlelancer.seriesguide.test.benchmark;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.threeten.bp.LocalDate;
+
+/**
+ * A deterministic library of shows with seasons and episodes, some of them watched or collected.
+ * Builds the JSON responses of TheTVDB, trakt and TMDb for it.
+ *
+ * <p> Increasing the {@link #setRevision(int) revision} changes the title and last edited time of
+ * every tenth episode, so an update has some changes to store.
+ */
+class SyntheticLibrary {
+
+    /** Like TVDb ids, so ids are not in the small Integer cache. */
+    private static final int FIRST_SHOW_TVDB_ID = 100000;
+    private static final int TRAKT_ID_OFFSET = 1000000;
+    private static final int FIRST_EPISODE_TVDB_ID = 10000000;
+    /** TheTVDB returns episodes in pages of 100. */
+    private static final int EPISODES_PER_PAGE = 100;
+    private static final long LAST_EDITED = 1500000000L;
+    private static final long FIRST_AIRED_EPOCH_DAY = 14000; // 2008-05-01
+
+    final int showCount;
+    final int seasonsPerShow;
+    final int episodesPerSeason;
+    private int revision;
+
+    /**
+     * @param showCount N shows, ...
+     * @param seasonsPerShow ... with M seasons, ...
+     * @param episodesPerSeason ... with K episodes each.
+     */
+    SyntheticLibrary(int showCount, int seasonsPerShow, int episodesPerSeason) {
+        this.showCount = showCount;
+        this.seasonsPerShow = seasonsPerShow;
+        this.episodesPerSeason = episodesPerSeason;
+    }
+
+    void setRevision(int revision) {
+        this.revision = revision;
+    }
+
+    int getEpisodeCount() {
+        return showCount * seasonsPerShow * episodesPerSeason;
+    }
+
+    int getShowTvdbId(int show) {
+        return FIRST_SHOW_TVDB_ID + show;
+    }
+
+    /**
+     * Returns the index of the show with the given TVDb or trakt id, or -1 if not in this library.
+     */
+    int findShow(int showTvdbOrTraktId) {
+        int show = showTvdbOrTraktId >= TRAKT_ID_OFFSET
+                ? showTvdbOrTraktId - TRAKT_ID_OFFSET - FIRST_SHOW_TVDB_ID
+                : showTvdbOrTraktId - FIRST_SHOW_TVDB_ID;
+        return show >= 0 && show < showCount ? show : -1;
+    }
+
+    private int getShowTraktId(int show) {
+        return TRAKT_ID_OFFSET + getShowTvdbId(show);
+    }
+
+    private int getSeasonTvdbId(int show, int season) {
+        return getShowTvdbId(show) * 100 + season;
+    }
+
+    int getEpisodeTvdbId(int show, int season, int number) {
+        return FIRST_EPISODE_TVDB_ID
+                + (show * seasonsPerShow + season - 1) * episodesPerSeason + number - 1;
+    }
+
+    /**
+     * All but the last season are watched, a few episodes of each season are not.
+     */
+    boolean isWatched(int show, int season, int number) {
+        return season < seasonsPerShow && (show + number) % 7 != 0;
+    }
+
+    /**
+     * Every other episode of the first half of seasons is collected.
+     */
+    boolean isCollected(int show, int season, int number) {
+        return season <= (seasonsPerShow + 1) / 2 && (show + number) % 2 == 0;
+    }
+
+    /**
+     * trakt only knows some of the local flags, so merging has flags to upload.
+     */
+    private boolean isOnTrakt(int show, int season, int number) {
+        return (show + season + number) % 5 != 0;
+    }
+
+    String tvdbLogin() {
+        JsonObject token = new JsonObject();
+        token.addProperty("token", "synthetic-token");
+        return token.toString();
+    }
+
+    String tvdbSeries(int show) {
+        JsonObject series = new JsonObject();
+        series.addProperty("id", getShowTvdbId(show));
+        series.addProperty("seriesName", "Show " + show);
+        series.addProperty("network", show % 3 == 0 ? "Netflix" : "Network " + show % 5);
+        series.addProperty("rating", "TV-14");
+        series.addProperty("imdbId", "tt" + getShowTvdbId(show));
+        JsonArray genres = new JsonArray();
+        genres.add("Drama");
+        genres.add("Comedy");
+        series.add("genre", genres);
+        series.addProperty("lastUpdated", LAST_EDITED + revision);
+        series.addProperty("overview", "Overview of show " + show + ".");
+        series.addProperty("runtime", "45");
+        series.addProperty("status", show % 4 == 0 ? "Ended" : "Continuing");
+        return data(series).toString();
+    }
+
+    String tvdbPosters(int show) {
+        JsonArray posters = new JsonArray();
+        for (int i = 0; i < 3; i++) {
+            JsonObject ratingsInfo = new JsonObject();
+            ratingsInfo.addProperty("average", 5.0 + i);
+            ratingsInfo.addProperty("count", 10);
+            JsonObject poster = new JsonObject();
+            poster.addProperty("fileName", "posters/" + getShowTvdbId(show) + "-" + i + ".jpg");
+            poster.add("ratingsInfo", ratingsInfo);
+            posters.add(poster);
+        }
+        return data(posters).toString();
+    }
+
+    /**
+     * @param page As requested by the app, pages start at 1 (0 is treated as 1).
+     */
+    String tvdbEpisodes(int show, int page) {
+        int first = (Math.max(page, 1) - 1) * EPISODES_PER_PAGE;
+        int episodeCount = seasonsPerShow * episodesPerSeason;
+        JsonArray episodes = new JsonArray();
+        for (int i = first; i < Math.min(first + EPISODES_PER_PAGE, episodeCount); i++) {
+            int season = i / episodesPerSeason + 1;
+            int number = i % episodesPerSeason + 1;
+            boolean isChanged = revision > 0 && number % 10 == 0;
+
+            JsonObject episode = new JsonObject();
+            episode.addProperty("id", getEpisodeTvdbId(show, season, number));
+            episode.addProperty("airedSeasonID", getSeasonTvdbId(show, season));
+            episode.addProperty("airedSeason", season);
+            episode.addProperty("airedEpisodeNumber", number);
+            episode.addProperty("absoluteNumber", i + 1);
+            episode.addProperty("dvdEpisodeNumber", number);
+            episode.addProperty("episodeName", "Episode " + number
+                    + (isChanged ? " (revision " + revision + ")" : ""));
+            episode.addProperty("overview", "Overview of episode " + number + ".");
+            episode.addProperty("firstAired", firstAired(season, number));
+            episode.addProperty("lastUpdated", LAST_EDITED + (isChanged ? revision : 0));
+            episodes.add(episode);
+        }
+
+        JsonObject links = new JsonObject();
+        if (first + EPISODES_PER_PAGE < episodeCount) {
+            links.addProperty("next", Math.max(page, 1) + 1);
+        }
+        JsonObject response = data(episodes);
+        response.add("links", links);
+        return response.toString();
+    }
+
+    private String firstAired(int season, int number) {
+        long epochDay = FIRST_AIRED_EPOCH_DAY + ((season - 1) * episodesPerSeason + number) * 7;
+        return LocalDate.ofEpochDay(epochDay).toString();
+    }
+
+    String traktIdLookup(int show) {
+        JsonObject result = new JsonObject();
+        result.addProperty("type", "show");
+        result.add("show", traktShow(show));
+        JsonArray results = new JsonArray();
+        results.add(result);
+        return results.toString();
+    }
+
+    String traktShowSummary(int show) {
+        JsonObject airs = new JsonObject();
+        airs.addProperty("day", "Thursday");
+        airs.addProperty("time", show % 10 == 0 ? "00:30" : "20:00");
+        airs.addProperty("timezone", "America/New_York");
+
+        JsonObject summary = traktShow(show);
+        summary.add("airs", airs);
+        summary.addProperty("country", "us");
+        summary.addProperty("first_aired", "2008-05-01T00:00:00.000Z");
+        summary.addProperty("rating", 8.5);
+        return summary.toString();
+    }
+
+    private JsonObject traktShow(int show) {
+        JsonObject ids = new JsonObject();
+        ids.addProperty("trakt", getShowTraktId(show));
+        ids.addProperty("tvdb", getShowTvdbId(show));
+        JsonObject traktShow = new JsonObject();
+        traktShow.addProperty("title", "Show " + show);
+        traktShow.add("ids", ids);
+        return traktShow;
+    }
+
+    String traktWatchedShows() {
+        return traktShows(true).toString();
+    }
+
+    String traktCollectedShows() {
+        return traktShows(false).toString();
+    }
+
+    private JsonArray traktShows(boolean watched) {
+        JsonArray shows = new JsonArray();
+        for (int show = 0; show < showCount; show++) {
+            JsonArray seasons = new JsonArray();
+            for (int season = 1; season <= seasonsPerShow; season++) {
+                JsonArray episodes = new JsonArray();
+                for (int number = 1; number <= episodesPerSeason; number++) {
+                    boolean isFlagged = watched
+                            ? isWatched(show, season, number)
+                            : isCollected(show, season, number);
+                    if (!isFlagged || !isOnTrakt(show, season, number)) {
+                        continue;
+                    }
+                    JsonObject episode = new JsonObject();
+                    episode.addProperty("number", number);
+                    if (watched) {
+                        episode.addProperty("plays", 1);
+                        episode.addProperty("last_watched_at", "2017-01-01T20:00:00.000Z");
+                    } else {
+                        episode.addProperty("collected_at", "2017-01-01T20:00:00.000Z");
+                    }
+                    episodes.add(episode);
+                }
+                if (episodes.size() > 0) {
+                    JsonObject traktSeason = new JsonObject();
+                    traktSeason.addProperty("number", season);
+                    traktSeason.add("episodes", episodes);
+                    seasons.add(traktSeason);
+                }
+            }
+            if (seasons.size() == 0) {
+                continue;
+            }
+            JsonObject baseShow = new JsonObject();
+            baseShow.add("show", traktShow(show));
+            baseShow.add("seasons", seasons);
+            if (watched) {
+                baseShow.addProperty("plays", 1);
+                baseShow.addProperty("last_watched_at", "2017-01-01T20:00:00.000Z");
+            } else {
+                baseShow.addProperty("last_collected_at", "2017-01-01T20:00:00.000Z");
+            }
+            shows.add(baseShow);
+        }
+        return shows;
+    }
+
+    String traktSyncResponse() {
+        JsonObject stats = new JsonObject();
+        stats.addProperty("episodes", 0);
+        JsonObject response = new JsonObject();
+        response.add("added", stats);
+        response.add("existing", stats);
+        response.add("not_found", new JsonObject());
+        return response.toString();
+    }
+
+    String tmdbConfiguration() {
+        JsonObject images = new JsonObject();
+        images.addProperty("base_url", "http://image.tmdb.org/t/p/");
+        images.addProperty("secure_base_url", "https://image.tmdb.org/t/p/");
+        JsonObject configuration = new JsonObject();
+        configuration.add("images", images);
+        return configuration.toString();
+    }
+
+    private static JsonObject data(JsonElement data) {
+        JsonObject response = new JsonObject();
+        response.add("data", data);
+        return response;
+    }
+}
@@ -0,0 +1,97 @@
+package com.battlelancer.seriesguide.test.benchmark;
+
+import com.battlelancer.seriesguide.util.EpisodeReleaseResolver;
+import com.battlelancer.seriesguide.util.TimeTools;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.threeten.bp.LocalTime;
+import org.threeten.bp.OffsetDateTime;
+import org.threeten.bp.ZoneId;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TimeToolsBenchmark {
+
+    private ZoneId showTimeZone;
+    private LocalTime showReleaseTime;
+    private EpisodeReleaseResolver releaseResolver;
+    private String releaseDate;
+    private String firstRelease;
+    private String releaseTimeText;
+    private String releaseWeekDayText;
+    private int encodedReleaseTime;
+    private OffsetDateTime offsetDateTime;
+    private Date date;
+
+    @Setup
+    public void setup() {
+        showTimeZone = TimeTools.getDateTimeZone("America/New_York");
+        showReleaseTime = LocalTime.of(20, 0);
+        // device in Arizona requires the most corrections
+        releaseResolver = new EpisodeReleaseResolver(null, showTimeZone, showReleaseTime,
+                TimeTools.ISO3166_1_UNITED_STATES, null, TimeTools.TIMEZONE_ID_US_ARIZONA);
+        releaseDate = "2013-05-31";
+        firstRelease = "2013-08-20T15:16:26.355Z";
+        releaseTimeText = "20:30";
+        releaseWeekDayText = "Thursday";
+        encodedReleaseTime = 2030;
+        offsetDateTime = OffsetDateTime.parse("2013-08-20T15:16:26.355Z");
+        date = new Date(1370055600000L);
+    }
+
+    @Benchmark
+    public long parseEpisodeReleaseDate() {
+        return TimeTools.parseEpisodeReleaseDate(null, showTimeZone, releaseDate,
+                showReleaseTime, TimeTools.ISO3166_1_UNITED_STATES, null,
+                TimeTools.TIMEZONE_ID_US_ARIZONA);
+    }
+
+    @Benchmark
+    public long resolveEpisodeRelease() {
+        return releaseResolver.resolve(releaseDate);
+    }
+
+    @Benchmark
+    public int parseShowReleaseTime() {
+        return TimeTools.parseShowReleaseTime(releaseTimeText);
+    }
+
+    @Benchmark
+    public int parseShowReleaseWeekDay() {
+        return TimeTools.parseShowReleaseWeekDay(releaseWeekDayText);
+    }
+
+    @Benchmark
+    public LocalTime getShowReleaseTime() {
+        return TimeTools.getShowReleaseTime(encodedReleaseTime);
+    }
+
+    @Benchmark
+    public String parseShowFirstRelease() {
+        return TimeTools.parseShowFirstRelease(offsetDateTime);
+    }
+
+    @Benchmark
+    public String getShowReleaseYear() {
+        return TimeTools.getShowReleaseYear(firstRelease);
+    }
+
+    @Benchmark
+    public String formatToLocalDay() {
+        return TimeTools.formatToLocalDay(date);
+    }
+}
@@ -0,0 +1,63 @@
+package com.battlelancer.seriesguide.test.benchmark;
+
+import com.battlelancer.seriesguide.util.TraktTools;
+import com.battlelancer.seriesguide.util.collections.IntObjectMap;
+import com.uwetrottmann.trakt5.entities.BaseSeason;
+import com.uwetrottmann.trakt5.entities.BaseShow;
+import com.uwetrottmann.trakt5.entities.Show;
+import com.uwetrottmann.trakt5.entities.ShowIds;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TraktToolsBenchmark {
+
+    private static final int SHOW_COUNT = 500;
+
+    private List<BaseShow> traktShows;
+    private Double rating;
+    private Locale locale;
+
+    @Setup
+    public void setup() {
+        traktShows = new ArrayList<>(SHOW_COUNT);
+        for (int i = 0; i < SHOW_COUNT; i++) {
+            BaseShow traktShow = new BaseShow();
+            traktShow.show = new Show();
+            traktShow.show.ids = new ShowIds();
+            traktShow.show.ids.tvdb = 70000 + i;
+            traktShow.seasons = Collections.singletonList(new BaseSeason());
+            traktShows.add(traktShow);
+        }
+        rating = 8.25;
+        locale = Locale.US;
+    }
+
+    @Benchmark
+    public IntObjectMap<BaseShow> buildTraktShowsMap() {
+        return TraktTools.buildTraktShowsMap(traktShows);
+    }
+
+    @Benchmark
+    public String buildRatingString() {
+        return TraktTools.buildRatingString(rating, locale);
+    }
+}